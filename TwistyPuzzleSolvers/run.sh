@@ -1,19 +1,50 @@
 #!/bin/bash
 
 srcdir="TwistyPuzzleSolvers/src"
+vectorsrcdir="TwistyPuzzleSolvers/vector-src"
+# The incubating vector module is used by the vectorised database index kernel (the solvers fall back to scalar code without it)
+vectormodule="--add-modules jdk.incubator.vector"
+# Large databases are kept in direct buffers off the heap (see LongPatternDatabase), which the JVM caps at the heap size by default
+directmemory="-XX:MaxDirectMemorySize=${MAX_DIRECT_MEMORY:-64g}"
 
-javac -d TwistyPuzzleSolvers/classes $srcdir/models/*.java $srcdir/patterndatabases/*.java $srcdir/patterndatabases/cube/*.java $srcdir/patterndatabases/kilominx/*.java $srcdir/solvers/*.java $srcdir/interactive/*.java
+javac -d TwistyPuzzleSolvers/classes $srcdir/models/*.java $srcdir/patterndatabases/*.java $srcdir/patterndatabases/cube/*.java $srcdir/patterndatabases/kilominx/*.java $srcdir/solvers/*.java $srcdir/interactive/*.java || exit 1
+# The vectorised kernel is compiled on its own, so the project still builds (and runs with the scalar kernel) without the vector module
+javac $vectormodule -cp TwistyPuzzleSolvers/classes -d TwistyPuzzleSolvers/classes $vectorsrcdir/patterndatabases/*.java ||
+    echo "Vector module unavailable: the database indices will be calculated with the scalar kernel."
 
 if [[ $1 == "cube" && ($# == 1 || $2 == "terminal" || $2 == "-t") ]]; then
-    java -cp TwistyPuzzleSolvers/classes interactive.CubeTerminal
+    java $vectormodule -cp TwistyPuzzleSolvers/classes interactive.CubeTerminal
 elif [[ $1 == "cube" && ($2 == "gui" || $2 == "-g") ]]; then
-    java -cp TwistyPuzzleSolvers/classes interactive.CubeGUI
+    java $vectormodule -cp TwistyPuzzleSolvers/classes interactive.CubeGUI
 elif [[ $1 == "kilominx" && ($# == 1 || $2 == "terminal" || $2 == "-t") ]]; then
-    java -cp TwistyPuzzleSolvers/classes interactive.KilominxTerminal
+    java $vectormodule -cp TwistyPuzzleSolvers/classes interactive.KilominxTerminal
 elif [[ $1 == "pdb" ]]; then
-    java -cp TwistyPuzzleSolvers/classes patterndatabases.PopulatePatternDatabases $2
+    java $vectormodule $directmemory -cp TwistyPuzzleSolvers/classes patterndatabases.PopulatePatternDatabases "${@:2}"
 elif [[ $1 == "test" ]]; then
-    java -cp TwistyPuzzleSolvers/classes interactive.KilominxTester $2 $3
+    java $vectormodule $directmemory -cp TwistyPuzzleSolvers/classes interactive.KilominxTester "${@:2}"
+elif [[ $1 == "test-ranking" ]]; then
+    java $vectormodule -cp TwistyPuzzleSolvers/classes interactive.RankingTester
+elif [[ $1 == "test-transposition" ]]; then
+    java $vectormodule -cp TwistyPuzzleSolvers/classes interactive.TranspositionTableTester $2
+elif [[ $1 == "test-checkpoint" ]]; then
+    java $vectormodule -cp TwistyPuzzleSolvers/classes interactive.CheckpointTester $2
+elif [[ $1 == "benchmark-indices" ]]; then
+    java $vectormodule -cp TwistyPuzzleSolvers/classes interactive.IndexBenchmark $2
+elif [[ $1 == "coordinator" ]]; then
+    java $vectormodule -cp TwistyPuzzleSolvers/classes solvers.DistributedCoordinator $2 $3 $4 $5 $6
+elif [[ $1 == "worker" ]]; then
+    java $vectormodule -cp TwistyPuzzleSolvers/classes solvers.DistributedWorker $2 $3 $4 $5 $6 $7 $8 $9
 else 
-    echo "Usage: run.sh [cube|kilominx|pdb|test] [terminal|gui|pdb-flag]"
+    echo "Usage: run.sh cube [terminal|gui]"
+    echo "       run.sh kilominx [terminal]"
+    echo "       run.sh pdb [pack|fold] <pdb-type> [packed|modulo|fold-factor...]"
+    echo "       run.sh pdb <large-pdb-type>"
+    echo "       run.sh pdb automata"
+    echo "       run.sh test <scramble-length> <no.-of-test-runs> [--threads=N] [--tt=MB] [--adaptive] [--dual] [--map] [--pack] [--modulo] [--fold=N] [--large=SET,...]"
+    echo "       run.sh test-ranking"
+    echo "       run.sh test-transposition [scramble-length]"
+    echo "       run.sh test-checkpoint [seed]"
+    echo "       run.sh benchmark-indices [rounds]"
+    echo "       run.sh coordinator <cube|kilominx> <scramble-length> <no.-of-test-runs> [port] [split-depth]"
+    echo "       run.sh worker <cube|kilominx> [host] [port] [threads] [mapped] [packed] [modulo] [fold]"
 fi
\ No newline at end of file
@@ -0,0 +1,240 @@
+package interactive;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.time.Duration;
+
+import models.Cube;
+import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
+import patterndatabases.cube.CornerOrientationPatternDatabase;
+import patterndatabases.cube.EdgeOrientationPatternDatabase;
+import solvers.CancellationToken;
+import solvers.PuzzleSolver;
+import solvers.SolveResult;
+
+/**
+ * Checks that a search which is killed part-way through a bound iteration can be resumed from its last periodic checkpoint,
+ * and that the resumed search skips the subtrees which were completed before the checkpoint was written.
+ * <p>
+ * The searches estimate cube states with the orientation databases only, which are populated in memory, so the test doesn't
+ * need any database files and each bound iteration takes long enough to be checkpointed part-way through.
+ * The subtree roots each search enters are recorded, and a search is killed by copying its checkpoint file as soon as it
+ * contains progress made part-way through a later iteration than the first (the copy is what a killed process would leave behind).
+ */
+public class CheckpointTester {
+
+    private static final long DEFAULT_SEED = 11;
+    private static final int SCRAMBLE_LENGTH = 13;
+    private static final Duration CHECKPOINT_INTERVAL = Duration.ofMillis(50);
+    // The depth of the subtree roots a bound iteration is split into (see PuzzleSolver.PARALLEL_SPLIT_DEPTH)
+    private static final byte SPLIT_DEPTH = 2;
+
+    public static void main(String[] args) {
+        // Optional first argument: the seed of the random scramble
+        long seed = (args.length > 0) ? Long.valueOf(args[0]) : DEFAULT_SEED;
+
+        boolean passed;
+        try {
+            passed = testKillAndResume(seed);
+        }
+        catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            passed = false;
+        }
+
+        System.out.println(passed ? "All checkpoint tests passed." : "Some checkpoint tests failed.");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Solve a scramble without checkpoints to find its optimal solution length and the subtrees of each bound iteration, then solve
+     * it with checkpoints, kill the search part-way through a later iteration, resume from the checkpoint it left behind, and check
+     * that the resumed search only enters the subtrees which weren't completed before it was killed.
+     * @param seed - The seed of the random scramble.
+     * @return {@code true} if the test passed, {@code false} otherwise.
+     * @throws IOException if a checkpoint file can't be read or written.
+     * @throws InterruptedException if the test is interrupted while waiting for the killed search.
+     */
+    private static boolean testKillAndResume(long seed) throws IOException, InterruptedException {
+        Cube cube = new Cube();
+        IMove[] moves = cube.getMoveController().getMoves();
+        Random random = new Random(seed);
+        for (int i = 0; i < SCRAMBLE_LENGTH; i++) {
+            cube.getMoveController().makeMove(moves[random.nextInt(moves.length)]);
+        }
+
+        OrientationSolver reference = new OrientationSolver(cube.copy());
+        int solutionLength = reference.solve().length;
+        byte firstBound = reference.getFirstBound();
+
+        File checkpointFile = File.createTempFile("search", ".chk");
+        File killedFile = File.createTempFile("killed", ".chk");
+        try {
+            // Kill the search once the checkpoint shows that a subtree of a later iteration has been completed
+            OrientationSolver killed = new OrientationSolver(cube.copy());
+            killed.setCheckpointFile(checkpointFile, CHECKPOINT_INTERVAL);
+            CancellationToken token = new CancellationToken();
+            AtomicReference<SolveResult> killedResult = new AtomicReference<SolveResult>();
+            Thread searchThread = new Thread(() -> killedResult.set(killed.solve(null, token)));
+            searchThread.start();
+
+            byte killedBound = 0;
+            int remainingSubtrees = 0;
+            while (searchThread.isAlive()) {
+                byte[] contents = readIfExists(checkpointFile);
+                if (contents != null) {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+                    // Skip the magic number and the packed state
+                    in.skipBytes(4 + 16);
+                    byte bound = in.readByte();
+                    in.skipBytes(1 + 8);
+                    int remaining = in.readInt();
+                    if (bound > firstBound && bound < solutionLength && remaining > 0 && remaining < reference.getSubtreeRoots(bound).size()) {
+                        Files.write(killedFile.toPath(), contents);
+                        killedBound = bound;
+                        remainingSubtrees = remaining;
+                        break;
+                    }
+                }
+                Thread.sleep(5);
+            }
+            token.cancel();
+            searchThread.join();
+
+            if (killedBound == 0) {
+                System.out.println("Kill and resume: no checkpoint was written part-way through an iteration after the first " +
+                                   "(the search ended with " + killedResult.get().getStatus() + ")");
+                return false;
+            }
+
+            // Resume from the checkpoint of the killed search (without writing any more checkpoints)
+            OrientationSolver resumed = new OrientationSolver(cube.copy());
+            SolveResult result = resumed.resume(killedFile, null, null);
+            if (result.getSolution() == null || result.getSolution().length != solutionLength) {
+                System.out.println("Kill and resume: the resumed search found a solution of " +
+                                   (result.getSolution() == null ? "no" : result.getSolution().length) + " moves, expected " + solutionLength);
+                return false;
+            }
+
+            // The subtrees completed before the kill are the first subtrees the killed search entered at that bound
+            List<String> allRoots = reference.getSubtreeRoots(killedBound);
+            List<String> killedRoots = killed.getSubtreeRoots(killedBound);
+            List<String> resumedRoots = resumed.getSubtreeRoots(killedBound);
+            int completedSubtrees = allRoots.size() - remainingSubtrees;
+            System.out.println("Kill and resume: killed at depth " + killedBound + " with " + completedSubtrees + " of " +
+                               allRoots.size() + " subtrees completed");
+
+            if (resumedRoots.size() != remainingSubtrees) {
+                System.out.println("Kill and resume: the resumed search entered " + resumedRoots.size() + " subtrees at depth " +
+                                   killedBound + ", expected the " + remainingSubtrees + " remaining subtrees");
+                return false;
+            }
+            Set<String> expectedRoots = new HashSet<String>(allRoots);
+            expectedRoots.removeAll(killedRoots.subList(0, completedSubtrees));
+            if (!expectedRoots.equals(new HashSet<String>(resumedRoots))) {
+                System.out.println("Kill and resume: the resumed search entered subtrees which were completed before the kill");
+                return false;
+            }
+            return true;
+        }
+        finally {
+            checkpointFile.delete();
+            killedFile.delete();
+        }
+    }
+
+    /**
+     * Read the whole of a file, if it exists.
+     * @param file - The file to read.
+     * @return The contents of the file, or {@code null} if it doesn't exist or is empty.
+     */
+    private static byte[] readIfExists(File file) {
+        try {
+            byte[] contents = Files.readAllBytes(file.toPath());
+            return (contents.length == 0) ? null : contents;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * A cube solver which only uses the orientation databases, and records the subtree root of every bound iteration it enters.
+     */
+    private static class OrientationSolver extends PuzzleSolver {
+        private final CornerOrientationPatternDatabase cornerOrientationPDB = new CornerOrientationPatternDatabase();
+        private final EdgeOrientationPatternDatabase edgeOrientationPDB = new EdgeOrientationPatternDatabase();
+        // The packed states of the subtree roots entered in each bound iteration, in the order they were entered
+        private final Map<Byte, List<String>> subtreeRoots = new HashMap<Byte, List<String>>();
+        private byte firstBound = Byte.MAX_VALUE;
+
+        /**
+         * Constructor for an OrientationSolver.
+         * @param cube - The cube to solve.
+         */
+        private OrientationSolver(Cube cube) {
+            super(cube);
+            if (!cornerOrientationPDB.populateFromMoveTable(new Cube()) || !edgeOrientationPDB.populateFromMoveTable(new Cube())) {
+                throw new IllegalStateException("Failed to populate orientation pattern databases.");
+            }
+        }
+
+        /**
+         * Get the packed states of the subtree roots entered in a bound iteration.
+         * @param bound - The bound of the iteration.
+         * @return The packed states of the subtree roots, in the order they were entered.
+         */
+        private synchronized List<String> getSubtreeRoots(byte bound) {
+            return subtreeRoots.getOrDefault(bound, new ArrayList<String>());
+        }
+
+        /**
+         * Get the bound of the first iteration the solver searched.
+         * @return The smallest bound of any iteration which entered a subtree.
+         */
+        private synchronized byte getFirstBound() {
+            return firstBound;
+        }
+
+        @Override
+        protected byte getMaxNumberOfMoves(ITwistyPuzzle puzzle) {
+            return (byte) Math.max(cornerOrientationPDB.getNumberOfMoves(puzzle), edgeOrientationPDB.getNumberOfMoves(puzzle));
+        }
+
+        @Override
+        protected byte getMaxNumberOfMoves(ITwistyPuzzle puzzle, byte boundHint, byte depthHint) {
+            return getMaxNumberOfMoves(puzzle);
+        }
+
+        @Override
+        protected void getMaxNumberOfMoves(ITwistyPuzzle puzzle, IMove[] childMoves, int childCount, byte boundHint, byte depthHint,
+                                           byte[] estimates) {
+            // Only the roots of subtrees have their children estimated one level below the split depth
+            if (depthHint == SPLIT_DEPTH + 1) {
+                long[] packedState = new long[2];
+                puzzle.packState(packedState);
+                synchronized (this) {
+                    subtreeRoots.computeIfAbsent(boundHint, bound -> new ArrayList<String>()).add(packedState[0] + ":" + packedState[1]);
+                    firstBound = (byte) Math.min(firstBound, boundHint);
+                }
+            }
+            super.getMaxNumberOfMoves(puzzle, childMoves, childCount, boundHint, depthHint, estimates);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import models.Cube;
 import models.Cube.Colour;
 import models.CubeController.Move;
 import models.IMoveController.IMove;
+import solvers.BidirectionalSolver;
 import solvers.CubeSolver;
 
 /**
@@ -30,6 +31,13 @@ public class CubeTerminal {
                                                 "  and [MODIFIER] (optional argument) is either ' (counter-clockwise turn), or 2 (double turn).\n" +
                                                 "  For example, D' is the counter-clockwise turn of the Down face.\n";
 
+    // Scrambles of up to 12 moves are solved with a bidirectional search, which reuses its perimeter table between solves.
+    // The perimeter of every state within 6 moves (8.2 million states) takes roughly 300MB and 5 seconds to generate,
+    // so the solver is only created by the first SOLVE (see getQuickSolver)
+    private static final int QUICK_SOLVE_MAX_MOVES = 12;
+    private static final int QUICK_SOLVE_PERIMETER_DEPTH = 6;
+    private static BidirectionalSolver quickSolver = null;
+
     private Cube cube;
     private static Scanner sc;
     private boolean guiMode;
@@ -111,9 +119,15 @@ public class CubeTerminal {
                 break;
 
             case "SOLVE":
-                CubeSolver solver = new CubeSolver(cube);
                 try {
-                    IMove[] moves = solver.solve();
+                    // Short scrambles are solved quickly with a bidirectional search, without loading the pattern databases
+                    BidirectionalSolver quickSolver = getQuickSolver();
+                    quickSolver.setPuzzleInstance(cube);
+                    IMove[] moves = quickSolver.solve(QUICK_SOLVE_MAX_MOVES);
+                    if (moves == null) {
+                        CubeSolver solver = new CubeSolver(cube);
+                        moves = solver.solve();
+                    }
                 
                     // Output and perform the moves to solve the cube
                     out = "Moves to solve the cube:\n";
@@ -174,6 +188,17 @@ public class CubeTerminal {
         return out;
     }
 
+    /**
+     * Get the bidirectional solver used to solve short scrambles, creating it the first time a puzzle is solved.
+     * @return The bidirectional solver, which is shared by all terminals.
+     */
+    private static synchronized BidirectionalSolver getQuickSolver() {
+        if (quickSolver == null) {
+            quickSolver = new BidirectionalSolver(new Cube(), QUICK_SOLVE_PERIMETER_DEPTH);
+        }
+        return quickSolver;
+    }
+
     /**
      * Enter EDIT mode to allow the user to change the colours of the cube.
      */
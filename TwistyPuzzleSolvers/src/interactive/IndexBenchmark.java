@@ -0,0 +1,144 @@
+package interactive;
+
+import models.Kilominx;
+import patterndatabases.IndexKernel;
+import patterndatabases.PermutationRanker;
+import patterndatabases.kilominx.FaceKubiesPatternDatabase;
+import patterndatabases.kilominx.SparseKubiesPatternDatabase;
+
+/**
+ * Benchmarks the calculation of the 17 kilominx database indices of a kilominx state: one database at a time with the
+ * ranker used by {@code PatternDatabase.calculateLehmerRank} (as the solver does without index kernels), with the scalar index kernel,
+ * and with the vectorised index kernel (if the JVM was started with {@code --add-modules jdk.incubator.vector}).
+ * The indices calculated by each method are checked against each other.
+ */
+public class IndexBenchmark {
+
+    private static final int STATE_COUNT = 4096;
+
+    public static void main(String[] args) {
+        int rounds = (args.length > 0) ? Integer.valueOf(args[0]) : 200;
+
+        // The databases are only created to get their kubie sets, so they aren't kept (the face databases are too large)
+        byte[][] faceSets = new byte[12][];
+        for (int i = 0; i < 12; i++) {
+            faceSets[i] = new FaceKubiesPatternDatabase(i + 1).getKubieSet();
+        }
+        byte[][] sparseSets = new byte[5][];
+        for (int i = 0; i < 5; i++) {
+            sparseSets[i] = new SparseKubiesPatternDatabase(i + 1).getKubieSet();
+        }
+        PermutationRanker faceRanker = PermutationRanker.getInstance(19, 5), sparseRanker = PermutationRanker.getInstance(19, 4);
+
+        // The kubie tables of random kilominx states (UFL is fixed at position 0, so positions start at 1)
+        byte[][] positions = new byte[STATE_COUNT][20], orientations = new byte[STATE_COUNT][20];
+        int[][] intPositions = new int[STATE_COUNT][20], intOrientations = new int[STATE_COUNT][20];
+        for (int s = 0; s < STATE_COUNT; s++) {
+            Kilominx kilominx = new Kilominx();
+            kilominx.getMoveController().scramble(30);
+            kilominx.getKubiePositions(positions[s], orientations[s]);
+            for (int i = 0; i < 20; i++) {
+                intPositions[s][i] = positions[s][i];
+                intOrientations[s][i] = orientations[s][i];
+            }
+        }
+
+        IndexKernel[] scalarKernels = { IndexKernel.createScalar(faceSets, 19, 3, 1), IndexKernel.createScalar(sparseSets, 19, 3, 1) };
+        IndexKernel[] kernels = { IndexKernel.create(faceSets, 19, 3, 1), IndexKernel.create(sparseSets, 19, 3, 1) };
+        System.out.println("Vector module present: " + IndexKernel.isVectorModulePresent());
+
+        // Check that all methods agree before timing them
+        int[] expected = new int[17], scalar = new int[17], vector = new int[17];
+        for (int s = 0; s < STATE_COUNT; s++) {
+            calculateLehmerIndices(faceRanker, faceSets, sparseRanker, sparseSets, positions[s], orientations[s], expected);
+            calculateKernelIndices(scalarKernels, intPositions[s], intOrientations[s], scalar);
+            calculateKernelIndices(kernels, intPositions[s], intOrientations[s], vector);
+            for (int d = 0; d < 17; d++) {
+                if (scalar[d] != expected[d] || vector[d] != expected[d]) {
+                    System.out.println("Index mismatch in database " + d + " of state " + s);
+                    System.exit(1);
+                }
+            }
+        }
+
+        // Run each method twice, so the second run is timed after the JIT has compiled it
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            long checksum = 0;
+            for (int r = 0; r < rounds; r++) {
+                for (int s = 0; s < STATE_COUNT; s++) {
+                    calculateLehmerIndices(faceRanker, faceSets, sparseRanker, sparseSets, positions[s], orientations[s], expected);
+                    checksum += expected[r % 17];
+                }
+            }
+            report("calculateLehmerRank", start, rounds, checksum, run);
+
+            start = System.nanoTime();
+            checksum = 0;
+            for (int r = 0; r < rounds; r++) {
+                for (int s = 0; s < STATE_COUNT; s++) {
+                    calculateKernelIndices(scalarKernels, intPositions[s], intOrientations[s], scalar);
+                    checksum += scalar[r % 17];
+                }
+            }
+            report("Scalar kernel", start, rounds, checksum, run);
+
+            if (kernels[0].isVectorised()) {
+                start = System.nanoTime();
+                checksum = 0;
+                for (int r = 0; r < rounds; r++) {
+                    for (int s = 0; s < STATE_COUNT; s++) {
+                        calculateKernelIndices(kernels, intPositions[s], intOrientations[s], vector);
+                        checksum += vector[r % 17];
+                    }
+                }
+                report("Vector kernel", start, rounds, checksum, run);
+            }
+        }
+    }
+
+    /**
+     * Calculate the 17 database indices of a kilominx state one database at a time.
+     */
+    private static void calculateLehmerIndices(PermutationRanker faceRanker, byte[][] faceSets, PermutationRanker sparseRanker,
+                                               byte[][] sparseSets, byte[] positions, byte[] orientations, int[] indices) {
+        for (int i = 0; i < faceSets.length; i++) {
+            indices[i] = calculateLehmerIndex(faceRanker, faceSets[i], positions, orientations);
+        }
+        for (int i = 0; i < sparseSets.length; i++) {
+            indices[faceSets.length + i] = calculateLehmerIndex(sparseRanker, sparseSets[i], positions, orientations);
+        }
+    }
+
+    /**
+     * Calculate the index of a kilominx state in one database, in the same way as the database does.
+     */
+    private static int calculateLehmerIndex(PermutationRanker ranker, byte[] set, byte[] positions, byte[] orientations) {
+        byte[] kubieIndices = new byte[set.length];
+        int orientationRank = 0;
+        for (int i = 0; i < set.length; i++) {
+            kubieIndices[i] = (byte) (positions[set[i]] - 1);
+            orientationRank = orientationRank * 3 + orientations[set[i]];
+        }
+        return ranker.rank(kubieIndices) * (set.length == 5 ? 243 : 81) + orientationRank;
+    }
+
+    /**
+     * Calculate the 17 database indices of a kilominx state with a face kernel and a sparse kernel.
+     */
+    private static void calculateKernelIndices(IndexKernel[] kernels, int[] positions, int[] orientations, int[] indices) {
+        kernels[0].calculateIndices(positions, orientations, indices, 0);
+        kernels[1].calculateIndices(positions, orientations, indices, 12);
+    }
+
+    /**
+     * Print the time taken per kilominx state by a method (only for the timed run).
+     */
+    private static void report(String method, long start, int rounds, long checksum, int run) {
+        if (run == 0) {
+            return;
+        }
+        double nanosPerState = (double) (System.nanoTime() - start) / ((long) rounds * STATE_COUNT);
+        System.out.printf("%-20s %7.1f ns per state (checksum %d)%n", method + ":", nanosPerState, checksum);
+    }
+}
@@ -4,6 +4,7 @@ import models.Kilominx;
 import models.Kilominx.Colour;
 import models.KilominxController.Move;
 import models.IMoveController.IMove;
+import solvers.BidirectionalSolver;
 import solvers.KilominxSolver;
 
 import java.util.Scanner;
@@ -28,6 +29,12 @@ public class KilominxTerminal {
                                                 "  and [MODIFIER] (optional argument) is either ' (counter-clockwise turn), 2 (double turn), or 2' (double counter-clockwise turn).\n" +
                                                 "  For example, DBL2' is the double counter-clockwise turn of the Down-Back-Left face.\n";
 
+    // Scrambles of up to 8 moves are solved with a bidirectional search, which reuses its perimeter table between solves,
+    // and is only created by the first SOLVE (see getQuickSolver)
+    private static final int QUICK_SOLVE_MAX_MOVES = 8;
+    private static final int QUICK_SOLVE_PERIMETER_DEPTH = 4;
+    private static BidirectionalSolver quickSolver = null;
+
     private Kilominx kilominx;
     private static Scanner sc;
     private Pattern movePattern, scramblePattern;
@@ -99,9 +106,15 @@ public class KilominxTerminal {
                 break;
             
             case "SOLVE":
-                KilominxSolver solver = new KilominxSolver(kilominx);
                 try {
-                    IMove[] moves = solver.solve();
+                    // Short scrambles are solved quickly with a bidirectional search, without loading the pattern databases
+                    BidirectionalSolver quickSolver = getQuickSolver();
+                    quickSolver.setPuzzleInstance(kilominx);
+                    IMove[] moves = quickSolver.solve(QUICK_SOLVE_MAX_MOVES);
+                    if (moves == null) {
+                        KilominxSolver solver = new KilominxSolver(kilominx);
+                        moves = solver.solve();
+                    }
                 
                     // Output and perform the moves to solve the kilominx
                     out = "Moves to solve the kilominx:\n";
@@ -163,6 +176,17 @@ public class KilominxTerminal {
         return out;
     }
 
+    /**
+     * Get the bidirectional solver used to solve short scrambles, creating it the first time a puzzle is solved.
+     * @return The bidirectional solver, which is shared by all terminals.
+     */
+    private static synchronized BidirectionalSolver getQuickSolver() {
+        if (quickSolver == null) {
+            quickSolver = new BidirectionalSolver(new Kilominx(), QUICK_SOLVE_PERIMETER_DEPTH);
+        }
+        return quickSolver;
+    }
+
     /**
      * Enter EDIT mode to allow the user to change the colours of the kilominx.
      */
@@ -4,25 +4,102 @@ import java.util.Arrays;
 
 import models.IMoveController.IMove;
 import models.Kilominx;
+import patterndatabases.StorageMode;
 import solvers.KilominxSolver;
 
 public class KilominxTester {
 
     KilominxSolver solver;
 
-    public static void main(String[] args) {
-        KilominxTester tester = new KilominxTester();
+    private static final String USAGE = "Usage: KilominxTester <scramble-length> <no.-of-test-runs> [--threads=N] [--tt=MEGABYTES] [--adaptive] [--dual]\n" +
+                                        "                      [--map] [--pack] [--modulo] [--fold=N] [--large=SET,...]";
 
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
         int scrambleLength = Integer.valueOf(args[0]);
         int testRuns = Integer.valueOf(args[1]);
 
+        int threads = 1;
+        long transpositionTableMegabytes = 0;
+        boolean adaptiveProbeOrder = false, dualLookups = false;
+        boolean mapped = false, packed = false, modulo = false;
+        int foldFactor = 1;
+        int[] largeSetNos = null;
+        for (int i = 2; i < args.length; i++) {
+            String flag = args[i];
+            String name = flag.contains("=") ? flag.substring(0, flag.indexOf('=')) : flag;
+            String value = flag.substring(name.length()).replaceFirst("^=", "");
+            switch (name) {
+                case "--threads":
+                    // The number of threads to search with
+                    threads = Integer.valueOf(value);
+                    break;
+                case "--tt":
+                    // The size of the transposition table shared by the search threads, in megabytes
+                    transpositionTableMegabytes = Long.valueOf(value);
+                    break;
+                case "--adaptive":
+                    // Learn the order of the database lookups during the search
+                    adaptiveProbeOrder = true;
+                    break;
+                case "--dual":
+                    // Also estimate children by looking up the databases with their inverse states
+                    dualLookups = true;
+                    break;
+                case "--map":
+                    // Map the database files into memory rather than reading them onto the heap
+                    mapped = true;
+                    break;
+                case "--pack":
+                    // Pack databases read from files with a byte per entry into 4 bits per entry
+                    packed = true;
+                    break;
+                case "--modulo":
+                    // Only keep the database entries modulo 3
+                    modulo = true;
+                    break;
+                case "--fold":
+                    // Fold this many adjacent database entries into one
+                    foldFactor = Integer.valueOf(value);
+                    break;
+                case "--large":
+                    // Also look up the large face databases of these sets, separated by commas
+                    largeSetNos = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                default:
+                    System.err.println("Unknown option: " + flag + "\n" + USAGE);
+                    System.exit(1);
+            }
+        }
+
+        // The storage mode is given to the solver, which reads the databases when it is created
+        StorageMode storageMode = null;
+        try {
+            storageMode = new StorageMode(mapped, packed, modulo, foldFactor);
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println("Invalid storage mode: " + e.getMessage());
+            System.exit(1);
+        }
+        KilominxTester tester = new KilominxTester(storageMode);
+        tester.solver.setParallelism(threads);
+        tester.solver.setTranspositionTable(transpositionTableMegabytes * 1024 * 1024);
+        tester.solver.setAdaptiveProbeOrder(adaptiveProbeOrder);
+        tester.solver.setDualLookups(dualLookups);
+        if (largeSetNos != null) {
+            tester.solver.useLargeFaceDatabases(largeSetNos);
+        }
+
         for (int i = 0; i < testRuns; i++) {
             tester.testRun(scrambleLength);
         }
     }
 
-    public KilominxTester() {
-        solver = new KilominxSolver(null);
+    public KilominxTester(StorageMode storageMode) {
+        solver = new KilominxSolver(null, false, storageMode);
     }
 
 
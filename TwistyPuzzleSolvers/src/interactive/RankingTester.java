@@ -0,0 +1,264 @@
+package interactive;
+
+import java.util.Random;
+
+import patterndatabases.PermutationRanker;
+
+/**
+ * Checks that the permutation and orientation ranks used by the pattern databases are bijections, by unranking every
+ * rank and checking that the result is valid, and ranks back to the same rank.
+ * Since every rank gives a different valid permutation, and there are as many ranks as permutations, every permutation has exactly one rank.
+ * Shapes with too many permutations for int ranks can't be enumerated, so their long ranks are checked on random permutations.
+ */
+public class RankingTester {
+
+    // The (n, k) of each database shape: cube corners, cube edges, kilominx faces and kilominx sparse kubies,
+    // and the large cube edges and kilominx faces
+    private static final int[][] PERMUTATION_SIZES = { {8, 8}, {12, 7}, {19, 5}, {19, 4}, {12, 8}, {19, 6} };
+    // The (count, radix) of each orientation coordinate used by the same databases
+    private static final int[][] ORIENTATION_SIZES = { {7, 3}, {7, 2}, {5, 3}, {4, 3}, {8, 2}, {6, 3} };
+    // The (n, k) of shapes with too many permutations for int ranks (up to every permutation of the most elements a ranker
+    // takes), and the number of random permutations checked for each
+    private static final int[][] LONG_PERMUTATION_SIZES = { {19, 8}, {20, 10}, {PermutationRanker.MAX_ELEMENTS, PermutationRanker.MAX_ELEMENTS} };
+    private static final int LONG_SAMPLES = 100000;
+
+    public static void main(String[] args) {
+        boolean passed = true;
+
+        for (int[] size : PERMUTATION_SIZES) {
+            passed &= testPermutations(size[0], size[1]);
+        }
+        for (int[] size : ORIENTATION_SIZES) {
+            passed &= testOrientations(size[0], size[1]);
+        }
+        for (int[] size : LONG_PERMUTATION_SIZES) {
+            passed &= testLongPermutations(size[0], size[1]);
+        }
+        passed &= testTooManyElements();
+
+        System.out.println(passed ? "All ranking tests passed." : "Some ranking tests failed.");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Check that the Lehmer ranking of partial permutations of k of n elements is a bijection, and gives the same ranks
+     * when the permutations are picked out of a table.
+     * @param n - The number of elements in the permutation.
+     * @param k - The number of elements picked in the partial permutation.
+     * @return {@code true} if the test passed, {@code false} otherwise.
+     */
+    private static boolean testPermutations(int n, int k) {
+        PermutationRanker ranker = PermutationRanker.getInstance(n, k);
+        long expectedCount = 1;
+        for (int i = 0; i < k; i++) {
+            expectedCount *= n - i;
+        }
+        if (ranker.getPermutationCount() != expectedCount) {
+            System.out.println("Permutations " + k + " of " + n + ": expected " + expectedCount + " permutations, got " + ranker.getPermutationCount());
+            return false;
+        }
+
+        byte[] permutation = new byte[k];
+        byte[] previous = new byte[k];
+        byte[] table = new byte[k], selection = new byte[k];
+        for (int rank = 0; rank < ranker.getPermutationCount(); rank++) {
+            ranker.unrank(rank, permutation);
+
+            // The permutation must pick k different elements between 0 and n - 1
+            int picked = 0;
+            for (int i = 0; i < k; i++) {
+                if (permutation[i] < 0 || permutation[i] >= n || (picked & (1 << permutation[i])) != 0) {
+                    System.out.println("Permutations " + k + " of " + n + ": rank " + rank + " unranked to an invalid permutation");
+                    return false;
+                }
+                picked |= 1 << permutation[i];
+            }
+
+            // Ranks follow the lexicographical ordering of the permutations
+            if (rank > 0 && compare(previous, permutation) >= 0) {
+                System.out.println("Permutations " + k + " of " + n + ": rank " + rank + " is out of lexicographical order");
+                return false;
+            }
+
+            if (ranker.rank(permutation) != rank || ranker.rankLong(permutation) != rank) {
+                System.out.println("Permutations " + k + " of " + n + ": rank " + rank + " ranked back to " + ranker.rank(permutation)
+                                   + " (long rank " + ranker.rankLong(permutation) + ")");
+                return false;
+            }
+            System.arraycopy(permutation, 0, previous, 0, k);
+
+            // Picking the same permutation out of a table (shifted by one, in reverse order) must give the same rank
+            for (int i = 0; i < k; i++) {
+                selection[i] = (byte) (k - 1 - i);
+                table[k - 1 - i] = (byte) (permutation[i] + 1);
+            }
+            if (ranker.rank(table, selection, -1) != rank) {
+                System.out.println("Permutations " + k + " of " + n + ": rank " + rank + " differs when picked out of a table");
+                return false;
+            }
+        }
+
+        System.out.println("Permutations " + k + " of " + n + ": passed (" + ranker.getPermutationCount() + " ranks)");
+        return true;
+    }
+
+    /**
+     * Check the long Lehmer ranks of partial permutations of k of n elements, where there are too many to enumerate:
+     * the first and last permutations must have the first and last ranks, and random permutations must have ranks in range
+     * which follow the lexicographical ordering of the permutations, and the same ranks when they are picked out of a table.
+     * @param n - The number of elements in the permutation.
+     * @param k - The number of elements picked in the partial permutation.
+     * @return {@code true} if the test passed, {@code false} otherwise.
+     */
+    private static boolean testLongPermutations(int n, int k) {
+        PermutationRanker ranker = PermutationRanker.getInstance(n, k);
+        long expectedCount = 1;
+        for (int i = 0; i < k; i++) {
+            expectedCount *= n - i;
+        }
+        if (ranker.getLongPermutationCount() != expectedCount) {
+            System.out.println("Permutations " + k + " of " + n + ": expected " + expectedCount + " permutations, got " + ranker.getLongPermutationCount());
+            return false;
+        }
+
+        byte[] first = new byte[k], last = new byte[k];
+        for (int i = 0; i < k; i++) {
+            first[i] = (byte) i;
+            last[i] = (byte) (n - 1 - i);
+        }
+        if (ranker.rankLong(first) != 0 || ranker.rankLong(last) != expectedCount - 1) {
+            System.out.println("Permutations " + k + " of " + n + ": the first and last permutations have ranks "
+                               + ranker.rankLong(first) + " and " + ranker.rankLong(last));
+            return false;
+        }
+
+        // Int ranks would overflow, so they must be refused
+        try {
+            ranker.rank(first);
+            System.out.println("Permutations " + k + " of " + n + ": ranked with an int rank");
+            return false;
+        }
+        catch (IllegalStateException e) {}
+        try {
+            ranker.unrank(0, first);
+            System.out.println("Permutations " + k + " of " + n + ": unranked from an int rank");
+            return false;
+        }
+        catch (IllegalStateException e) {}
+
+        Random random = new Random(n * 31 + k);
+        byte[] permutation = new byte[k];
+        byte[] previous = new byte[k];
+        long previousRank = -1;
+        byte[] table = new byte[n], selection = new byte[k];
+        for (int sample = 0; sample < LONG_SAMPLES; sample++) {
+            // Shuffle the first k elements of the permutation of all n elements
+            byte[] elements = new byte[n];
+            for (int i = 0; i < n; i++) {
+                elements[i] = (byte) i;
+            }
+            for (int i = 0; i < k; i++) {
+                int j = i + random.nextInt(n - i);
+                byte element = elements[j];
+                elements[j] = elements[i];
+                elements[i] = element;
+                permutation[i] = element;
+            }
+
+            long rank = ranker.rankLong(permutation);
+            if (rank < 0 || rank >= expectedCount) {
+                System.out.println("Permutations " + k + " of " + n + ": rank " + rank + " is out of range");
+                return false;
+            }
+            // Ranks follow the lexicographical ordering of the permutations
+            if (previousRank >= 0 && Long.signum(rank - previousRank) != Integer.signum(compare(permutation, previous))) {
+                System.out.println("Permutations " + k + " of " + n + ": rank " + rank + " is out of lexicographical order");
+                return false;
+            }
+            System.arraycopy(permutation, 0, previous, 0, k);
+            previousRank = rank;
+
+            // Picking the same permutation out of a table (shifted by one, in reverse order) must give the same rank
+            for (int i = 0; i < k; i++) {
+                selection[i] = (byte) (k - 1 - i);
+                table[k - 1 - i] = (byte) (permutation[i] + 1);
+            }
+            if (ranker.rankLong(table, selection, -1) != rank) {
+                System.out.println("Permutations " + k + " of " + n + ": rank " + rank + " differs when picked out of a table");
+                return false;
+            }
+        }
+
+        System.out.println("Permutations " + k + " of " + n + ": passed (" + LONG_SAMPLES + " of " + expectedCount + " ranks)");
+        return true;
+    }
+
+    /**
+     * Check that rankers aren't created for more elements than a ranker takes, as the table of the number of ones in each
+     * bitmask would double in size with each extra element.
+     * @return {@code true} if the test passed, {@code false} otherwise.
+     */
+    private static boolean testTooManyElements() {
+        int n = PermutationRanker.MAX_ELEMENTS + 1;
+        try {
+            PermutationRanker.getInstance(n, 1);
+            System.out.println("Permutations 1 of " + n + ": created a ranker for too many elements");
+            return false;
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Permutations 1 of " + n + ": passed (refused)");
+            return true;
+        }
+    }
+
+    /**
+     * Check that the ranking of orientations as base-radix numbers is a bijection.
+     * @param count - The number of orientations.
+     * @param radix - The number of orientations of each cubie.
+     * @return {@code true} if the test passed, {@code false} otherwise.
+     */
+    private static boolean testOrientations(int count, int radix) {
+        int rankCount = 1;
+        for (int i = 0; i < count; i++) {
+            rankCount *= radix;
+        }
+
+        byte[] orientations = new byte[count];
+        for (int rank = 0; rank < rankCount; rank++) {
+            PermutationRanker.unrankOrientations(rank, orientations, count, radix);
+
+            for (int i = 0; i < count; i++) {
+                if (orientations[i] < 0 || orientations[i] >= radix) {
+                    System.out.println("Orientations " + count + " of base " + radix + ": rank " + rank + " unranked to invalid orientations");
+                    return false;
+                }
+            }
+
+            if (PermutationRanker.rankOrientations(orientations, count, radix) != rank) {
+                System.out.println("Orientations " + count + " of base " + radix + ": rank " + rank + " did not rank back to itself");
+                return false;
+            }
+        }
+
+        System.out.println("Orientations " + count + " of base " + radix + ": passed (" + rankCount + " ranks)");
+        return true;
+    }
+
+    /**
+     * Compare two permutations lexicographically.
+     * @param a - The first permutation.
+     * @param b - The second permutation (of the same length).
+     * @return A negative number, zero or a positive number if a is before, equal to or after b.
+     */
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return a[i] - b[i];
+            }
+        }
+        return 0;
+    }
+}
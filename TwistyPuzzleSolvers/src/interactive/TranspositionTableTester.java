@@ -0,0 +1,97 @@
+package interactive;
+
+import java.util.Arrays;
+
+import models.Cube;
+import models.IMoveController.IMove;
+import solvers.CubeSolver;
+import solvers.TranspositionTable;
+
+/**
+ * Checks that entries left in a transposition table by one search never cut off states in a later search.
+ * The table is first checked on its own, by probing the same state in two searches with the same bound. Then two different
+ * scrambles are solved back to back on one solver with a transposition table, and the solution lengths and solution
+ * counts are compared against a solver without a table (which needs the cube pattern databases).
+ */
+public class TranspositionTableTester {
+
+    private static final int DEFAULT_SCRAMBLE_LENGTH = 8;
+
+    public static void main(String[] args) {
+        boolean passed = testGenerations();
+
+        // Optional first argument: the length of the scrambles solved back to back
+        int scrambleLength = (args.length > 0) ? Integer.valueOf(args[0]) : DEFAULT_SCRAMBLE_LENGTH;
+        passed &= testBackToBack(scrambleLength);
+
+        System.out.println(passed ? "All transposition table tests passed." : "Some transposition table tests failed.");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Check that a state stored by one search is not cut off when it is reached deeper in the next search with the same bound,
+     * but is still cut off when it is reached deeper in the same search.
+     * @return {@code true} if the test passed, {@code false} otherwise.
+     */
+    private static boolean testGenerations() {
+        TranspositionTable table = new TranspositionTable(1024 * 1024);
+        long[] packedState = { 0x0123456789ABCDEFL, 0x7EDCBA9876543210L };
+        byte bound = 10;
+
+        table.startSearch();
+        if (table.probe(packedState, bound, (byte) 3, 0, true)) {
+            System.out.println("Generations: a state was cut off the first time it was reached");
+            return false;
+        }
+        if (!table.probe(packedState, bound, (byte) 4, 0, true)) {
+            System.out.println("Generations: a state reached deeper in the same search was not cut off");
+            return false;
+        }
+
+        table.startSearch();
+        if (table.probe(packedState, bound, (byte) 4, 0, true)) {
+            System.out.println("Generations: a state was cut off by an entry from an earlier search with the same bound");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check that solving two different scrambles back to back on one solver with a transposition table finds solutions
+     * (and numbers of optimal solutions) which match a solver without a table.
+     * @param scrambleLength - The length of the scrambles.
+     * @return {@code true} if the test passed, {@code false} otherwise.
+     */
+    private static boolean testBackToBack(int scrambleLength) {
+        CubeSolver reference = new CubeSolver(new Cube());
+        CubeSolver tabled = new CubeSolver(new Cube());
+        tabled.setTranspositionTable(64L * 1024 * 1024);
+
+        for (int run = 0; run < 2; run++) {
+            Cube cube = new Cube();
+            IMove[] scramble = cube.getMoveController().scramble(scrambleLength);
+            reference.setPuzzleInstance(cube.copy());
+            tabled.setPuzzleInstance(cube.copy());
+
+            IMove[] expected = reference.solve();
+            IMove[] actual = tabled.solve();
+            if (actual.length != expected.length) {
+                System.out.println("Back to back: scramble " + Arrays.toString(scramble) + " was solved in " + actual.length +
+                                   " moves with the table, but " + expected.length + " moves without it");
+                return false;
+            }
+
+            long expectedCount = reference.countSolutions();
+            long actualCount = tabled.countSolutions();
+            if (actualCount != expectedCount) {
+                System.out.println("Back to back: scramble " + Arrays.toString(scramble) + " has " + actualCount +
+                                   " optimal solutions with the table, but " + expectedCount + " without it");
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -401,6 +401,25 @@ public class Cube implements ITwistyPuzzle {
         }
     }
 
+    /**
+     * Set the cube state to the inverse of another cube state, which is the state reached by undoing the moves that
+     * scrambled the other cube in reverse order, starting from a solved cube. The inverse takes the same number of moves to solve.
+     * If the other cube has cubie c in position i, the inverse has cubie i in position c, with the opposite orientation.
+     * @param other - The cube to set the state to the inverse of (which must not be this cube).
+     */
+    public void setInverse(Cube other) {
+        for (byte i = 0; i < 8; i++) {
+            Cubie corner = cornerCubies[other.cornerCubies[i].index];
+            corner.index = i;
+            corner.orientation = (byte) ((3 - other.cornerCubies[i].orientation) % 3);
+        }
+        for (byte i = 0; i < 12; i++) {
+            Cubie edge = edgeCubies[other.edgeCubies[i].index];
+            edge.index = i;
+            edge.orientation = other.edgeCubies[i].orientation; // (2 - orientation) % 2 = orientation
+        }
+    }
+
     /**
      * Get the indices of the edge cubies.
      * @return An array of the indices of the edge cubies.
@@ -429,6 +448,18 @@ public class Cube implements ITwistyPuzzle {
         return orientations;
     }
     
+    /**
+     * Get the position and orientation of each edge cubie (the inverse of {@link #getEdgeIndices}), without allocating any arrays.
+     * @param positions - The array to store the position of each edge cubie in (indexed by edge cubie index).
+     * @param orientations - The array to store the orientation of each edge cubie in (indexed by edge cubie index).
+     */
+    public void getEdgePositions(byte[] positions, byte[] orientations) {
+        for (byte i = 0; i < 12; i++) {
+            positions[edgeCubies[i].index] = i;
+            orientations[edgeCubies[i].index] = edgeCubies[i].orientation;
+        }
+    }
+    
     /**
      * Get the indices of the corner cubies.
      * @return An array of the indices of the corner cubies.
@@ -480,6 +511,45 @@ public class Cube implements ITwistyPuzzle {
         return true;
     }
 
+    /**
+     * Pack the cube state into two longs.
+     * Each cubie is packed as 5 bits (index * number of orientations + orientation), with the corner cubies in the first long and the edge cubies in the second long.
+     * @param packedState - The array to write the packed state to (must have a length of at least 2).
+     */
+    public void packState(long[] packedState) {
+        long corners = 0, edges = 0;
+
+        for (int i = 0; i < 8; i++) {
+            corners = (corners << 5) | (cornerCubies[i].index * 3 + cornerCubies[i].orientation);
+        }
+        for (int i = 0; i < 12; i++) {
+            edges = (edges << 5) | (edgeCubies[i].index * 2 + edgeCubies[i].orientation);
+        }
+
+        packedState[0] = corners;
+        packedState[1] = edges;
+    }
+
+    /**
+     * Set the cube state from a packed state (see {@link #packState}).
+     * @param packedState - The packed state of a cube.
+     */
+    public void unpackState(long[] packedState) {
+        long corners = packedState[0], edges = packedState[1];
+
+        // Cubies were packed from the most significant bits, so unpack them from the last cubie
+        for (int i = 7; i >= 0; i--) {
+            cornerCubies[i].index = (byte) ((corners & 0x1F) / 3);
+            cornerCubies[i].orientation = (byte) ((corners & 0x1F) % 3);
+            corners >>>= 5;
+        }
+        for (int i = 11; i >= 0; i--) {
+            edgeCubies[i].index = (byte) ((edges & 0x1F) / 2);
+            edgeCubies[i].orientation = (byte) ((edges & 0x1F) % 2);
+            edges >>>= 5;
+        }
+    }
+
 
     /**
      * Get the colours of an edge cubie.
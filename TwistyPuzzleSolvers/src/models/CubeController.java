@@ -10,6 +10,9 @@ public class CubeController implements IMoveController {
     
     private Cube cube;
 
+    private static MovePruningAutomaton pruningAutomaton = null;
+    private static MovePruningAutomaton optimalSequenceAutomaton = null;
+
     /**
      * Moves that can be made on the Rubik's Cube.
      */
@@ -31,7 +34,15 @@ public class CubeController implements IMoveController {
             D.setInverse(DPRIME); DPRIME.setInverse(D); D2.setInverse(D2);
         }
 
+        // Set the base move of each move (the first of each group of three moves on the same face)
+        static {
+            for (Move move : values()) {
+                move.baseMove = values()[move.ordinal() / 3 * 3];
+            }
+        }
+
         private Move inverse;
+        private Move baseMove;
 
         /**
          * Set the inverse of the move.
@@ -54,15 +65,7 @@ public class CubeController implements IMoveController {
          * @return The base move of the move.
          */
         public Move getBaseMove() {
-            switch (toString().substring(0, 1)) {
-                case "U":  return Move.U;
-                case "L":  return Move.L;
-                case "F":  return Move.F;
-                case "R":  return Move.R;
-                case "B":  return Move.B;
-                case "D":  return Move.D;
-                default:   return null;
-            }
+            return baseMove;
         }
 
         /**
@@ -227,6 +230,36 @@ public class CubeController implements IMoveController {
         return false;
     }
 
+    /**
+     * Get the automaton which prunes redundant move sequences for the Rubik's Cube.
+     * Sequences of up to 4 moves are checked for redundancy. The automaton is read from its file, or generated and written to it.
+     * @return The move pruning automaton for the Rubik's Cube.
+     */
+    public MovePruningAutomaton getPruningAutomaton() {
+        synchronized (CubeController.class) {
+            if (pruningAutomaton == null) {
+                pruningAutomaton = MovePruningAutomaton.load("cube/pruning_4.mpa", getMoves().length,
+                                                             () -> new MovePruningAutomaton(new Cube(), 4, false));
+            }
+            return pruningAutomaton;
+        }
+    }
+
+    /**
+     * Get the automaton which only prunes move sequences with a shorter equivalent sequence for the Rubik's Cube.
+     * Sequences of up to 4 moves are checked for redundancy. The automaton is read from its file, or generated and written to it.
+     * @return The optimal sequence pruning automaton for the Rubik's Cube.
+     */
+    public MovePruningAutomaton getOptimalSequenceAutomaton() {
+        synchronized (CubeController.class) {
+            if (optimalSequenceAutomaton == null) {
+                optimalSequenceAutomaton = MovePruningAutomaton.load("cube/optimal_sequences_4.mpa", getMoves().length,
+                                                                     () -> new MovePruningAutomaton(new Cube(), 4, true));
+            }
+            return optimalSequenceAutomaton;
+        }
+    }
+
     /**
      * Scramble the cube by making {@code noMoves} random moves, excluding moves that cancel previous moves.
      * @param noMoves - The number of moves to make.
@@ -21,6 +21,13 @@ public interface IMoveController {
          */
         IMove getBaseMove();
 
+        /**
+         * Get the index of the move in the array of valid moves (see {@link IMoveController#getMoves}).
+         * This is implemented by the move enums, as the index is the ordinal of the enum constant.
+         * @return The index of the move.
+         */
+        int ordinal();
+
         /**
          * Get the String representation of the move.
          * @return The String representation of the move.
@@ -62,6 +69,21 @@ public interface IMoveController {
      */
     boolean skipMove(IMove move, IMove lastMove);
 
+    /**
+     * Get the automaton which prunes redundant move sequences for the puzzle (see {@link MovePruningAutomaton}).
+     * The automaton is loaded the first time it is requested (see {@link MovePruningAutomaton#load}), and shared by all puzzles of the same type.
+     * @return The move pruning automaton for the puzzle.
+     */
+    MovePruningAutomaton getPruningAutomaton();
+
+    /**
+     * Get the automaton which only prunes move sequences with a shorter equivalent sequence for the puzzle, so that every
+     * optimal move sequence is kept (see {@link MovePruningAutomaton}).
+     * The automaton is loaded the first time it is requested (see {@link MovePruningAutomaton#load}), and shared by all puzzles of the same type.
+     * @return The optimal sequence pruning automaton for the puzzle.
+     */
+    MovePruningAutomaton getOptimalSequenceAutomaton();
+
     /**
      * Scramble the puzzle by making {@code noMoves} random moves, excluding moves that should be skipped.
      * @param noMoves - The number of moves to make.
@@ -89,6 +89,19 @@ public interface ITwistyPuzzle {
      */
     boolean isSolved();
 
+    /**
+     * Pack the puzzle state into two longs.
+     * Two puzzles of the same type have equal packed states if and only if they are in the same state.
+     * @param packedState - The array to write the packed state to (must have a length of at least 2).
+     */
+    void packState(long[] packedState);
+
+    /**
+     * Set the puzzle state from a packed state (see {@link #packState}).
+     * @param packedState - The packed state of a puzzle of the same type.
+     */
+    void unpackState(long[] packedState);
+
     /**
      * Print the puzzle state to stdout in a human readable format.
      */
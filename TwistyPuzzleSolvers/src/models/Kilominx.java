@@ -361,6 +361,18 @@ public class Kilominx implements ITwistyPuzzle {
         return orientations;
     }
 
+    /**
+     * Get the position and orientation of each kubie (the inverse of {@link #getKubieIndices}), without allocating any arrays.
+     * @param positions - The array to store the position of each kubie in (indexed by kubie index).
+     * @param orientations - The array to store the orientation of each kubie in (indexed by kubie index).
+     */
+    public void getKubiePositions(byte[] positions, byte[] orientations) {
+        for (byte i = 0; i < 20; i++) {
+            positions[kubies[i].index] = i;
+            orientations[kubies[i].index] = kubies[i].orientation;
+        }
+    }
+
 
     /**
      * Check if the Kilominx is solved.
@@ -377,6 +389,41 @@ public class Kilominx implements ITwistyPuzzle {
         return true;
     }
 
+    /**
+     * Pack the kilominx state into two longs.
+     * Each kubie is packed as 6 bits (index * 3 + orientation), with the first 10 kubies in the first long and the last 10 kubies in the second long.
+     * @param packedState - The array to write the packed state to (must have a length of at least 2).
+     */
+    public void packState(long[] packedState) {
+        long first = 0, second = 0;
+
+        for (int i = 0; i < 10; i++) {
+            first = (first << 6) | (kubies[i].index * 3 + kubies[i].orientation);
+            second = (second << 6) | (kubies[i + 10].index * 3 + kubies[i + 10].orientation);
+        }
+
+        packedState[0] = first;
+        packedState[1] = second;
+    }
+
+    /**
+     * Set the kilominx state from a packed state (see {@link #packState}).
+     * @param packedState - The packed state of a kilominx.
+     */
+    public void unpackState(long[] packedState) {
+        long first = packedState[0], second = packedState[1];
+
+        // Kubies were packed from the most significant bits, so unpack them from the last kubie
+        for (int i = 9; i >= 0; i--) {
+            kubies[i].index = (byte) ((first & 0x3F) / 3);
+            kubies[i].orientation = (byte) ((first & 0x3F) % 3);
+            kubies[i + 10].index = (byte) ((second & 0x3F) / 3);
+            kubies[i + 10].orientation = (byte) ((second & 0x3F) % 3);
+            first >>>= 6;
+            second >>>= 6;
+        }
+    }
+
 
     /**
      * Get the colours of a kubie.
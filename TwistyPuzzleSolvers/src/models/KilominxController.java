@@ -1,7 +1,6 @@
 package models;
 
 import models.ITwistyPuzzle.Cubie;
-import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -11,6 +10,35 @@ public class KilominxController implements IMoveController {
     
     private Kilominx kilominx;
 
+    private static MovePruningAutomaton pruningAutomaton = null;
+    private static MovePruningAutomaton optimalSequenceAutomaton = null;
+
+    // For each face, the faces which are not adjacent to it and come before it in move order,
+    // so a move on them is skipped after a move on the face (indexed by base move ordinal / 4)
+    private static final boolean[][] SKIPPED_AFTER = new boolean[12][12];
+
+    static {
+        Move[][] skippedAfter = {
+            {},                                                     // U
+            {},                                                     // L
+            {},                                                     // F
+            {Move.L},                                               // R
+            {Move.F, Move.R},                                       // BL
+            {Move.L, Move.F},                                       // BR
+            {Move.U, Move.R, Move.BL, Move.BR},                     // DL
+            {Move.U, Move.L, Move.BL, Move.BR},                     // DR
+            {Move.U, Move.F, Move.R, Move.BR, Move.DR},             // DBL
+            {Move.U, Move.L, Move.F, Move.BL, Move.DL, Move.DBL},   // DBR
+            {Move.U, Move.L, Move.F, Move.R, Move.DL, Move.DR},     // DB
+            {Move.U, Move.L, Move.F, Move.R, Move.BL, Move.BR}      // D
+        };
+        for (int face = 0; face < skippedAfter.length; face++) {
+            for (Move move : skippedAfter[face]) {
+                SKIPPED_AFTER[face][move.ordinal() / 4] = true;
+            }
+        }
+    }
+
     /**
      * Moves that can be made on the Kilominx.
      */
@@ -44,7 +72,15 @@ public class KilominxController implements IMoveController {
             D.setInverse(D_PRIME);     D_PRIME.setInverse(D);     D_2.setInverse(D_2PRIME);     D_2PRIME.setInverse(D_2);
         }
 
+        // Set the base move of each move (the first of each group of four moves on the same face)
+        static {
+            for (Move move : values()) {
+                move.baseMove = values()[move.ordinal() / 4 * 4];
+            }
+        }
+
         private Move inverse;
+        private Move baseMove;
 
         /**
          * Set the inverse of the move.
@@ -67,21 +103,7 @@ public class KilominxController implements IMoveController {
          * @return The base move of the move.
          */
         public Move getBaseMove() {
-            switch (toString().replace("'", "").replace("2", "")) {
-                case "U":    return Move.U;
-                case "L":    return Move.L;
-                case "F":    return Move.F;
-                case "R":    return Move.R;
-                case "BL":   return Move.BL;
-                case "BR":   return Move.BR;
-                case "DL":   return Move.DL;
-                case "DR":   return Move.DR;
-                case "DBL":  return Move.DBL;
-                case "DBR":  return Move.DBR;
-                case "DB":   return Move.DB;
-                case "D":    return Move.D;
-                default:     return null;
-            }
+            return baseMove;
         }
 
         /**
@@ -256,44 +278,37 @@ public class KilominxController implements IMoveController {
         }
 
         // Skip moves that are on non-adjacent faces to the last move, and are not in the correct order
-        if (lastBaseMove == Move.R && 
-            Arrays.stream(new Move[] {Move.L}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.BL && 
-            Arrays.stream(new Move[] {Move.F, Move.R}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.BR && 
-            Arrays.stream(new Move[] {Move.L, Move.F}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.DL && 
-            Arrays.stream(new Move[] {Move.U, Move.R, Move.BL, Move.BR}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.DR && 
-            Arrays.stream(new Move[] {Move.U, Move.L, Move.BL, Move.BR}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.DBL && 
-            Arrays.stream(new Move[] {Move.U, Move.F, Move.R, Move.BR, Move.DR}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.DBR && 
-            Arrays.stream(new Move[] {Move.U, Move.L, Move.F, Move.BL, Move.DL, Move.DBL}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.DB && 
-            Arrays.stream(new Move[] {Move.U, Move.L, Move.F, Move.R, Move.DL, Move.DR}).anyMatch(baseMove::equals)) {
-            return true;
-        }
-        else if (lastBaseMove == Move.D && 
-            Arrays.stream(new Move[] {Move.U, Move.L, Move.F, Move.R, Move.BL, Move.BR}).anyMatch(baseMove::equals)) {
-            return true;
+        return SKIPPED_AFTER[lastBaseMove.ordinal() / 4][baseMove.ordinal() / 4];
+    }
+
+    /**
+     * Get the automaton which prunes redundant move sequences for the Kilominx.
+     * Sequences of up to 4 moves are checked for redundancy. The automaton is read from its file, or generated and written to it.
+     * @return The move pruning automaton for the Kilominx.
+     */
+    public MovePruningAutomaton getPruningAutomaton() {
+        synchronized (KilominxController.class) {
+            if (pruningAutomaton == null) {
+                pruningAutomaton = MovePruningAutomaton.load("kilominx/pruning_4.mpa", getMoves().length,
+                                                             () -> new MovePruningAutomaton(new Kilominx(), 4, false));
+            }
+            return pruningAutomaton;
         }
+    }
 
-        return false;
+    /**
+     * Get the automaton which only prunes move sequences with a shorter equivalent sequence for the Kilominx.
+     * Sequences of up to 4 moves are checked for redundancy. The automaton is read from its file, or generated and written to it.
+     * @return The optimal sequence pruning automaton for the Kilominx.
+     */
+    public MovePruningAutomaton getOptimalSequenceAutomaton() {
+        synchronized (KilominxController.class) {
+            if (optimalSequenceAutomaton == null) {
+                optimalSequenceAutomaton = MovePruningAutomaton.load("kilominx/optimal_sequences_4.mpa", getMoves().length,
+                                                                     () -> new MovePruningAutomaton(new Kilominx(), 4, true));
+            }
+            return optimalSequenceAutomaton;
+        }
     }
 
     /**
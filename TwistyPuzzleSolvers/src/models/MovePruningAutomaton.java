@@ -0,0 +1,327 @@
+package models;
+
+import models.IMoveController.IMove;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A finite state machine which prunes redundant move sequences from a search of a twisty puzzle
+ * (see Korf, "Finding Optimal Solutions to Rubik's Cube Using Pattern Databases").
+ * <p>
+ * The automaton is generated by enumerating all move sequences up to a maximum length on a solved puzzle.
+ * A sequence is redundant if the same puzzle state is reached by a shorter sequence, or by a sequence of the same length
+ * which comes first in move order. This covers moves on the same face (e.g. [R, R] = [R2]), commuting moves
+ * (e.g. [L, R] = [R, L]), and longer equivalent sequences. Any search path which contains a redundant sequence is pruned,
+ * while every puzzle state is still reachable by a path of optimal length.
+ * <p>
+ * An automaton can also be generated which keeps equivalent sequences of the same length, and only prunes sequences
+ * which have a shorter equivalent. This keeps every optimal move sequence, so it can be used to enumerate all optimal solutions.
+ * <p>
+ * Each automaton state is the (non-redundant) sequence of the last moves made, up to one less than the maximum length.
+ * The transition table is indexed by state and move index, so checking a child in the search takes a single array lookup.
+ * <p>
+ * Enumerating longer sequences takes much longer (seconds for sequences of 4 moves on the Kilominx), so generated automata
+ * are written to a file next to the databases, and read from it afterwards (see {@link #load}), as the move tables are.
+ * <p>
+ * File format (big-endian): magic number (int), state count (int), move count (int), then the transition table (ints).
+ */
+public class MovePruningAutomaton {
+
+    // The state of the automaton before any moves have been made
+    public static final int INITIAL_STATE = 0;
+    // The transition for a move which makes the move sequence redundant
+    public static final int DEAD_STATE = -1;
+
+    // "TPSA" (Twisty Puzzle Search Automaton)
+    static final int MAGIC_NUMBER = 0x54505341;
+    // The directory the automaton files are kept in (the same directory as the databases and move tables)
+    static final String DATABASES_PATH = "TwistyPuzzleSolvers/databases/";
+
+    private final int[][] transitions;
+
+    /**
+     * A puzzle state packed into two longs (see {@link ITwistyPuzzle#packState}), which can be used as a hash set key.
+     */
+    private static class PackedState {
+        private final long first, second;
+
+        /**
+         * Constructor for a PackedState.
+         * @param packedState - The two longs of the packed puzzle state.
+         */
+        private PackedState(long[] packedState) {
+            this.first = packedState[0];
+            this.second = packedState[1];
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PackedState && ((PackedState) other).first == first && ((PackedState) other).second == second;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(first * 31 + second);
+        }
+    }
+
+    /**
+     * Constructor for a MovePruningAutomaton.
+     * @param puzzle - A solved puzzle to enumerate move sequences on. The puzzle is returned to the solved state afterwards.
+     * @param maxLength - The length of the longest move sequences to check for redundancy (at least 2).
+     * @param keepEquivalentSequences - If {@code true}, only sequences with a shorter equivalent sequence are pruned,
+     *  so all optimal move sequences are kept. Otherwise, only the first of the equivalent sequences of each length is kept.
+     * @throws IllegalArgumentException if the maximum length is less than 2, or the puzzle is not solved.
+     */
+    public MovePruningAutomaton(ITwistyPuzzle puzzle, int maxLength, boolean keepEquivalentSequences) throws IllegalArgumentException {
+        if (maxLength < 2) {
+            throw new IllegalArgumentException("The maximum sequence length must be at least 2.");
+        }
+        if (!puzzle.isSolved()) {
+            throw new IllegalArgumentException("The puzzle must be solved.");
+        }
+
+        IMoveController moveController = puzzle.getMoveController();
+        IMove[] moves = moveController.getMoves();
+        long[] packedState = new long[2];
+
+        // The puzzle states reached by all non-redundant sequences of the lengths enumerated so far
+        Set<PackedState> reachedStates = new HashSet<PackedState>();
+        puzzle.packState(packedState);
+        reachedStates.add(new PackedState(packedState));
+
+        // The non-redundant sequences of each length (in move order), with the empty sequence as the initial state
+        List<List<int[]>> sequences = new ArrayList<List<int[]>>();
+        sequences.add(List.of(new int[0]));
+
+        for (int length = 1; length <= maxLength; length++) {
+            List<int[]> previous = sequences.get(length - 1);
+            List<int[]> current = new ArrayList<int[]>();
+            Set<PackedState> currentStates = new HashSet<PackedState>();
+
+            for (int[] prefix : previous) {
+                for (int moveIndex = 0; moveIndex < moves.length; moveIndex++) {
+                    int[] sequence = Arrays.copyOf(prefix, length);
+                    sequence[length - 1] = moveIndex;
+
+                    // Every shorter sequence within the sequence must be non-redundant, which (as the prefix is
+                    // non-redundant) only needs checking for the suffix after the first move
+                    if (length > 1 && indexOf(sequences.get(length - 1), sequence, 1) < 0) {
+                        continue;
+                    }
+
+                    for (int index : sequence) {
+                        moveController.makeMove(moves[index]);
+                    }
+                    puzzle.packState(packedState);
+                    for (int i = length - 1; i >= 0; i--) {
+                        moveController.undoMove(moves[sequence[i]]);
+                    }
+
+                    // Sequences are enumerated in move order, so only the first sequence to reach a new state is kept
+                    // (unless equivalent sequences are kept)
+                    PackedState state = new PackedState(packedState);
+                    if (!reachedStates.contains(state) && (currentStates.add(state) || keepEquivalentSequences)) {
+                        current.add(sequence);
+                    }
+                }
+            }
+            reachedStates.addAll(currentStates);
+            sequences.add(current);
+        }
+
+        // Number the automaton states, which are the non-redundant sequences shorter than the maximum length
+        int stateCount = 0;
+        int[] firstState = new int[maxLength];
+        for (int length = 0; length < maxLength; length++) {
+            firstState[length] = stateCount;
+            stateCount += sequences.get(length).size();
+        }
+
+        transitions = new int[stateCount][moves.length];
+        for (int length = 0; length < maxLength; length++) {
+            List<int[]> states = sequences.get(length);
+
+            for (int i = 0; i < states.size(); i++) {
+                int[] transition = transitions[firstState[length] + i];
+                Arrays.fill(transition, DEAD_STATE);
+
+                for (int moveIndex = 0; moveIndex < moves.length; moveIndex++) {
+                    int[] sequence = Arrays.copyOf(states.get(i), length + 1);
+                    sequence[length] = moveIndex;
+
+                    if (indexOf(sequences.get(length + 1), sequence, 0) < 0) {
+                        continue;
+                    }
+
+                    // The next state is the sequence itself, or its suffix if it has reached the maximum length
+                    if (length + 1 < maxLength) {
+                        transition[moveIndex] = firstState[length + 1] + indexOf(sequences.get(length + 1), sequence, 0);
+                    }
+                    else {
+                        transition[moveIndex] = firstState[length] + indexOf(sequences.get(length), sequence, 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor for a MovePruningAutomaton with an existing transition table (see {@link #readFromFile}).
+     * @param transitions - The next state for each state and move index.
+     */
+    private MovePruningAutomaton(int[][] transitions) {
+        this.transitions = transitions;
+    }
+
+    /**
+     * Load an automaton from a file, or generate it and write it to the file if the file doesn't exist or can't be read.
+     * @param path - The path of the automaton file, relative to the databases directory (should end in .mpa, and name the
+     *  maximum sequence length, as the file doesn't record how the automaton was generated).
+     * @param moveCount - The number of moves of the puzzle, which the automaton in the file must have.
+     * @param generator - Generates the automaton if it can't be read from the file.
+     * @return The move pruning automaton.
+     */
+    static MovePruningAutomaton load(String path, int moveCount, Supplier<MovePruningAutomaton> generator) {
+        MovePruningAutomaton automaton = null;
+
+        File automatonFile = new File(DATABASES_PATH + path);
+        if (automatonFile.exists()) {
+            try {
+                automaton = readFromFile(automatonFile, moveCount);
+            }
+            catch (IOException e) {
+                System.err.println("Error reading move pruning automaton from file:");
+                e.printStackTrace();
+            }
+        }
+
+        if (automaton == null) {
+            System.out.println("Generating move pruning automaton " + path + "...");
+            automaton = generator.get();
+            try {
+                automaton.writeToFile(automatonFile);
+            }
+            catch (IOException e) {
+                // The automaton can still be used, it just has to be generated again next time
+                System.err.println("Error writing move pruning automaton to file:");
+                e.printStackTrace();
+            }
+        }
+
+        return automaton;
+    }
+
+    /**
+     * Write the automaton to a file. The automaton is written to a temporary file first, which then replaces the file,
+     * so a partially written automaton is never read.
+     * @param file - The file to write the automaton to.
+     * @throws IOException if the file can't be written.
+     */
+    private void writeToFile(File file) throws IOException {
+        File absoluteFile = file.getAbsoluteFile();
+        absoluteFile.getParentFile().mkdirs();
+        File tempFile = new File(absoluteFile.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile, false), 1 << 16))) {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(transitions.length);
+            out.writeInt(transitions[0].length);
+            for (int[] transition : transitions) {
+                for (int nextState : transition) {
+                    out.writeInt(nextState);
+                }
+            }
+        }
+
+        Files.move(tempFile.toPath(), absoluteFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read an automaton from a file.
+     * @param file - The file to read the automaton from.
+     * @param moveCount - The number of moves of the puzzle, which the automaton must have.
+     * @return The automaton read from the file.
+     * @throws IOException if the file can't be read, is not a valid automaton file, or is for a different number of moves.
+     */
+    private static MovePruningAutomaton readFromFile(File file, int moveCount) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC_NUMBER) {
+                throw new IOException("Not a move pruning automaton file: " + file);
+            }
+            int stateCount = in.readInt();
+            if (stateCount < 1 || in.readInt() != moveCount) {
+                throw new IOException("The move pruning automaton doesn't match the puzzle: " + file);
+            }
+
+            int[][] transitions = new int[stateCount][moveCount];
+            for (int[] transition : transitions) {
+                for (int m = 0; m < moveCount; m++) {
+                    transition[m] = in.readInt();
+                    if (transition[m] < DEAD_STATE || transition[m] >= stateCount) {
+                        throw new IOException("Invalid transition in move pruning automaton file: " + file);
+                    }
+                }
+            }
+            return new MovePruningAutomaton(transitions);
+        }
+    }
+
+    /**
+     * Find the index of a sequence in a list of sequences sorted in move order.
+     * @param sequences - The sorted list of sequences to search.
+     * @param sequence - An array containing the sequence to find.
+     * @param from - The index in the array at which the sequence starts (the sequence continues to the end of the array).
+     * @return The index of the sequence in the list, or a negative number if it is not in the list.
+     */
+    private static int indexOf(List<int[]> sequences, int[] sequence, int from) {
+        int low = 0, high = sequences.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Arrays.compare(sequences.get(middle), 0, sequence.length - from, sequence, from, sequence.length);
+            if (comparison < 0) {
+                low = middle + 1;
+            }
+            else if (comparison > 0) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the state of the automaton after making a move.
+     * @param state - The current state of the automaton.
+     * @param moveIndex - The index of the move to make (see {@link IMove#ordinal}).
+     * @return The next state of the automaton, or {@link #DEAD_STATE} if the move should be skipped.
+     */
+    public int nextState(int state, int moveIndex) {
+        return transitions[state][moveIndex];
+    }
+
+    /**
+     * Get the number of states in the automaton.
+     * @return The number of states in the automaton.
+     */
+    public int getNumberOfStates() {
+        return transitions.length;
+    }
+}
@@ -0,0 +1,55 @@
+package patterndatabases;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writable database storage in a byte array on the heap, with one byte per entry.
+ */
+final class ArrayStorage extends DatabaseStorage {
+
+    private final byte[] database;
+
+    /**
+     * Constructor for an ArrayStorage, where every entry is unset ({@link Byte#MAX_VALUE}).
+     * @param size - The number of entries.
+     */
+    ArrayStorage(int size) {
+        database = new byte[size];
+        Arrays.fill(database, Byte.MAX_VALUE);
+    }
+
+    int size() {
+        return database.length;
+    }
+
+    byte get(int index) {
+        return database[index];
+    }
+
+    void get(int[] indices, int count, byte[] results) {
+        byte[] database = this.database;
+        for (int i = 0; i < count; i++) {
+            results[i] = database[indices[i]];
+        }
+    }
+
+    void set(int index, byte value) {
+        database[index] = value;
+    }
+
+    void writeTo(FileOutputStream out) throws IOException {
+        out.write(database);
+    }
+
+    /**
+     * Read every entry of the storage from a file, one byte per entry.
+     * @param in - The stream of the file to read the entries from.
+     * @throws IOException if the entries can't be read, or the file ends before all of them are read.
+     */
+    void readFrom(FileInputStream in) throws IOException {
+        readFully(in, database, 0, database.length);
+    }
+}
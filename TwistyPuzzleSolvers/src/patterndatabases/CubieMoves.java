@@ -0,0 +1,27 @@
+package patterndatabases;
+
+/**
+ * The moves of a puzzle in terms of the positions of the cubies a database looks at: each move takes the cubie in each
+ * position to a new position, and adds a twist to its orientation which only depends on the position.
+ * This is all that is needed to move a database index without a puzzle (see {@link MoveTable#generateCubieTable}).
+ */
+public final class CubieMoves {
+
+    // The number of orientations of each cubie
+    public final int radix;
+    // The position each move takes the cubie in each position to, and the orientation it adds (indexed by move, then position)
+    public final byte[][] destinations;
+    public final byte[][] twists;
+
+    /**
+     * Constructor for CubieMoves.
+     * @param radix - The number of orientations of each cubie.
+     * @param destinations - The position each move takes the cubie in each position to (indexed by move, then position).
+     * @param twists - The orientation each move adds to the cubie in each position (indexed by move, then position).
+     */
+    public CubieMoves(int radix, byte[][] destinations, byte[][] twists) {
+        this.radix = radix;
+        this.destinations = destinations;
+        this.twists = twists;
+    }
+}
@@ -0,0 +1,75 @@
+package patterndatabases;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The storage of the entries of a pattern database (the number of moves stored for each database index).
+ * Databases are populated in writable storage on the heap (see {@link ArrayStorage}), and can either be read back into it
+ * or mapped read-only from their files (see {@link MappedStorage}), with a byte per entry, or packed into 4 bits per entry
+ * (see {@link NibbleStorage}).
+ */
+abstract class DatabaseStorage {
+
+    /**
+     * Get the number of entries of the storage.
+     * @return The number of entries.
+     */
+    abstract int size();
+
+    /**
+     * Get an entry of the storage.
+     * @param index - The database index of the entry.
+     * @return The number of moves stored for the index.
+     */
+    abstract byte get(int index);
+
+    /**
+     * Get a batch of entries of the storage (see {@link PatternDatabase#getNumberOfMoves(int[], int, byte[])}).
+     * @param indices - The database indices of the entries.
+     * @param count - The number of indices in the batch.
+     * @param results - The array to store each entry in.
+     */
+    void get(int[] indices, int count, byte[] results) {
+        for (int i = 0; i < count; i++) {
+            results[i] = get(indices[i]);
+        }
+    }
+
+    /**
+     * Set an entry of the storage.
+     * @param index - The database index of the entry.
+     * @param value - The number of moves to store for the index.
+     * @throws UnsupportedOperationException if the storage is read-only.
+     */
+    void set(int index, byte value) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("The database storage is read-only.");
+    }
+
+    /**
+     * Write every entry of the storage to a file, in the storage's file format.
+     * @param out - The stream of the file to write the entries to.
+     * @throws IOException if the entries can't be written.
+     */
+    abstract void writeTo(FileOutputStream out) throws IOException;
+
+    /**
+     * Read a number of bytes from a stream into an array, which may take more than one read.
+     * @param in - The stream to read from.
+     * @param buffer - The array to read the bytes into.
+     * @param offset - The offset in the array to read the first byte to.
+     * @param length - The number of bytes to read.
+     * @throws IOException if the bytes can't be read, or the stream ends before all of them are read.
+     */
+    static void readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, offset, length);
+            if (read < 0) {
+                throw new IOException("Unexpected end of database file");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+}
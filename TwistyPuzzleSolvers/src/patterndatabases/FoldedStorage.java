@@ -0,0 +1,142 @@
+package patterndatabases;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only database storage which folds each group of {@code factor} adjacent entries into a single byte, on the heap or
+ * mapped from the folded database file. The entry at index i is the folded entry {@code i / factor}, which is the smallest
+ * entry of its group, so it never overestimates any state of the group and the heuristic stays admissible.
+ * <p>
+ * The lowest digits of a database index are the orientations of the last cubies of the pattern (see {@link PermutationRanker}),
+ * so adjacent entries are states which only differ in the orientation of a few cubies, and their entries are usually close.
+ * Folding them loses much less of the heuristic than using a smaller pattern with the same memory. Folded files have
+ * {@code ceil(size / factor)} bytes (see {@link PatternDatabase#getFoldedPath}).
+ */
+final class FoldedStorage extends DatabaseStorage {
+
+    private final ByteBuffer database;
+    private final int size;
+    private final int factor;
+
+    /**
+     * Constructor for a FoldedStorage.
+     * @param database - The folded entries, with {@link #getFoldedLength} bytes.
+     * @param size - The number of entries before folding.
+     * @param factor - The number of entries folded into each folded entry.
+     */
+    private FoldedStorage(ByteBuffer database, int size, int factor) {
+        this.database = database;
+        this.size = size;
+        this.factor = factor;
+    }
+
+    /**
+     * Get the number of folded entries of a database (which is also the length of a folded database file).
+     * @param size - The number of entries before folding.
+     * @param factor - The number of entries folded into each folded entry.
+     * @return The number of folded entries.
+     */
+    static long getFoldedLength(int size, int factor) {
+        return ((long) size + factor - 1) / factor;
+    }
+
+    /**
+     * Fold the entries of another storage onto the heap. The other storage is read in index order, so it can be a file
+     * mapped into memory (see {@link MappedStorage}) which is never read onto the heap as a whole.
+     * @param source - The storage to fold, with the full entries.
+     * @param factor - The number of entries folded into each folded entry.
+     * @return The folded storage.
+     * @throws IllegalArgumentException if an entry is unset.
+     */
+    static FoldedStorage fold(DatabaseStorage source, int factor) throws IllegalArgumentException {
+        int size = source.size();
+        byte[] folded = new byte[(int) getFoldedLength(size, factor)];
+        Arrays.fill(folded, Byte.MAX_VALUE);
+        for (int index = 0; index < size; index++) {
+            byte entry = source.get(index);
+            if (entry < 0 || entry == Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Database entry " + index + " is not set");
+            }
+            int foldedIndex = index / factor;
+            if (entry < folded[foldedIndex]) {
+                folded[foldedIndex] = entry;
+            }
+        }
+        return new FoldedStorage(ByteBuffer.wrap(folded), size, factor);
+    }
+
+    /**
+     * Read a folded database file onto the heap.
+     * @param in - The stream of the folded file.
+     * @param size - The number of entries before folding.
+     * @param factor - The number of entries folded into each folded entry.
+     * @return The storage of the folded entries.
+     * @throws IOException if the entries can't be read, or the file ends before all of them are read.
+     */
+    static FoldedStorage read(FileInputStream in, int size, int factor) throws IOException {
+        byte[] folded = new byte[(int) getFoldedLength(size, factor)];
+        readFully(in, folded, 0, folded.length);
+        return new FoldedStorage(ByteBuffer.wrap(folded), size, factor);
+    }
+
+    /**
+     * Map a folded database file into memory (see {@link MappedStorage}).
+     * @param file - The folded database file.
+     * @param size - The number of entries before folding.
+     * @param factor - The number of entries folded into each folded entry.
+     * @return The storage of the mapped file.
+     * @throws IOException if the file can't be mapped.
+     */
+    static FoldedStorage map(File file, int size, int factor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new FoldedStorage(channel.map(FileChannel.MapMode.READ_ONLY, 0, getFoldedLength(size, factor)), size, factor);
+        }
+    }
+
+    /**
+     * Get the mean entry of the storage over every index before folding, which is the mean of the heuristic over all
+     * states of the pattern (with the last folded entry only counted for the indices it covers).
+     * @return The mean entry.
+     */
+    double getMeanEntry() {
+        long sum = 0;
+        int foldedLength = (int) getFoldedLength(size, factor);
+        for (int foldedIndex = 0; foldedIndex < foldedLength; foldedIndex++) {
+            int groupSize = Math.min(factor, size - foldedIndex * factor);
+            sum += (long) database.get(foldedIndex) * groupSize;
+        }
+        return (double) sum / size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte get(int index) {
+        return database.get(index / factor);
+    }
+
+    void get(int[] indices, int count, byte[] results) {
+        ByteBuffer database = this.database;
+        int factor = this.factor;
+        for (int i = 0; i < count; i++) {
+            results[i] = database.get(indices[i] / factor);
+        }
+    }
+
+    void writeTo(FileOutputStream out) throws IOException {
+        ByteBuffer buffer = database.duplicate();
+        buffer.clear();
+        FileChannel channel = out.getChannel();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
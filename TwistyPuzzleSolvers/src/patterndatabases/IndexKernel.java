@@ -0,0 +1,154 @@
+package patterndatabases;
+
+/**
+ * Calculates the indices of a group of databases of the same shape at once, where each database looks at the position
+ * and orientation of a set of k of the cubies (as in the kilominx databases), from a table of the position and orientation
+ * of every cubie. The index of a database is {@code rank * radix^k + orientationRank}, where the rank is the Lehmer rank of
+ * the positions of its cubies (see {@link PermutationRanker}) and the orientation rank uses the orientations as base-radix digits.
+ * <p>
+ * The digits of the Lehmer code are calculated by comparing each position with the positions before it, rather than with
+ * a bitmask, so every database does the same work without any table lookups. This lets the vectorised kernel (which uses
+ * the incubating {@code jdk.incubator.vector} module) calculate one database in each vector lane. The scalar kernel is used
+ * when the module isn't available (it must be added with {@code --add-modules jdk.incubator.vector}), or the vectorised
+ * kernel wasn't compiled: it is kept in its own source tree ({@code vector-src}), so the main source tree compiles without
+ * the module, and is only loaded reflectively.
+ */
+public abstract class IndexKernel {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL_CLASS = "patterndatabases.VectorIndexKernel";
+
+    // The cubies each database looks at (indexed by database, then by cubie of the set)
+    final byte[][] kubieSets;
+    final int databaseCount, k, radix;
+    // The position subtracted from each cubie position (positions before it are fixed, and never occupied by the cubies)
+    final int firstPosition;
+    // The weight of each digit of the Lehmer code and of the orientation rank, and the number of orientation ranks
+    final int[] rankWeights;
+    final int[] orientationWeights;
+    final int orientationCount;
+
+    /**
+     * Constructor for an IndexKernel.
+     * @param kubieSets - The cubies each database looks at (all of the same length k).
+     * @param n - The number of positions the cubies can be in (after the first position).
+     * @param radix - The number of orientations of each cubie.
+     * @param firstPosition - The position subtracted from each cubie position.
+     */
+    IndexKernel(byte[][] kubieSets, int n, int radix, int firstPosition) {
+        this.kubieSets = kubieSets;
+        this.databaseCount = kubieSets.length;
+        this.k = kubieSets[0].length;
+        this.radix = radix;
+        this.firstPosition = firstPosition;
+
+        // Same weights as PermutationRanker: each digit can take one more value than the digit after it
+        rankWeights = new int[k];
+        orientationWeights = new int[k];
+        int rankWeight = 1, orientationWeight = 1;
+        for (int i = k - 1; i >= 0; i--) {
+            rankWeights[i] = rankWeight;
+            orientationWeights[i] = orientationWeight;
+            rankWeight *= n - i;
+            orientationWeight *= radix;
+        }
+        orientationCount = orientationWeight;
+    }
+
+    /**
+     * Create a kernel for a group of databases, which is vectorised if the vector module is available.
+     * @param kubieSets - The cubies each database looks at (all of the same length).
+     * @param n - The number of positions the cubies can be in (after the first position).
+     * @param radix - The number of orientations of each cubie.
+     * @param firstPosition - The position subtracted from each cubie position.
+     * @return The kernel.
+     */
+    public static IndexKernel create(byte[][] kubieSets, int n, int radix, int firstPosition) {
+        if (isVectorModulePresent()) {
+            try {
+                return (IndexKernel) Class.forName(VECTOR_KERNEL_CLASS)
+                    .getDeclaredConstructor(byte[][].class, int.class, int.class, int.class)
+                    .newInstance(kubieSets, n, radix, firstPosition);
+            }
+            catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to the scalar kernel
+            }
+        }
+        return createScalar(kubieSets, n, radix, firstPosition);
+    }
+
+    /**
+     * Create a kernel for a group of databases which calculates one database at a time, even if the vector module is available.
+     * @param kubieSets - The cubies each database looks at (all of the same length).
+     * @param n - The number of positions the cubies can be in (after the first position).
+     * @param radix - The number of orientations of each cubie.
+     * @param firstPosition - The position subtracted from each cubie position.
+     * @return The scalar kernel.
+     */
+    public static IndexKernel createScalar(byte[][] kubieSets, int n, int radix, int firstPosition) {
+        return new ScalarIndexKernel(kubieSets, n, radix, firstPosition);
+    }
+
+    /**
+     * Check if the vector module has been added to the JVM.
+     * @return {@code true} if the vector module is available, {@code false} otherwise.
+     */
+    public static boolean isVectorModulePresent() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    /**
+     * Check if the kernel calculates the databases in vector lanes.
+     * @return {@code true} if the kernel is vectorised, {@code false} if it is scalar.
+     */
+    public abstract boolean isVectorised();
+
+    /**
+     * Calculate the index of every database of the group.
+     * @param kubiePositions - The position of each cubie (indexed by cubie index).
+     * @param kubieOrientations - The orientation of each cubie (indexed by cubie index).
+     * @param indices - The array to store the index of each database in.
+     * @param offset - The offset in the array to store the index of the first database at.
+     */
+    public abstract void calculateIndices(int[] kubiePositions, int[] kubieOrientations, int[] indices, int offset);
+
+
+    /**
+     * The kernel which calculates one database at a time.
+     */
+    private static final class ScalarIndexKernel extends IndexKernel {
+
+        /**
+         * Constructor for a ScalarIndexKernel (see {@link IndexKernel#IndexKernel}).
+         */
+        private ScalarIndexKernel(byte[][] kubieSets, int n, int radix, int firstPosition) {
+            super(kubieSets, n, radix, firstPosition);
+        }
+
+        public boolean isVectorised() {
+            return false;
+        }
+
+        public void calculateIndices(int[] kubiePositions, int[] kubieOrientations, int[] indices, int offset) {
+            for (int d = 0; d < databaseCount; d++) {
+                byte[] set = kubieSets[d];
+                int rank = 0, orientationRank = 0;
+
+                for (int i = 0; i < k; i++) {
+                    int element = kubiePositions[set[i]] - firstPosition;
+                    // The digit is the element, minus the number of smaller elements before it
+                    int digit = element;
+                    for (int h = 0; h < i; h++) {
+                        if (kubiePositions[set[h]] - firstPosition < element) {
+                            digit--;
+                        }
+                    }
+                    rank += digit * rankWeights[i];
+                    orientationRank += kubieOrientations[set[i]] * orientationWeights[i];
+                }
+
+                indices[offset + d] = rank * orientationCount + orientationRank;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package patterndatabases;
+
+import models.ITwistyPuzzle;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+/**
+ * Abstract class for a pattern database with more than {@link Integer#MAX_VALUE} entries, such as the databases of 6 kubies
+ * of a Kilominx or 8 edges of a Rubik's Cube, which can't be indexed by an int or held in a Java array.
+ * It works as a {@link PatternDatabase}, but with long indices, and its entries are kept off the heap with 4 bits per entry
+ * (see {@link OffHeapStorage}), so entries can be at most 14 moves. The database file is read into direct buffers, or mapped
+ * into memory if its storage mode maps database files (see {@link StorageMode#isMapped}); the direct buffers count
+ * against the JVM's {@code -XX:MaxDirectMemorySize}, but mappings don't.
+ * <p>
+ * The databases are too large for move tables, so the search looks them up from the puzzle state of each child
+ * (see {@code PuzzleSolver.setLargeDatabases}), and they are populated by moving each index with the moves of its cubies
+ * (see {@link #generateCubieMoves}).
+ */
+public abstract class LongPatternDatabase {
+
+    private final long databaseSize;
+    private OffHeapStorage database;
+    private long entriesSet;
+
+    // Ranks the permutations of the cubie indices (shared by all databases with the same n and k)
+    private final PermutationRanker ranker;
+    // The number of cubies the database looks at
+    private final byte k;
+
+
+    /**
+     * Constructor for a long pattern database.
+     * Cannot be instantiated directly (as implementation differs between pattern databases).
+     * @param databaseSize - The size of the database. Should be equal to the number of possible states for the subset of cubies.
+     * @param n - The number of elements in the permutation.
+     * @param k - The number of elements picked in the partial permutation.
+     */
+    protected LongPatternDatabase(long databaseSize, byte n, byte k) {
+        // The storage isn't allocated until the database is populated or read
+        this.databaseSize = databaseSize;
+        entriesSet = 0;
+
+        // n is the number of elements in the permutation; k is the number of elements picked in this partial permutation
+        ranker = PermutationRanker.getInstance(n, k);
+        this.k = k;
+    }
+
+
+    /**
+     * Set the number of moves required to solve a puzzle state in the database.
+     * Only succeeds if the number of moves is less than the current number of moves stored.
+     * Also increases a counter for the number of set entries if the number of moves was not already set.
+     * @param index - The database index to set the number of moves for.
+     * @param noMoves - The number of moves required to solve the subset of cubies (at most 14).
+     * @return {@code true} if the number of moves was set successfully, {@code false} if the number of moves was already set.
+     * @throws IllegalArgumentException if the number of moves doesn't fit in 4 bits.
+     */
+    boolean setNumberOfMoves(long index, byte noMoves) throws IllegalArgumentException {
+        // Allocate the storage with unset entries when the first entry is set
+        if (database == null) {
+            database = OffHeapStorage.allocate(databaseSize);
+        }
+
+        byte currentMoves = database.get(index);
+        if (noMoves >= currentMoves) {
+            return false;
+        }
+        if (currentMoves == OffHeapStorage.UNSET) {
+            entriesSet++;
+        }
+        database.set(index, noMoves);
+        return true;
+    }
+
+    /**
+     * Set the number of moves required to solve a puzzle state in the database (see {@link #setNumberOfMoves(long, byte)}).
+     * @param puzzle - The puzzle to set the number of moves for.
+     * @param noMoves - The number of moves required to solve the subset of cubies (at most 14).
+     * @return {@code true} if the number of moves was set successfully, {@code false} if the number of moves was already set.
+     */
+    boolean setNumberOfMoves(ITwistyPuzzle puzzle, byte noMoves) {
+        return setNumberOfMoves(getDatabaseIndex(puzzle), noMoves);
+    }
+
+    /**
+     * Get the number of moves required to solve a puzzle state from the database.
+     * @param puzzle - The puzzle to get the number of moves for.
+     * @return The number of moves required to solve the subset of cubies.
+     */
+    public byte getNumberOfMoves(ITwistyPuzzle puzzle) {
+        return database.get(getDatabaseIndex(puzzle));
+    }
+
+    /**
+     * Get the number of moves required to solve a puzzle state from the database.
+     * @param index - The database index to get the number of moves for.
+     * @return The number of moves required to solve the subset of cubies (or 15 while populating, if it isn't set yet).
+     */
+    public byte getNumberOfMoves(long index) {
+        return database.get(index);
+    }
+
+    /**
+     * Get the numbers of moves required to solve a batch of puzzle states from the database, so the cache and TLB misses
+     * of the lookups overlap (see {@link PatternDatabase#getNumberOfMoves(int[], int, byte[])}).
+     * @param indices - The database indices to get the number of moves for (see {@link #getIndex}).
+     * @param count - The number of indices in the batch.
+     * @param results - The array to store the number of moves for each index in.
+     */
+    public void getNumberOfMoves(long[] indices, int count, byte[] results) {
+        database.get(indices, count, results);
+    }
+
+    /**
+     * Get the database index for a puzzle, so that it can be looked up later as part of a batch.
+     * @param puzzle - The puzzle to calculate the database index for.
+     * @return The database index for the given puzzle.
+     * @throws IllegalArgumentException if the given puzzle is not a valid puzzle for this database.
+     */
+    public long getIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
+        return getDatabaseIndex(puzzle);
+    }
+
+    /**
+     * Get the number of entries of the database.
+     * @return The size of the database.
+     */
+    public long getDatabaseSize() {
+        return databaseSize;
+    }
+
+    /**
+     * Get the number of cubies the database looks at, which is the number of elements in each permutation of its indices.
+     * @return The number of cubies the database looks at.
+     */
+    public int getNumberOfCubies() {
+        return k;
+    }
+
+    /**
+     * Get the ranker which calculates the Lehmer ranks of the database's permutations of cubie indices,
+     * which can also turn a rank back into its permutation.
+     * @return The permutation ranker of the database.
+     */
+    public PermutationRanker getPermutationRanker() {
+        return ranker;
+    }
+
+    /**
+     * Check if the database is full (all entries have been set).
+     * @return {@code true} if the database is full, {@code false} if there are still unset entries.
+     */
+    boolean isFull() {
+        return entriesSet == databaseSize;
+    }
+
+
+    /**
+     * Calculate the database index for a puzzle (by using the indices and orientations of a subset of cubies),
+     * as in {@link PatternDatabase#getDatabaseIndex}.
+     * @param puzzle - The puzzle to calculate the database index for.
+     * @return The database index for the given puzzle.
+     * @throws IllegalArgumentException if the given puzzle is not a valid puzzle for this database.
+     */
+    protected abstract long getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException;
+
+    /**
+     * Generate the moves of the puzzle in terms of the positions of the cubies the database looks at, so the database can be
+     * populated by moving its indices rather than puzzle states (see {@code PopulatePatternDatabases}).
+     * Large databases have no move tables, as a table would be larger than the database itself.
+     * @return The position each move takes the cubie in each position to, and the twist it adds.
+     */
+    protected abstract CubieMoves generateCubieMoves();
+
+    /**
+     * Calculate the Lehmer rank of a permutation of cubie indices (see {@link PermutationRanker#rankLong}).
+     * @param perm - The permutation of cubie indices to rank.
+     * @return The Lehmer rank of the permutation.
+     */
+    protected long calculateLehmerRank(byte[] perm) {
+        return ranker.rankLong(perm);
+    }
+
+    /**
+     * Calculate the Lehmer rank of a permutation of cubie indices picked out of a table, without copying it into an array
+     * (see {@link PermutationRanker#rankLong(byte[], byte[], int)}).
+     * @param table - The table to pick the cubie indices from.
+     * @param selection - The index in the table of each cubie index of the permutation.
+     * @param shift - The amount added to each cubie index picked from the table.
+     * @return The Lehmer rank of the permutation.
+     */
+    protected long calculateLehmerRank(byte[] table, byte[] selection, int shift) {
+        return ranker.rankLong(table, selection, shift);
+    }
+
+
+    /**
+     * Write the pattern database to a file, with 4 bits per entry.
+     * @param dirname - The directory to write the file to, relative to the databases directory (ending in /).
+     * @param filename - The name of the file to write the database to (should end in .pdb).
+     */
+    protected void writeDatabaseToFile(String dirname, String filename) {
+        try {
+            final String DATABASES_PATH = "TwistyPuzzleSolvers/databases/";
+
+            // Create the file and directories if they don't exist
+            new File(DATABASES_PATH + dirname).mkdirs();
+            File databaseFile = new File(DATABASES_PATH + dirname + filename);
+            databaseFile.createNewFile();
+
+            // Write the database to the file
+            try (FileOutputStream outStream = new FileOutputStream(databaseFile, false)) {
+                database.writeTo(outStream);
+            }
+        }
+        catch (Exception e) {
+            System.err.println("Error writing database to file:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Read the pattern database from a file into direct buffers.
+     * @param path - The path to read the database from.
+     * @return {@code true} if the database was read successfully, {@code false} if an error occurred.
+     */
+    public boolean readDatabaseFromFile(String path) {
+        return readDatabaseFromFile(path, StorageMode.DEFAULT);
+    }
+
+    /**
+     * Read the pattern database from a file into direct buffers, or map the file into memory if the storage mode maps
+     * database files. Only the mapping of the storage mode is used, as large databases are always kept with 4 bits per entry.
+     * @param path - The path to read the database from.
+     * @param mode - The storage mode which gives whether the file is mapped.
+     * @return {@code true} if the database was read successfully, {@code false} if an error occurred.
+     */
+    public boolean readDatabaseFromFile(String path, StorageMode mode) {
+        final String DATABASES_PATH = "TwistyPuzzleSolvers/databases/";
+        File databaseFile = new File(DATABASES_PATH + path);
+
+        // The file has 4 bits per entry
+        if (databaseFile.length() != OffHeapStorage.getPackedLength(databaseSize)) {
+            System.err.println("Error reading database from file: file size does not match database size");
+            return false;
+        }
+
+        try {
+            if (mode.isMapped()) {
+                database = OffHeapStorage.map(databaseFile, databaseSize);
+            }
+            else {
+                try (FileInputStream in = new FileInputStream(databaseFile)) {
+                    database = OffHeapStorage.read(in, databaseSize);
+                }
+            }
+            entriesSet = databaseSize;
+            return true;
+        }
+        catch (Exception e) {
+            System.err.println("Error reading database from file:");
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package patterndatabases;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only database storage which maps the database file into memory, with one byte per entry.
+ * <p>
+ * The entries are never copied onto the heap: pages of the file are read by the operating system when they are first
+ * looked up, and stay in its page cache, which is shared by every process which maps the same file. Mapping a file takes
+ * milliseconds, so a solver started while the files are still cached (e.g. a second solver or worker on the same host)
+ * doesn't read the databases again, and the heap only has to hold the search itself. The mapping stays valid until the
+ * storage is garbage collected, even after the file's channel is closed.
+ */
+final class MappedStorage extends DatabaseStorage {
+
+    private final MappedByteBuffer database;
+
+    /**
+     * Constructor for a MappedStorage.
+     * @param database - The mapped database file.
+     */
+    private MappedStorage(MappedByteBuffer database) {
+        this.database = database;
+    }
+
+    /**
+     * Map a database file into memory.
+     * @param file - The database file (of at most {@link Integer#MAX_VALUE} bytes).
+     * @return The storage of the mapped file.
+     * @throws IOException if the file can't be mapped.
+     */
+    static MappedStorage map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new MappedStorage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int size() {
+        return database.capacity();
+    }
+
+    byte get(int index) {
+        return database.get(index);
+    }
+
+    void get(int[] indices, int count, byte[] results) {
+        MappedByteBuffer database = this.database;
+        for (int i = 0; i < count; i++) {
+            results[i] = database.get(indices[i]);
+        }
+    }
+
+    void writeTo(FileOutputStream out) throws IOException {
+        ByteBuffer buffer = database.duplicate();
+        buffer.clear();
+        FileChannel channel = out.getChannel();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
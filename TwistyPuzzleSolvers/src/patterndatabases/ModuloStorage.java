@@ -0,0 +1,123 @@
+package patterndatabases;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only database storage which only keeps each entry modulo 3, packed into 2 bits, on the heap or mapped from the
+ * database file. The entry at index i is in bits {@code 2 * (i % 4)} and {@code 2 * (i % 4) + 1} of byte {@code i / 4}.
+ * <p>
+ * Every move has an inverse, so the entries of a puzzle state and of a child of it differ by at most one move, and the
+ * child's entry is the only one of the parent's entry -1, 0 and +1 with the stored remainder. The search knows the entry
+ * of the parent of every node it estimates, so a quarter of the memory of one byte per entry is enough
+ * (see {@link PatternDatabase#getNumberOfMoves(int[], int, byte, byte[])}). Packed files are the same as the storage:
+ * {@code (size + 3) / 4} bytes, with the unused bits of the last byte set to 0.
+ */
+final class ModuloStorage extends DatabaseStorage {
+
+    // The mask of an entry, once shifted to the lowest bits
+    private static final int ENTRY_MASK = 0x03;
+
+    private final ByteBuffer database;
+    private final int size;
+
+    /**
+     * Constructor for a ModuloStorage.
+     * @param database - The packed remainders, with {@link #getPackedLength} bytes.
+     * @param size - The number of entries.
+     */
+    private ModuloStorage(ByteBuffer database, int size) {
+        this.database = database;
+        this.size = size;
+    }
+
+    /**
+     * Get the number of bytes taken by a number of packed remainders (which is also the length of a packed database file).
+     * @param size - The number of entries.
+     * @return The number of bytes.
+     */
+    static long getPackedLength(int size) {
+        return ((long) size + 3) / 4;
+    }
+
+    /**
+     * Pack the remainders modulo 3 of the entries of another storage onto the heap. The other storage is read in index order,
+     * so it can be a file mapped into memory (see {@link MappedStorage}) which is never read onto the heap as a whole.
+     * @param source - The storage to pack, with the full entries.
+     * @return The packed storage.
+     * @throws IllegalArgumentException if an entry is unset.
+     */
+    static ModuloStorage pack(DatabaseStorage source) throws IllegalArgumentException {
+        int size = source.size();
+        byte[] packed = new byte[(int) getPackedLength(size)];
+        for (int index = 0; index < size; index++) {
+            byte entry = source.get(index);
+            if (entry < 0 || entry == Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Database entry " + index + " is not set");
+            }
+            packed[index >>> 2] |= (entry % 3) << ((index & 3) << 1);
+        }
+        return new ModuloStorage(ByteBuffer.wrap(packed), size);
+    }
+
+    /**
+     * Read a packed database file onto the heap.
+     * @param in - The stream of the packed file.
+     * @param size - The number of entries.
+     * @return The storage of the packed remainders.
+     * @throws IOException if the remainders can't be read, or the file ends before all of them are read.
+     */
+    static ModuloStorage read(FileInputStream in, int size) throws IOException {
+        byte[] packed = new byte[(int) getPackedLength(size)];
+        readFully(in, packed, 0, packed.length);
+        return new ModuloStorage(ByteBuffer.wrap(packed), size);
+    }
+
+    /**
+     * Map a packed database file into memory (see {@link MappedStorage}).
+     * @param file - The packed database file.
+     * @param size - The number of entries.
+     * @return The storage of the mapped file.
+     * @throws IOException if the file can't be mapped.
+     */
+    static ModuloStorage map(File file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new ModuloStorage(channel.map(FileChannel.MapMode.READ_ONLY, 0, getPackedLength(size)), size);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the remainder modulo 3 of an entry of the storage.
+     * @param index - The index of the entry.
+     * @return The remainder of the entry (0, 1 or 2).
+     */
+    byte get(int index) {
+        return (byte) ((database.get(index >>> 2) >>> ((index & 3) << 1)) & ENTRY_MASK);
+    }
+
+    void get(int[] indices, int count, byte[] results) {
+        ByteBuffer database = this.database;
+        for (int i = 0; i < count; i++) {
+            int index = indices[i];
+            results[i] = (byte) ((database.get(index >>> 2) >>> ((index & 3) << 1)) & ENTRY_MASK);
+        }
+    }
+
+    void writeTo(FileOutputStream out) throws IOException {
+        ByteBuffer buffer = database.duplicate();
+        buffer.clear();
+        FileChannel channel = out.getChannel();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package patterndatabases;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A coordinate move table, which maps a database index and a move to the database index reached by making the move,
+ * so the indices of a node's children can be calculated from the node's index without making the moves on a puzzle.
+ * <p>
+ * A database index is made up of a permutation coordinate (the Lehmer rank of the cubie indices) and an orientation
+ * coordinate, with {@code index = permutation * orientationCount + orientation}. The two coordinates are looked up in
+ * separate tables to keep them small: the permutation table maps a permutation and a move to the new permutation and a
+ * twist (which describes how the move changes the orientations), and the orientation table maps an orientation and a twist
+ * to the new orientation. The tables only depend on the positions the database looks at, not on which cubies they are,
+ * so databases of the same shape (e.g. all 12 face databases of the kilominx) share a single table.
+ * <p>
+ * File format (big-endian): magic number (int), permutation count (int), move count (int), orientation count (int),
+ * twist count (int), then the permutation table (ints), then the orientation table (shorts).
+ */
+public class MoveTable {
+
+    // "TPSM" (Twisty Puzzle Search Move table)
+    static final int MAGIC_NUMBER = 0x5450534D;
+    static final String DATABASES_PATH = "TwistyPuzzleSolvers/databases/";
+
+    // The tables which have been loaded, by file path, so they are shared by all databases which use them
+    private static final Map<String, MoveTable> loadedTables = new HashMap<String, MoveTable>();
+
+    final int permutationCount, moveCount, orientationCount, twistCount;
+    // Each entry holds the new permutation in the upper 24 bits, and the twist in the lowest 8 bits
+    final int[] permutationTable;
+    final short[] orientationTable;
+
+    /**
+     * Constructor for an empty MoveTable.
+     * @param permutationCount - The number of permutation coordinates.
+     * @param moveCount - The number of moves of the puzzle.
+     * @param orientationCount - The number of orientation coordinates.
+     * @param twistCount - The number of twists (at most 256).
+     */
+    MoveTable(int permutationCount, int moveCount, int orientationCount, int twistCount) {
+        this.permutationCount = permutationCount;
+        this.moveCount = moveCount;
+        this.orientationCount = orientationCount;
+        this.twistCount = twistCount;
+        this.permutationTable = new int[permutationCount * moveCount];
+        this.orientationTable = new short[orientationCount * twistCount];
+    }
+
+    /**
+     * Get the database index reached by making a move.
+     * @param index - The database index to make the move from.
+     * @param moveIndex - The index of the move (see {@link models.IMoveController.IMove#ordinal}).
+     * @return The database index after the move.
+     */
+    public int getChildIndex(int index, int moveIndex) {
+        int permutation = index / orientationCount;
+        int orientation = index - permutation * orientationCount;
+
+        int entry = permutationTable[permutation * moveCount + moveIndex];
+        return (entry >>> 8) * orientationCount + orientationTable[orientation * twistCount + (entry & 0xFF)];
+    }
+
+
+    /**
+     * Generate the move table of a database which looks at k of n cubies, where the database index is calculated from
+     * the position and orientation of each cubie it looks at (as in the edge and kilominx databases).
+     * A move takes the cubie in each position to a new position, and adds a twist to its orientation which only depends
+     * on the position. The twist of a permutation and move is the twist added to each cubie, as digits of a base-radix number.
+     * @param database - The database the table is for, whose Lehmer ranking is used for the permutation coordinate.
+     * @param n - The number of positions.
+     * @param k - The number of cubies the database looks at.
+     * @param radix - The number of orientations of each cubie.
+     * @param destinations - The position each move takes the cubie in each position to (indexed by move, then position).
+     * @param twists - The orientation each move adds to the cubie in each position (indexed by move, then position).
+     * @return The generated move table.
+     */
+    public static MoveTable generateCubieTable(PatternDatabase database, int n, int k, int radix, byte[][] destinations, byte[][] twists) {
+        int moveCount = destinations.length;
+        int orientationCount = power(radix, k);
+        PermutationRanker ranker = database.getPermutationRanker();
+        MoveTable table = new MoveTable(ranker.getPermutationCount(), moveCount, orientationCount, orientationCount);
+
+        byte[] permutation = new byte[k];
+        byte[] movedPermutation = new byte[k];
+
+        for (int rank = 0; rank < table.permutationCount; rank++) {
+            ranker.unrank(rank, permutation);
+            int base = rank * moveCount;
+            for (int m = 0; m < moveCount; m++) {
+                int twist = 0;
+                for (int i = 0; i < k; i++) {
+                    movedPermutation[i] = destinations[m][permutation[i]];
+                    twist = twist * radix + twists[m][permutation[i]];
+                }
+                table.permutationTable[base + m] = (ranker.rank(movedPermutation) << 8) | twist;
+            }
+        }
+
+        // Each orientation digit is increased by the matching digit of the twist
+        byte[] orientations = new byte[k];
+        byte[] twistDigits = new byte[k];
+        byte[] movedOrientations = new byte[k];
+        for (int orientation = 0; orientation < orientationCount; orientation++) {
+            PermutationRanker.unrankOrientations(orientation, orientations, k, radix);
+            for (int twist = 0; twist < orientationCount; twist++) {
+                PermutationRanker.unrankOrientations(twist, twistDigits, k, radix);
+                for (int i = 0; i < k; i++) {
+                    movedOrientations[i] = (byte) ((orientations[i] + twistDigits[i]) % radix);
+                }
+                table.orientationTable[orientation * orientationCount + twist] =
+                    (short) PermutationRanker.rankOrientations(movedOrientations, k, radix);
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Generate the move table of a database which looks at all n cubies, where the database index is calculated from the
+     * index and orientation of the cubie in each position (as in the corner database). The orientation of the last position
+     * is left out of the index, as it is fixed by the others (the orientations always add up to a multiple of the radix).
+     * A move takes the cubie in each position from another position, and adds a twist to its orientation which only
+     * depends on the position, so the new orientation coordinate only depends on the old one and the move (which is used as the twist).
+     * @param database - The database the table is for, whose Lehmer ranking is used for the permutation coordinate.
+     * @param n - The number of positions.
+     * @param radix - The number of orientations of each cubie.
+     * @param sources - The position each move takes the cubie in each position from (indexed by move, then position).
+     * @param twists - The orientation each move adds to the cubie in each position (indexed by move, then new position).
+     * @return The generated move table.
+     */
+    public static MoveTable generatePositionTable(PatternDatabase database, int n, int radix, byte[][] sources, byte[][] twists) {
+        int moveCount = sources.length;
+        int orientationCount = power(radix, n - 1);
+        PermutationRanker ranker = database.getPermutationRanker();
+        MoveTable table = new MoveTable(ranker.getPermutationCount(), moveCount, orientationCount, moveCount);
+
+        byte[] permutation = new byte[n];
+        byte[] movedPermutation = new byte[n];
+
+        for (int rank = 0; rank < table.permutationCount; rank++) {
+            ranker.unrank(rank, permutation);
+            int base = rank * moveCount;
+            for (int m = 0; m < moveCount; m++) {
+                for (int i = 0; i < n; i++) {
+                    movedPermutation[i] = permutation[sources[m][i]];
+                }
+                table.permutationTable[base + m] = (ranker.rank(movedPermutation) << 8) | m;
+            }
+        }
+
+        generatePositionOrientations(table, n, radix, sources, twists);
+        return table;
+    }
+
+    /**
+     * Generate the move table of a database which only looks at the orientations of all n cubies, where the database index
+     * is calculated from the orientation of the cubie in each position (as in the orientation databases of the cube).
+     * The orientations are moved in the same way as in {@link #generatePositionTable}, and there is a single permutation
+     * coordinate, which every move maps to itself (with the move as the twist).
+     * @param n - The number of positions.
+     * @param radix - The number of orientations of each cubie.
+     * @param sources - The position each move takes the cubie in each position from (indexed by move, then position).
+     * @param twists - The orientation each move adds to the cubie in each position (indexed by move, then new position).
+     * @return The generated move table.
+     */
+    public static MoveTable generateOrientationTable(int n, int radix, byte[][] sources, byte[][] twists) {
+        int moveCount = sources.length;
+        MoveTable table = new MoveTable(1, moveCount, power(radix, n - 1), moveCount);
+
+        for (int m = 0; m < moveCount; m++) {
+            table.permutationTable[m] = m;
+        }
+
+        generatePositionOrientations(table, n, radix, sources, twists);
+        return table;
+    }
+
+    /**
+     * Fill the orientation table of a move table whose orientation coordinate is made up of the orientations of the first
+     * n - 1 positions, and whose twist is the move (see {@link #generatePositionTable}).
+     * @param table - The move table to fill the orientation table of.
+     * @param n - The number of positions.
+     * @param radix - The number of orientations of each cubie.
+     * @param sources - The position each move takes the cubie in each position from (indexed by move, then position).
+     * @param twists - The orientation each move adds to the cubie in each position (indexed by move, then new position).
+     */
+    private static void generatePositionOrientations(MoveTable table, int n, int radix, byte[][] sources, byte[][] twists) {
+        int moveCount = sources.length;
+        int orientationCount = table.orientationCount;
+
+        byte[] orientations = new byte[n];
+        for (int orientation = 0; orientation < orientationCount; orientation++) {
+            // Split the coordinate into digits, and work out the orientation of the last position from the others
+            PermutationRanker.unrankOrientations(orientation, orientations, n - 1, radix);
+            int sum = 0;
+            for (int i = 0; i < n - 1; i++) {
+                sum += orientations[i];
+            }
+            orientations[n - 1] = (byte) ((radix - sum % radix) % radix);
+
+            for (int m = 0; m < moveCount; m++) {
+                int movedOrientation = 0;
+                for (int i = 0; i < n - 1; i++) {
+                    movedOrientation = movedOrientation * radix + (orientations[sources[m][i]] + twists[m][i]) % radix;
+                }
+                table.orientationTable[orientation * moveCount + m] = (short) movedOrientation;
+            }
+        }
+    }
+
+    /**
+     * Raise an integer to a power.
+     * @param base - The base.
+     * @param exponent - The (non-negative) exponent.
+     * @return base^exponent
+     */
+    private static int power(int base, int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+
+
+    /**
+     * Load a move table from a file, or generate it and write it to the file if the file doesn't exist or can't be read.
+     * Tables which have already been loaded are returned without reading the file again.
+     * @param path - The path of the table file, relative to the databases directory (should end in .mtb).
+     * @param generator - Generates the table if it can't be read from the file.
+     * @return The move table.
+     */
+    static synchronized MoveTable load(String path, Supplier<MoveTable> generator) {
+        MoveTable table = loadedTables.get(path);
+        if (table != null) {
+            return table;
+        }
+
+        File tableFile = new File(DATABASES_PATH + path);
+        if (tableFile.exists()) {
+            try {
+                table = readFromFile(tableFile);
+            }
+            catch (IOException e) {
+                System.err.println("Error reading move table from file:");
+                e.printStackTrace();
+            }
+        }
+
+        if (table == null) {
+            System.out.println("Generating move table " + path + "...");
+            table = generator.get();
+            try {
+                table.writeToFile(tableFile);
+            }
+            catch (IOException e) {
+                // The table can still be used, it just has to be generated again next time
+                System.err.println("Error writing move table to file:");
+                e.printStackTrace();
+            }
+        }
+
+        loadedTables.put(path, table);
+        return table;
+    }
+
+    /**
+     * Write the move table to a file. The table is written to a temporary file first, which then replaces the file,
+     * so a partially written table is never read.
+     * @param file - The file to write the table to.
+     * @throws IOException if the file can't be written.
+     */
+    private void writeToFile(File file) throws IOException {
+        File absoluteFile = file.getAbsoluteFile();
+        absoluteFile.getParentFile().mkdirs();
+        File tempFile = new File(absoluteFile.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile, false), 1 << 16))) {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(permutationCount);
+            out.writeInt(moveCount);
+            out.writeInt(orientationCount);
+            out.writeInt(twistCount);
+            for (int entry : permutationTable) {
+                out.writeInt(entry);
+            }
+            for (short entry : orientationTable) {
+                out.writeShort(entry);
+            }
+        }
+
+        Files.move(tempFile.toPath(), absoluteFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a move table from a file.
+     * @param file - The file to read the table from.
+     * @return The move table read from the file.
+     * @throws IOException if the file can't be read, or is not a valid move table file.
+     */
+    private static MoveTable readFromFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+            readFully(channel, buffer, 20);
+            if (buffer.getInt() != MAGIC_NUMBER) {
+                throw new IOException("Not a move table file: " + file);
+            }
+            MoveTable table = new MoveTable(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+
+            // Read the tables in blocks, rather than one entry at a time
+            for (int i = 0; i < table.permutationTable.length; ) {
+                int count = Math.min(buffer.capacity() / 4, table.permutationTable.length - i);
+                readFully(channel, buffer, count * 4);
+                buffer.asIntBuffer().get(table.permutationTable, i, count);
+                i += count;
+            }
+            for (int i = 0; i < table.orientationTable.length; ) {
+                int count = Math.min(buffer.capacity() / 2, table.orientationTable.length - i);
+                readFully(channel, buffer, count * 2);
+                buffer.asShortBuffer().get(table.orientationTable, i, count);
+                i += count;
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Read a number of bytes from a file into a buffer, which is flipped so the bytes can be read from it.
+     * @param channel - The channel of the file to read from.
+     * @param buffer - The buffer to read the bytes into.
+     * @param length - The number of bytes to read (at most the capacity of the buffer).
+     * @throws IOException if the file can't be read, or ends before all of the bytes are read.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of move table file");
+            }
+        }
+        buffer.flip();
+    }
+}
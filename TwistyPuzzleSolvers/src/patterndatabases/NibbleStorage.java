@@ -0,0 +1,157 @@
+package patterndatabases;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only database storage which packs two entries into each byte, 4 bits per entry, on the heap or mapped from the
+ * database file. The entry at an even index is in the low 4 bits of its byte, and the entry after it in the high 4 bits.
+ * <p>
+ * No cube or kilominx database entry is larger than 15 moves, so every entry fits, and the storage takes half the memory
+ * (and its file half the disk space) of one byte per entry. The lookups of a database are spread randomly over the whole
+ * table, so halving the table doubles the share of it which stays in the caches and TLB. A lookup shifts the byte by 0 or 4
+ * bits depending on the index, so it doesn't branch. Packed files are the same as the storage: {@code (size + 1) / 2} bytes
+ * with the last high 4 bits unused if the size is odd.
+ */
+final class NibbleStorage extends DatabaseStorage {
+
+    // The largest entry which fits in 4 bits
+    static final int MAX_ENTRY = 0x0F;
+
+    // The number of entries packed per read when packing a file with one byte per entry
+    private static final int PACK_CHUNK = 1 << 16;
+
+    private final ByteBuffer database;
+    private final int size;
+
+    /**
+     * Constructor for a NibbleStorage.
+     * @param database - The packed entries, with {@link #getPackedLength} bytes.
+     * @param size - The number of entries.
+     */
+    private NibbleStorage(ByteBuffer database, int size) {
+        this.database = database;
+        this.size = size;
+    }
+
+    /**
+     * Get the number of bytes taken by a number of packed entries (which is also the length of a packed database file).
+     * @param size - The number of entries.
+     * @return The number of bytes.
+     */
+    static long getPackedLength(int size) {
+        return ((long) size + 1) / 2;
+    }
+
+    /**
+     * Pack the entries of another storage onto the heap.
+     * @param source - The storage to pack.
+     * @return The packed storage.
+     * @throws IllegalArgumentException if an entry is larger than {@link #MAX_ENTRY} (or unset).
+     */
+    static NibbleStorage pack(DatabaseStorage source) throws IllegalArgumentException {
+        int size = source.size();
+        byte[] packed = new byte[(int) getPackedLength(size)];
+        for (int index = 0; index < size; index++) {
+            packEntry(packed, index, source.get(index));
+        }
+        return new NibbleStorage(ByteBuffer.wrap(packed), size);
+    }
+
+    /**
+     * Read a packed database file onto the heap.
+     * @param in - The stream of the packed file.
+     * @param size - The number of entries.
+     * @return The storage of the packed entries.
+     * @throws IOException if the entries can't be read, or the file ends before all of them are read.
+     */
+    static NibbleStorage read(FileInputStream in, int size) throws IOException {
+        byte[] packed = new byte[(int) getPackedLength(size)];
+        readFully(in, packed, 0, packed.length);
+        return new NibbleStorage(ByteBuffer.wrap(packed), size);
+    }
+
+    /**
+     * Read a database file with one byte per entry onto the heap, packing the entries as they are read, so the whole
+     * unpacked database is never held in memory.
+     * @param in - The stream of the file with one byte per entry.
+     * @param size - The number of entries.
+     * @return The storage of the packed entries.
+     * @throws IOException if the entries can't be read, the file ends before all of them are read, or an entry doesn't fit in 4 bits.
+     */
+    static NibbleStorage readUnpacked(FileInputStream in, int size) throws IOException {
+        byte[] packed = new byte[(int) getPackedLength(size)];
+        byte[] chunk = new byte[PACK_CHUNK];
+
+        for (int start = 0; start < size; start += PACK_CHUNK) {
+            int length = Math.min(PACK_CHUNK, size - start);
+            readFully(in, chunk, 0, length);
+            try {
+                for (int i = 0; i < length; i++) {
+                    packEntry(packed, start + i, chunk[i]);
+                }
+            }
+            catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+        return new NibbleStorage(ByteBuffer.wrap(packed), size);
+    }
+
+    /**
+     * Map a packed database file into memory (see {@link MappedStorage}).
+     * @param file - The packed database file.
+     * @param size - The number of entries.
+     * @return The storage of the mapped file.
+     * @throws IOException if the file can't be mapped.
+     */
+    static NibbleStorage map(File file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new NibbleStorage(channel.map(FileChannel.MapMode.READ_ONLY, 0, getPackedLength(size)), size);
+        }
+    }
+
+    /**
+     * Pack an entry into its half of a byte (the other half must not have been packed yet, or must be the entry after it).
+     * @param packed - The packed entries.
+     * @param index - The index of the entry.
+     * @param entry - The entry.
+     * @throws IllegalArgumentException if the entry is larger than {@link #MAX_ENTRY} (or unset).
+     */
+    private static void packEntry(byte[] packed, int index, byte entry) throws IllegalArgumentException {
+        if (entry < 0 || entry > MAX_ENTRY) {
+            throw new IllegalArgumentException("Database entry " + index + " (" + entry + ") does not fit in 4 bits");
+        }
+        packed[index >>> 1] |= entry << ((index & 1) << 2);
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte get(int index) {
+        return (byte) ((database.get(index >>> 1) >>> ((index & 1) << 2)) & MAX_ENTRY);
+    }
+
+    void get(int[] indices, int count, byte[] results) {
+        ByteBuffer database = this.database;
+        for (int i = 0; i < count; i++) {
+            int index = indices[i];
+            results[i] = (byte) ((database.get(index >>> 1) >>> ((index & 1) << 2)) & MAX_ENTRY);
+        }
+    }
+
+    void writeTo(FileOutputStream out) throws IOException {
+        ByteBuffer buffer = database.duplicate();
+        buffer.clear();
+        FileChannel channel = out.getChannel();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
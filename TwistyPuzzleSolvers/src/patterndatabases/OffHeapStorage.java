@@ -0,0 +1,199 @@
+package patterndatabases;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Database storage with long indices for databases of more than {@link Integer#MAX_VALUE} entries (see {@link LongPatternDatabase}),
+ * which keeps its entries off the heap, packed into 4 bits per entry as in {@link NibbleStorage}.
+ * <p>
+ * A Java array or buffer holds at most 2^31 elements, so the packed entries are split into segments of 2^30 bytes (2^31
+ * entries), which are direct buffers when the database is populated or read, or mappings of the database file. Either way
+ * the entries never take heap space, so the heap only has to hold the search. Entries of 15 are unset, so entries can be
+ * at most 14 moves; direct buffers start with every entry unset.
+ */
+final class OffHeapStorage {
+
+    // The entry of unset entries, which is also the largest entry which fits in 4 bits
+    static final int UNSET = 0x0F;
+
+    // The number of bytes in each segment is 2^SEGMENT_SHIFT
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final ByteBuffer[] segments;
+    private final long size;
+
+    /**
+     * Constructor for an OffHeapStorage.
+     * @param segments - The segments of the packed entries, with {@link #getPackedLength} bytes in total.
+     * @param size - The number of entries.
+     */
+    private OffHeapStorage(ByteBuffer[] segments, long size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Get the number of bytes taken by a number of packed entries (which is also the length of a database file).
+     * @param size - The number of entries.
+     * @return The number of bytes.
+     */
+    static long getPackedLength(long size) {
+        return (size + 1) / 2;
+    }
+
+    /**
+     * Get the number of bytes in a segment of the storage.
+     * @param size - The number of entries.
+     * @param segment - The index of the segment.
+     * @return The number of bytes in the segment.
+     */
+    private static int getSegmentLength(long size, int segment) {
+        return (int) Math.min(1L << SEGMENT_SHIFT, getPackedLength(size) - ((long) segment << SEGMENT_SHIFT));
+    }
+
+    /**
+     * Get the number of segments of the storage.
+     * @param size - The number of entries.
+     * @return The number of segments.
+     */
+    private static int getSegmentCount(long size) {
+        return (int) ((getPackedLength(size) + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    }
+
+    /**
+     * Allocate writable storage in direct buffers, with every entry unset.
+     * @param size - The number of entries.
+     * @return The allocated storage.
+     */
+    static OffHeapStorage allocate(long size) {
+        ByteBuffer[] segments = new ByteBuffer[getSegmentCount(size)];
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer segment = ByteBuffer.allocateDirect(getSegmentLength(size, s));
+            int i = 0;
+            for (; i + 8 <= segment.capacity(); i += 8) {
+                segment.putLong(i, -1L);
+            }
+            for (; i < segment.capacity(); i++) {
+                segment.put(i, (byte) -1);
+            }
+            segments[s] = segment;
+        }
+        return new OffHeapStorage(segments, size);
+    }
+
+    /**
+     * Read a database file into direct buffers.
+     * @param in - The stream of the database file.
+     * @param size - The number of entries.
+     * @return The storage of the entries.
+     * @throws IOException if the entries can't be read, or the file ends before all of them are read.
+     */
+    static OffHeapStorage read(FileInputStream in, long size) throws IOException {
+        FileChannel channel = in.getChannel();
+        ByteBuffer[] segments = new ByteBuffer[getSegmentCount(size)];
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer segment = ByteBuffer.allocateDirect(getSegmentLength(size, s));
+            while (segment.hasRemaining()) {
+                if (channel.read(segment) < 0) {
+                    throw new IOException("Unexpected end of database file");
+                }
+            }
+            segment.clear();
+            segments[s] = segment;
+        }
+        return new OffHeapStorage(segments, size);
+    }
+
+    /**
+     * Map a database file into memory, one mapping per segment (see {@link MappedStorage}).
+     * @param file - The database file.
+     * @param size - The number of entries.
+     * @return The storage of the mapped file.
+     * @throws IOException if the file can't be mapped.
+     */
+    static OffHeapStorage map(File file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer[] segments = new ByteBuffer[getSegmentCount(size)];
+            for (int s = 0; s < segments.length; s++) {
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, (long) s << SEGMENT_SHIFT, getSegmentLength(size, s));
+            }
+            return new OffHeapStorage(segments, size);
+        }
+    }
+
+    /**
+     * Get the number of entries in the storage.
+     * @return The number of entries.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Get an entry of the storage.
+     * @param index - The index of the entry.
+     * @return The entry, or {@link #UNSET} if it hasn't been set.
+     */
+    byte get(long index) {
+        long offset = index >>> 1;
+        byte packed = segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK));
+        return (byte) ((packed >>> (((int) index & 1) << 2)) & UNSET);
+    }
+
+    /**
+     * Get a batch of entries of the storage (see {@link DatabaseStorage#get(int[], int, byte[])}).
+     * @param indices - The indices of the entries.
+     * @param count - The number of indices in the batch.
+     * @param results - The array to store each entry in.
+     */
+    void get(long[] indices, int count, byte[] results) {
+        ByteBuffer[] segments = this.segments;
+        for (int i = 0; i < count; i++) {
+            long index = indices[i];
+            long offset = index >>> 1;
+            byte packed = segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK));
+            results[i] = (byte) ((packed >>> (((int) index & 1) << 2)) & UNSET);
+        }
+    }
+
+    /**
+     * Set an entry of the storage.
+     * @param index - The index of the entry.
+     * @param entry - The entry (at most 14).
+     * @throws IllegalArgumentException if the entry doesn't fit in 4 bits (besides the unset entry).
+     * @throws java.nio.ReadOnlyBufferException if the storage is a mapping of a database file.
+     */
+    void set(long index, byte entry) throws IllegalArgumentException {
+        if (entry < 0 || entry >= UNSET) {
+            throw new IllegalArgumentException("Database entry " + index + " (" + entry + ") does not fit in 4 bits");
+        }
+        long offset = index >>> 1;
+        ByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+        int position = (int) (offset & SEGMENT_MASK);
+        int shift = ((int) index & 1) << 2;
+        segment.put(position, (byte) ((segment.get(position) & ~(UNSET << shift)) | (entry << shift)));
+    }
+
+    /**
+     * Write every entry of the storage to a file, packed as in the storage.
+     * @param out - The stream of the file to write the entries to.
+     * @throws IOException if the entries can't be written.
+     */
+    void writeTo(FileOutputStream out) throws IOException {
+        FileChannel channel = out.getChannel();
+        for (ByteBuffer segment : segments) {
+            ByteBuffer buffer = segment.duplicate();
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -1,25 +1,34 @@
 package patterndatabases;
 
 import models.ITwistyPuzzle;
-import java.util.Arrays;
-import java.util.BitSet;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileInputStream;
+import java.io.IOException;
 
 /**
  * Abstract class for a pattern database.
  * A pattern database is a hash table which stores the number of moves required to solve a subset of cubies.
  * The hash function used is {@link #getDatabaseIndex}, which maps subsets of cubies to unique integers.
+ * The entries are kept in a {@link DatabaseStorage}, which is allocated on the heap when the database is populated or read,
+ * or maps the database file if files are mapped. Database files either have one byte per entry, are packed with 4 bits
+ * per entry (see {@link NibbleStorage}), or only keep each entry modulo 3 in 2 bits (see {@link ModuloStorage}).
+ * Databases can also be folded, keeping the smallest entry of each group of adjacent entries in a file of their own
+ * (see {@link FoldedStorage}). How a database is kept is given by the {@link StorageMode} it is read or written with.
  */
 public abstract class PatternDatabase {
 
-    private byte[] database;
+    private final int databaseSize;
+    private DatabaseStorage database;
+    // Whether the storage only keeps the entries modulo 3, so lookups have to be decoded (see decodeNumberOfMoves)
+    private boolean moduloStorage = false;
     private int entriesSet;
 
-    private byte n, k;
-    private int[] binaryOnesTable;
-    private long[] factorialsTable;
+    // Ranks the permutations of the cubie indices (shared by all databases with the same n and k)
+    private final PermutationRanker ranker;
+
+    // The table of the index reached by each move from each index (see loadMoveTable)
+    private MoveTable moveTable;
 
 
     /**
@@ -30,44 +39,12 @@ public abstract class PatternDatabase {
      * @param k - The number of elements picked in the partial permutation.
      */
     protected PatternDatabase(int databaseSize, byte n, byte k) {
-        // Initialise the array with max byte values
-        database = new byte[databaseSize];
-        Arrays.fill(database, Byte.MAX_VALUE);
+        // The storage isn't allocated until the database is populated or read
+        this.databaseSize = databaseSize;
         entriesSet = 0;
 
         // n is the number of elements in the permutation; k is the number of elements picked in this partial permutation
-        this.n = n;
-        this.k = k;
-
-        // Precomputed table for number of ones in binary representation of a number
-        // (1 << n) - 1 is the maximum number that can be represented by n bits
-        binaryOnesTable = new int[(1 << n) - 1];
-
-        for (int i = 0; i < (1 << n) - 1; i++) {
-            BitSet bits = BitSet.valueOf(new long[] {i});
-            binaryOnesTable[i] = bits.cardinality();
-        }
-
-        // Precomputed table for factorials
-        factorialsTable = new long[k];
-
-        for (int i = 0; i < k; i++) {
-            factorialsTable[i] = factorial(n - 1 - i) / factorial((n - 1 - i) - (k - 1 - i));
-        }
-    }
-
-    /**
-     * Calculate the factorial of a number recursively.
-     * @param n - The number to calculate the factorial of.
-     * @return The factorial of the given number.
-     */
-    private static long factorial(int n) {
-        if (n <= 1) {
-            return (long) 1;
-        }
-        else {
-            return (long) n * factorial(n - 1);
-        }
+        ranker = PermutationRanker.getInstance(n, k);
     }
 
 
@@ -79,15 +56,21 @@ public abstract class PatternDatabase {
      * @param noMoves - The number of moves required to solve the subset of cubies.
      * @return {@code true} if the number of moves was set successfully, {@code false} if the number of moves was already set.
      */
-    private boolean setNumberOfMoves(int index, byte noMoves) {
+    boolean setNumberOfMoves(int index, byte noMoves) {
+        // Allocate the storage with max byte values when the first entry is set
+        if (database == null) {
+            database = new ArrayStorage(databaseSize);
+        }
+
         // If database entry is not set (MAX_VALUE is the initial val), increment the number of set entries
-        if (database[index] == Byte.MAX_VALUE) {
+        byte currentMoves = database.get(index);
+        if (currentMoves == Byte.MAX_VALUE) {
             entriesSet++;
         }
 
         // If the number of moves is less than the current number of moves stored, update the database
-        if (noMoves < database[index]) {
-            database[index] = noMoves;
+        if (noMoves < currentMoves) {
+            database.set(index, noMoves);
             return true;
         }
         else {
@@ -113,16 +96,186 @@ public abstract class PatternDatabase {
      * @return The number of moves required to solve the subset of cubies.
      */
     public byte getNumberOfMoves(ITwistyPuzzle puzzle) {
-        return database[getDatabaseIndex(puzzle)];
+        return getNumberOfMoves(getDatabaseIndex(puzzle));
     }
 
     /**
      * Get the number of moves required to solve a puzzle state from the database.
+     * If the database only keeps its entries modulo 3, the full number of moves is decoded by walking to the solved state
+     * (see {@link #decodeNumberOfMoves}), which should only be done at the roots of the search.
      * @param index - The database index to get the number of moves for.
      * @return The number of moves required to solve the subset of cubies.
      */
-    byte getNumberOfMoves(int index) {
-        return database[index];
+    public byte getNumberOfMoves(int index) {
+        return moduloStorage ? decodeNumberOfMoves(index) : database.get(index);
+    }
+
+    /**
+     * Get the numbers of moves required to solve a batch of puzzle states from the database.
+     * The lookups don't depend on each other, so the processor can wait on the cache misses of all of them at once,
+     * rather than one at a time as with separate calls to {@link #getNumberOfMoves(ITwistyPuzzle)}.
+     * If the database only keeps its entries modulo 3, the full number of moves of each state is decoded, which is much
+     * slower than {@link #getNumberOfMoves(int[], int, byte, byte[])}.
+     * @param indices - The database indices to get the number of moves for (see {@link #getIndex}).
+     * @param count - The number of indices in the batch.
+     * @param results - The array to store the number of moves for each index in.
+     */
+    public void getNumberOfMoves(int[] indices, int count, byte[] results) {
+        if (moduloStorage) {
+            for (int i = 0; i < count; i++) {
+                results[i] = decodeNumberOfMoves(indices[i]);
+            }
+            return;
+        }
+        database.get(indices, count, results);
+    }
+
+    /**
+     * Get the numbers of moves required to solve a batch of children of a puzzle state from the database, given the number
+     * of moves of the puzzle state (as in {@link #getNumberOfMoves(int[], int, byte[])}). If the database only keeps its
+     * entries modulo 3, the number of moves of each child is the only one of the parent's number of moves -1, 0 and +1
+     * with the stored remainder (see {@link ModuloStorage}), which is decoded without branching.
+     * @param indices - The database indices of the children to get the number of moves for (see {@link #getChildIndex}).
+     * @param count - The number of indices in the batch.
+     * @param parentMoves - The number of moves required to solve the parent of the children, from this database.
+     * @param results - The array to store the number of moves for each index in.
+     */
+    public void getNumberOfMoves(int[] indices, int count, byte parentMoves, byte[] results) {
+        database.get(indices, count, results);
+        if (moduloStorage) {
+            int parentRemainder = parentMoves % 3;
+            for (int i = 0; i < count; i++) {
+                // The difference of the remainders is 0, 1 or 2 (modulo 3), which is a difference of 0, +1 or -1 move
+                int difference = results[i] - parentRemainder;
+                difference += (difference >> 31) & 3;
+                results[i] = (byte) (parentMoves + difference - (difference >> 1) * 3);
+            }
+        }
+    }
+
+    /**
+     * Decode the number of moves required to solve a puzzle state from a database which only keeps them modulo 3, without
+     * the number of moves of its parent, by walking to the solved state with the move table. Unless a state is solved, at
+     * least one of its children takes one move fewer to solve. Every child is within one move of the state, so a child whose
+     * remainder is one less than the state's can only be one move closer, and the walk follows the first such child without
+     * branching; the solved state is the only state with no such child. This takes up to a lookup per move for each move of
+     * the walk (hundreds of cache misses for a deep state), so it must only be used where the search doesn't know the parent,
+     * which is at the roots of the search (see {@link #isModulo}).
+     * @param index - The database index to get the number of moves for.
+     * @return The number of moves required to solve the subset of cubies.
+     */
+    private byte decodeNumberOfMoves(int index) {
+        int remainder = database.get(index);
+        byte moves = 0;
+        while (true) {
+            int closerRemainder = (remainder + 2) % 3;
+            int closerIndex = -1;
+            for (int m = 0; m < moveTable.moveCount && closerIndex == -1; m++) {
+                int childIndex = moveTable.getChildIndex(index, m);
+                if (database.get(childIndex) == closerRemainder) {
+                    closerIndex = childIndex;
+                }
+            }
+            if (closerIndex == -1) {
+                return moves;
+            }
+            index = closerIndex;
+            remainder = closerRemainder;
+            moves++;
+        }
+    }
+
+    /**
+     * Check if the database only keeps its entries modulo 3. Lookups without the number of moves of the parent state then
+     * walk to the solved state (see {@link #decodeNumberOfMoves}), so solvers must look the database up with
+     * {@link #getNumberOfMoves(int[], int, byte, byte[])} everywhere but at the roots of the search.
+     * @return {@code true} if the entries are kept modulo 3, {@code false} if they are kept in full.
+     */
+    public boolean isModulo() {
+        return moduloStorage;
+    }
+
+    /**
+     * Get the database index for a puzzle, so that it can be looked up later as part of a batch.
+     * @param puzzle - The puzzle to calculate the database index for.
+     * @return The database index for the given puzzle.
+     * @throws IllegalArgumentException if the given puzzle is not a valid puzzle for this database.
+     */
+    public int getIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
+        return getDatabaseIndex(puzzle);
+    }
+
+    /**
+     * Load the move table of the database from its file next to the database files, or generate the table (and write it to
+     * the file) if the file doesn't exist yet. Databases of the same shape use the same file, and share the table in memory.
+     * @return {@code true} if the move table was loaded successfully, {@code false} if it doesn't match the database.
+     * @see MoveTable
+     */
+    public boolean loadMoveTable() {
+        MoveTable table = MoveTable.load(getMoveTablePath(), this::generateMoveTable);
+
+        // A table for a different shape of database (e.g. from an older version of the file) can't be used
+        if ((long) table.permutationCount * table.orientationCount != databaseSize) {
+            System.err.println("Error loading move table: table size does not match database size");
+            return false;
+        }
+        moveTable = table;
+        return true;
+    }
+
+    /**
+     * Check if the move table of the database has been loaded (see {@link #loadMoveTable}).
+     * @return {@code true} if {@link #getChildIndex} can be used, {@code false} otherwise.
+     */
+    public boolean hasMoveTable() {
+        return moveTable != null;
+    }
+
+    /**
+     * Get the database index of the puzzle state reached by making a move, from the database index of the puzzle state
+     * before the move. This is much faster than making the move and calculating the index from the puzzle.
+     * The move table must have been loaded first (see {@link #loadMoveTable}).
+     * @param index - The database index before the move.
+     * @param moveIndex - The index of the move (see {@link models.IMoveController.IMove#ordinal}).
+     * @return The database index after the move.
+     */
+    public int getChildIndex(int index, int moveIndex) {
+        return moveTable.getChildIndex(index, moveIndex);
+    }
+
+    /**
+     * Populate the database with a breadth-first search over the database indices, where the children of each index are
+     * found with the move table (which is loaded first). Each depth is found by scanning the database for the indices set
+     * at the previous depth, so no queue is needed, but every depth scans the whole database; this is only fast enough for
+     * small databases, which can be generated when a solver starts rather than read from a file.
+     * @param solvedPuzzle - The solved puzzle state, which is the only state at depth 0.
+     * @return {@code true} if the database was populated successfully, {@code false} if the move table couldn't be loaded.
+     */
+    public boolean populateFromMoveTable(ITwistyPuzzle solvedPuzzle) {
+        if (!loadMoveTable()) {
+            return false;
+        }
+
+        setNumberOfMoves(getDatabaseIndex(solvedPuzzle), (byte) 0);
+        for (byte depth = 0; !isFull(); depth++) {
+            boolean expanded = false;
+
+            for (int index = 0; index < databaseSize; index++) {
+                if (database.get(index) == depth) {
+                    for (int m = 0; m < moveTable.moveCount; m++) {
+                        setNumberOfMoves(moveTable.getChildIndex(index, m), (byte) (depth + 1));
+                    }
+                    expanded = true;
+                }
+            }
+
+            // The remaining indices can't be reached from the solved state, so they would never be set
+            if (!expanded) {
+                System.err.println("Error populating database: not all indices are reachable");
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -130,7 +283,7 @@ public abstract class PatternDatabase {
      * @return {@code true} if the database is full, {@code false} if there are still unset entries.
      */
     boolean isFull() {
-        return entriesSet == database.length;
+        return entriesSet == databaseSize;
     }
 
 
@@ -145,6 +298,19 @@ public abstract class PatternDatabase {
      */
     protected abstract int getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException;
 
+    /**
+     * Get the path of the move table file of the database, relative to the databases directory.
+     * Databases which only differ in the cubies they look at should use the same file.
+     * @return The path of the move table file (ending in .mtb).
+     */
+    protected abstract String getMoveTablePath();
+
+    /**
+     * Generate the move table of the database (see {@link MoveTable#generateCubieTable} and {@link MoveTable#generatePositionTable}).
+     * @return The generated move table.
+     */
+    protected abstract MoveTable generateMoveTable();
+
     
     /**
      * Calculate the Lehmer rank of a full/partial permutation of cubie indices.
@@ -152,55 +318,56 @@ public abstract class PatternDatabase {
      * @return The base 10 value of the Lehmer code for the given permutation.
      */
     protected int calculateLehmerRank(byte[] perm) {
-        int[] lehmerCode = new int[k];
-        BitSet seen = new BitSet(n);
-
-        // The first digit of the Lehmer code is the first digit of the permutation
-        lehmerCode[0] = perm[0];
-        // Set the bit corresponding to the first digit as seen
-        seen.set(n - 1 - perm[0], true);
-
-
-        for (int i = 1; i < k; i++) {
-            // Set the bit corresponding to the digit as seen
-            seen.set(n - 1 - perm[i], true);
-            
-            // Count the number of digits that have been seen
-            // (count the number of ones to the left of the current digit when in binary)
-            int onesCount = binaryOnesTable[(int) (seen.toLongArray()[0] >> (n - perm[i]))];
+        return ranker.rank(perm);
+    }
 
-            // The Lehmer code is the digit minus the number of digits that have been seen
-            lehmerCode[i] = perm[i] - onesCount;
-        }
+    /**
+     * Calculate the Lehmer rank of a permutation of cubie indices picked out of a table, without copying it into an array
+     * (see {@link PermutationRanker#rank(byte[], byte[], int)}).
+     * @param table - The table to pick the cubie indices from.
+     * @param selection - The index in the table of each cubie index of the permutation.
+     * @param shift - The amount added to each cubie index picked from the table.
+     * @return The Lehmer rank of the permutation.
+     */
+    protected int calculateLehmerRank(byte[] table, byte[] selection, int shift) {
+        return ranker.rank(table, selection, shift);
+    }
 
-        int lehmerRank = 0;
+    /**
+     * Get the ranker which calculates the Lehmer ranks of the database's permutations of cubie indices,
+     * which can also turn a rank back into its permutation.
+     * @return The permutation ranker of the database.
+     */
+    public PermutationRanker getPermutationRanker() {
+        return ranker;
+    }
 
-        // Calculate the rank of the Lehmer code by coverting to base-10
-        for (int i = 0; i < k; i++) {
-            lehmerRank += lehmerCode[i] * factorialsTable[i];
-        }
 
-        return lehmerRank;
+    /**
+     * Get the storage of the entries of the database, which is {@code null} until the database is populated or read.
+     * @return The storage of the database.
+     */
+    DatabaseStorage getStorage() {
+        return database;
     }
 
-
     /**
-     * Write the pattern database to a file.
-     * @param path - The name of the file to write the database to (should end in .pdb).
+     * Write the pattern database to a file, modulo 3 if the storage mode keeps databases modulo 3, or packed with
+     * 4 bits per entry if it packs databases (see {@link StorageMode}).
+     * @param dirname - The directory to write the file to, relative to the databases directory (ending in /).
+     * @param filename - The name of the file to write the database to (should end in .pdb).
+     * @param mode - The storage mode which gives the format of the file (its fold factor and mapping are ignored).
      */
-    protected void writeDatabaseToFile(String dirname, String filename) {
+    protected void writeDatabaseToFile(String dirname, String filename, StorageMode mode) {
         try {
-            final String DATABASES_PATH = "TwistyPuzzleSolvers/databases/";
-
-            // Create the file and directories if they don't exist
-            new File(DATABASES_PATH + dirname).mkdirs();
-            File databaseFile = new File(DATABASES_PATH + dirname + filename);
-            databaseFile.createNewFile();
-
-            // Write the database to the file
-            FileOutputStream outStream = new FileOutputStream(databaseFile, false);
-            outStream.write(database);
-            outStream.close();
+            DatabaseStorage storage = database;
+            if (mode.isModulo() && !moduloStorage) {
+                storage = ModuloStorage.pack(database);
+            }
+            else if (mode.isPacked() && !moduloStorage && !(database instanceof NibbleStorage)) {
+                storage = NibbleStorage.pack(database);
+            }
+            writeStorageToFile(storage, dirname, filename);
         }
         catch (Exception e) {
             System.err.println("Error writing database to file:");
@@ -209,24 +376,116 @@ public abstract class PatternDatabase {
     }
 
     /**
-     * Read the pattern database from a file.
+     * Write the entries of a storage of the database to a file, in the storage's file format.
+     * @param storage - The storage to write.
+     * @param dirname - The directory to write the file to, relative to the databases directory (ending in /).
+     * @param filename - The name of the file to write the storage to (should end in .pdb).
+     * @throws IOException if the file can't be written.
+     */
+    void writeStorageToFile(DatabaseStorage storage, String dirname, String filename) throws IOException {
+        final String DATABASES_PATH = "TwistyPuzzleSolvers/databases/";
+
+        // Create the file and directories if they don't exist
+        new File(DATABASES_PATH + dirname).mkdirs();
+        File databaseFile = new File(DATABASES_PATH + dirname + filename);
+        databaseFile.createNewFile();
+
+        // Write the database to the file
+        try (FileOutputStream outStream = new FileOutputStream(databaseFile, false)) {
+            storage.writeTo(outStream);
+        }
+    }
+
+    /**
+     * Get the path of the folded file of a database (see {@link StorageMode#getFoldFactor}), which is next to its full file.
+     * @param path - The path of the full database file (ending in .pdb).
+     * @param factor - The number of entries folded into one.
+     * @return The path of the folded database file.
+     */
+    public static String getFoldedPath(String path, int factor) {
+        return path.replaceFirst("\\.pdb$", "") + "_fold" + factor + ".pdb";
+    }
+
+    /**
+     * Read the pattern database from a file onto the heap, in the format of the file (see {@link StorageMode#DEFAULT}).
      * @param path - The path to read the database from.
      * @return {@code true} if the database was read successfully, {@code false} if an error occurred.
      */
     public boolean readDatabaseFromFile(String path) {
+        return readDatabaseFromFile(path, StorageMode.DEFAULT);
+    }
+
+    /**
+     * Read the pattern database from a file, or map the file into memory if the storage mode maps database files.
+     * The format of the file (one byte, 4 bits or 2 bits modulo 3 per entry) is told apart by its size.
+     * @param path - The path to read the database from.
+     * @param mode - How the database is kept in memory (see {@link StorageMode}). The move table of the database is
+     *  loaded if it is kept modulo 3, as it is needed to decode the entries.
+     * @return {@code true} if the database was read successfully, {@code false} if an error occurred.
+     */
+    public boolean readDatabaseFromFile(String path, StorageMode mode) {
         final String DATABASES_PATH = "TwistyPuzzleSolvers/databases/";
         File databaseFile = new File(DATABASES_PATH + path);
+        int factor = mode.getFoldFactor();
+        if (factor > 1) {
+            return readFoldedDatabaseFromFile(databaseFile, new File(DATABASES_PATH + getFoldedPath(path, factor)), factor, mode.isMapped());
+        }
 
-        try (FileInputStream in = new FileInputStream(databaseFile)) {
-            // If the file size (number of bytes) does not match the database size (number of entries, each 1 byte)
-            if (databaseFile.length() != database.length) {
-                System.err.println("Error reading database from file: file size does not match database size");
+        // The file has one byte per entry, or is packed with 4 bits or 2 bits per entry (tiny databases are never packed)
+        long fileLength = databaseFile.length();
+        boolean packedFile = (fileLength != databaseSize && fileLength == NibbleStorage.getPackedLength(databaseSize));
+        boolean moduloFile = (fileLength != databaseSize && !packedFile && fileLength == ModuloStorage.getPackedLength(databaseSize));
+        if (fileLength != databaseSize && !packedFile && !moduloFile) {
+            System.err.println("Error reading database from file: file size does not match database size");
+            return false;
+        }
+
+        // Entries kept modulo 3 are decoded with the move table
+        boolean modulo = moduloFile || mode.isModulo();
+        if (modulo && !loadMoveTable()) {
+            System.err.println("Error reading database from file: a database kept modulo 3 needs its move table");
+            return false;
+        }
+
+        if (mode.isMapped() || (modulo && !moduloFile)) {
+            try {
+                if (moduloFile) {
+                    database = ModuloStorage.map(databaseFile, databaseSize);
+                }
+                else {
+                    DatabaseStorage mapped = packedFile ? NibbleStorage.map(databaseFile, databaseSize) : MappedStorage.map(databaseFile);
+                    // Full entries are reduced modulo 3 straight from the mapping
+                    database = modulo ? ModuloStorage.pack(mapped) : mapped;
+                }
+                moduloStorage = modulo;
+                entriesSet = databaseSize;
+                return true;
+            }
+            catch (Exception e) {
+                System.err.println("Error mapping database file:");
+                e.printStackTrace();
                 return false;
             }
+        }
 
-            // Read the file into the database array
-            in.read(database);
-            entriesSet = database.length;
+        try (FileInputStream in = new FileInputStream(databaseFile)) {
+            if (moduloFile) {
+                database = ModuloStorage.read(in, databaseSize);
+            }
+            else if (packedFile) {
+                database = NibbleStorage.read(in, databaseSize);
+            }
+            else if (mode.isPacked()) {
+                database = NibbleStorage.readUnpacked(in, databaseSize);
+            }
+            else {
+                // Read the file into the database array
+                ArrayStorage storage = new ArrayStorage(databaseSize);
+                storage.readFrom(in);
+                database = storage;
+            }
+            moduloStorage = moduloFile;
+            entriesSet = databaseSize;
             return true;
         }
         catch (Exception e) {
@@ -235,4 +494,52 @@ public abstract class PatternDatabase {
             return false;
         }
     }
+
+    /**
+     * Read the pattern database folded (see {@link StorageMode#getFoldFactor}) from its folded file, or fold it from its full
+     * file if it has no folded file yet.
+     * @param databaseFile - The full database file, with one byte or 4 bits per entry.
+     * @param foldedFile - The folded database file.
+     * @param factor - The number of entries folded into one.
+     * @param mapped - Whether the folded file is mapped into memory rather than read onto the heap.
+     * @return {@code true} if the database was read successfully, {@code false} if an error occurred.
+     */
+    private boolean readFoldedDatabaseFromFile(File databaseFile, File foldedFile, int factor, boolean mapped) {
+        try {
+            if (foldedFile.length() == FoldedStorage.getFoldedLength(databaseSize, factor)) {
+                if (mapped) {
+                    database = FoldedStorage.map(foldedFile, databaseSize, factor);
+                }
+                else {
+                    try (FileInputStream in = new FileInputStream(foldedFile)) {
+                        database = FoldedStorage.read(in, databaseSize, factor);
+                    }
+                }
+            }
+            else {
+                // Entries kept modulo 3 can't be folded without decoding them
+                long fileLength = databaseFile.length();
+                DatabaseStorage full;
+                if (fileLength == databaseSize) {
+                    full = MappedStorage.map(databaseFile);
+                }
+                else if (fileLength == NibbleStorage.getPackedLength(databaseSize)) {
+                    full = NibbleStorage.map(databaseFile, databaseSize);
+                }
+                else {
+                    System.err.println("Error reading database from file: file size does not match database size");
+                    return false;
+                }
+                database = FoldedStorage.fold(full, factor);
+            }
+            moduloStorage = false;
+            entriesSet = databaseSize;
+            return true;
+        }
+        catch (Exception e) {
+            System.err.println("Error reading folded database from file:");
+            e.printStackTrace();
+            return false;
+        }
+    }
 }
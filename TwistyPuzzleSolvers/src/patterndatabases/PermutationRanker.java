@@ -0,0 +1,257 @@
+package patterndatabases;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ranks and unranks partial permutations of k of n elements, and the orientations of the cubies they describe.
+ * <p>
+ * Permutations are ranked by their Lehmer code, so the ranks follow the lexicographical ordering of the permutations:
+ * the i-th digit of the code is the number of elements smaller than the i-th element which haven't been picked yet,
+ * and has a weight of (n - 1 - i)! / (n - k)!. Picked elements are kept as a bitmask, and the number of picked elements
+ * smaller than an element is looked up in a table of the number of ones in each bitmask, so neither direction allocates.
+ * <p>
+ * Rankers only depend on n and k, so they are shared between all databases of the same shape (see {@link #getInstance}).
+ * Ranks are ints as long as the number of permutations fits in an int; larger shapes are ranked with {@link #rankLong},
+ * and refuse to be ranked or unranked with ints.
+ */
+public final class PermutationRanker {
+
+    /**
+     * The largest number of elements in a permutation (the 20 kubies of a Kilominx), which keeps the table of the number
+     * of ones in each bitmask at 2^19 bytes, and every number of permutations within a long.
+     */
+    public static final int MAX_ELEMENTS = 20;
+
+    // The rankers which have been created, by n and k
+    private static final Map<Integer, PermutationRanker> rankers = new HashMap<Integer, PermutationRanker>();
+
+    private final int n, k;
+    private final long permutationCount;
+    // Whether every rank fits in an int, so the permutations can be ranked and unranked with ints
+    private final boolean intRanks;
+    // The weight of each digit of the Lehmer code (as ints, which are only used if every rank fits in an int, and as longs)
+    private final int[] weights;
+    private final long[] longWeights;
+    // The number of ones in the binary representation of each bitmask of the elements smaller than the largest element
+    private final byte[] binaryOnesTable;
+
+    /**
+     * Constructor for a PermutationRanker.
+     * @param n - The number of elements in the permutation.
+     * @param k - The number of elements picked in the partial permutation.
+     */
+    private PermutationRanker(int n, int k) {
+        this.n = n;
+        this.k = k;
+
+        // The weight of the last digit is 1, and each digit before it can take one more value than the digit after it
+        weights = new int[k];
+        longWeights = new long[k];
+        long weight = 1;
+        for (int i = k - 1; i >= 0; i--) {
+            weights[i] = (int) weight;
+            longWeights[i] = weight;
+            weight *= n - i;
+        }
+        permutationCount = weight;
+        intRanks = (permutationCount <= Integer.MAX_VALUE);
+
+        // A bitmask of the picked elements smaller than an element never includes the largest element
+        binaryOnesTable = new byte[1 << (n - 1)];
+        for (int i = 1; i < binaryOnesTable.length; i++) {
+            binaryOnesTable[i] = (byte) (binaryOnesTable[i >> 1] + (i & 1));
+        }
+    }
+
+    /**
+     * Get the ranker for partial permutations of k of n elements, creating it if it hasn't been used yet.
+     * @param n - The number of elements in the permutation (at most {@link #MAX_ELEMENTS}).
+     * @param k - The number of elements picked in the partial permutation.
+     * @return The ranker for the given n and k.
+     * @throws IllegalArgumentException if k is not between 1 and n, or n is more than {@link #MAX_ELEMENTS}.
+     */
+    public static synchronized PermutationRanker getInstance(int n, int k) throws IllegalArgumentException {
+        // 20! is less than Long.MAX_VALUE, so the number of permutations of any allowed size fits in a long
+        if (k < 1 || k > n || n > MAX_ELEMENTS) {
+            throw new IllegalArgumentException("Invalid permutation size: " + k + " of " + n);
+        }
+
+        return rankers.computeIfAbsent((n << 8) | k, key -> new PermutationRanker(n, k));
+    }
+
+    /**
+     * Get the number of partial permutations, which is one more than the largest rank.
+     * @return n! / (n - k)!
+     * @throws IllegalStateException if the number of permutations doesn't fit in an int (see {@link #getLongPermutationCount}).
+     */
+    public int getPermutationCount() throws IllegalStateException {
+        checkIntRanks();
+        return (int) permutationCount;
+    }
+
+    /**
+     * Check that every rank fits in an int, before the permutations are ranked or unranked with ints.
+     * @throws IllegalStateException if the number of permutations doesn't fit in an int.
+     */
+    private void checkIntRanks() throws IllegalStateException {
+        if (!intRanks) {
+            throw new IllegalStateException("Too many permutations for int ranks: " + k + " of " + n);
+        }
+    }
+
+    /**
+     * Get the number of partial permutations, which is one more than the largest rank, for any n and k.
+     * @return n! / (n - k)!
+     */
+    public long getLongPermutationCount() {
+        return permutationCount;
+    }
+
+    /**
+     * Calculate the Lehmer rank of a partial permutation, as a long (for any n and k, as in {@link #rank}).
+     * @param permutation - The first k elements of the permutation (each between 0 and n - 1, with no repeats).
+     * @return The rank of the permutation, between 0 and {@link #getLongPermutationCount()} - 1.
+     */
+    public long rankLong(byte[] permutation) {
+        long rank = 0;
+        int picked = 0;
+
+        for (int i = 0; i < k; i++) {
+            int element = permutation[i];
+            int digit = element - binaryOnesTable[picked & ((1 << element) - 1)];
+            rank += digit * longWeights[i];
+            picked |= 1 << element;
+        }
+
+        return rank;
+    }
+
+    /**
+     * Calculate the Lehmer rank of a partial permutation picked out of a table, as a long (as in {@link #rankLong(byte[])}),
+     * without copying the permutation into an array of its own. The i-th element of the permutation is
+     * {@code table[selection[i]] + shift}, e.g. the positions of a set of cubies in a table of the position of every cubie.
+     * @param table - The table to pick the elements of the permutation from.
+     * @param selection - The index in the table of each of the first k elements of the permutation.
+     * @param shift - The amount added to each element picked from the table.
+     * @return The rank of the permutation, between 0 and {@link #getLongPermutationCount()} - 1.
+     */
+    public long rankLong(byte[] table, byte[] selection, int shift) {
+        long rank = 0;
+        int picked = 0;
+
+        for (int i = 0; i < k; i++) {
+            int element = table[selection[i]] + shift;
+            int digit = element - binaryOnesTable[picked & ((1 << element) - 1)];
+            rank += digit * longWeights[i];
+            picked |= 1 << element;
+        }
+
+        return rank;
+    }
+
+    /**
+     * Calculate the Lehmer rank of a partial permutation (only if the number of permutations fits in an int).
+     * @param permutation - The first k elements of the permutation (each between 0 and n - 1, with no repeats).
+     * @return The rank of the permutation, between 0 and {@link #getPermutationCount()} - 1.
+     * @throws IllegalStateException if the number of permutations doesn't fit in an int.
+     */
+    public int rank(byte[] permutation) throws IllegalStateException {
+        checkIntRanks();
+        int rank = 0;
+        int picked = 0;
+
+        for (int i = 0; i < k; i++) {
+            int element = permutation[i];
+            // The digit is the element, minus the number of smaller elements which have already been picked
+            int digit = element - binaryOnesTable[picked & ((1 << element) - 1)];
+            rank += digit * weights[i];
+            picked |= 1 << element;
+        }
+
+        return rank;
+    }
+
+    /**
+     * Calculate the Lehmer rank of a partial permutation picked out of a table (as in {@link #rankLong(byte[], byte[], int)},
+     * only if the number of permutations fits in an int).
+     * @param table - The table to pick the elements of the permutation from.
+     * @param selection - The index in the table of each of the first k elements of the permutation.
+     * @param shift - The amount added to each element picked from the table.
+     * @return The rank of the permutation, between 0 and {@link #getPermutationCount()} - 1.
+     * @throws IllegalStateException if the number of permutations doesn't fit in an int.
+     */
+    public int rank(byte[] table, byte[] selection, int shift) throws IllegalStateException {
+        checkIntRanks();
+        int rank = 0;
+        int picked = 0;
+
+        for (int i = 0; i < k; i++) {
+            int element = table[selection[i]] + shift;
+            int digit = element - binaryOnesTable[picked & ((1 << element) - 1)];
+            rank += digit * weights[i];
+            picked |= 1 << element;
+        }
+
+        return rank;
+    }
+
+    /**
+     * Calculate the partial permutation with a Lehmer rank (the inverse of {@link #rank}, only if the number of permutations fits in an int).
+     * @param rank - The rank of the permutation, between 0 and {@link #getPermutationCount()} - 1.
+     * @param permutation - The array to store the first k elements of the permutation in.
+     * @throws IllegalStateException if the number of permutations doesn't fit in an int.
+     */
+    public void unrank(int rank, byte[] permutation) throws IllegalStateException {
+        checkIntRanks();
+        // The elements which haven't been picked yet
+        int unpicked = (1 << n) - 1;
+
+        for (int i = 0; i < k; i++) {
+            int digit = rank / weights[i];
+            rank -= digit * weights[i];
+
+            // The element is the (digit + 1)-th smallest element which hasn't been picked yet
+            int remaining = unpicked;
+            for (int j = 0; j < digit; j++) {
+                remaining &= remaining - 1;
+            }
+            int element = Integer.numberOfTrailingZeros(remaining);
+
+            permutation[i] = (byte) element;
+            unpicked &= ~(1 << element);
+        }
+    }
+
+
+    /**
+     * Calculate the rank of a set of orientations, by using the orientations as the digits of a base-radix number
+     * (with the first orientation as the most significant digit).
+     * @param orientations - The orientations to rank.
+     * @param count - The number of orientations to use.
+     * @param radix - The number of orientations of each cubie.
+     * @return The rank of the orientations, between 0 and radix^count - 1.
+     */
+    public static int rankOrientations(byte[] orientations, int count, int radix) {
+        int rank = 0;
+        for (int i = 0; i < count; i++) {
+            rank = rank * radix + orientations[i];
+        }
+        return rank;
+    }
+
+    /**
+     * Calculate the orientations with a rank (the inverse of {@link #rankOrientations}).
+     * @param rank - The rank of the orientations, between 0 and radix^count - 1.
+     * @param orientations - The array to store the orientations in.
+     * @param count - The number of orientations to calculate.
+     * @param radix - The number of orientations of each cubie.
+     */
+    public static void unrankOrientations(int rank, byte[] orientations, int count, int radix) {
+        for (int i = count - 1; i >= 0; i--) {
+            int quotient = rank / radix;
+            orientations[i] = (byte) (rank - quotient * radix);
+            rank = quotient;
+        }
+    }
+}
@@ -4,10 +4,14 @@ import models.Cube;
 import models.Kilominx;
 import models.ITwistyPuzzle;
 import models.IMoveController.IMove;
+import models.MovePruningAutomaton;
 import patterndatabases.cube.CornerPatternDatabase;
 import patterndatabases.cube.FirstEdgePatternDatabase;
+import patterndatabases.cube.LargeFirstEdgePatternDatabase;
+import patterndatabases.cube.LargeSecondEdgePatternDatabase;
 import patterndatabases.cube.SecondEdgePatternDatabase;
 import patterndatabases.kilominx.FaceKubiesPatternDatabase;
+import patterndatabases.kilominx.LargeFaceKubiesPatternDatabase;
 import patterndatabases.kilominx.SparseKubiesPatternDatabase;
 import java.time.Duration;
 import java.util.ArrayDeque;
@@ -16,29 +20,87 @@ import java.util.regex.Pattern;
 
 /**
  * This class contains methods to populate the pattern databases for the Rubik's Cube and Kilominx.
- * Usage: java PopulatePatternDatabases [cube-corners | cube-first-edges | cube-second-edges | kilominx-face-# (with # = 1-12) | kilominx-sparse-# (with # = 1-5)]
+ * Usage: java PopulatePatternDatabases [pack] DATABASE [packed | modulo], or java PopulatePatternDatabases fold DATABASE FACTOR...,
+ * with DATABASE = [cube-corners | cube-first-edges | cube-second-edges | kilominx-face-# (with # = 1-12) | kilominx-sparse-# (with # = 1-5)],
+ * or java PopulatePatternDatabases LARGE_DATABASE, with LARGE_DATABASE = [cube-large-first-edges | cube-large-second-edges | kilominx-large-face-# (with # = 1-12)],
+ * or java PopulatePatternDatabases automata, which generates the move pruning automata of both puzzles (see {@link MovePruningAutomaton}).
+ * The database is written with 4 bits per entry if "packed" is given, or modulo 3 with 2 bits per entry if "modulo" is given
+ * (see {@link StorageMode}), and "pack" packs the existing file of the database rather than populating it (with 4 bits per entry
+ * unless "modulo" is given). "fold" writes a folded file of the existing database for each fold factor (see {@link StorageMode#getFoldFactor}),
+ * and reports how much of the mean heuristic each factor loses.
+ * Large databases (see {@link LongPatternDatabase}) are always written with 4 bits per entry, and are populated into direct
+ * buffers with a frontier search over their indices (see {@link #frontierSearch}), so the JVM needs a
+ * {@code -XX:MaxDirectMemorySize} of at least half their number of entries in bytes.
  */
 public class PopulatePatternDatabases {
+
+    private static final String USAGE = "Usage: java PopulatePatternDatabases [pack | fold] [cube-corners | cube-first-edges | cube-second-edges | kilominx-face-# (with # = 1-12) | kilominx-sparse-# (with # = 1-5)] [packed | modulo | FACTOR...]\n" +
+                                        "   or: java PopulatePatternDatabases [cube-large-first-edges | cube-large-second-edges | kilominx-large-face-# (with # = 1-12)]\n" +
+                                        "   or: java PopulatePatternDatabases automata";
+
+    // Whether the existing database file is packed, rather than the database being populated
+    private static boolean packExisting = false;
+    // The factors the existing database file is folded by, rather than the database being populated (or null)
+    private static int[] foldFactors = null;
+    // How the existing database file is read, and the format the database is written in
+    private static StorageMode storageMode = StorageMode.DEFAULT;
     
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.err.println("Usage: java PopulatePatternDatabases [cube-corners | cube-first-edges | cube-second-edges | kilominx-face-# (with # = 1-12) | kilominx-sparse-# (with # = 1-5)]");
+        // The move pruning automata are generated ahead of time, rather than when a search first needs them
+        if (args.length == 1 && args[0].equals("automata")) {
+            generateAutomata();
+            return;
+        }
+
+        int nameArg = (args.length > 0 && (args[0].equals("pack") || args[0].equals("fold"))) ? 1 : 0;
+        if (args.length <= nameArg) {
+            System.err.println(USAGE);
             System.exit(1);
         }
+        packExisting = args[0].equals("pack");
+        if (args[0].equals("fold")) {
+            if (args.length < 3) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            foldFactors = new int[args.length - 2];
+            for (int i = 0; i < foldFactors.length; i++) {
+                foldFactors[i] = Integer.valueOf(args[i + 2]);
+            }
+            // The full database is only read to fold it, so it doesn't have to fit on the heap
+            storageMode = new StorageMode(true, false, false, 1);
+        }
+        else {
+            // An existing file is packed as it is read, unless it is reduced modulo 3
+            String format = (args.length > nameArg + 1) ? args[nameArg + 1] : "";
+            boolean modulo = format.equals("modulo");
+            storageMode = new StorageMode(false, !modulo && (packExisting || format.equals("packed")), modulo, 1);
+        }
+        String name = args[nameArg];
 
         Pattern facePdbPattern = Pattern.compile("^kilominx-face-([1-9]|1[0-2])$");
-        Matcher facePdbMatcher = facePdbPattern.matcher(args[0]);
+        Matcher facePdbMatcher = facePdbPattern.matcher(name);
 
         Pattern sparsePdbPattern = Pattern.compile("^kilominx-sparse-([1-5])$");
-        Matcher sparsePdbMatcher = sparsePdbPattern.matcher(args[0]);
+        Matcher sparsePdbMatcher = sparsePdbPattern.matcher(name);
 
-        if (args[0].equals("cube-corners")) {
+        Pattern largeFacePdbPattern = Pattern.compile("^kilominx-large-face-([1-9]|1[0-2])$");
+        Matcher largeFacePdbMatcher = largeFacePdbPattern.matcher(name);
+        boolean large = name.startsWith("cube-large-") || largeFacePdbMatcher.matches();
+
+        // Large databases have no other formats, and can't be packed or folded
+        if (large && (nameArg > 0 || args.length > 1)) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        if (name.equals("cube-corners")) {
             populateCornerDatabase();
         }
-        else if (args[0].equals("cube-first-edges")) {
+        else if (name.equals("cube-first-edges")) {
             populateFirstEdgeDatabase();
         }
-        else if (args[0].equals("cube-second-edges")) {
+        else if (name.equals("cube-second-edges")) {
             populateSecondEdgeDatabase();
         }
         else if (facePdbMatcher.matches()) {
@@ -49,50 +111,147 @@ public class PopulatePatternDatabases {
             int setNo = Integer.valueOf(sparsePdbMatcher.group(1));
             populateSparseKubiesDatabase(setNo);
         }
+        else if (name.equals("cube-large-first-edges")) {
+            populateLargeDatabase(new Cube(), new LargeFirstEdgePatternDatabase(), "cube/", "large_first_edges.pdb", "large first edge");
+        }
+        else if (name.equals("cube-large-second-edges")) {
+            populateLargeDatabase(new Cube(), new LargeSecondEdgePatternDatabase(), "cube/", "large_second_edges.pdb", "large second edge");
+        }
+        else if (largeFacePdbMatcher.matches()) {
+            int setNo = Integer.valueOf(largeFacePdbMatcher.group(1));
+            populateLargeDatabase(new Kilominx(), new LargeFaceKubiesPatternDatabase(setNo), "kilominx/", "large_face_kubies_" + setNo + ".pdb", "large face " + setNo);
+        }
         else {
-            System.err.println("Usage: java PopulatePatternDatabases [cube-corners | cube-first-edges | cube-second-edges | kilominx-face-# (with # = 1-12) | kilominx-sparse-# (with # = 1-5)]");
+            System.err.println(USAGE);
             System.exit(1);
         }
     }
 
 
+    /**
+     * Populate a pattern database and write it to its file, or pack its existing file if only packing (the file is read
+     * packed, and written back packed), or fold its existing file if folding (see {@link #foldDatabase}).
+     * @param puzzle - The initial (solved) puzzle state to search from.
+     * @param database - The pattern database to populate.
+     * @param dirname - The directory of the database file, relative to the databases directory (ending in /).
+     * @param filename - The name of the database file.
+     * @param description - The description of the database in progress messages.
+     */
+    private static void populateDatabase(ITwistyPuzzle puzzle, PatternDatabase database, String dirname, String filename, String description) {
+        if (foldFactors != null) {
+            foldDatabase(database, dirname, filename, description);
+            return;
+        }
+        if (packExisting) {
+            System.out.println("Packing " + description + " database...");
+            if (!database.readDatabaseFromFile(dirname + filename, storageMode)) {
+                System.exit(1);
+            }
+            database.writeDatabaseToFile(dirname, filename, storageMode);
+            System.out.println(description.substring(0, 1).toUpperCase() + description.substring(1) + " database packed.\n");
+            return;
+        }
+
+        System.out.println("Populating " + description + " database...");
+        iterativeDeepeningDepthFirstSearch(puzzle, database);
+        database.writeDatabaseToFile(dirname, filename, storageMode);
+        System.out.println(description.substring(0, 1).toUpperCase() + description.substring(1) + " database populated.\n");
+    }
+
+    /**
+     * Populate a large pattern database with a frontier search over its indices (see {@link #frontierSearch}),
+     * and write it to its file (see {@link LongPatternDatabase}).
+     * @param puzzle - The initial (solved) puzzle state to search from.
+     * @param database - The large pattern database to populate.
+     * @param dirname - The directory of the database file, relative to the databases directory (ending in /).
+     * @param filename - The name of the database file.
+     * @param description - The description of the database in progress messages.
+     */
+    private static void populateLargeDatabase(ITwistyPuzzle puzzle, LongPatternDatabase database, String dirname, String filename, String description) {
+        System.out.println("Populating " + description + " database...");
+        frontierSearch(puzzle, database);
+        database.writeDatabaseToFile(dirname, filename);
+        System.out.println(description.substring(0, 1).toUpperCase() + description.substring(1) + " database populated.\n");
+    }
+
+    /**
+     * Write a folded file of an existing pattern database for each fold factor (see {@link StorageMode#getFoldFactor}),
+     * and print the mean heuristic of the full and folded databases over all states of the pattern, and how much of it
+     * each fold factor loses.
+     * @param database - The pattern database to fold, which is read from its file.
+     * @param dirname - The directory of the database file, relative to the databases directory (ending in /).
+     * @param filename - The name of the database file.
+     * @param description - The description of the database in progress messages.
+     */
+    private static void foldDatabase(PatternDatabase database, String dirname, String filename, String description) {
+        System.out.println("Folding " + description + " database...");
+        if (!database.readDatabaseFromFile(dirname + filename, storageMode)) {
+            System.exit(1);
+        }
+        DatabaseStorage storage = database.getStorage();
+        if (storage instanceof ModuloStorage) {
+            System.err.println("A database kept modulo 3 can't be folded.");
+            System.exit(1);
+        }
+
+        long sum = 0;
+        for (int index = 0; index < storage.size(); index++) {
+            sum += storage.get(index);
+        }
+        double fullMean = (double) sum / storage.size();
+        System.out.printf("Full:     %10.1f MB, mean heuristic %.4f%n", storage.size() / 1e6, fullMean);
+
+        for (int factor : foldFactors) {
+            FoldedStorage folded = FoldedStorage.fold(storage, factor);
+            String foldedFilename = PatternDatabase.getFoldedPath(filename, factor);
+            try {
+                database.writeStorageToFile(folded, dirname, foldedFilename);
+            }
+            catch (Exception e) {
+                System.err.println("Error writing folded database to file:");
+                e.printStackTrace();
+                System.exit(1);
+            }
+            double foldedMean = folded.getMeanEntry();
+            System.out.printf("Fold %-4d %10.1f MB, mean heuristic %.4f, loss %.4f (%.2f%%) -> %s%n", factor,
+                              FoldedStorage.getFoldedLength(storage.size(), factor) / 1e6, foldedMean, fullMean - foldedMean,
+                              100 * (fullMean - foldedMean) / fullMean, foldedFilename);
+        }
+        System.out.println(description.substring(0, 1).toUpperCase() + description.substring(1) + " database folded.\n");
+    }
+
+    /**
+     * Generate the move pruning automata of the Rubik's Cube and the Kilominx, and write them to their files
+     * (or read them, if their files already exist).
+     */
+    private static void generateAutomata() {
+        for (ITwistyPuzzle puzzle : new ITwistyPuzzle[] {new Cube(), new Kilominx()}) {
+            MovePruningAutomaton pruningAutomaton = puzzle.getMoveController().getPruningAutomaton();
+            MovePruningAutomaton optimalSequenceAutomaton = puzzle.getMoveController().getOptimalSequenceAutomaton();
+            System.out.println(puzzle.getClass().getSimpleName() + ": " + pruningAutomaton.getNumberOfStates() + " pruning states, " +
+                               optimalSequenceAutomaton.getNumberOfStates() + " optimal sequence states.");
+        }
+    }
+
     /**
      * Populate the corner pattern database for the Rubik's Cube.
      */
     private static void populateCornerDatabase() {
-        Cube cube = new Cube();
-        CornerPatternDatabase cornerPDB = new CornerPatternDatabase();
-        System.out.println("Populating corner database...");
-
-        iterativeDeepeningDepthFirstSearch(cube, cornerPDB);
-        cornerPDB.writeDatabaseToFile("cube/", "corners.pdb");
-        System.out.println("Corner database populated.");
+        populateDatabase(new Cube(), new CornerPatternDatabase(), "cube/", "corners.pdb", "corner");
     }
 
     /**
      * Populate the first edge pattern database for the Rubik's Cube.
      */
     private static void populateFirstEdgeDatabase() {
-        Cube cube = new Cube();
-        FirstEdgePatternDatabase firstEdgePDB = new FirstEdgePatternDatabase();
-        System.out.println("Populating first edge database...");
-
-        iterativeDeepeningDepthFirstSearch(cube, firstEdgePDB);
-        firstEdgePDB.writeDatabaseToFile("cube/", "first_edges.pdb");
-        System.out.println("First edge database populated.\n");
+        populateDatabase(new Cube(), new FirstEdgePatternDatabase(), "cube/", "first_edges.pdb", "first edge");
     }
 
     /**
      * Populate the second edge pattern database.
      */
     private static void populateSecondEdgeDatabase() {
-        Cube cube = new Cube();
-        SecondEdgePatternDatabase secondEdgePDB = new SecondEdgePatternDatabase();
-        System.out.println("Populating second edge database...");
-
-        iterativeDeepeningDepthFirstSearch(cube, secondEdgePDB);
-        secondEdgePDB.writeDatabaseToFile("cube/", "second_edges.pdb");
-        System.out.println("Second edge database populated.\n");
+        populateDatabase(new Cube(), new SecondEdgePatternDatabase(), "cube/", "second_edges.pdb", "second edge");
     }
 
 
@@ -107,13 +266,7 @@ public class PopulatePatternDatabases {
             throw new IllegalArgumentException("The set number must be between 1 and 12.");
         }
 
-        Kilominx kilominx = new Kilominx();
-        FaceKubiesPatternDatabase facePDB = new FaceKubiesPatternDatabase(setNo);
-        System.out.println("Populating face " + setNo + " database...");
-
-        iterativeDeepeningDepthFirstSearch(kilominx, facePDB);
-        facePDB.writeDatabaseToFile("kilominx/", "face_kubies_" + setNo + ".pdb");
-        System.out.println("Face " + setNo + " database populated.\n");
+        populateDatabase(new Kilominx(), new FaceKubiesPatternDatabase(setNo), "kilominx/", "face_kubies_" + setNo + ".pdb", "face " + setNo);
     }
 
     /**
@@ -127,34 +280,51 @@ public class PopulatePatternDatabases {
             throw new IllegalArgumentException("The set number must be between 1 and 5.");
         }
 
-        Kilominx kilominx = new Kilominx();
-        SparseKubiesPatternDatabase sparsePDB = new SparseKubiesPatternDatabase(setNo);
-        System.out.println("Populating sparse " + setNo + " database...");
-    
-        iterativeDeepeningDepthFirstSearch(kilominx, sparsePDB);
-        sparsePDB.writeDatabaseToFile("kilominx/", "sparse_kubies_" + setNo + ".pdb");
-        System.out.println("Sparse " + setNo + " database populated.\n");
+        populateDatabase(new Kilominx(), new SparseKubiesPatternDatabase(setNo), "kilominx/", "sparse_kubies_" + setNo + ".pdb", "sparse " + setNo);
     }
 
 
     /**
      * A node in the iterative-deepening depth-first search tree.
-     * Contains the puzzle state, move used to get to the node, and the depth of the node.
+     * Contains the puzzle state, the state of the move pruning automaton after the moves used to get to the node, and the depth of the node.
      */
     private static class IDDFSNode {
         ITwistyPuzzle puzzle;
-        IMove move;
+        int automatonState;
         byte depth;
 
         /**
          * Constructor for an IDDFSNode.
          * @param puzzle - The puzzle state of the node.
-         * @param move - The move used to get to the node.
+         * @param automatonState - The state of the move pruning automaton after the moves used to get to the node.
          * @param depth - The depth of the node.
          */
-        public IDDFSNode(ITwistyPuzzle puzzle, IMove move, byte depth) {
+        public IDDFSNode(ITwistyPuzzle puzzle, int automatonState, byte depth) {
             this.puzzle = puzzle;
-            this.move = move;
+            this.automatonState = automatonState;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * A node in the iterative-deepening depth-first search tree of database indices (see {@link #indexedDepthFirstSearch}).
+     * Contains the database index of the node's puzzle state, the state of the move pruning automaton after the moves used
+     * to get to the node, and the depth of the node.
+     */
+    private static class IndexedNode {
+        int index;
+        int automatonState;
+        byte depth;
+
+        /**
+         * Constructor for an IndexedNode.
+         * @param index - The database index of the node.
+         * @param automatonState - The state of the move pruning automaton after the moves used to get to the node.
+         * @param depth - The depth of the node.
+         */
+        public IndexedNode(int index, int automatonState, byte depth) {
+            this.index = index;
+            this.automatonState = automatonState;
             this.depth = depth;
         }
     }
@@ -162,13 +332,21 @@ public class PopulatePatternDatabases {
     /**
      * Perform an iterative-deepening depth-first search to populate a pattern database.
      * The method should be used for most pattern databases, as it is more memory efficient than breadth-first search.
+     * If the move table of the database can be loaded, the search walks the database indices directly (see {@link #indexedDepthFirstSearch}).
      * @param puzzle - The initial (solved) puzzle state to search from.
      * @param database - The pattern database to populate.
      */
     private static void iterativeDeepeningDepthFirstSearch(ITwistyPuzzle puzzle, PatternDatabase database) {
+        if (database.loadMoveTable()) {
+            indexedDepthFirstSearch(puzzle, database);
+            return;
+        }
+
         // Use a deque as a stack for nodes
         ArrayDeque<IDDFSNode> nodeStack = new ArrayDeque<IDDFSNode>();
         IDDFSNode currentNode;
+        IMove[] moves = puzzle.getMoveController().getMoves();
+        MovePruningAutomaton automaton = puzzle.getMoveController().getPruningAutomaton();
 
         // Additional variables for search stats
         int currentDepth = 0;
@@ -191,16 +369,18 @@ public class PopulatePatternDatabases {
                 currentDepth++;
 
                 // Push the root node onto the stack
-                nodeStack.addFirst(new IDDFSNode(puzzle, null, (byte) 0));
+                nodeStack.addFirst(new IDDFSNode(puzzle, MovePruningAutomaton.INITIAL_STATE, (byte) 0));
             }
 
             // Pop node off top of stack
             currentNode = nodeStack.removeFirst();
 
             // Iterate over all possible moves from the current node
-            for (IMove move : puzzle.getMoveController().getMoves()) {
-                // If at the root node or the move shouldn't be skipped
-                if (currentNode.depth == 0 || !puzzle.getMoveController().skipMove(move, currentNode.move)) {
+            for (IMove move : moves) {
+                int nextAutomatonState = automaton.nextState(currentNode.automatonState, move.ordinal());
+
+                // If the move doesn't make the move sequence redundant
+                if (nextAutomatonState != MovePruningAutomaton.DEAD_STATE) {
 
                     // Create a copy of the current puzzle state
                     ITwistyPuzzle puzzleCopy = currentNode.puzzle.copy();
@@ -226,7 +406,188 @@ public class PopulatePatternDatabases {
                         }
                     }
                     else {
-                        nodeStack.addFirst(new IDDFSNode(puzzleCopy, move, puzzleCopyDepth));
+                        nodeStack.addFirst(new IDDFSNode(puzzleCopy, nextAutomatonState, puzzleCopyDepth));
+                    }
+                }
+            }
+        }
+        dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+        System.out.println("Iterative-deepening depth-first search complete. " +
+                           "Indexed " + statesIndexed + " states. " +
+                           "Elapsed time: " + String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()));
+    }
+
+    /**
+     * Populate a large pattern database (see {@link LongPatternDatabase}) with a breadth-first search over its indices, where
+     * each depth is a sweep over the whole database for the entries set at the previous depth (the frontier), as in
+     * {@link PatternDatabase#populateFromMoveTable}. Large databases have no move tables, so the children of each index are
+     * found by unranking its permutation and moving it with the moves of the cubies (see {@link LongPatternDatabase#generateCubieMoves}).
+     * The entries of a permutation are adjacent, so the permutation is only unranked and moved once for all of its orientations.
+     * No puzzle is copied or moved, and no queue or stack is needed beyond the 4-bit entries themselves.
+     * @param puzzle - The initial (solved) puzzle state to search from.
+     * @param database - The large pattern database to populate.
+     */
+    private static void frontierSearch(ITwistyPuzzle puzzle, LongPatternDatabase database) {
+        CubieMoves cubieMoves = database.generateCubieMoves();
+        PermutationRanker ranker = database.getPermutationRanker();
+        int k = database.getNumberOfCubies();
+        int radix = cubieMoves.radix;
+        int moveCount = cubieMoves.destinations.length;
+        int permutationCount = ranker.getPermutationCount();
+        int orientationCount = (int) (database.getDatabaseSize() / permutationCount);
+
+        // The orientation reached by adding each twist to each orientation, digit by digit (as in MoveTable.generateCubieTable)
+        short[] orientationTable = new short[orientationCount * orientationCount];
+        byte[] orientations = new byte[k];
+        byte[] twistDigits = new byte[k];
+        byte[] movedOrientations = new byte[k];
+        for (int orientation = 0; orientation < orientationCount; orientation++) {
+            PermutationRanker.unrankOrientations(orientation, orientations, k, radix);
+            for (int twist = 0; twist < orientationCount; twist++) {
+                PermutationRanker.unrankOrientations(twist, twistDigits, k, radix);
+                for (int i = 0; i < k; i++) {
+                    movedOrientations[i] = (byte) ((orientations[i] + twistDigits[i]) % radix);
+                }
+                orientationTable[orientation * orientationCount + twist] = (short) PermutationRanker.rankOrientations(movedOrientations, k, radix);
+            }
+        }
+
+        byte[] permutation = new byte[k];
+        byte[] movedPermutation = new byte[k];
+        long[] movedBases = new long[moveCount];
+        int[] movedTwists = new int[moveCount];
+
+        // Additional variables for search stats
+        long statesIndexed = 0;
+        long startTime = System.currentTimeMillis();
+        Duration dur;
+
+        // Set the number of moves in the database to solve the initial state to 0
+        database.setNumberOfMoves(database.getDatabaseIndex(puzzle), (byte) 0);
+        statesIndexed++;
+
+        for (byte depth = 0; !database.isFull(); depth++) {
+            byte childDepth = (byte) (depth + 1);
+            boolean expanded = false;
+
+            for (int rank = 0; rank < permutationCount; rank++) {
+                long base = (long) rank * orientationCount;
+                boolean moved = false;
+
+                for (int orientation = 0; orientation < orientationCount; orientation++) {
+                    if (database.getNumberOfMoves(base + orientation) != depth) {
+                        continue;
+                    }
+
+                    // Move the permutation once, the first time one of its orientations is on the frontier
+                    if (!moved) {
+                        ranker.unrank(rank, permutation);
+                        for (int m = 0; m < moveCount; m++) {
+                            int twist = 0;
+                            for (int i = 0; i < k; i++) {
+                                movedPermutation[i] = cubieMoves.destinations[m][permutation[i]];
+                                twist = twist * radix + cubieMoves.twists[m][permutation[i]];
+                            }
+                            movedBases[m] = (long) ranker.rank(movedPermutation) * orientationCount;
+                            movedTwists[m] = twist;
+                        }
+                        moved = true;
+                    }
+
+                    int orientationBase = orientation * orientationCount;
+                    for (int m = 0; m < moveCount; m++) {
+                        if (database.setNumberOfMoves(movedBases[m] + orientationTable[orientationBase + movedTwists[m]], childDepth)) {
+                            statesIndexed++;
+                        }
+                    }
+                    expanded = true;
+                }
+            }
+
+            dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+            System.out.println("Frontier search: finished depth " + childDepth + " after " +
+                               String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()) + ". Indexed " + statesIndexed + " states.");
+
+            // The remaining indices can't be reached from the solved state, so they would never be set
+            if (!expanded) {
+                System.err.println("Error populating database: not all indices are reachable");
+                System.exit(1);
+            }
+        }
+        dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+        System.out.println("Frontier search complete. " +
+                           "Indexed " + statesIndexed + " states. " +
+                           "Elapsed time: " + String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()));
+    }
+
+    /**
+     * Perform an iterative-deepening depth-first search to populate a pattern database, where each node is only the database
+     * index of its puzzle state, and the index of each child is found with the move table of the database. This finds the same
+     * depths as searching the puzzle states, as the moves from a state only depend on the cubies the database looks at,
+     * but no puzzle is copied or moved during the search.
+     * @param puzzle - The initial (solved) puzzle state to search from.
+     * @param database - The pattern database to populate (with its move table loaded).
+     */
+    private static void indexedDepthFirstSearch(ITwistyPuzzle puzzle, PatternDatabase database) {
+        // Use a deque as a stack for nodes
+        ArrayDeque<IndexedNode> nodeStack = new ArrayDeque<IndexedNode>();
+        IndexedNode currentNode;
+        IMove[] moves = puzzle.getMoveController().getMoves();
+        MovePruningAutomaton automaton = puzzle.getMoveController().getPruningAutomaton();
+        int rootIndex = database.getDatabaseIndex(puzzle);
+
+        // Additional variables for search stats
+        int currentDepth = 0;
+        int statesIndexed = 0;
+        long startTime = System.currentTimeMillis();
+        Duration dur;
+
+        // Set the number of moves in the database to solve the initial state to 0
+        database.setNumberOfMoves(rootIndex, (byte) 0);
+        statesIndexed++;
+
+        // Keep searching nodes until database is full
+        while (!database.isFull()) {
+
+            // If depth level is complete
+            if (nodeStack.isEmpty()) {
+                dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+                System.out.println("IDDFS: finished depth " + currentDepth + " after " + 
+                                   String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()) + ". Indexed " + statesIndexed + " states.");
+                currentDepth++;
+
+                // Push the root node onto the stack
+                nodeStack.addFirst(new IndexedNode(rootIndex, MovePruningAutomaton.INITIAL_STATE, (byte) 0));
+            }
+
+            // Pop node off top of stack
+            currentNode = nodeStack.removeFirst();
+
+            // Iterate over all possible moves from the current node
+            for (IMove move : moves) {
+                int nextAutomatonState = automaton.nextState(currentNode.automatonState, move.ordinal());
+
+                // If the move doesn't make the move sequence redundant
+                if (nextAutomatonState != MovePruningAutomaton.DEAD_STATE) {
+                    int childIndex = database.getChildIndex(currentNode.index, move.ordinal());
+                    byte childDepth = (byte) (currentNode.depth + 1);
+
+                    // If the puzzle state has been encountered at an earlier depth, skip it
+                    if (database.getNumberOfMoves(childIndex) < childDepth) {
+                        continue;
+                    }
+
+                    // Index states at the depth limit; otherwise, add them to the stack
+                    if (childDepth == currentDepth) {
+                        if (database.setNumberOfMoves(childIndex, childDepth)) {
+                            statesIndexed++;
+                            dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+                            System.out.print("states indexed: " + statesIndexed + 
+                                             ", time elapsed: " + String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()) + "\r");
+                        }
+                    }
+                    else {
+                        nodeStack.addFirst(new IndexedNode(childIndex, nextAutomatonState, childDepth));
                     }
                 }
             }
@@ -236,5 +597,4 @@ public class PopulatePatternDatabases {
                            "Indexed " + statesIndexed + " states. " +
                            "Elapsed time: " + String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()));
     }
-    
 }
@@ -0,0 +1,104 @@
+package patterndatabases;
+
+/**
+ * How pattern databases are kept in memory when they are read from their files, and the format they are written in
+ * (see {@link PatternDatabase#readDatabaseFromFile(String, StorageMode)} and {@link PatternDatabase#writeDatabaseToFile}).
+ * <p>
+ * Database files are either mapped into memory or read onto the heap (see {@link MappedStorage}). Databases are kept with a
+ * byte per entry, packed with 4 bits per entry (see {@link NibbleStorage}), modulo 3 with 2 bits per entry (see {@link ModuloStorage}),
+ * or folded, keeping the smallest entry of each group of adjacent entries (see {@link FoldedStorage}). A database is only kept
+ * in one of these formats, so a storage mode which asks for more than one of them is rejected rather than picking one.
+ */
+public final class StorageMode {
+
+    /**
+     * The storage mode which reads databases onto the heap with a byte per entry (or in the format of their files), and
+     * writes them with a byte per entry.
+     */
+    public static final StorageMode DEFAULT = new StorageMode(false, false, false, 1);
+
+    private final boolean mapped;
+    private final boolean packed;
+    private final boolean modulo;
+    private final int foldFactor;
+
+    /**
+     * Constructor for a storage mode.
+     * @param mapped - Whether database files are mapped into memory rather than read onto the heap. Mapped databases take
+     *  no heap space, are shared through the page cache by every process which maps them, and are only read from disk as
+     *  they are looked up.
+     * @param packed - Whether databases are packed with 4 bits per entry: files with one byte per entry are packed as they
+     *  are read onto the heap, and databases are packed when they are written. Packed files are always read (or mapped) packed.
+     * @param modulo - Whether databases only keep their entries modulo 3, in 2 bits per entry: files with full entries are
+     *  reduced modulo 3 as they are read (through a mapping of the file, so the full entries are never held on the heap),
+     *  and databases are written modulo 3. Files kept modulo 3 are always read (or mapped) modulo 3.
+     *  Batches of children which are looked up with the number of moves of their parent are decoded cheaply, but every
+     *  other lookup walks to the solved state, so this should only be used by searches which track the database values
+     *  of each node (see {@code PuzzleSolver.getNumberOfDatabaseValues}). Solvers refuse to make dual lookups in such
+     *  databases, as the inverse of a state has no parent to decode it from (see {@code PuzzleSolver.setDualLookups}).
+     * @param foldFactor - The number of adjacent entries folded into one when databases are read, keeping the smallest
+     *  entry of each group (1 to read databases without folding). A database is read from its folded file if there is one
+     *  (see {@link PatternDatabase#getFoldedPath}), and is otherwise folded from its full file (through a mapping of the
+     *  file, so the full entries are never held on the heap).
+     * @throws IllegalArgumentException if the fold factor is less than 1, or more than one of packing, keeping entries
+     *  modulo 3 and folding is asked for (folded entries keep a byte each, as the smallest entries of adjacent states
+     *  aren't within one move of each other), or mapped databases are also packed (mapped files are never packed, as
+     *  packing them would read them onto the heap).
+     */
+    public StorageMode(boolean mapped, boolean packed, boolean modulo, int foldFactor) throws IllegalArgumentException {
+        if (foldFactor < 1) {
+            throw new IllegalArgumentException("The fold factor must be at least 1.");
+        }
+        if (packed && modulo) {
+            throw new IllegalArgumentException("Databases can't be both packed and kept modulo 3.");
+        }
+        if (foldFactor > 1 && (packed || modulo)) {
+            throw new IllegalArgumentException("Folded databases can't be packed or kept modulo 3.");
+        }
+        if (mapped && packed) {
+            throw new IllegalArgumentException("Mapped databases can't be packed as they are read.");
+        }
+        this.mapped = mapped;
+        this.packed = packed;
+        this.modulo = modulo;
+        this.foldFactor = foldFactor;
+    }
+
+    /**
+     * Check whether database files are mapped into memory rather than read onto the heap.
+     * @return {@code true} if database files are mapped.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Check whether databases are packed with 4 bits per entry.
+     * @return {@code true} if databases are packed.
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Check whether databases only keep their entries modulo 3.
+     * @return {@code true} if databases are kept modulo 3.
+     */
+    public boolean isModulo() {
+        return modulo;
+    }
+
+    /**
+     * Get the number of adjacent entries folded into one when databases are read.
+     * @return The fold factor (1 if databases aren't folded).
+     */
+    public int getFoldFactor() {
+        return foldFactor;
+    }
+
+    @Override
+    public String toString() {
+        return (mapped ? "mapped" : "heap") + (packed ? ", packed" : "") + (modulo ? ", modulo 3" : "") +
+               ((foldFactor > 1) ? ", folded by " + foldFactor : "");
+    }
+}
@@ -0,0 +1,64 @@
+package patterndatabases.cube;
+
+import patterndatabases.MoveTable;
+import patterndatabases.PatternDatabase;
+import models.Cube;
+import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
+
+/**
+ * The pattern database for the orientations of the corner cubies of a Rubik's Cube (ignoring their positions).
+ * The database is small enough to stay in the cache, so it is populated when the solver starts (see {@link PatternDatabase#populateFromMoveTable}).
+ * @see PatternDatabase
+ */
+public class CornerOrientationPatternDatabase extends PatternDatabase {
+
+    // For this database, we are only looking at the orientations of the 8 corners, so there is a single permutation (n=1 and k=1)
+    // There are 3^7 (7 of 8 corners can be in one of 3 states (the 8th is fixed)) = 2187 possible states
+    // Also note that roughly 2KB storage needed (2187 bytes / 1024 = ~2KB)
+    final static int DATABASE_SIZE = 2187;
+    final static byte N = 1, K = 1;
+
+    /**
+     * Constructor for the corner orientation pattern database.
+     * Sets the database size to 2187, n to 1, and k to 1.
+     */
+    public CornerOrientationPatternDatabase() {
+        super(DATABASE_SIZE, N, K);
+    }
+
+    protected int getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
+        if (!(puzzle instanceof Cube)) {
+            throw new IllegalArgumentException("The puzzle must be a Cube.");
+        }
+        Cube cube = (Cube) puzzle;
+
+        // The orientations are used as base-3, and converted to base-10 (the orientation of the last corner is fixed by the other corners)
+        byte[] cornerOrientations = cube.getCornerOrientations();
+        int orientationRank = 0;
+        for (int i = 0; i < 7; i++) {
+            orientationRank = orientationRank * 3 + cornerOrientations[i];
+        }
+        return orientationRank;
+    }
+
+    protected String getMoveTablePath() {
+        return "cube/corner_orientations.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        IMove[] moves = new Cube().getMoveController().getMoves();
+        byte[][] sources = new byte[moves.length][];
+        byte[][] twists = new byte[moves.length][];
+
+        // Making a move on a solved cube shows which position the corner in each position came from, and its new orientation
+        for (IMove move : moves) {
+            Cube cube = new Cube();
+            cube.getMoveController().makeMove(move);
+            sources[move.ordinal()] = cube.getCornerIndices();
+            twists[move.ordinal()] = cube.getCornerOrientations();
+        }
+
+        return MoveTable.generateOrientationTable(8, 3, sources, twists);
+    }
+}
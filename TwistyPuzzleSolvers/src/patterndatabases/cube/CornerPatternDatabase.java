@@ -1,8 +1,10 @@
 package patterndatabases.cube;
 
+import patterndatabases.MoveTable;
 import patterndatabases.PatternDatabase;
 import models.Cube;
 import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
 
 /**
  * The pattern database for the corner cubies of a Rubik's Cube.
@@ -51,4 +53,24 @@ public class CornerPatternDatabase extends PatternDatabase {
         // (2187 = 3^7)
         return indexRank * 2187 + orientationRank;
     }
+
+    protected String getMoveTablePath() {
+        return "cube/corners.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        IMove[] moves = new Cube().getMoveController().getMoves();
+        byte[][] sources = new byte[moves.length][];
+        byte[][] twists = new byte[moves.length][];
+
+        // Making a move on a solved cube shows which position the corner in each position came from, and its new orientation
+        for (IMove move : moves) {
+            Cube cube = new Cube();
+            cube.getMoveController().makeMove(move);
+            sources[move.ordinal()] = cube.getCornerIndices();
+            twists[move.ordinal()] = cube.getCornerOrientations();
+        }
+
+        return MoveTable.generatePositionTable(this, N, 3, sources, twists);
+    }
 }
@@ -0,0 +1,64 @@
+package patterndatabases.cube;
+
+import patterndatabases.MoveTable;
+import patterndatabases.PatternDatabase;
+import models.Cube;
+import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
+
+/**
+ * The pattern database for the orientations of the edge cubies of a Rubik's Cube (ignoring their positions).
+ * The database is small enough to stay in the cache, so it is populated when the solver starts (see {@link PatternDatabase#populateFromMoveTable}).
+ * @see PatternDatabase
+ */
+public class EdgeOrientationPatternDatabase extends PatternDatabase {
+
+    // For this database, we are only looking at the orientations of the 12 edges, so there is a single permutation (n=1 and k=1)
+    // There are 2^11 (11 of 12 edges can be in one of 2 states (the 12th is fixed)) = 2048 possible states
+    // Also note that roughly 2KB storage needed (2048 bytes / 1024 = 2KB)
+    final static int DATABASE_SIZE = 2048;
+    final static byte N = 1, K = 1;
+
+    /**
+     * Constructor for the edge orientation pattern database.
+     * Sets the database size to 2048, n to 1, and k to 1.
+     */
+    public EdgeOrientationPatternDatabase() {
+        super(DATABASE_SIZE, N, K);
+    }
+
+    protected int getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
+        if (!(puzzle instanceof Cube)) {
+            throw new IllegalArgumentException("The puzzle must be a Cube.");
+        }
+        Cube cube = (Cube) puzzle;
+
+        // The orientations are used as base-2, and converted to base-10 (the orientation of the last edge is fixed by the other edges)
+        byte[] edgeOrientations = cube.getEdgeOrientations();
+        int orientationRank = 0;
+        for (int i = 0; i < 11; i++) {
+            orientationRank = orientationRank * 2 + edgeOrientations[i];
+        }
+        return orientationRank;
+    }
+
+    protected String getMoveTablePath() {
+        return "cube/edge_orientations.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        IMove[] moves = new Cube().getMoveController().getMoves();
+        byte[][] sources = new byte[moves.length][];
+        byte[][] twists = new byte[moves.length][];
+
+        // Making a move on a solved cube shows which position the edge in each position came from, and its new orientation
+        for (IMove move : moves) {
+            Cube cube = new Cube();
+            cube.getMoveController().makeMove(move);
+            sources[move.ordinal()] = cube.getEdgeIndices();
+            twists[move.ordinal()] = cube.getEdgeOrientations();
+        }
+
+        return MoveTable.generateOrientationTable(12, 2, sources, twists);
+    }
+}
@@ -1,8 +1,11 @@
 package patterndatabases.cube;
 
+import patterndatabases.CubieMoves;
+import patterndatabases.MoveTable;
 import patterndatabases.PatternDatabase;
 import models.Cube;
 import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
 
 /**
  * The pattern database for the first 7 edge cubies of a Rubik's Cube.
@@ -69,4 +72,47 @@ public class FirstEdgePatternDatabase extends PatternDatabase {
         // (128 = 2^7)
         return indexRank * 128 + orientationRank;
     }
+
+    protected String getMoveTablePath() {
+        return "cube/edges.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        return generateEdgeMoveTable(this);
+    }
+
+    /**
+     * Generate the move table shared by both edge databases, which look at the positions and orientations of 7 of the 12 edges.
+     * @param database - The edge database the table is generated for.
+     * @return The generated move table.
+     */
+    static MoveTable generateEdgeMoveTable(PatternDatabase database) {
+        CubieMoves edgeMoves = generateEdgeMoves();
+        return MoveTable.generateCubieTable(database, N, K, edgeMoves.radix, edgeMoves.destinations, edgeMoves.twists);
+    }
+
+    /**
+     * Generate the moves of the cube in terms of the edge positions used by the edge database indices.
+     * @return The position each move takes the edge in each position to, and the flip it adds.
+     */
+    static CubieMoves generateEdgeMoves() {
+        IMove[] moves = new Cube().getMoveController().getMoves();
+        byte[][] destinations = new byte[moves.length][12];
+        byte[][] twists = new byte[moves.length][12];
+
+        // Making a move on a solved cube shows which position the edge in each position moves to, and the flip it gets there
+        for (IMove move : moves) {
+            Cube cube = new Cube();
+            cube.getMoveController().makeMove(move);
+            byte[] edgeIndices = cube.getEdgeIndices();
+            byte[] edgeOrientations = cube.getEdgeOrientations();
+
+            for (byte i = 0; i < 12; i++) {
+                destinations[move.ordinal()][edgeIndices[i]] = i;
+                twists[move.ordinal()][edgeIndices[i]] = edgeOrientations[i];
+            }
+        }
+
+        return new CubieMoves(2, destinations, twists);
+    }
 }
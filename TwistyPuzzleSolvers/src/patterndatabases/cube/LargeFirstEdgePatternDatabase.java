@@ -0,0 +1,68 @@
+package patterndatabases.cube;
+
+import patterndatabases.CubieMoves;
+import patterndatabases.LongPatternDatabase;
+import models.Cube;
+import models.ITwistyPuzzle;
+
+/**
+ * The pattern database for the first 8 edge cubies of a Rubik's Cube.
+ * It has too many entries to be indexed by an int, so it is a {@link LongPatternDatabase}.
+ * @see LongPatternDatabase
+ */
+public class LargeFirstEdgePatternDatabase extends LongPatternDatabase {
+
+    // For this database, we are looking at the first 8 edges out of 12, so n=12 and k=8
+    // There are 12(P)8 * 2^8 (8 of 12 edges; each of 8 edges can be in one of 2 states) = 5109350400 possible states
+    // Also note that roughly 2.4GB storage needed (5109350400 / 2 bytes / 1024^3 = ~2.4GB)
+    final static long DATABASE_SIZE = 5109350400L;
+    final static byte N = 12, K = 8;
+
+    // The edge cubies the database looks at
+    static final byte[] EDGES = {0, 1, 2, 3, 4, 5, 6, 7};
+
+    // The position and orientation of each edge cubie (see Cube.getEdgePositions), kept for each thread so that
+    // calculating an index doesn't allocate
+    private static final ThreadLocal<byte[][]> edgeTables = ThreadLocal.withInitial(() -> new byte[2][12]);
+
+    /**
+     * Constructor for the large first edge pattern database.
+     * Sets the database size to 5109350400, n to 12, and k to 8.
+     */
+    public LargeFirstEdgePatternDatabase() {
+        super(DATABASE_SIZE, N, K);
+    }
+
+    protected long getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
+        if (!(puzzle instanceof Cube)) {
+            throw new IllegalArgumentException("The puzzle must be a Cube.");
+        }
+        Cube cube = (Cube) puzzle;
+
+        // Get the position and orientation of each edge cubie from the cube
+        byte[][] edgeTable = edgeTables.get();
+        byte[] edgePositions = edgeTable[0], edgeOrientations = edgeTable[1];
+        cube.getEdgePositions(edgePositions, edgeOrientations);
+
+        // Calculate the rank of the positions of the first 8 edges (12(P)8 still fits in an int, but the index doesn't)
+        long indexRank = calculateLehmerRank(edgePositions, EDGES, 0);
+
+        // The orientation rank is calculated by using the orientations as base-2, and converting to base-10
+        int orientationRank =
+            edgeOrientations[EDGES[0]] * 128 +  // 2^7
+            edgeOrientations[EDGES[1]] * 64 +   // 2^6
+            edgeOrientations[EDGES[2]] * 32 +   // 2^5
+            edgeOrientations[EDGES[3]] * 16 +   // 2^4
+            edgeOrientations[EDGES[4]] * 8 +    // 2^3
+            edgeOrientations[EDGES[5]] * 4 +    // 2^2
+            edgeOrientations[EDGES[6]] * 2 +    // 2^1
+            edgeOrientations[EDGES[7]];         // 2^0
+
+        // (256 = 2^8)
+        return indexRank * 256 + orientationRank;
+    }
+
+    protected CubieMoves generateCubieMoves() {
+        return FirstEdgePatternDatabase.generateEdgeMoves();
+    }
+}
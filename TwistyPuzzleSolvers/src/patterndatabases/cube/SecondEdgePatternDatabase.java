@@ -1,5 +1,6 @@
 package patterndatabases.cube;
 
+import patterndatabases.MoveTable;
 import patterndatabases.PatternDatabase;
 import models.Cube;
 import models.ITwistyPuzzle;
@@ -69,4 +70,13 @@ public class SecondEdgePatternDatabase extends PatternDatabase {
         // (128 = 2^7)
         return indexRank * 128 + orientationRank;
     }
+
+    protected String getMoveTablePath() {
+        return "cube/edges.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        // The positions of the last 7 edges move in the same way as the first 7, so both databases share a table
+        return FirstEdgePatternDatabase.generateEdgeMoveTable(this);
+    }
 }
@@ -1,8 +1,11 @@
 package patterndatabases.kilominx;
 
+import patterndatabases.CubieMoves;
+import patterndatabases.MoveTable;
 import patterndatabases.PatternDatabase;
 import models.Kilominx;
 import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
 
 /**
  * The pattern database for the 5 kubies on a specified face of a Kilominx. (on faces U, F and L, kubie UFL is replaced by a kubie close to the other kubies on the face)
@@ -31,6 +34,10 @@ public class FaceKubiesPatternDatabase extends PatternDatabase {
     static final byte[] SET_11 = {Kilominx.KUBIE_MBM, Kilominx.KUBIE_BRD, Kilominx.KUBIE_BLD, Kilominx.KUBIE_DBL, Kilominx.KUBIE_DBR}; // down-back face
     static final byte[] SET_12 = {Kilominx.KUBIE_DFM, Kilominx.KUBIE_DFL, Kilominx.KUBIE_DBL, Kilominx.KUBIE_DFR, Kilominx.KUBIE_DBR}; // down face
 
+    // The position and orientation of each kubie (see Kilominx.getKubiePositions), kept for each thread so that
+    // calculating an index from a kilominx doesn't allocate (shared by all kilominx databases)
+    static final ThreadLocal<byte[][]> kubieTables = ThreadLocal.withInitial(() -> new byte[2][20]);
+
     // The set of kubies to look at (see above)
     byte[] set;
 
@@ -73,67 +80,97 @@ public class FaceKubiesPatternDatabase extends PatternDatabase {
         }
     }
 
+    /**
+     * Get the set of kubies the database looks at.
+     * @return A copy of the indices of the kubies in the set.
+     */
+    public byte[] getKubieSet() {
+        return set.clone();
+    }
+
     protected int getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
         if (!(puzzle instanceof Kilominx)) {
             throw new IllegalArgumentException("The puzzle must be a Kilominx.");
         }
         Kilominx kilominx = (Kilominx) puzzle;
-        
-        // Get the kubie indices and orientations from the kilominx
-        byte[] allKubieIndices = kilominx.getKubieIndices();
-        byte[] allKubieOrientations = kilominx.getKubieOrientations();
-
-        byte[] kubieIndices = new byte[5];
-        byte[] kubieOrientations = new byte[5];
-
-        // Iterate over kubies until the specific kubies on the face are found
-        int counter = 0;
-        for (byte i = 0; i < 20; i++) {
-            int kubieIndex = allKubieIndices[i];
-
-            if (kubieIndex == set[0]) {
-                kubieIndices[0] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[0] = allKubieOrientations[i];
-                counter++;
-            }
-            else if (kubieIndex == set[1]) {
-                kubieIndices[1] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[1] = allKubieOrientations[i];
-                counter++;
-            }
-            else if (kubieIndex == set[2]) {
-                kubieIndices[2] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[2] = allKubieOrientations[i];
-                counter++;
-            }
-            else if (kubieIndex == set[3]) {
-                kubieIndices[3] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[3] = allKubieOrientations[i];
-                counter++;
-            }
-            else if (kubieIndex == set[4]) {
-                kubieIndices[4] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[4] = allKubieOrientations[i];
-                counter++;
-            }
 
-            if (counter == 5) {
-                break;
-            }
-        }
+        // Get the position and orientation of each kubie from the kilominx
+        byte[][] kubieTable = kubieTables.get();
+        byte[] kubiePositions = kubieTable[0], kubieOrientations = kubieTable[1];
+        kilominx.getKubiePositions(kubiePositions, kubieOrientations);
 
-        // Calculate the rank of the kubie indices
-        int indexRank = calculateLehmerRank(kubieIndices);
+        return getDatabaseIndex(kubiePositions, kubieOrientations);
+    }
+
+    /**
+     * Calculate the database index from a table of the position and orientation of each kubie (see {@link Kilominx#getKubiePositions}).
+     * The table can be built once per kilominx state, and shared by the index calculations of all kilominx databases.
+     * No arrays are allocated, as this is calculated for every child the search looks the database up for.
+     * @param kubiePositions - The position of each kubie (indexed by kubie index).
+     * @param kubieOrientations - The orientation of each kubie (indexed by kubie index).
+     * @return The database index for the kubie positions and orientations.
+     */
+    public int getDatabaseIndex(byte[] kubiePositions, byte[] kubieOrientations) {
+        // Calculate the rank of the positions of the kubies in the set straight from the table, without copying them
+        // (UFL is fixed at position 0, so all positions are shifted down by 1)
+        int indexRank = calculateLehmerRank(kubiePositions, set, -1);
 
         // The orientation rank is calculated by using the orientations as base-3, and converting to base-10
         int orientationRank =
-            kubieOrientations[0] * 81 +   // 3^4
-            kubieOrientations[1] * 27 +   // 3^3
-            kubieOrientations[2] * 9 +    // 3^2
-            kubieOrientations[3] * 3 +    // 3^1
-            kubieOrientations[4];         // 3^0
+            kubieOrientations[set[0]] * 81 +   // 3^4
+            kubieOrientations[set[1]] * 27 +   // 3^3
+            kubieOrientations[set[2]] * 9 +    // 3^2
+            kubieOrientations[set[3]] * 3 +    // 3^1
+            kubieOrientations[set[4]];         // 3^0
         
         // (243 = 3^5)
         return indexRank * 243 + orientationRank;
     }
+
+    protected String getMoveTablePath() {
+        return "kilominx/face_kubies.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        return generateKubieMoveTable(this, K);
+    }
+
+    /**
+     * Generate the move table of a kilominx database which looks at the positions and orientations of k kubies.
+     * All kilominx databases with the same number of kubies share a table.
+     * @param database - The kilominx database the table is generated for.
+     * @param k - The number of kubies the database looks at.
+     * @return The generated move table.
+     */
+    static MoveTable generateKubieMoveTable(PatternDatabase database, int k) {
+        CubieMoves kubieMoves = generateKubieMoves();
+        return MoveTable.generateCubieTable(database, N, k, kubieMoves.radix, kubieMoves.destinations, kubieMoves.twists);
+    }
+
+    /**
+     * Generate the moves of the kilominx in terms of the kubie positions used by the database indices (with UFL fixed at position 0).
+     * @return The position each move takes the kubie in each position to, and the twist it adds.
+     */
+    static CubieMoves generateKubieMoves() {
+        IMove[] moves = new Kilominx().getMoveController().getMoves();
+        byte[][] destinations = new byte[moves.length][N];
+        byte[][] twists = new byte[moves.length][N];
+        byte[] kubiePositions = new byte[20];
+        byte[] kubieOrientations = new byte[20];
+
+        // Making a move on a solved kilominx shows which position the kubie in each position moves to, and the twist it gets
+        for (IMove move : moves) {
+            Kilominx kilominx = new Kilominx();
+            kilominx.getMoveController().makeMove(move);
+            kilominx.getKubiePositions(kubiePositions, kubieOrientations);
+
+            // UFL is fixed at position 0, so shift all positions down by 1 (as in the database indices)
+            for (int i = 1; i < 20; i++) {
+                destinations[move.ordinal()][i - 1] = (byte) (kubiePositions[i] - 1);
+                twists[move.ordinal()][i - 1] = kubieOrientations[i];
+            }
+        }
+
+        return new CubieMoves(3, destinations, twists);
+    }
 }
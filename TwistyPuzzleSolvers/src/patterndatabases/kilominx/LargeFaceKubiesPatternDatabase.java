@@ -0,0 +1,129 @@
+package patterndatabases.kilominx;
+
+import patterndatabases.CubieMoves;
+import patterndatabases.LongPatternDatabase;
+import models.Kilominx;
+import models.ITwistyPuzzle;
+
+/**
+ * The pattern database for the 5 kubies on a specified face of a Kilominx, and a 6th kubie next to the face
+ * (sharing an edge with one of the kubies on the face). The kubies on each face are the same as in {@link FaceKubiesPatternDatabase}.
+ * It has too many entries to be indexed by an int, so it is a {@link LongPatternDatabase}.
+ * @see LongPatternDatabase
+ */
+public class LargeFaceKubiesPatternDatabase extends LongPatternDatabase {
+
+    // For this database, we are looking at 6 out of 19 kubies (the 20th kubie is fixed), so n=19 and k=6
+    // There are 19(P)6 * 3^6 (6 of 19 kubies; each of 6 kubies can be in one of 3 orientations) = 14241044160 possible states
+    // Also note that roughly 6.6GB storage needed (14241044160 / 2 bytes / 1024^3 = ~6.6GB)
+    final static long DATABASE_SIZE = 14241044160L;
+    final static byte N = 19, K = 6;
+
+    // Kubie sets (the kubies of each face set of FaceKubiesPatternDatabase, then a kubie next to the face)
+    static final byte[] SET_1 =  {Kilominx.KUBIE_MBR, Kilominx.KUBIE_UBL, Kilominx.KUBIE_UFR, Kilominx.KUBIE_UBR, Kilominx.KUBIE_UBM, Kilominx.KUBIE_MFR}; // top face
+    static final byte[] SET_2 =  {Kilominx.KUBIE_DFL, Kilominx.KUBIE_UBL, Kilominx.KUBIE_MFL, Kilominx.KUBIE_MBL, Kilominx.KUBIE_FLD, Kilominx.KUBIE_UBM}; // left face
+    static final byte[] SET_3 =  {Kilominx.KUBIE_DFM, Kilominx.KUBIE_UFR, Kilominx.KUBIE_MFL, Kilominx.KUBIE_MFR, Kilominx.KUBIE_FMD, Kilominx.KUBIE_UBR}; // front face
+    static final byte[] SET_4 =  {Kilominx.KUBIE_UFR, Kilominx.KUBIE_UBR, Kilominx.KUBIE_MFR, Kilominx.KUBIE_MBR, Kilominx.KUBIE_FRD, Kilominx.KUBIE_UBM}; // right face
+    static final byte[] SET_5 =  {Kilominx.KUBIE_UBL, Kilominx.KUBIE_UBM, Kilominx.KUBIE_MBM, Kilominx.KUBIE_MBL, Kilominx.KUBIE_BLD, Kilominx.KUBIE_UBR}; // back-left face
+    static final byte[] SET_6 =  {Kilominx.KUBIE_UBR, Kilominx.KUBIE_UBM, Kilominx.KUBIE_MBR, Kilominx.KUBIE_MBM, Kilominx.KUBIE_BRD, Kilominx.KUBIE_UFR}; // back-right face
+    static final byte[] SET_7 =  {Kilominx.KUBIE_MFL, Kilominx.KUBIE_FMD, Kilominx.KUBIE_DFM, Kilominx.KUBIE_DFL, Kilominx.KUBIE_FLD, Kilominx.KUBIE_MFR}; // down-left face
+    static final byte[] SET_8 =  {Kilominx.KUBIE_MFR, Kilominx.KUBIE_FMD, Kilominx.KUBIE_FRD, Kilominx.KUBIE_DFM, Kilominx.KUBIE_DFR, Kilominx.KUBIE_UFR}; // down-right face
+    static final byte[] SET_9 =  {Kilominx.KUBIE_MBL, Kilominx.KUBIE_BLD, Kilominx.KUBIE_DFL, Kilominx.KUBIE_FLD, Kilominx.KUBIE_DBL, Kilominx.KUBIE_UBL}; // down-back-left face
+    static final byte[] SET_10 = {Kilominx.KUBIE_MBR, Kilominx.KUBIE_FRD, Kilominx.KUBIE_BRD, Kilominx.KUBIE_DFR, Kilominx.KUBIE_DBR, Kilominx.KUBIE_UBR}; // down-back-right face
+    static final byte[] SET_11 = {Kilominx.KUBIE_MBM, Kilominx.KUBIE_BRD, Kilominx.KUBIE_BLD, Kilominx.KUBIE_DBL, Kilominx.KUBIE_DBR, Kilominx.KUBIE_UBM}; // down-back face
+    static final byte[] SET_12 = {Kilominx.KUBIE_DFM, Kilominx.KUBIE_DFL, Kilominx.KUBIE_DBL, Kilominx.KUBIE_DFR, Kilominx.KUBIE_DBR, Kilominx.KUBIE_FRD}; // down face
+
+    // The set of kubies to look at (see above)
+    byte[] set;
+
+    /**
+     * Constructor for a large face kubies pattern database.
+     * Sets the database size to 14241044160, n to 19, and k to 6.
+     * @param setNo The set number of the kubies to look at (1-12)
+     * @throws IllegalArgumentException If the set number is not between 1 and 12
+     */
+    public LargeFaceKubiesPatternDatabase(int setNo) throws IllegalArgumentException {
+        super(DATABASE_SIZE, N, K);
+
+        switch (setNo) {
+            case 1:
+                set = SET_1; break;
+            case 2:
+                set = SET_2; break;
+            case 3:
+                set = SET_3; break;
+            case 4:
+                set = SET_4; break;
+            case 5:
+                set = SET_5; break;
+            case 6:
+                set = SET_6; break;
+            case 7:
+                set = SET_7; break;
+            case 8:
+                set = SET_8; break;
+            case 9:
+                set = SET_9; break;
+            case 10:
+                set = SET_10; break;
+            case 11:
+                set = SET_11; break;
+            case 12:
+                set = SET_12; break;
+            default:
+                throw new IllegalArgumentException("The set number must be between 1 and 12.");
+        }
+    }
+
+    /**
+     * Get the set of kubies the database looks at.
+     * @return A copy of the indices of the kubies in the set.
+     */
+    public byte[] getKubieSet() {
+        return set.clone();
+    }
+
+    protected long getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
+        if (!(puzzle instanceof Kilominx)) {
+            throw new IllegalArgumentException("The puzzle must be a Kilominx.");
+        }
+        Kilominx kilominx = (Kilominx) puzzle;
+
+        // Get the position and orientation of each kubie from the kilominx
+        byte[][] kubieTable = FaceKubiesPatternDatabase.kubieTables.get();
+        byte[] kubiePositions = kubieTable[0], kubieOrientations = kubieTable[1];
+        kilominx.getKubiePositions(kubiePositions, kubieOrientations);
+
+        return getDatabaseIndex(kubiePositions, kubieOrientations);
+    }
+
+    /**
+     * Calculate the database index from a table of the position and orientation of each kubie (see {@link Kilominx#getKubiePositions}).
+     * The table can be built once per kilominx state, and shared by the index calculations of all kilominx databases.
+     * No arrays are allocated, as this is calculated for every child the search looks the database up for.
+     * @param kubiePositions - The position of each kubie (indexed by kubie index).
+     * @param kubieOrientations - The orientation of each kubie (indexed by kubie index).
+     * @return The database index for the kubie positions and orientations.
+     */
+    public long getDatabaseIndex(byte[] kubiePositions, byte[] kubieOrientations) {
+        // Calculate the rank of the positions of the kubies in the set straight from the table, without copying them
+        // (UFL is fixed at position 0, so all positions are shifted down by 1; 19(P)6 still fits in an int, but the index doesn't)
+        long indexRank = calculateLehmerRank(kubiePositions, set, -1);
+
+        // The orientation rank is calculated by using the orientations as base-3, and converting to base-10
+        int orientationRank =
+            kubieOrientations[set[0]] * 243 +  // 3^5
+            kubieOrientations[set[1]] * 81 +   // 3^4
+            kubieOrientations[set[2]] * 27 +   // 3^3
+            kubieOrientations[set[3]] * 9 +    // 3^2
+            kubieOrientations[set[4]] * 3 +    // 3^1
+            kubieOrientations[set[5]];         // 3^0
+
+        // (729 = 3^6)
+        return indexRank * 729 + orientationRank;
+    }
+
+    protected CubieMoves generateCubieMoves() {
+        return FaceKubiesPatternDatabase.generateKubieMoves();
+    }
+}
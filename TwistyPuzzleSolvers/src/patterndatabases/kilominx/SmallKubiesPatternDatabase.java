@@ -0,0 +1,102 @@
+package patterndatabases.kilominx;
+
+import patterndatabases.MoveTable;
+import patterndatabases.PatternDatabase;
+import models.Kilominx;
+import models.ITwistyPuzzle;
+
+import java.util.Arrays;
+
+/**
+ * The pattern database for the first 3 kubies of a face set of a Kilominx (see {@link FaceKubiesPatternDatabase}).
+ * The database is small enough to stay in the cache, so it can be looked up before the large face databases to cut off
+ * states without a cache miss, and it is populated when the solver starts (see {@link PatternDatabase#populateFromMoveTable}).
+ * @see PatternDatabase
+ */
+public class SmallKubiesPatternDatabase extends PatternDatabase {
+
+    // For this database, we are looking at 3 out of 19 kubies (the 20th kubie is fixed), so n=19 and k=3
+    // There are 19(P)3 * 3^3 (3 of 19 kubies; each of 3 kubies can be in one of 3 orientations) = 156978 possible states
+    // Also note that roughly 153KB storage needed (156978 bytes / 1024 = ~153KB)
+    final static int DATABASE_SIZE = 156978;
+    final static byte N = 19, K = 3;
+
+    // The face sets the kubies are taken from
+    private static final byte[][] FACE_SETS = {
+        FaceKubiesPatternDatabase.SET_1, FaceKubiesPatternDatabase.SET_2, FaceKubiesPatternDatabase.SET_3,
+        FaceKubiesPatternDatabase.SET_4, FaceKubiesPatternDatabase.SET_5, FaceKubiesPatternDatabase.SET_6,
+        FaceKubiesPatternDatabase.SET_7, FaceKubiesPatternDatabase.SET_8, FaceKubiesPatternDatabase.SET_9,
+        FaceKubiesPatternDatabase.SET_10, FaceKubiesPatternDatabase.SET_11, FaceKubiesPatternDatabase.SET_12
+    };
+
+    // The set of kubies to look at (see above)
+    byte[] set;
+
+    /**
+     * Constructor for a small kubies pattern database.
+     * Sets the database size to 156978, n to 19, and k to 3.
+     * @param setNo The set number of the face kubies to take the first 3 kubies of (1-12)
+     * @throws IllegalArgumentException If the set number is not between 1 and 12
+     */
+    public SmallKubiesPatternDatabase(int setNo) throws IllegalArgumentException {
+        super(DATABASE_SIZE, N, K);
+
+        if (setNo < 1 || setNo > 12) {
+            throw new IllegalArgumentException("The set number must be between 1 and 12.");
+        }
+        set = Arrays.copyOf(FACE_SETS[setNo - 1], K);
+    }
+
+    /**
+     * Get the set of kubies the database looks at.
+     * @return A copy of the indices of the kubies in the set.
+     */
+    public byte[] getKubieSet() {
+        return set.clone();
+    }
+
+    protected int getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
+        if (!(puzzle instanceof Kilominx)) {
+            throw new IllegalArgumentException("The puzzle must be a Kilominx.");
+        }
+        Kilominx kilominx = (Kilominx) puzzle;
+
+        // Get the position and orientation of each kubie from the kilominx
+        byte[][] kubieTable = FaceKubiesPatternDatabase.kubieTables.get();
+        byte[] kubiePositions = kubieTable[0], kubieOrientations = kubieTable[1];
+        kilominx.getKubiePositions(kubiePositions, kubieOrientations);
+
+        return getDatabaseIndex(kubiePositions, kubieOrientations);
+    }
+
+    /**
+     * Calculate the database index from a table of the position and orientation of each kubie (see {@link Kilominx#getKubiePositions}).
+     * The table can be built once per kilominx state, and shared by the index calculations of all kilominx databases.
+     * No arrays are allocated, as this is calculated for every child the search looks the database up for.
+     * @param kubiePositions - The position of each kubie (indexed by kubie index).
+     * @param kubieOrientations - The orientation of each kubie (indexed by kubie index).
+     * @return The database index for the kubie positions and orientations.
+     */
+    public int getDatabaseIndex(byte[] kubiePositions, byte[] kubieOrientations) {
+        // Calculate the rank of the positions of the kubies in the set straight from the table, without copying them
+        // (UFL is fixed at position 0, so all positions are shifted down by 1)
+        int indexRank = calculateLehmerRank(kubiePositions, set, -1);
+
+        // The orientation rank is calculated by using the orientations as base-3, and converting to base-10
+        int orientationRank =
+            kubieOrientations[set[0]] * 9 +    // 3^2
+            kubieOrientations[set[1]] * 3 +    // 3^1
+            kubieOrientations[set[2]];         // 3^0
+
+        // (27 = 3^3)
+        return indexRank * 27 + orientationRank;
+    }
+
+    protected String getMoveTablePath() {
+        return "kilominx/small_kubies.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        return FaceKubiesPatternDatabase.generateKubieMoveTable(this, K);
+    }
+}
@@ -1,5 +1,6 @@
 package patterndatabases.kilominx;
 
+import patterndatabases.MoveTable;
 import patterndatabases.PatternDatabase;
 import models.Kilominx;
 import models.ITwistyPuzzle;
@@ -63,61 +64,57 @@ public class SparseKubiesPatternDatabase extends PatternDatabase {
         }
     }
 
+    /**
+     * Get the set of kubies the database looks at.
+     * @return A copy of the indices of the kubies in the set.
+     */
+    public byte[] getKubieSet() {
+        return set.clone();
+    }
+
     protected int getDatabaseIndex(ITwistyPuzzle puzzle) throws IllegalArgumentException {
         if (!(puzzle instanceof Kilominx)) {
             throw new IllegalArgumentException("The puzzle must be a Kilominx.");
         }
         Kilominx kilominx = (Kilominx) puzzle;
-        
-        // Get the kubie indices and orientations from the kilominx
-        byte[] allKubieIndices = kilominx.getKubieIndices();
-        byte[] allKubieOrientations = kilominx.getKubieOrientations();
-
-        byte[] kubieIndices = new byte[4];
-        byte[] kubieOrientations = new byte[4];
 
-        // Iterate over kubies until the specific kubies are found
-        int counter = 0;
-        for (byte i = 0; i < 20; i++) {
-            int kubieIndex = allKubieIndices[i];
+        // Get the position and orientation of each kubie from the kilominx
+        byte[][] kubieTable = FaceKubiesPatternDatabase.kubieTables.get();
+        byte[] kubiePositions = kubieTable[0], kubieOrientations = kubieTable[1];
+        kilominx.getKubiePositions(kubiePositions, kubieOrientations);
 
-            if (kubieIndex == set[0]) {
-                kubieIndices[0] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[0] = allKubieOrientations[i];
-                counter++;
-            }
-            else if (kubieIndex == set[1]) {
-                kubieIndices[1] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[1] = allKubieOrientations[i];
-                counter++;
-            }
-            else if (kubieIndex == set[2]) {
-                kubieIndices[2] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[2] = allKubieOrientations[i];
-                counter++;
-            }
-            else if (kubieIndex == set[3]) {
-                kubieIndices[3] = (byte)(i - 1); // UFL is fixed at position 0, so shift all indices down by 1
-                kubieOrientations[3] = allKubieOrientations[i];
-                counter++;
-            }
-
-            if (counter == 4) {
-                break;
-            }
-        }
+        return getDatabaseIndex(kubiePositions, kubieOrientations);
+    }
 
-        // Calculate the rank of the kubie indices
-        int indexRank = calculateLehmerRank(kubieIndices);
+    /**
+     * Calculate the database index from a table of the position and orientation of each kubie (see {@link Kilominx#getKubiePositions}).
+     * The table can be built once per kilominx state, and shared by the index calculations of all kilominx databases.
+     * No arrays are allocated, as this is calculated for every child the search looks the database up for.
+     * @param kubiePositions - The position of each kubie (indexed by kubie index).
+     * @param kubieOrientations - The orientation of each kubie (indexed by kubie index).
+     * @return The database index for the kubie positions and orientations.
+     */
+    public int getDatabaseIndex(byte[] kubiePositions, byte[] kubieOrientations) {
+        // Calculate the rank of the positions of the kubies in the set straight from the table, without copying them
+        // (UFL is fixed at position 0, so all positions are shifted down by 1)
+        int indexRank = calculateLehmerRank(kubiePositions, set, -1);
 
         // The orientation rank is calculated by using the orientations as base-3, and converting to base-10
         int orientationRank =
-            kubieOrientations[0] * 27 +   // 3^3
-            kubieOrientations[1] * 9 +    // 3^2
-            kubieOrientations[2] * 3 +    // 3^1
-            kubieOrientations[3];         // 3^0
+            kubieOrientations[set[0]] * 27 +   // 3^3
+            kubieOrientations[set[1]] * 9 +    // 3^2
+            kubieOrientations[set[2]] * 3 +    // 3^1
+            kubieOrientations[set[3]];         // 3^0
         
         // (81 = 3^4)
         return indexRank * 81 + orientationRank;
     }
+
+    protected String getMoveTablePath() {
+        return "kilominx/sparse_kubies.mtb";
+    }
+
+    protected MoveTable generateMoveTable() {
+        return FaceKubiesPatternDatabase.generateKubieMoveTable(this, K);
+    }
 }
@@ -0,0 +1,296 @@
+package solvers;
+
+import models.IMoveController;
+import models.IMoveController.IMove;
+import models.ITwistyPuzzle;
+import models.MovePruningAutomaton;
+
+import java.time.Duration;
+
+/**
+ * This class contains methods used to optimally solve short scrambles of a twisty puzzle with a bidirectional
+ * (meet-in-the-middle) search, which does not need any pattern databases.
+ * <p>
+ * A backward search from the solved state stores every puzzle state within the perimeter depth in a packed-state hash table,
+ * along with its distance from the solved state and the last move used to reach it. The forward search from the scrambled
+ * state then performs an iterative-deepening depth-first search, and probes the table at the leaves of each iteration.
+ * The backward half of the solution is recovered by repeatedly undoing the stored moves (using {@link IMove#getInverse}).
+ * <p>
+ * The perimeter table is generated the first time a puzzle is solved, and reused for all later puzzles of the same type.
+ */
+public class BidirectionalSolver {
+
+    ITwistyPuzzle puzzle;
+    final int perimeterDepth;
+    PerimeterTable perimeter = null;
+
+    /**
+     * An open-addressing hash table of packed puzzle states (see {@link ITwistyPuzzle#packState}),
+     * storing the distance of each state from the solved state and the index of the last move used to reach it.
+     */
+    private static class PerimeterTable {
+        // The table grows when it becomes half full
+        private long[] keys;
+        private byte[] distances;
+        private byte[] lastMoves;
+        private int size = 0;
+
+        /**
+         * Constructor for an empty PerimeterTable.
+         * @param capacity - The initial number of slots in the table (must be a power of two).
+         */
+        private PerimeterTable(int capacity) {
+            keys = new long[capacity * 2];
+            // A distance of 0 marks an empty slot, so distances are stored plus 1
+            distances = new byte[capacity];
+            lastMoves = new byte[capacity];
+        }
+
+        /**
+         * Find the slot of a packed state, or the empty slot where it would be inserted.
+         * @param first - The first long of the packed state.
+         * @param second - The second long of the packed state.
+         * @return The index of the slot.
+         */
+        private int slotOf(long first, long second) {
+            int mask = distances.length - 1;
+            long hash = first * 0x9E3779B97F4A7C15L + second;
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+
+            int slot = (int) hash & mask;
+            while (distances[slot] != 0 && (keys[slot * 2] != first || keys[slot * 2 + 1] != second)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Get the distance of a packed state from the solved state.
+         * @param packedState - The packed puzzle state.
+         * @return The distance of the state, or -1 if the state is not in the table.
+         */
+        private int getDistance(long[] packedState) {
+            return distances[slotOf(packedState[0], packedState[1])] - 1;
+        }
+
+        /**
+         * Get the index of the last move used to reach a packed state from the solved state.
+         * @param packedState - The packed puzzle state, which must be in the table.
+         * @return The index of the last move.
+         */
+        private int getLastMove(long[] packedState) {
+            return lastMoves[slotOf(packedState[0], packedState[1])];
+        }
+
+        /**
+         * Add a packed state to the table, or update its entry if it is already in the table at a greater distance.
+         * @param packedState - The packed puzzle state.
+         * @param distance - The distance of the state from the solved state.
+         * @param lastMove - The index of the last move used to reach the state.
+         */
+        private void put(long[] packedState, int distance, int lastMove) {
+            int slot = slotOf(packedState[0], packedState[1]);
+            if (distances[slot] == 0) {
+                keys[slot * 2] = packedState[0];
+                keys[slot * 2 + 1] = packedState[1];
+                size++;
+            }
+            else if (distances[slot] - 1 <= distance) {
+                return;
+            }
+            distances[slot] = (byte) (distance + 1);
+            lastMoves[slot] = (byte) lastMove;
+
+            if (size * 2 > distances.length) {
+                grow();
+            }
+        }
+
+        /**
+         * Double the number of slots in the table, and reinsert all entries.
+         */
+        private void grow() {
+            long[] oldKeys = keys;
+            byte[] oldDistances = distances, oldLastMoves = lastMoves;
+
+            keys = new long[oldKeys.length * 2];
+            distances = new byte[oldDistances.length * 2];
+            lastMoves = new byte[oldLastMoves.length * 2];
+
+            for (int i = 0; i < oldDistances.length; i++) {
+                if (oldDistances[i] != 0) {
+                    int slot = slotOf(oldKeys[i * 2], oldKeys[i * 2 + 1]);
+                    keys[slot * 2] = oldKeys[i * 2];
+                    keys[slot * 2 + 1] = oldKeys[i * 2 + 1];
+                    distances[slot] = oldDistances[i];
+                    lastMoves[slot] = oldLastMoves[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor for a BidirectionalSolver object.
+     * @param puzzle - The puzzle to solve.
+     * @param perimeterDepth - The depth of the backward search from the solved state. The perimeter table holds every
+     *  puzzle state within this depth (e.g. about 620,000 states for 5 moves on a Rubik's Cube, or 1,200,000 states for
+     *  4 moves on a Kilominx), and the forward search only has to reach the perimeter.
+     * @throws IllegalArgumentException if the perimeter depth is negative or greater than 8.
+     */
+    public BidirectionalSolver(ITwistyPuzzle puzzle, int perimeterDepth) throws IllegalArgumentException {
+        if (perimeterDepth < 0 || perimeterDepth > 8) {
+            throw new IllegalArgumentException("The perimeter depth must be between 0 and 8.");
+        }
+        this.puzzle = puzzle;
+        this.perimeterDepth = perimeterDepth;
+    }
+
+    /**
+     * Set the puzzle instance to solve. The puzzle must be the same type as the puzzle the solver was created with.
+     * @param puzzle - The puzzle to solve.
+     */
+    public void setPuzzleInstance(ITwistyPuzzle puzzle) {
+        this.puzzle = puzzle;
+    }
+
+    /**
+     * Perform a bidirectional search to find an optimal solution to the puzzle state.
+     * The search continues until a solution is found, so it should only be used for short scrambles.
+     * @return An array of moves which can be performed to solve the puzzle.
+     */
+    public IMove[] solve() {
+        return solve(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Perform a bidirectional search to find an optimal solution to the puzzle state, of at most a maximum number of moves.
+     * @param maxMoves - The maximum number of moves in the solution.
+     * @return An array of moves which can be performed to solve the puzzle,
+     *  or {@code null} if the puzzle can't be solved in the maximum number of moves.
+     */
+    public IMove[] solve(int maxMoves) {
+        if (perimeter == null) {
+            generatePerimeter();
+        }
+
+        ITwistyPuzzle puzzleCopy = puzzle.copy();
+        IMoveController moveController = puzzleCopy.getMoveController();
+        MovePruningAutomaton automaton = moveController.getPruningAutomaton();
+        long[] packedState = new long[2];
+        long startTime = System.currentTimeMillis();
+
+        for (int length = 0; length <= maxMoves; length++) {
+            int forwardDepth = Math.max(0, length - perimeterDepth);
+            IMove[] path = new IMove[length];
+
+            if (searchForward(puzzleCopy, moveController, automaton, MovePruningAutomaton.INITIAL_STATE,
+                              path, 0, forwardDepth, length - forwardDepth, packedState)) {
+                // Complete the solution by walking back from the meeting state to the solved state
+                for (int depth = forwardDepth; depth < length; depth++) {
+                    puzzleCopy.packState(packedState);
+                    path[depth] = moveController.getMoves()[perimeter.getLastMove(packedState)].getInverse();
+                    moveController.makeMove(path[depth]);
+                }
+
+                Duration dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+                System.out.println("Bidirectional: Solution found at depth " + length + " after " +
+                                   String.format("%02d:%02d.%03d", dur.toMinutesPart(), dur.toSecondsPart(), dur.toMillisPart()));
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recursively search forward from the current puzzle state, and probe the perimeter table at the leaves.
+     * @param puzzle - The puzzle to make moves on.
+     * @param moveController - The move controller of the puzzle.
+     * @param automaton - The move pruning automaton for the puzzle.
+     * @param automatonState - The state of the automaton after the moves made so far.
+     * @param path - The array to store the moves made in.
+     * @param depth - The number of moves made so far.
+     * @param forwardDepth - The depth of the leaves of the forward search.
+     * @param distance - The distance from the solved state the leaves must have.
+     * @param packedState - A scratch array for the packed puzzle state.
+     * @return {@code true} if a leaf meets the perimeter at the required distance (the puzzle is left at that leaf), {@code false} otherwise.
+     */
+    private boolean searchForward(ITwistyPuzzle puzzle, IMoveController moveController, MovePruningAutomaton automaton, int automatonState,
+                                  IMove[] path, int depth, int forwardDepth, int distance, long[] packedState) {
+        if (depth == forwardDepth) {
+            puzzle.packState(packedState);
+            return perimeter.getDistance(packedState) == distance;
+        }
+
+        IMove[] moves = moveController.getMoves();
+        for (int moveIndex = 0; moveIndex < moves.length; moveIndex++) {
+            int nextAutomatonState = automaton.nextState(automatonState, moveIndex);
+
+            // If the move doesn't make the move sequence redundant
+            if (nextAutomatonState != MovePruningAutomaton.DEAD_STATE) {
+                moveController.makeMove(moves[moveIndex]);
+                path[depth] = moves[moveIndex];
+
+                if (searchForward(puzzle, moveController, automaton, nextAutomatonState, path, depth + 1, forwardDepth, distance, packedState)) {
+                    return true;
+                }
+                moveController.undoMove(moves[moveIndex]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generate the perimeter table with a depth-first search from the solved state.
+     */
+    private void generatePerimeter() {
+        long startTime = System.currentTimeMillis();
+
+        ITwistyPuzzle solved = puzzle.copy();
+        solved.reset();
+
+        perimeter = new PerimeterTable(1 << 16);
+        long[] packedState = new long[2];
+        solved.packState(packedState);
+        perimeter.put(packedState, 0, 0);
+
+        IMoveController moveController = solved.getMoveController();
+        searchBackward(solved, moveController, moveController.getPruningAutomaton(), MovePruningAutomaton.INITIAL_STATE, 0, packedState);
+
+        Duration dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+        System.out.println("Bidirectional: Generated perimeter of depth " + perimeterDepth + " (" + perimeter.size + " states) after " +
+                           String.format("%02d:%02d.%03d", dur.toMinutesPart(), dur.toSecondsPart(), dur.toMillisPart()));
+    }
+
+    /**
+     * Recursively search backward from the solved state, and add every puzzle state within the perimeter depth to the perimeter table.
+     * @param puzzle - The puzzle to make moves on.
+     * @param moveController - The move controller of the puzzle.
+     * @param automaton - The move pruning automaton for the puzzle.
+     * @param automatonState - The state of the automaton after the moves made so far.
+     * @param depth - The number of moves made so far.
+     * @param packedState - A scratch array for the packed puzzle state.
+     */
+    private void searchBackward(ITwistyPuzzle puzzle, IMoveController moveController, MovePruningAutomaton automaton, int automatonState,
+                                int depth, long[] packedState) {
+        if (depth == perimeterDepth) {
+            return;
+        }
+
+        IMove[] moves = moveController.getMoves();
+        for (int moveIndex = 0; moveIndex < moves.length; moveIndex++) {
+            int nextAutomatonState = automaton.nextState(automatonState, moveIndex);
+
+            // If the move doesn't make the move sequence redundant
+            if (nextAutomatonState != MovePruningAutomaton.DEAD_STATE) {
+                moveController.makeMove(moves[moveIndex]);
+                puzzle.packState(packedState);
+                perimeter.put(packedState, depth + 1, moveIndex);
+
+                searchBackward(puzzle, moveController, automaton, nextAutomatonState, depth + 1, packedState);
+                moveController.undoMove(moves[moveIndex]);
+            }
+        }
+    }
+}
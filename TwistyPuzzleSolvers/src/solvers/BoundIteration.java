@@ -0,0 +1,135 @@
+package solvers;
+
+import models.IMoveController.IMove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The state shared between all workers searching a single bound iteration of an IDA* search.
+ */
+class BoundIteration {
+    final byte bound;
+    // nextBound is the minimum estimate of all nodes which exceeded the bound
+    final AtomicInteger nextBound = new AtomicInteger(Byte.MAX_VALUE);
+    // The first solution found by any worker (all solutions found in an iteration have the same length, so any solution is optimal,
+    // unless the heuristic estimates are weighted)
+    final AtomicReference<IMove[]> solution = new AtomicReference<IMove[]>();
+    // The number of nodes generated (i.e. puzzle states estimated) by all workers
+    final LongAdder nodesGenerated = new LongAdder();
+
+    // The options of the search the iteration belongs to
+    final SearchOptions options;
+    final LongAdder solutionCount = new LongAdder();
+
+    // The status the iteration was stopped with before it was completed (null if it hasn't been stopped)
+    volatile SolveResult.Status stopStatus = null;
+
+    // The move prefixes of the subtrees the iteration is split into (null if the iteration is searched as a single tree),
+    // and which of the subtrees have been completed (1) or not (0)
+    private List<IMove[]> subtrees = null;
+    private AtomicIntegerArray completedSubtrees = null;
+    // The number of nodes generated by the earlier iterations of the search
+    long previousNodesGenerated = 0;
+
+    /**
+     * Constructor for a BoundIteration.
+     * @param bound - The bound of the iteration.
+     * @param options - The options of the search.
+     */
+    BoundIteration(byte bound, SearchOptions options) {
+        this.bound = bound;
+        this.options = options;
+    }
+
+    /**
+     * Check if the iteration should stop before it is completed (see {@link SearchOptions#getStopStatus}), and if so, stop it.
+     * @return {@code true} if the iteration has been stopped, {@code false} otherwise.
+     */
+    boolean checkStopped() {
+        if (stopStatus == null) {
+            stopStatus = options.getStopStatus();
+        }
+        return stopStatus != null;
+    }
+
+    /**
+     * Check if a worker should stop searching, because a solution has been found (when only finding the first solution)
+     * or the iteration has been stopped.
+     * @return {@code true} if workers should stop searching, {@code false} otherwise.
+     */
+    boolean isFinished() {
+        return solution.get() != null || stopStatus != null;
+    }
+
+    /**
+     * Set the subtrees the iteration is split into. This must be called before the subtrees are searched.
+     * @param subtrees - The move prefixes of the roots of the subtrees.
+     */
+    void setSubtrees(List<IMove[]> subtrees) {
+        this.completedSubtrees = new AtomicIntegerArray(subtrees.size());
+        this.subtrees = subtrees;
+    }
+
+    /**
+     * Mark a subtree of the iteration as completed. The worker which searched the subtree must have passed its
+     * next bound to the iteration first, so that the next bound includes the nodes of every completed subtree.
+     * @param index - The index of the subtree.
+     */
+    void markSubtreeCompleted(int index) {
+        completedSubtrees.set(index, 1);
+    }
+
+    /**
+     * Create a checkpoint of the iteration, containing the subtrees which have not been completed yet.
+     * This can be called while the iteration is being searched.
+     * @param packedState - The packed initial puzzle state of the search.
+     * @return The checkpoint of the iteration.
+     */
+    Checkpoint createCheckpoint(long[] packedState) {
+        // Find the remaining subtrees before reading the next bound, so the next bound includes every subtree which is left out
+        List<IMove[]> remainingSubtrees = new ArrayList<IMove[]>();
+        for (int i = 0; i < subtrees.size(); i++) {
+            if (completedSubtrees.get(i) == 0) {
+                remainingSubtrees.add(subtrees.get(i));
+            }
+        }
+        return new Checkpoint(packedState, bound, (byte) nextBound.get(), previousNodesGenerated + nodesGenerated.sum(), remainingSubtrees);
+    }
+
+    /**
+     * Record a solution found by a worker.
+     * @param path - The array containing the moves of the solution (which is copied if the solution is kept).
+     * @param length - The number of moves in the solution.
+     * @return {@code true} if the workers should stop searching, {@code false} if they should keep searching for more solutions.
+     */
+    boolean recordSolution(IMove[] path, int length) {
+        if (!options.findAllSolutions) {
+            solution.compareAndSet(null, Arrays.copyOf(path, length));
+            return true;
+        }
+
+        solutionCount.increment();
+        if (options.solutionConsumer != null) {
+            IMove[] solutionCopy = Arrays.copyOf(path, length);
+            // Solutions are passed to the consumer one at a time, so the consumer doesn't need to be thread-safe
+            synchronized (options.solutionConsumer) {
+                options.solutionConsumer.accept(solutionCopy);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lower the next bound to the given estimate, if it is smaller than the current next bound.
+     * @param estimate - The estimated number of moves of a node which exceeded the bound.
+     */
+    void updateNextBound(int estimate) {
+        nextBound.accumulateAndGet(estimate, Math::min);
+    }
+}
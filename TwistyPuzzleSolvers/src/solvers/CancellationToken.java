@@ -0,0 +1,26 @@
+package solvers;
+
+/**
+ * A token which can be used to cancel a running search from another thread.
+ * A search checks the token periodically, so it stops shortly after the token is cancelled (see {@link PuzzleSolver#solve(java.time.Instant, CancellationToken)}).
+ * A token can be shared between several searches, which are all cancelled at once.
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Cancel all searches using the token.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Check if the token has been cancelled.
+     * @return {@code true} if the token has been cancelled, {@code false} otherwise.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,123 @@
+package solvers;
+
+import models.IMoveController.IMove;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A checkpoint of an IDA* search, which can be written to a file and used to resume the search later.
+ * <p>
+ * The checkpoint stores the bound of the current iteration, the next bound found so far, and the move prefixes of the
+ * subtrees of the iteration which have not been completed yet. No puzzle states are stored, apart from the packed
+ * initial puzzle state, which is used to check that the search is resumed on the same puzzle.
+ * <p>
+ * File format (big-endian): magic number (int), packed initial state (2 longs), bound (byte), next bound (byte),
+ * nodes generated so far (long), number of subtrees (int), then for each subtree: prefix length (byte) followed by
+ * the index of each move in the prefix (1 byte each).
+ */
+class Checkpoint {
+
+    // "TPSC" (Twisty Puzzle Search Checkpoint)
+    static final int MAGIC_NUMBER = 0x54505343;
+
+    final long[] packedState;
+    final byte bound;
+    final byte nextBound;
+    final long nodesGenerated;
+    final List<IMove[]> subtrees;
+
+    /**
+     * Constructor for a Checkpoint.
+     * @param packedState - The packed initial puzzle state of the search.
+     * @param bound - The bound of the current iteration.
+     * @param nextBound - The next bound found by the completed subtrees of the current iteration.
+     * @param nodesGenerated - The number of nodes generated by the search so far.
+     * @param subtrees - The move prefixes of the subtrees of the current iteration which have not been completed.
+     */
+    Checkpoint(long[] packedState, byte bound, byte nextBound, long nodesGenerated, List<IMove[]> subtrees) {
+        this.packedState = packedState;
+        this.bound = bound;
+        this.nextBound = nextBound;
+        this.nodesGenerated = nodesGenerated;
+        this.subtrees = subtrees;
+    }
+
+    /**
+     * Write the checkpoint to a file. The checkpoint is written to a temporary file first, which then replaces the file,
+     * so the file always contains a complete checkpoint even if the program is stopped while writing.
+     * @param file - The file to write the checkpoint to.
+     * @throws IOException if the file can't be written.
+     */
+    void writeToFile(File file) throws IOException {
+        File absoluteFile = file.getAbsoluteFile();
+        if (absoluteFile.getParentFile() != null) {
+            absoluteFile.getParentFile().mkdirs();
+        }
+        File tempFile = new File(absoluteFile.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile, false)))) {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeLong(packedState[0]);
+            out.writeLong(packedState[1]);
+            out.writeByte(bound);
+            out.writeByte(nextBound);
+            out.writeLong(nodesGenerated);
+
+            out.writeInt(subtrees.size());
+            for (IMove[] prefix : subtrees) {
+                out.writeByte(prefix.length);
+                for (IMove move : prefix) {
+                    out.writeByte(move.ordinal());
+                }
+            }
+        }
+
+        Files.move(tempFile.toPath(), absoluteFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a checkpoint from a file.
+     * @param file - The file to read the checkpoint from.
+     * @param moves - The array of valid moves for the puzzle (see {@link models.IMoveController#getMoves}).
+     * @return The checkpoint read from the file.
+     * @throws IOException if the file can't be read, or is not a valid checkpoint file.
+     */
+    static Checkpoint readFromFile(File file, IMove[] moves) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC_NUMBER) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            long[] packedState = new long[] {in.readLong(), in.readLong()};
+            byte bound = in.readByte();
+            byte nextBound = in.readByte();
+            long nodesGenerated = in.readLong();
+
+            int subtreeCount = in.readInt();
+            List<IMove[]> subtrees = new ArrayList<IMove[]>(subtreeCount);
+            for (int i = 0; i < subtreeCount; i++) {
+                IMove[] prefix = new IMove[in.readByte()];
+                for (int j = 0; j < prefix.length; j++) {
+                    int moveIndex = in.readUnsignedByte();
+                    if (moveIndex >= moves.length) {
+                        throw new IOException("Invalid move index in checkpoint file: " + moveIndex);
+                    }
+                    prefix[j] = moves[moveIndex];
+                }
+                subtrees.add(prefix);
+            }
+
+            return new Checkpoint(packedState, bound, nextBound, nodesGenerated, subtrees);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package solvers;
+
+import models.IMoveController.IMove;
+import models.ITwistyPuzzle;
+import patterndatabases.PatternDatabase;
+
+/**
+ * A worker which searches the coordinates of the puzzle rather than the puzzle itself (see {@link PuzzleSolver#useCoordinateSearch}).
+ * <p>
+ * The state of each node is the index of each database, which is moved with the move tables of the databases, along with
+ * the packed puzzle state, which is moved with a {@link PackedMoveTable} and only used for the goal test and the
+ * transposition table. The packed state of each node on the current path is kept, so undoing a move is free, and the
+ * worker's puzzle object is never moved after the worker is created. Dual lookups unpack the packed state into a scratch puzzle.
+ */
+class CoordinateWorker extends IDAStarWorker {
+
+    private final PackedMoveTable packedMoveTable;
+    private final PatternDatabase[] databases;
+
+    // The packed state of each node on the current path (two longs each, indexed by depth), and of the solved puzzle
+    private final long[] packedStates = new long[2 * (MAX_DEPTH + 1)];
+    private final long[] solvedState = new long[2];
+
+    // The database indices of the initial puzzle state
+    private final int[] initialIndices;
+
+    // The puzzle which packed states are unpacked into for dual lookups, and the packed state it is unpacked from
+    private final ITwistyPuzzle dualPuzzle;
+    private final long[] dualState = new long[2];
+
+    /**
+     * Constructor for a CoordinateWorker.
+     * @param solver - The solver which provides the databases, and the heuristic estimates for their indices.
+     * @param puzzle - The initial puzzle state to search from, which is only used to calculate the initial coordinates.
+     * @param findAllSolutions - Whether the worker searches for all optimal solutions (see {@link IDAStarWorker}).
+     * @param packedMoveTable - The table used to make moves on packed puzzle states.
+     */
+    CoordinateWorker(PuzzleSolver solver, ITwistyPuzzle puzzle, boolean findAllSolutions, PackedMoveTable packedMoveTable) {
+        super(solver, puzzle, findAllSolutions);
+        this.packedMoveTable = packedMoveTable;
+        this.databases = solver.moveTableDatabases;
+
+        puzzle.packState(packedStates);
+        ITwistyPuzzle solved = puzzle.copy();
+        solved.reset();
+        solved.packState(solvedState);
+
+        initialIndices = new int[databases.length];
+        solver.getDatabaseValues(puzzle, new byte[databases.length], initialIndices);
+        dualPuzzle = puzzle.copy();
+    }
+
+    /**
+     * Make a move on the packed state of a node, storing the result as the packed state of the next depth.
+     * @param move - The move to make.
+     * @param depth - The depth of the node the move is made from.
+     */
+    void makeMove(IMove move, int depth) {
+        packedMoveTable.makeMove(packedStates, 2 * depth, 2 * (depth + 1), move.ordinal());
+    }
+
+    /**
+     * Undoing a move is free, as the packed state of the node the move was made from is still stored.
+     * @param move - The move to undo.
+     * @param depth - The depth of the node the move was made from.
+     */
+    void undoMove(IMove move, int depth) {
+    }
+
+    /**
+     * Check if the packed state of the node at a depth is the packed solved state.
+     * @param depth - The depth of the node.
+     * @return {@code true} if the puzzle state is solved, {@code false} otherwise.
+     */
+    boolean isSolved(int depth) {
+        return packedStates[2 * depth] == solvedState[0] && packedStates[2 * depth + 1] == solvedState[1];
+    }
+
+    /**
+     * Copy the packed state of the node at a depth.
+     * @param depth - The depth of the node.
+     * @param packedState - The array to write the packed state to.
+     */
+    void packState(int depth, long[] packedState) {
+        packedState[0] = packedStates[2 * depth];
+        packedState[1] = packedStates[2 * depth + 1];
+    }
+
+    /**
+     * Unpack the packed state of the node at a depth, and estimate its inverse (see {@link PuzzleSolver#getDualMaxNumberOfMoves}).
+     * @param depth - The depth of the node.
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the node in the search tree.
+     * @return The estimated number of moves to solve the inverse state.
+     */
+    byte getDualNumberOfMoves(int depth, byte boundHint, byte depthHint) {
+        packState(depth, dualState);
+        dualPuzzle.unpackState(dualState);
+        return solver.getDualMaxNumberOfMoves(dualPuzzle, boundHint, depthHint);
+    }
+
+    /**
+     * Calculate the database indices of the current node by moving the initial indices along the current path,
+     * and look up the value of each database.
+     * @param values - The array to store the value of each database in.
+     * @param indices - The array to store the index of each database in.
+     */
+    void getDatabaseValues(byte[] values, int[] indices) {
+        for (int d = 0; d < databases.length; d++) {
+            int index = initialIndices[d];
+            for (int i = 0; i < pathLength; i++) {
+                index = databases[d].getChildIndex(index, path[i].ordinal());
+            }
+            indices[d] = index;
+            values[d] = databases[d].getNumberOfMoves(index);
+        }
+    }
+}
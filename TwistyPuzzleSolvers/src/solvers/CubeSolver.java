@@ -2,8 +2,16 @@ package solvers;
 
 import models.Cube;
 import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
+import patterndatabases.LongPatternDatabase;
+import patterndatabases.PatternDatabase;
+import patterndatabases.StorageMode;
+import patterndatabases.cube.CornerOrientationPatternDatabase;
 import patterndatabases.cube.CornerPatternDatabase;
+import patterndatabases.cube.EdgeOrientationPatternDatabase;
 import patterndatabases.cube.FirstEdgePatternDatabase;
+import patterndatabases.cube.LargeFirstEdgePatternDatabase;
+import patterndatabases.cube.LargeSecondEdgePatternDatabase;
 import patterndatabases.cube.SecondEdgePatternDatabase;
 
 /**
@@ -11,17 +19,60 @@ import patterndatabases.cube.SecondEdgePatternDatabase;
  */
 public class CubeSolver extends PuzzleSolver {
     
+    CornerOrientationPatternDatabase cornerOrientationPDB;
+    EdgeOrientationPatternDatabase edgeOrientationPDB;
     CornerPatternDatabase cornerPDB;
     FirstEdgePatternDatabase firstEdgePDB;
     SecondEdgePatternDatabase secondEdgePDB;
+    // All of the databases in the order they are checked (orientation PDBs first, as they stay in the cache)
+    PatternDatabase[] allPDBs;
+
+    // How the databases are kept in memory when they are read from their files (including the large databases)
+    private final StorageMode storageMode;
+
+    // The cube of each thread which is set to the inverse of a cube state for dual lookups
+    private final ThreadLocal<Cube> dualCubes = ThreadLocal.withInitial(Cube::new);
 
     /**
      * Constructor for a CubeSolver object. Initialises the pattern databases for the cube.
      * @param cube - The cube to solve.
-     * @throws IllegalStateException if any of the pattern databases fail to load.
+     * @throws IllegalStateException if any of the pattern databases fail to load or populate.
      */
     public CubeSolver(Cube cube) throws IllegalStateException {
+        this(cube, false);
+    }
+
+    /**
+     * Constructor for a CubeSolver object. Initialises the pattern databases for the cube.
+     * @param cube - The cube to solve.
+     * @param coordinateSearch - Whether the search runs on database coordinates and packed states rather than on cube objects
+     *  (see {@link PuzzleSolver#useCoordinateSearch}).
+     * @throws IllegalStateException if any of the pattern databases fail to load or populate, or a coordinate search is
+     *  requested and the move tables fail to load.
+     */
+    public CubeSolver(Cube cube, boolean coordinateSearch) throws IllegalStateException {
+        this(cube, coordinateSearch, StorageMode.DEFAULT);
+    }
+
+    /**
+     * Constructor for a CubeSolver object. Initialises the pattern databases for the cube.
+     * @param cube - The cube to solve.
+     * @param coordinateSearch - Whether the search runs on database coordinates and packed states rather than on cube objects
+     *  (see {@link PuzzleSolver#useCoordinateSearch}).
+     * @param storageMode - How the pattern databases are kept in memory when they are read from their files (see {@link StorageMode}).
+     * @throws IllegalStateException if any of the pattern databases fail to load or populate, or a coordinate search is
+     *  requested and the move tables fail to load.
+     */
+    public CubeSolver(Cube cube, boolean coordinateSearch, StorageMode storageMode) throws IllegalStateException {
         super(cube);
+        this.storageMode = storageMode;
+
+        // The orientation PDBs take less time to populate than to read from a file
+        cornerOrientationPDB = new CornerOrientationPatternDatabase();
+        edgeOrientationPDB = new EdgeOrientationPatternDatabase();
+        if (!cornerOrientationPDB.populateFromMoveTable(new Cube()) || !edgeOrientationPDB.populateFromMoveTable(new Cube())) {
+            throw new IllegalStateException("Failed to populate orientation pattern databases.");
+        }
 
         cornerPDB = new CornerPatternDatabase();
         firstEdgePDB = new FirstEdgePatternDatabase();
@@ -30,9 +81,11 @@ public class CubeSolver extends PuzzleSolver {
         System.out.println("Loading pattern databases...");
         boolean readSuccess;
 
-        readSuccess = cornerPDB.readDatabaseFromFile("cube/corners.pdb");
-        readSuccess = firstEdgePDB.readDatabaseFromFile("cube/first_edges.pdb");
-        readSuccess = secondEdgePDB.readDatabaseFromFile("cube/second_edges.pdb");
+        readSuccess = cornerPDB.readDatabaseFromFile("cube/corners.pdb", storageMode);
+        readSuccess = firstEdgePDB.readDatabaseFromFile("cube/first_edges.pdb", storageMode);
+        readSuccess = secondEdgePDB.readDatabaseFromFile("cube/second_edges.pdb", storageMode);
+
+        allPDBs = new PatternDatabase[] {cornerOrientationPDB, edgeOrientationPDB, cornerPDB, firstEdgePDB, secondEdgePDB};
 
         if (readSuccess) {
             System.out.println("Pattern databases loaded successfully.");
@@ -40,11 +93,77 @@ public class CubeSolver extends PuzzleSolver {
         else {
             throw new IllegalStateException("Failed to load pattern databases.");   
         }
+
+        loadMoveTables(allPDBs);
+        if (coordinateSearch) {
+            useCoordinateSearch(createPackedMoveTable());
+        }
+    }
+
+    /**
+     * Also look up the large edge databases (see {@link LargeFirstEdgePatternDatabase} and {@link LargeSecondEdgePatternDatabase}),
+     * which look at 8 edges each, after the other databases (see {@link PuzzleSolver#setLargeDatabases}).
+     * Each takes roughly 2.4GB, so they are read into direct buffers (which need a large enough {@code -XX:MaxDirectMemorySize}),
+     * or mapped into memory if the storage mode of the solver maps database files.
+     * @throws IllegalStateException if either of the databases fails to load, or the search runs on coordinates.
+     */
+    public void useLargeEdgeDatabases() throws IllegalStateException {
+        System.out.println("Loading large pattern databases...");
+        LargeFirstEdgePatternDatabase largeFirstEdgePDB = new LargeFirstEdgePatternDatabase();
+        LargeSecondEdgePatternDatabase largeSecondEdgePDB = new LargeSecondEdgePatternDatabase();
+        if (!largeFirstEdgePDB.readDatabaseFromFile("cube/large_first_edges.pdb", storageMode) ||
+            !largeSecondEdgePDB.readDatabaseFromFile("cube/large_second_edges.pdb", storageMode)) {
+            throw new IllegalStateException("Failed to load large pattern databases.");
+        }
+        setLargeDatabases(new LongPatternDatabase[] {largeFirstEdgePDB, largeSecondEdgePDB});
+        System.out.println("Large pattern databases loaded successfully.");
+    }
+
+    /**
+     * Create the table used to make moves on packed cube states (see {@link Cube#packState}), where the 8 corner slots
+     * (5 bits each) are packed in the first long and the 12 edge slots (5 bits each) in the second, with the first slot in the highest bits.
+     * @return The packed move table of the cube.
+     */
+    private static PackedMoveTable createPackedMoveTable() {
+        int[] slotWords = new int[20], slotShifts = new int[20], radices = new int[20];
+        for (int i = 0; i < 8; i++) {
+            slotWords[i] = 0;
+            slotShifts[i] = (7 - i) * 5;
+            radices[i] = 3;
+        }
+        for (int i = 0; i < 12; i++) {
+            slotWords[8 + i] = 1;
+            slotShifts[8 + i] = (11 - i) * 5;
+            radices[8 + i] = 2;
+        }
+
+        // Making a move on a solved cube shows which position the cubie in each position came from, and its new orientation
+        IMove[] moves = new Cube().getMoveController().getMoves();
+        byte[][] sources = new byte[moves.length][20];
+        byte[][] twists = new byte[moves.length][20];
+        for (IMove move : moves) {
+            Cube cube = new Cube();
+            cube.getMoveController().makeMove(move);
+            byte[] cornerIndices = cube.getCornerIndices(), cornerOrientations = cube.getCornerOrientations();
+            byte[] edgeIndices = cube.getEdgeIndices(), edgeOrientations = cube.getEdgeOrientations();
+
+            for (int i = 0; i < 8; i++) {
+                sources[move.ordinal()][i] = cornerIndices[i];
+                twists[move.ordinal()][i] = cornerOrientations[i];
+            }
+            for (int i = 0; i < 12; i++) {
+                sources[move.ordinal()][8 + i] = (byte) (8 + edgeIndices[i]);
+                twists[move.ordinal()][8 + i] = edgeOrientations[i];
+            }
+        }
+
+        return new PackedMoveTable(5, slotWords, slotShifts, radices, sources, twists);
     }
 
 
     /**
      * Get the maximum number of moves required to solve a cube state across all databases.
+     * The corner orientation PDB is left out, as it looks at part of what the corner PDB looks at, so its estimate is never larger.
      * @param puzzle - The cube to get the maximum number of moves for.
      * @return The maximum number of moves required to solve one of the subsets of cubies.
      * @throws IllegalArgumentException if the puzzle is not a Cube.
@@ -55,13 +174,15 @@ public class CubeSolver extends PuzzleSolver {
         }
         Cube cube = (Cube) puzzle;
         
-        return (byte) Math.max(cornerPDB.getNumberOfMoves(cube), Math.max(firstEdgePDB.getNumberOfMoves(cube), secondEdgePDB.getNumberOfMoves(cube)));
+        return (byte) Math.max(Math.max(edgeOrientationPDB.getNumberOfMoves(cube), cornerPDB.getNumberOfMoves(cube)),
+                               Math.max(firstEdgePDB.getNumberOfMoves(cube), secondEdgePDB.getNumberOfMoves(cube)));
     }
 
     /**
      * Get the maximum number of moves required to solve a cube state across all databases.
      * This method is faster than {@link #getMaxNumberOfMoves(Cube cube)} because 
-     * it returns as soon as a database estimate exceeds the bound hint.
+     * it returns as soon as a database estimate exceeds the bound hint. The orientation PDBs are checked first, as their lookups
+     * don't miss the cache, so states near the bound are often cut off without looking up the large PDBs.
      * @param puzzle - The cube to get the maximum number of moves for.
      * @param boundHint - The maximum number of moves allowed to solve the cube state.
      * @param depthHint - The depth of the current node in the search tree.
@@ -76,14 +197,38 @@ public class CubeSolver extends PuzzleSolver {
         
         byte max, estimatedMoves;
 
+        // Check estimated number of moves from corner orientation PDB
+        estimatedMoves = cornerOrientationPDB.getNumberOfMoves(cube);
+        max = estimatedMoves;
+
+        // If estimate exceeds the bound, return
+        if (estimatedMoves + depthHint > boundHint) {
+            return estimatedMoves;
+        }
+
+        // Check estimated number of moves from edge orientation PDB
+        estimatedMoves = edgeOrientationPDB.getNumberOfMoves(cube);
+
+        // If estimate exceeds the bound, return
+        if (estimatedMoves + depthHint > boundHint) {
+            return estimatedMoves;
+        }
+        // If estimate is greater than the current max, update max
+        if (estimatedMoves > max) {
+            max = estimatedMoves;
+        }
+
         // Check estimated number of moves from corner PDB
         estimatedMoves = cornerPDB.getNumberOfMoves(cube);
-        max = estimatedMoves;
 
         // If estimate exceeds the bound, return
         if (estimatedMoves + depthHint > boundHint) {
             return estimatedMoves;
         }
+        // If estimate is greater than the current max, update max
+        if (estimatedMoves > max) {
+            max = estimatedMoves;
+        }
 
         // Check estimated number of moves from first edge PDB
         estimatedMoves = firstEdgePDB.getNumberOfMoves(cube);
@@ -112,4 +257,96 @@ public class CubeSolver extends PuzzleSolver {
         // No estimate exceeded the bound, return the maximum estimate
         return max;
     }
+
+    /**
+     * Get the maximum number of moves required to solve the inverse of a cube state across all databases
+     * (see {@link PuzzleSolver#getDualMaxNumberOfMoves}).
+     * @param puzzle - The cube whose inverse should be estimated.
+     * @param boundHint - The maximum number of moves allowed to solve the cube state.
+     * @param depthHint - The depth of the current node in the search tree.
+     * @return The maximum number of moves required to solve one of the subsets of cubies of the inverse state.
+     * @throws IllegalArgumentException if the puzzle is not a Cube.
+     */
+    protected byte getDualMaxNumberOfMoves(ITwistyPuzzle puzzle, byte boundHint, byte depthHint) throws IllegalArgumentException {
+        if (!(puzzle instanceof Cube)) {
+            throw new IllegalArgumentException("The puzzle must be a Cube.");
+        }
+        Cube dualCube = dualCubes.get();
+        dualCube.setInverse((Cube) puzzle);
+
+        return getMaxNumberOfMoves(dualCube, boundHint, depthHint);
+    }
+
+    /**
+     * Get the maximum number of moves required to solve each child of a cube state across all databases.
+     * The databases are looked up for the children together (see {@link PuzzleSolver#probeDatabases}), so their cache misses
+     * overlap, with the same early exit on the bound hint as {@link #getMaxNumberOfMoves(ITwistyPuzzle, byte, byte)}.
+     * @param puzzle - The cube whose children should be estimated.
+     * @param childMoves - The moves which reach each child from the cube state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the cube state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     * @throws IllegalArgumentException if the puzzle is not a Cube.
+     */
+    protected void getMaxNumberOfMoves(ITwistyPuzzle puzzle, IMove[] childMoves, int childCount, byte boundHint, byte depthHint, byte[] estimates)
+            throws IllegalArgumentException {
+        if (!(puzzle instanceof Cube)) {
+            throw new IllegalArgumentException("The puzzle must be a Cube.");
+        }
+        probeDatabases(allPDBs, puzzle, childMoves, childCount, boundHint, depthHint, estimates);
+    }
+
+    /**
+     * Get the number of database values tracked for each node of the search. The values are only tracked with move tables,
+     * which show which databases a move changes; without them, every database has to be looked up for every child anyway.
+     * @return The number of databases if the move tables are loaded, or 0 otherwise.
+     */
+    protected int getNumberOfDatabaseValues() {
+        return useMoveTables ? allPDBs.length : 0;
+    }
+
+    /**
+     * Get the value and index of each of the 5 databases for a cube state.
+     * @param puzzle - The cube to get the database values for.
+     * @param values - The array to store the value of each database in (in the order of {@link #allPDBs}).
+     * @param indices - The array to store the index of each database in (in the order of {@link #allPDBs}).
+     * @throws IllegalArgumentException if the puzzle is not a Cube.
+     */
+    protected void getDatabaseValues(ITwistyPuzzle puzzle, byte[] values, int[] indices) throws IllegalArgumentException {
+        if (!(puzzle instanceof Cube)) {
+            throw new IllegalArgumentException("The puzzle must be a Cube.");
+        }
+        for (int i = 0; i < allPDBs.length; i++) {
+            indices[i] = allPDBs[i].getIndex(puzzle);
+            values[i] = allPDBs[i].getNumberOfMoves(indices[i]);
+        }
+    }
+
+    /**
+     * Get the maximum number of moves required to solve each child of a cube state across all databases, where the indices
+     * of the children are moved from the indices of the cube state with the move tables, rather than calculated from the cube.
+     * @param puzzle - The cube whose children should be estimated.
+     * @param values - The database values of the cube state.
+     * @param indices - The database indices of the cube state.
+     * @param childMoves - The moves which reach each child from the cube state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the cube state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     * @param childValues - The arrays to store the database values of each child in.
+     * @param childIndices - The arrays to store the database indices of each child in.
+     * @throws IllegalArgumentException if the puzzle is not a Cube.
+     */
+    protected void getMaxNumberOfMoves(ITwistyPuzzle puzzle, byte[] values, int[] indices, IMove[] childMoves, int childCount, byte boundHint,
+                                       byte depthHint, byte[] estimates, byte[][] childValues, int[][] childIndices) throws IllegalArgumentException {
+        if (!(puzzle instanceof Cube)) {
+            throw new IllegalArgumentException("The puzzle must be a Cube.");
+        }
+        if (!useMoveTables) {
+            getMaxNumberOfMoves(puzzle, childMoves, childCount, boundHint, depthHint, estimates);
+            return;
+        }
+        probeDatabases(allPDBs, puzzle, values, indices, null, childMoves, childCount, boundHint, depthHint, estimates, childValues, childIndices);
+    }
 }
@@ -0,0 +1,500 @@
+package solvers;
+
+import models.Cube;
+import models.IMoveController.IMove;
+import models.ITwistyPuzzle;
+import models.Kilominx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A coordinator which splits the bound iterations of an IDA* search into work units, and hands them out to
+ * {@link DistributedWorker}s in other processes (or on other machines) over sockets.
+ * <p>
+ * Each bound iteration is expanded from the root to a fixed split depth, and each remaining subtree becomes a work unit,
+ * which is identified by its move prefix. A worker searches one unit at a time, and replies with the next bound and node
+ * count of the subtree, along with a solution if it found one. When a solution is found, the other workers are told to
+ * stop searching their units. If a worker's connection is lost, or the lease of its unit expires because the worker has
+ * stopped sending heartbeats (e.g. it hangs while staying connected), the unit it was searching is handed out again, so the
+ * search continues as long as at least one worker is connected.
+ * <p>
+ * The coordinator only needs the solver for the heuristic estimates of the first few depths of each iteration,
+ * so the search is not slowed down if it shares a machine with the workers.
+ */
+public class DistributedCoordinator {
+
+    final PuzzleSolver solver;
+    final byte splitDepth;
+    private final ServerSocket serverSocket;
+    private final String puzzleType;
+
+    // The work units of the current iteration which have not been handed out yet, and the number of units which have
+    // not been completed. All of the fields below are guarded by the coordinator
+    private final Deque<WorkUnit> pendingUnits = new ArrayDeque<WorkUnit>();
+    private int remainingUnits = 0;
+    private BoundIteration currentIteration = null;
+    private int nextUnitId = 0;
+    private final List<WorkerConnection> connections = new ArrayList<WorkerConnection>();
+    private boolean closed = false;
+
+    /**
+     * A subtree of a bound iteration which is searched by a single worker.
+     */
+    private static class WorkUnit {
+        private final int id;
+        private final BoundIteration iteration;
+        private final long[] packedState;
+        private final IMove[] prefix;
+        private boolean completed = false;
+
+        /**
+         * Constructor for a WorkUnit.
+         * @param id - The unique id of the unit.
+         * @param iteration - The bound iteration the unit belongs to.
+         * @param packedState - The packed initial puzzle state of the search.
+         * @param prefix - The moves made from the initial puzzle state to reach the root of the subtree.
+         */
+        private WorkUnit(int id, BoundIteration iteration, long[] packedState, IMove[] prefix) {
+            this.id = id;
+            this.iteration = iteration;
+            this.packedState = packedState;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * The connection to a single worker thread, and the work unit it is searching.
+     */
+    private static class WorkerConnection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private WorkUnit currentUnit = null;
+
+        /**
+         * Constructor for a WorkerConnection.
+         * @param socket - The socket connected to the worker.
+         * @throws IOException if the streams of the socket can't be opened.
+         */
+        private WorkerConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        /**
+         * Send a message to the worker. Messages are sent one at a time by locking the output stream,
+         * as cancel messages are sent while the connection's own thread may be sending a work unit.
+         * @param type - The type of the message.
+         * @param unit - The work unit of the message (or {@code null} for a shutdown message).
+         * @throws IOException if the message can't be sent.
+         */
+        private void send(byte type, WorkUnit unit) throws IOException {
+            synchronized (out) {
+                out.writeByte(type);
+                if (type == DistributedProtocol.WORK_UNIT) {
+                    out.writeInt(unit.id);
+                    out.writeLong(unit.packedState[0]);
+                    out.writeLong(unit.packedState[1]);
+                    out.writeByte(unit.iteration.bound);
+                    DistributedProtocol.writeMoves(out, unit.prefix);
+                }
+                else if (type == DistributedProtocol.CANCEL) {
+                    out.writeInt(unit.id);
+                }
+                out.flush();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return socket.getRemoteSocketAddress().toString();
+        }
+    }
+
+    /**
+     * Constructor for a DistributedCoordinator. The coordinator starts accepting worker connections straight away.
+     * @param solver - The solver which provides the heuristic estimates used to split the bound iterations.
+     * @param port - The port to accept worker connections on.
+     * @param splitDepth - The depth of the roots of the work units (at least 1). Deeper splits give smaller units,
+     *  which balance better between workers, at the cost of more messages.
+     * @throws IllegalArgumentException if the split depth is less than 1.
+     * @throws IOException if the port can't be listened on.
+     */
+    public DistributedCoordinator(PuzzleSolver solver, int port, int splitDepth) throws IllegalArgumentException, IOException {
+        if (splitDepth < 1 || splitDepth >= IDAStarWorker.MAX_DEPTH) {
+            throw new IllegalArgumentException("The split depth must be between 1 and " + (IDAStarWorker.MAX_DEPTH - 1) + ".");
+        }
+        this.solver = solver;
+        this.splitDepth = (byte) splitDepth;
+        this.puzzleType = solver.puzzle.getClass().getSimpleName();
+        this.serverSocket = new ServerSocket(port);
+
+        Thread acceptor = new Thread(this::acceptConnections, "coordinator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Distributed: Accepting workers on port " + serverSocket.getLocalPort());
+    }
+
+    /**
+     * Get the port the coordinator accepts worker connections on.
+     * @return The port number.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Perform a distributed IDA* search to find an optimal solution to the puzzle state of the solver.
+     * The search waits for workers to connect, so at least one worker must be started for it to finish.
+     * @return An array of moves which can be performed to solve the puzzle.
+     * @throws IllegalStateException If the pattern databases are not initialised correctly, or the coordinator has been closed.
+     */
+    public IMove[] solve() throws IllegalStateException {
+        ITwistyPuzzle puzzle = solver.puzzle;
+        if (puzzle.isSolved()) {
+            return new IMove[0];
+        }
+
+        long[] initialState = new long[2];
+        puzzle.packState(initialState);
+        IDAStarWorker splitter = solver.createWorker(puzzle.copy(), false);
+        SearchOptions options = new SearchOptions();
+
+        byte nextBound = solver.getMaxNumberOfMoves(puzzle);
+        long nodesGenerated = 0;
+        long startTime = System.currentTimeMillis();
+        System.out.println("Distributed: Beginning search at depth " + nextBound);
+
+        while (true) {
+            // If nextBound is 0 or was not updated from max value, the database was not initialised correctly
+            if (nextBound == 0 || nextBound == Byte.MAX_VALUE) {
+                throw new IllegalStateException("nextBound set to " + nextBound + ". Bad database.");
+            }
+
+            BoundIteration iteration = new BoundIteration(nextBound, options);
+            List<IMove[]> subtrees = new ArrayList<IMove[]>();
+            splitter.moveTo(new IMove[0]);
+            splitter.collectSubtrees((byte) Math.min(splitDepth, iteration.bound - 1), iteration, subtrees);
+
+            searchIteration(iteration, initialState, subtrees);
+
+            nextBound = (byte) iteration.nextBound.get();
+            nodesGenerated += iteration.nodesGenerated.sum();
+            Duration dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
+            String elapsed = String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart());
+
+            IMove[] solution = iteration.solution.get();
+            if (solution != null) {
+                System.out.println("Distributed: Solution found at depth " + iteration.bound + " after " + elapsed + " - " +
+                                   nodesGenerated + " nodes generated");
+                return solution;
+            }
+            System.out.println("Distributed: Finished bound " + iteration.bound + " (" + subtrees.size() + " work units) after " +
+                               elapsed + " - " + iteration.nodesGenerated.sum() + " nodes generated");
+        }
+    }
+
+    /**
+     * Hand out the subtrees of a bound iteration to the workers, and wait until they have all been searched,
+     * or a solution has been found.
+     * @param iteration - The bound iteration to search.
+     * @param initialState - The packed initial puzzle state of the search.
+     * @param subtrees - The move prefixes of the subtrees of the iteration.
+     * @throws IllegalStateException if the coordinator is closed during the search.
+     */
+    private synchronized void searchIteration(BoundIteration iteration, long[] initialState, List<IMove[]> subtrees) throws IllegalStateException {
+        currentIteration = iteration;
+        pendingUnits.clear();
+        for (IMove[] prefix : subtrees) {
+            pendingUnits.add(new WorkUnit(nextUnitId++, iteration, initialState, prefix));
+        }
+        remainingUnits = subtrees.size();
+        notifyAll();
+
+        boolean waitingForWorkers = false;
+        while (remainingUnits > 0 && iteration.solution.get() == null) {
+            if (closed) {
+                throw new IllegalStateException("The coordinator was closed during the search.");
+            }
+            if (connections.isEmpty() && !waitingForWorkers) {
+                System.out.println("Distributed: Waiting for workers to connect...");
+            }
+            waitingForWorkers = connections.isEmpty();
+
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for workers.", e);
+            }
+        }
+        pendingUnits.clear();
+    }
+
+    /**
+     * Accept worker connections until the coordinator is closed, and serve each connection on its own thread.
+     */
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+
+                Thread thread = new Thread(() -> serve(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            }
+            catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error accepting worker connection:");
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Serve a worker connection: check the worker is for the same puzzle type, then hand out work units to it one at a time
+     * and collect the results. If the connection is lost, or the worker sends nothing for a whole lease while it searches
+     * a unit, the connection is closed and the unit the worker was searching is handed out again.
+     * @param socket - The socket connected to the worker.
+     */
+    private void serve(Socket socket) {
+        WorkerConnection connection = null;
+        try {
+            connection = new WorkerConnection(socket);
+            if (connection.in.readInt() != DistributedProtocol.MAGIC_NUMBER) {
+                throw new IOException("Not a worker connection.");
+            }
+            String workerPuzzleType = connection.in.readUTF();
+            if (!workerPuzzleType.equals(puzzleType)) {
+                throw new IOException("The worker is for a " + workerPuzzleType + ", not a " + puzzleType + ".");
+            }
+            addConnection(connection);
+
+            IMove[] moves = solver.puzzle.getMoveController().getMoves();
+            while (true) {
+                WorkUnit unit = takeUnit(connection);
+                if (unit == null) {
+                    connection.send(DistributedProtocol.SHUTDOWN, null);
+                    return;
+                }
+                connection.send(DistributedProtocol.WORK_UNIT, unit);
+
+                // The worker sends heartbeats while it searches the unit, so each read waits for at most one lease
+                socket.setSoTimeout(DistributedProtocol.LEASE_MILLIS);
+                byte type;
+                while ((type = connection.in.readByte()) == DistributedProtocol.HEARTBEAT) {
+                    connection.in.readInt();
+                }
+                socket.setSoTimeout(0);
+                if (type != DistributedProtocol.RESULT) {
+                    throw new IOException("Invalid message type: " + type);
+                }
+
+                // Results of cancelled units are still read, but are ignored as their iteration has finished
+                int unitId = connection.in.readInt();
+                boolean completed = connection.in.readBoolean();
+                byte nextBound = connection.in.readByte();
+                long nodesGenerated = connection.in.readLong();
+                IMove[] solution = DistributedProtocol.readMoves(connection.in, moves);
+                if (unitId != unit.id) {
+                    throw new IOException("Received a result for unit " + unitId + " instead of unit " + unit.id + ".");
+                }
+                completeUnit(connection, unit, completed, nextBound, nodesGenerated, solution);
+            }
+        }
+        catch (SocketTimeoutException e) {
+            System.out.println("Distributed: The lease of worker " + socket.getRemoteSocketAddress() + " expired");
+        }
+        catch (IOException e) {
+            if (!closed) {
+                System.out.println("Distributed: Lost connection to worker " + socket.getRemoteSocketAddress());
+            }
+        }
+        finally {
+            if (connection != null) {
+                removeConnection(connection);
+            }
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // The connection is no longer used, so errors closing it can be ignored
+            }
+        }
+    }
+
+    /**
+     * Add a worker connection to the list of connections.
+     * @param connection - The connection to add.
+     */
+    private synchronized void addConnection(WorkerConnection connection) {
+        connections.add(connection);
+        System.out.println("Distributed: Worker " + connection + " connected (" + connections.size() + " connected)");
+        notifyAll();
+    }
+
+    /**
+     * Remove a worker connection from the list of connections, and hand out the unit it was searching again.
+     * @param connection - The connection to remove.
+     */
+    private synchronized void removeConnection(WorkerConnection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        WorkUnit unit = connection.currentUnit;
+        if (unit != null && !unit.completed && unit.iteration == currentIteration && unit.iteration.solution.get() == null) {
+            System.out.println("Distributed: Reissuing work unit " + Arrays.toString(unit.prefix));
+            pendingUnits.addFirst(unit);
+        }
+        connection.currentUnit = null;
+        notifyAll();
+    }
+
+    /**
+     * Wait for a work unit to hand out to a worker.
+     * @param connection - The connection of the worker.
+     * @return The work unit, or {@code null} if the coordinator has been closed.
+     */
+    private synchronized WorkUnit takeUnit(WorkerConnection connection) {
+        while (pendingUnits.isEmpty() && !closed) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        if (closed) {
+            return null;
+        }
+        connection.currentUnit = pendingUnits.poll();
+        return connection.currentUnit;
+    }
+
+    /**
+     * Record the result of a work unit. If the unit found a solution, the remaining units are dropped and the workers
+     * searching the other units of the iteration are told to stop.
+     * @param connection - The connection of the worker which searched the unit.
+     * @param unit - The work unit.
+     * @param completed - Whether the worker searched the whole unit (rather than being cancelled part-way through).
+     * @param nextBound - The minimum estimate of all nodes in the unit which exceeded the bound.
+     * @param nodesGenerated - The number of nodes generated by the worker.
+     * @param solution - The solution found by the worker, or {@code null} if no solution was found.
+     */
+    private synchronized void completeUnit(WorkerConnection connection, WorkUnit unit, boolean completed, byte nextBound,
+                                           long nodesGenerated, IMove[] solution) {
+        connection.currentUnit = null;
+        BoundIteration iteration = unit.iteration;
+        if (unit.completed || iteration != currentIteration || iteration.solution.get() != null) {
+            return;
+        }
+        iteration.nodesGenerated.add(nodesGenerated);
+
+        if (solution != null) {
+            iteration.solution.compareAndSet(null, solution);
+            pendingUnits.clear();
+
+            for (WorkerConnection other : connections) {
+                if (other.currentUnit != null && other.currentUnit.iteration == iteration) {
+                    try {
+                        other.send(DistributedProtocol.CANCEL, other.currentUnit);
+                    }
+                    catch (IOException e) {
+                        // The connection's own thread will notice the connection has been lost
+                    }
+                }
+            }
+        }
+        else if (!completed) {
+            pendingUnits.addFirst(unit);
+            notifyAll();
+            return;
+        }
+
+        unit.completed = true;
+        remainingUnits--;
+        iteration.updateNextBound(nextBound);
+        notifyAll();
+    }
+
+    /**
+     * Close the coordinator. Connected workers are told to shut down once they have finished their current units,
+     * and a search which is waiting for workers stops.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            System.err.println("Error closing coordinator socket:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Solve random scrambles of a puzzle with a distributed search. Workers are started separately (see {@link DistributedWorker#main}).
+     * @param args - The puzzle type ("cube" or "kilominx"), the scramble length, the number of test runs,
+     *  and optionally the port to accept workers on and the split depth.
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: DistributedCoordinator <cube|kilominx> <scramble-length> <test-runs> [port] [split-depth]");
+            return;
+        }
+        boolean cube = args[0].equals("cube");
+        int scrambleLength = Integer.valueOf(args[1]);
+        int testRuns = Integer.valueOf(args[2]);
+        int port = (args.length > 3) ? Integer.valueOf(args[3]) : DistributedProtocol.DEFAULT_PORT;
+        int splitDepth = (args.length > 4) ? Integer.valueOf(args[4]) : 3;
+
+        PuzzleSolver solver = cube ? new CubeSolver(null) : new KilominxSolver(null);
+        ITwistyPuzzle puzzle = cube ? new Cube() : new Kilominx();
+        solver.setPuzzleInstance(puzzle);
+
+        DistributedCoordinator coordinator;
+        try {
+            coordinator = new DistributedCoordinator(solver, port, splitDepth);
+        }
+        catch (IOException e) {
+            System.err.println("Error listening on port " + port + ":");
+            e.printStackTrace();
+            return;
+        }
+
+        for (int i = 0; i < testRuns; i++) {
+            puzzle.reset();
+            System.out.println("\n -- Starting test run of length " + scrambleLength + " -- ");
+            IMove[] scramble = puzzle.getMoveController().scramble(scrambleLength);
+            System.out.println("Scramble: " + Arrays.toString(scramble));
+
+            IMove[] solution = coordinator.solve();
+            System.out.println("Solution: " + Arrays.toString(solution));
+            System.out.println("Solution length: " + solution.length);
+            System.out.println(" -- Test run complete -- \n");
+        }
+        coordinator.close();
+    }
+}
@@ -0,0 +1,93 @@
+package solvers;
+
+import models.IMoveController.IMove;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The messages sent between a {@link DistributedCoordinator} and its {@link DistributedWorker}s over a socket.
+ * <p>
+ * Each worker connection starts with a hello message from the worker: magic number (int), puzzle type (UTF string).
+ * The coordinator then sends messages starting with a message type (byte):
+ * <ul>
+ * <li>{@link #WORK_UNIT}: unit id (int), packed initial state (2 longs), bound (byte), prefix length (byte),
+ *  then the index of each move in the prefix (1 byte each).</li>
+ * <li>{@link #CANCEL}: unit id (int) of the unit which should stop being searched.</li>
+ * <li>{@link #SHUTDOWN}: no data, the connection is closed.</li>
+ * </ul>
+ * The worker sends messages starting with a message type (byte):
+ * <ul>
+ * <li>{@link #RESULT}: the reply to a work unit: unit id (int), completed (boolean), next bound (byte), nodes generated (long),
+ *  solution length (byte, -1 for no solution), then the index of each move in the solution.</li>
+ * <li>{@link #HEARTBEAT}: unit id (int) of the unit being searched, sent every {@link #HEARTBEAT_INTERVAL_MILLIS} while
+ *  the search of the unit is still making progress.</li>
+ * </ul>
+ * A work unit is leased to a worker: if the coordinator hears nothing from the worker for {@link #LEASE_MILLIS} while it is
+ * searching a unit, the worker is treated as lost, and the unit is handed out again.
+ */
+final class DistributedProtocol {
+
+    // "TPSD" (Twisty Puzzle Search Distributed)
+    static final int MAGIC_NUMBER = 0x54505344;
+    static final int DEFAULT_PORT = 7340;
+
+    // The types of messages sent from the coordinator to a worker
+    static final byte WORK_UNIT = 1;
+    static final byte CANCEL = 2;
+    static final byte SHUTDOWN = 3;
+    // The types of messages sent from a worker to the coordinator
+    static final byte RESULT = 4;
+    static final byte HEARTBEAT = 5;
+
+    // The time between heartbeats of a worker, and the time after its last message at which its work unit is handed out again
+    static final int HEARTBEAT_INTERVAL_MILLIS = 10000;
+    static final int LEASE_MILLIS = 60000;
+
+    /**
+     * This class only contains static methods, so it should not be instantiated.
+     */
+    private DistributedProtocol() {}
+
+    /**
+     * Write a sequence of moves as its length followed by the index of each move.
+     * @param out - The stream to write the moves to.
+     * @param moves - The moves to write (or {@code null}, which is written as a length of -1).
+     * @throws IOException if the moves can't be written.
+     */
+    static void writeMoves(DataOutputStream out, IMove[] moves) throws IOException {
+        if (moves == null) {
+            out.writeByte(-1);
+            return;
+        }
+        out.writeByte(moves.length);
+        for (IMove move : moves) {
+            out.writeByte(move.ordinal());
+        }
+    }
+
+    /**
+     * Read a sequence of moves written by {@link #writeMoves}.
+     * @param in - The stream to read the moves from.
+     * @param moves - The array of valid moves for the puzzle (see {@link models.IMoveController#getMoves}).
+     * @return The moves read, or {@code null} if a length of -1 was read.
+     * @throws IOException if the moves can't be read, or contain an invalid move index.
+     */
+    static IMove[] readMoves(DataInputStream in, IMove[] moves) throws IOException {
+        int length = in.readByte();
+        if (length < 0) {
+            return null;
+        }
+
+        IMove[] sequence = new IMove[length];
+        for (int i = 0; i < length; i++) {
+            int moveIndex = in.readUnsignedByte();
+            if (moveIndex >= moves.length) {
+                throw new IOException("Invalid move index in message: " + moveIndex);
+            }
+            sequence[i] = moves[moveIndex];
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,312 @@
+package solvers;
+
+import models.Cube;
+import models.IMoveController.IMove;
+import models.ITwistyPuzzle;
+import models.Kilominx;
+import patterndatabases.StorageMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A worker which searches the work units handed out by a {@link DistributedCoordinator}.
+ * <p>
+ * The pattern databases of the solver are loaded once, and shared by all connections of the worker, which each search
+ * one work unit at a time on their own thread. A connection keeps its search worker (and puzzle copy) between units of the
+ * same puzzle state, so consecutive units only make and undo the moves where their prefixes differ.
+ */
+public class DistributedWorker {
+
+    final PuzzleSolver solver;
+
+    /**
+     * A work unit received from the coordinator.
+     */
+    private static class WorkUnit {
+        private final int id;
+        private final long[] packedState;
+        private final byte bound;
+        private final IMove[] prefix;
+        // The token which stops the search of the unit when the coordinator cancels it
+        private final ProgressToken cancellationToken = new ProgressToken();
+
+        /**
+         * Constructor for a WorkUnit.
+         * @param id - The id of the unit.
+         * @param packedState - The packed initial puzzle state of the search.
+         * @param bound - The bound of the iteration the unit belongs to.
+         * @param prefix - The moves made from the initial puzzle state to reach the root of the subtree.
+         */
+        private WorkUnit(int id, long[] packedState, byte bound, IMove[] prefix) {
+            this.id = id;
+            this.packedState = packedState;
+            this.bound = bound;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * A cancellation token which counts how many times the search has checked it. The search checks its token every few
+     * thousand nodes, so the count shows whether the search is still making progress (see {@link #sendHeartbeats}).
+     */
+    private static class ProgressToken extends CancellationToken {
+        // Only the search thread of the unit writes the count
+        private volatile long checks = 0;
+
+        @Override
+        public boolean isCancelled() {
+            checks++;
+            return super.isCancelled();
+        }
+    }
+
+    /**
+     * Constructor for a DistributedWorker.
+     * @param solver - The solver which provides the heuristic estimates for puzzle states. Its puzzle is only used for its type.
+     * @throws IllegalArgumentException if the solver uses a transposition table, as the entries of a table are only valid
+     *  for the puzzle state they were stored for, while a worker may search units of several puzzle states.
+     */
+    public DistributedWorker(PuzzleSolver solver) throws IllegalArgumentException {
+        if (solver.getTranspositionTable() != null) {
+            throw new IllegalArgumentException("A distributed worker can't use a transposition table.");
+        }
+        this.solver = solver;
+    }
+
+    /**
+     * Connect to a coordinator and search work units until the coordinator shuts down or the connections are lost.
+     * @param host - The host name of the coordinator.
+     * @param port - The port the coordinator accepts workers on.
+     * @param threads - The number of connections to open, each of which searches one work unit at a time.
+     * @throws IllegalArgumentException if the number of threads is less than 1.
+     */
+    public void run(String host, int port, int threads) throws IllegalArgumentException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+
+        List<Thread> connectionThreads = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> serve(host, port), "worker-" + i);
+            thread.start();
+            connectionThreads.add(thread);
+        }
+        for (Thread thread : connectionThreads) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serve a single connection to the coordinator. A reader thread receives the messages from the coordinator,
+     * so that a cancel message can stop the unit being searched by this thread.
+     * @param host - The host name of the coordinator.
+     * @param port - The port the coordinator accepts workers on.
+     */
+    private void serve(String host, int port) {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(DistributedProtocol.MAGIC_NUMBER);
+            out.writeUTF(solver.puzzle.getClass().getSimpleName());
+            out.flush();
+
+            // An empty unit marks the end of the connection
+            WorkUnit endOfConnection = new WorkUnit(-1, null, (byte) 0, null);
+            BlockingQueue<WorkUnit> units = new LinkedBlockingQueue<WorkUnit>();
+            Thread reader = new Thread(() -> readMessages(in, units, endOfConnection), Thread.currentThread().getName() + "-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            // The unit being searched, which keeps its lease with the coordinator while its search makes progress
+            AtomicReference<WorkUnit> currentUnit = new AtomicReference<WorkUnit>();
+            Thread heartbeat = new Thread(() -> sendHeartbeats(out, currentUnit), Thread.currentThread().getName() + "-heartbeat");
+            heartbeat.setDaemon(true);
+            heartbeat.start();
+
+            try {
+                IDAStarWorker worker = null;
+                long[] workerState = null;
+
+                while (true) {
+                    WorkUnit unit = units.take();
+                    if (unit == endOfConnection) {
+                        return;
+                    }
+
+                    // Only create a new search worker when the coordinator moves on to a new puzzle state
+                    if (worker == null || !Arrays.equals(workerState, unit.packedState)) {
+                        ITwistyPuzzle puzzle = solver.puzzle.copy();
+                        puzzle.unpackState(unit.packedState);
+                        worker = solver.createWorker(puzzle, false);
+                        workerState = unit.packedState;
+                    }
+
+                    SearchOptions options = new SearchOptions();
+                    options.cancellationToken = unit.cancellationToken;
+                    BoundIteration iteration = new BoundIteration(unit.bound, options);
+                    currentUnit.set(unit);
+                    worker.searchSubtree(unit.prefix, iteration);
+                    currentUnit.set(null);
+
+                    // Messages are sent one at a time by locking the output stream, as heartbeats are sent by another thread
+                    synchronized (out) {
+                        out.writeByte(DistributedProtocol.RESULT);
+                        out.writeInt(unit.id);
+                        out.writeBoolean(iteration.stopStatus == null);
+                        out.writeByte(iteration.nextBound.get());
+                        out.writeLong(iteration.nodesGenerated.sum());
+                        DistributedProtocol.writeMoves(out, iteration.solution.get());
+                        out.flush();
+                    }
+                }
+            }
+            finally {
+                heartbeat.interrupt();
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Error communicating with coordinator:");
+            e.printStackTrace();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Send a heartbeat to the coordinator at a fixed interval while the unit being searched makes progress, until the
+     * thread is interrupted at the end of the connection. If the search stops making progress (e.g. the search thread hangs), no heartbeats are sent,
+     * so the lease of the unit expires and the coordinator hands it out again.
+     * @param out - The stream to send heartbeats to.
+     * @param currentUnit - The unit being searched by the connection (which holds {@code null} between units).
+     */
+    private void sendHeartbeats(DataOutputStream out, AtomicReference<WorkUnit> currentUnit) {
+        WorkUnit lastUnit = null;
+        long lastChecks = 0;
+        try {
+            while (true) {
+                Thread.sleep(DistributedProtocol.HEARTBEAT_INTERVAL_MILLIS);
+
+                // A unit which has just started hasn't had to check its token yet
+                WorkUnit unit = currentUnit.get();
+                if (unit != null && (unit != lastUnit || unit.cancellationToken.checks != lastChecks)) {
+                    synchronized (out) {
+                        out.writeByte(DistributedProtocol.HEARTBEAT);
+                        out.writeInt(unit.id);
+                        out.flush();
+                    }
+                }
+                lastUnit = unit;
+                lastChecks = (unit == null) ? 0 : unit.cancellationToken.checks;
+            }
+        }
+        catch (IOException e) {
+            // The search thread notices the connection has been closed
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Read the messages from the coordinator until the connection is shut down or lost.
+     * Work units are passed to the connection's search thread, and cancel messages cancel the last unit received.
+     * The coordinator only hands out a new unit once it has the result of the last one, so the last unit received is
+     * the only unit which can be cancelled (even if the search thread hasn't started it yet).
+     * @param in - The stream to read messages from.
+     * @param units - The queue to pass work units to.
+     * @param endOfConnection - The unit passed to the queue when the connection ends.
+     */
+    private void readMessages(DataInputStream in, BlockingQueue<WorkUnit> units, WorkUnit endOfConnection) {
+        IMove[] moves = solver.puzzle.getMoveController().getMoves();
+        WorkUnit lastUnit = null;
+        try {
+            while (true) {
+                byte type = in.readByte();
+                if (type == DistributedProtocol.WORK_UNIT) {
+                    int id = in.readInt();
+                    long[] packedState = new long[] {in.readLong(), in.readLong()};
+                    byte bound = in.readByte();
+                    lastUnit = new WorkUnit(id, packedState, bound, DistributedProtocol.readMoves(in, moves));
+                    units.add(lastUnit);
+                }
+                else if (type == DistributedProtocol.CANCEL) {
+                    int id = in.readInt();
+                    if (lastUnit != null && lastUnit.id == id) {
+                        lastUnit.cancellationToken.cancel();
+                    }
+                }
+                else if (type == DistributedProtocol.SHUTDOWN) {
+                    System.out.println("Distributed: Coordinator shut down");
+                    break;
+                }
+                else {
+                    throw new IOException("Invalid message type: " + type);
+                }
+            }
+        }
+        catch (IOException e) {
+            System.out.println("Distributed: Lost connection to coordinator");
+        }
+        finally {
+            // Stop any search in progress, as its result can no longer be sent
+            if (lastUnit != null) {
+                lastUnit.cancellationToken.cancel();
+            }
+            units.add(endOfConnection);
+        }
+    }
+
+    /**
+     * Start a worker which serves a coordinator (see {@link DistributedCoordinator#main}).
+     * @param args - The puzzle type ("cube" or "kilominx"), and optionally the host name and port of the coordinator,
+     *  the number of threads to search with, whether the database files are mapped into memory (so workers on the same host share them),
+     *  whether databases read onto the heap are packed into 4 bits per entry, whether databases only keep their entries modulo 3,
+     *  and the number of adjacent database entries folded into one.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: DistributedWorker <cube|kilominx> [host] [port] [threads] [mapped] [packed] [modulo] [fold]");
+            return;
+        }
+        boolean cube = args[0].equals("cube");
+        String host = (args.length > 1) ? args[1] : "localhost";
+        int port = (args.length > 2) ? Integer.valueOf(args[2]) : DistributedProtocol.DEFAULT_PORT;
+        int threads = (args.length > 3) ? Integer.valueOf(args[3]) : Runtime.getRuntime().availableProcessors();
+        StorageMode storageMode;
+        try {
+            storageMode = new StorageMode(args.length > 4 && Boolean.valueOf(args[4]), args.length > 5 && Boolean.valueOf(args[5]),
+                                          args.length > 6 && Boolean.valueOf(args[6]), (args.length > 7) ? Integer.valueOf(args[7]) : 1);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Invalid storage mode: " + e.getMessage());
+            return;
+        }
+
+        PuzzleSolver solver = cube ? new CubeSolver(null, false, storageMode) : new KilominxSolver(null, false, storageMode);
+        solver.setPuzzleInstance(cube ? new Cube() : new Kilominx());
+
+        System.out.println("Distributed: Connecting " + threads + " threads to " + host + ":" + port);
+        new DistributedWorker(solver).run(host, port, threads);
+    }
+}
@@ -0,0 +1,504 @@
+package solvers;
+
+import models.IMoveController;
+import models.IMoveController.IMove;
+import models.ITwistyPuzzle;
+import models.MovePruningAutomaton;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A worker which performs the depth-first searches of an IDA* bound iteration.
+ * Each worker owns a single mutable copy of the puzzle, and walks the search tree by making and undoing moves on it,
+ * so no puzzle states are copied during the search. The moves from the initial puzzle state to the current node are
+ * stored in a preallocated array indexed by depth.
+ * The puzzle state of a node is only accessed through {@link #makeMove}, {@link #undoMove}, {@link #isSolved}, {@link #packState},
+ * {@link #getDatabaseValues} and {@link #getDualNumberOfMoves}, so subclasses can search other representations of the puzzle (see {@link CoordinateWorker}).
+ * A worker must only be used by one thread at a time.
+ */
+class IDAStarWorker {
+
+    // Assume a maximum of 100 moves to optimally solve the puzzle
+    static final int MAX_DEPTH = 100;
+    // The number of nodes generated between checks of whether the iteration should be stopped
+    static final int STOP_CHECK_INTERVAL = 4096;
+
+    final PuzzleSolver solver;
+    final ITwistyPuzzle puzzle;
+    private final IMoveController moveController;
+    final IMove[] moves;
+    private final MovePruningAutomaton automaton;
+    private final TranspositionTable transpositionTable;
+    private final boolean findAllSolutions;
+
+    // Scratch buffer for the packed puzzle state used to probe the transposition table
+    private final long[] packedState = new long[2];
+
+    // The moves made from the initial puzzle state to reach the current puzzle state
+    final IMove[] path = new IMove[MAX_DEPTH];
+    int pathLength = 0;
+
+    // The state of the move pruning automaton at each depth of the current path
+    private final int[] automatonStates = new int[MAX_DEPTH + 1];
+
+    // Scratch buffers for the children of the node at each depth. Each child is stored as an int, with the estimated
+    // moves in the upper bits, the index of the child's database values in the next 8 bits, and the move index in the
+    // lowest 8 bits, so that sorting the ints sorts the children
+    private final int[][] children;
+
+    // Scratch buffers for the moves to the children of the current node which are estimated together, and their estimates
+    private final IMove[] childMoves;
+    private final byte[] childEstimates;
+
+    // The database values and indices tracked by the solver (see PuzzleSolver.getNumberOfDatabaseValues) of the children of
+    // the node at each depth, and of each node on the current path (which refer to the arrays of the children of its parent)
+    private final byte[][][] childValues;
+    private final int[][][] childIndices;
+    private final byte[][] nodeValues = new byte[MAX_DEPTH + 1][];
+    private final int[][] nodeIndices = new int[MAX_DEPTH + 1][];
+    private final byte[] rootValues;
+    private final int[] rootIndices;
+
+    // The estimated number of moves to solve the puzzle state of each node on the current path (only kept for dual lookups,
+    // where it is raised by bidirectional pathmax; see PuzzleSolver.setDualLookups)
+    private final byte[] nodeEstimates = new byte[MAX_DEPTH + 1];
+
+    // The minimum estimate of all nodes which exceeded the bound, and the number of nodes generated,
+    // since the last time they were passed to the iteration
+    private byte nextBound = Byte.MAX_VALUE;
+    private long nodesGenerated = 0;
+    // The node count at which the worker next checks whether the iteration should be stopped
+    private long nextStopCheck = STOP_CHECK_INTERVAL;
+
+    /**
+     * Constructor for an IDAStarWorker.
+     * @param solver - The solver which provides the heuristic estimates for puzzle states.
+     * @param puzzle - The initial puzzle state to search from. The worker takes ownership of this puzzle and modifies it.
+     * @param findAllSolutions - Whether the worker searches for all optimal solutions, in which case
+     *  move sequences are only pruned if they have a shorter equivalent sequence.
+     */
+    IDAStarWorker(PuzzleSolver solver, ITwistyPuzzle puzzle, boolean findAllSolutions) {
+        this.solver = solver;
+        this.puzzle = puzzle;
+        this.moveController = puzzle.getMoveController();
+        this.moves = moveController.getMoves();
+        this.automaton = findAllSolutions ? moveController.getOptimalSequenceAutomaton() : moveController.getPruningAutomaton();
+        this.findAllSolutions = findAllSolutions;
+        this.automatonStates[0] = MovePruningAutomaton.INITIAL_STATE;
+        this.transpositionTable = solver.transpositionTable;
+        this.children = new int[MAX_DEPTH][moves.length];
+        this.childMoves = new IMove[moves.length];
+        this.childEstimates = new byte[moves.length];
+        this.childValues = new byte[MAX_DEPTH][moves.length][solver.getNumberOfDatabaseValues()];
+        this.childIndices = new int[MAX_DEPTH][moves.length][solver.getNumberOfDatabaseValues()];
+        this.rootValues = new byte[solver.getNumberOfDatabaseValues()];
+        this.rootIndices = new int[solver.getNumberOfDatabaseValues()];
+    }
+
+    /**
+     * Move the worker's puzzle to the node reached by making a prefix of moves from the initial puzzle state.
+     * Only the moves which differ from the current path are undone and made.
+     * @param prefix - The moves to make from the initial puzzle state.
+     */
+    void moveTo(IMove[] prefix) {
+        // Find the length of the common prefix of the current path and the new prefix
+        int common = 0;
+        while (common < pathLength && common < prefix.length && path[common] == prefix[common]) {
+            common++;
+        }
+
+        // Undo moves back to the common prefix, then make the remaining moves of the new prefix
+        while (pathLength > common) {
+            popMove();
+        }
+        while (pathLength < prefix.length) {
+            pushMove(prefix[pathLength]);
+        }
+    }
+
+    /**
+     * Make a move on the puzzle, and add it to the end of the current path.
+     * @param move - The move to make.
+     */
+    private void pushMove(IMove move) {
+        makeMove(move, pathLength);
+        automatonStates[pathLength + 1] = automaton.nextState(automatonStates[pathLength], move.ordinal());
+        path[pathLength++] = move;
+    }
+
+    /**
+     * Undo the last move of the current path.
+     */
+    private void popMove() {
+        pathLength--;
+        undoMove(path[pathLength], pathLength);
+    }
+
+    /**
+     * Make a move on the puzzle state of the node at a depth of the current path.
+     * By default the move is made on the worker's puzzle.
+     * @param move - The move to make.
+     * @param depth - The depth of the node the move is made from.
+     */
+    void makeMove(IMove move, int depth) {
+        moveController.makeMove(move);
+    }
+
+    /**
+     * Undo a move made by {@link #makeMove}.
+     * @param move - The move to undo.
+     * @param depth - The depth of the node the move was made from.
+     */
+    void undoMove(IMove move, int depth) {
+        moveController.undoMove(move);
+    }
+
+    /**
+     * Check if the puzzle state of the node at a depth of the current path is solved.
+     * @param depth - The depth of the node (the puzzle state must have been reached by making the moves of the path up to the depth).
+     * @return {@code true} if the puzzle state is solved, {@code false} otherwise.
+     */
+    boolean isSolved(int depth) {
+        return puzzle.isSolved();
+    }
+
+    /**
+     * Pack the puzzle state of the node at a depth of the current path (see {@link ITwistyPuzzle#packState}).
+     * @param depth - The depth of the node.
+     * @param packedState - The array to write the packed state to.
+     */
+    void packState(int depth, long[] packedState) {
+        puzzle.packState(packedState);
+    }
+
+    /**
+     * Calculate the database values and indices tracked by the solver for the current node (see {@link PuzzleSolver#getDatabaseValues}).
+     * @param values - The array to store the value of each database in.
+     * @param indices - The array to store the index of each database in.
+     */
+    void getDatabaseValues(byte[] values, int[] indices) {
+        solver.getDatabaseValues(puzzle, values, indices);
+    }
+
+    /**
+     * Estimate the number of moves to solve the inverse of the puzzle state of the node at a depth of the current path
+     * (see {@link PuzzleSolver#getDualMaxNumberOfMoves}). By default the worker's puzzle is estimated.
+     * @param depth - The depth of the node (the puzzle state must have been reached by making the moves of the path up to the depth).
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the node in the search tree.
+     * @return The estimated number of moves to solve the inverse state.
+     */
+    byte getDualNumberOfMoves(int depth, byte boundHint, byte depthHint) {
+        return solver.getDualMaxNumberOfMoves(puzzle, boundHint, depthHint);
+    }
+
+    /**
+     * Expand the search tree of a bound iteration from the current node up to the split depth, and collect the move
+     * prefixes of the roots of the remaining subtrees.
+     * Children are collected in order of their estimated moves, so the most promising subtrees are searched first.
+     * @param splitDepth - The depth of the subtree roots.
+     * @param iteration - The bound iteration being expanded.
+     * @param subtrees - The list to add the subtree root prefixes to.
+     */
+    void collectSubtrees(byte splitDepth, BoundIteration iteration, List<IMove[]> subtrees) {
+        initialiseNodeValues();
+        collect(splitDepth, iteration, subtrees);
+        flushNextBound(iteration);
+    }
+
+    /**
+     * Recursively collect the subtree root prefixes below the current node (see {@link #collectSubtrees}).
+     * @param splitDepth - The depth of the subtree roots.
+     * @param iteration - The bound iteration being expanded.
+     * @param subtrees - The list to add the subtree root prefixes to.
+     */
+    private void collect(byte splitDepth, BoundIteration iteration, List<IMove[]> subtrees) {
+        if (pathLength == splitDepth) {
+            subtrees.add(Arrays.copyOf(path, pathLength));
+            return;
+        }
+
+        int depth = pathLength;
+        int childCount = expand(iteration);
+
+        for (int i = 0; i < childCount; i++) {
+            nodeValues[depth + 1] = childValues[depth][(children[depth][i] >> 8) & 0xFF];
+            nodeIndices[depth + 1] = childIndices[depth][(children[depth][i] >> 8) & 0xFF];
+            nodeEstimates[depth + 1] = (byte) ((children[depth][i] >> 16) - (depth + 1));
+            pushMove(moves[children[depth][i] & 0xFF]);
+            collect(splitDepth, iteration, subtrees);
+            popMove();
+        }
+    }
+
+    /**
+     * Perform a depth-first search of the subtree rooted at the node reached by a prefix of moves, up to the bound of the iteration.
+     * The search stops early if a solution is found by any worker searching the same iteration.
+     * @param prefix - The moves made from the initial puzzle state to reach the root of the subtree.
+     * @param iteration - The bound iteration being searched.
+     */
+    void searchSubtree(IMove[] prefix, BoundIteration iteration) {
+        moveTo(prefix);
+        initialiseNodeValues();
+        search(iteration);
+        flushNextBound(iteration);
+    }
+
+    /**
+     * Calculate the database values and indices tracked by the solver for the current node, which is the root of the subtree
+     * being searched. The values and indices of all nodes below it are calculated along with their estimates.
+     */
+    private void initialiseNodeValues() {
+        if (rootValues.length > 0) {
+            getDatabaseValues(rootValues, rootIndices);
+        }
+        nodeValues[pathLength] = rootValues;
+        nodeIndices[pathLength] = rootIndices;
+        // The estimate of the root isn't known, but 0 is always a valid lower bound for pathmax
+        nodeEstimates[pathLength] = 0;
+    }
+
+    /**
+     * Pass the worker's next bound and node count to the iteration, so that only one shared update is made per subtree.
+     * @param iteration - The bound iteration being searched.
+     */
+    private void flushNextBound(BoundIteration iteration) {
+        iteration.updateNextBound(nextBound);
+        iteration.nodesGenerated.add(nodesGenerated);
+        nextBound = Byte.MAX_VALUE;
+        nodesGenerated = 0;
+        nextStopCheck = STOP_CHECK_INTERVAL;
+    }
+
+    /**
+     * Recursively search the subtree of the current node.
+     * @param iteration - The bound iteration being searched.
+     * @return {@code true} if a solution was found in the subtree, {@code false} otherwise.
+     */
+    private boolean search(BoundIteration iteration) {
+        // Stop if another worker has found a solution, or the iteration has been stopped
+        if (iteration.isFinished()) {
+            return false;
+        }
+        // Periodically check if the deadline of the search has passed or the search has been cancelled
+        if (nodesGenerated >= nextStopCheck) {
+            nextStopCheck = nodesGenerated + STOP_CHECK_INTERVAL;
+            if (iteration.checkStopped()) {
+                return false;
+            }
+        }
+
+        // If the current node is at the bound depth, check if the puzzle is solved
+        if (pathLength == iteration.bound) {
+            if (isSolved(pathLength)) {
+                return iteration.recordSolution(path, pathLength);
+            }
+            return false;
+        }
+
+        // With weighted estimates, solutions can be found above the bound depth
+        if (iteration.options.weight != 100 && pathLength > 0 && isSolved(pathLength)) {
+            return iteration.recordSolution(path, pathLength);
+        }
+
+        // If the current node was already reached at a smaller depth (or at the same depth with the same
+        // automaton state, which determines the moves searched from it) in this iteration, its subtree has already been searched.
+        // When finding all solutions, nodes reached at the same depth lead to different solutions, so they are never cut off
+        if (transpositionTable != null && pathLength > 0) {
+            packState(pathLength, packedState);
+            if (transpositionTable.probe(packedState, iteration.bound, (byte) pathLength, automatonStates[pathLength], !findAllSolutions)) {
+                return false;
+            }
+        }
+
+        // If the children of the current node are at the bound depth, there is nothing to gain from sorting them
+        if (pathLength == iteration.bound - 1) {
+            return searchLeaves(iteration);
+        }
+
+        int depth = pathLength;
+        int childCount = expand(iteration);
+
+        for (int i = 0; i < childCount; i++) {
+            nodeValues[depth + 1] = childValues[depth][(children[depth][i] >> 8) & 0xFF];
+            nodeIndices[depth + 1] = childIndices[depth][(children[depth][i] >> 8) & 0xFF];
+            nodeEstimates[depth + 1] = (byte) ((children[depth][i] >> 16) - (depth + 1));
+            pushMove(moves[children[depth][i] & 0xFF]);
+            boolean solved = search(iteration);
+            popMove();
+
+            if (solved) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the children of the current node (which are at the bound depth) in move order.
+     * The children are estimated together, and only the children estimated to be within the bound are checked to see if
+     * they are solved. As soon as a child is found to be solved, its remaining siblings are not checked (unless all
+     * solutions are being found).
+     * @param iteration - The bound iteration being searched.
+     * @return {@code true} if one of the children is solved, {@code false} otherwise.
+     */
+    private boolean searchLeaves(BoundIteration iteration) {
+        int childCount = estimateChildren(iteration);
+
+        for (int i = 0; i < childCount; i++) {
+            byte estimatedChildMoves = childEstimates[i];
+
+            if (estimatedChildMoves <= iteration.bound) {
+                IMove move = childMoves[i];
+                makeMove(move, pathLength);
+                if (isSolved(pathLength + 1)) {
+                    path[pathLength] = move;
+                    if (iteration.recordSolution(path, pathLength + 1)) {
+                        undoMove(move, pathLength);
+                        return true;
+                    }
+                }
+                undoMove(move, pathLength);
+            }
+            else if (estimatedChildMoves < nextBound) {
+                // nextBound is the minimum of all child node moves greater than the current bound
+                nextBound = estimatedChildMoves;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generate the children of the current node which are estimated to be solvable within the bound, and sort them by
+     * their estimated moves in ascending order. Children which exceed the bound lower the next bound of the iteration.
+     * The children are stored in the scratch buffer for the current depth, so no objects are allocated.
+     * @param iteration - The bound iteration being searched.
+     * @return The number of children stored in the scratch buffer for the current depth.
+     */
+    private int expand(BoundIteration iteration) {
+        int[] buffer = children[pathLength];
+        int childCount = 0;
+        int estimatedCount = estimateChildren(iteration);
+
+        for (int j = 0; j < estimatedCount; j++) {
+            byte estimatedChildMoves = childEstimates[j];
+
+            if (estimatedChildMoves <= iteration.bound) {
+                // Insertion sort the child into the buffer (children with equal estimates stay in move order),
+                // keeping the index of its database values and indices as well as its move index
+                int child = (estimatedChildMoves << 16) | (j << 8) | childMoves[j].ordinal();
+                int i = childCount++;
+                while (i > 0 && buffer[i - 1] > child) {
+                    buffer[i] = buffer[i - 1];
+                    i--;
+                }
+                buffer[i] = child;
+            }
+            else if (estimatedChildMoves < nextBound) {
+                // nextBound is the minimum of all child node moves greater than the current bound
+                nextBound = estimatedChildMoves;
+            }
+        }
+        return childCount;
+    }
+
+    /**
+     * Generate the children of the current node which aren't pruned by the move pruning automaton, and estimate the total
+     * number of moves to solve the puzzle through each child, which is the depth of the child plus the (weighted) estimated
+     * number of moves to solve its puzzle state. The children are estimated together, so the solver can overlap their
+     * database lookups (see {@link PuzzleSolver#getMaxNumberOfMoves(ITwistyPuzzle, IMove[], int, byte, byte, byte[])}), and the
+     * estimates within the bound are then raised with the large databases of the solver, if it has any (see {@link PuzzleSolver#probeLargeDatabases}).
+     * The moves to the children and their estimates are stored in the child scratch buffers, in move order.
+     * An estimate is {@link Byte#MAX_VALUE} if the child can't be solved within the maximum solution length.
+     * @param iteration - The bound iteration being searched.
+     * @return The number of children.
+     */
+    private int estimateChildren(BoundIteration iteration) {
+        int childCount = 0;
+        int automatonState = automatonStates[pathLength];
+
+        for (int moveIndex = 0; moveIndex < moves.length; moveIndex++) {
+            // If the move doesn't make the move sequence redundant
+            if (automaton.nextState(automatonState, moveIndex) != MovePruningAutomaton.DEAD_STATE) {
+                childMoves[childCount++] = moves[moveIndex];
+            }
+        }
+        nodesGenerated += childCount;
+
+        byte depth = (byte) (pathLength + 1);
+        SearchOptions options = iteration.options;
+        if (options.weight == 100 && options.maxSolutionLength == Byte.MAX_VALUE) {
+            solver.getMaxNumberOfMoves(puzzle, nodeValues[pathLength], nodeIndices[pathLength], childMoves, childCount, iteration.bound, depth,
+                                       childEstimates, childValues[pathLength], childIndices[pathLength]);
+            if (solver.largeDatabases != null) {
+                solver.probeLargeDatabases(puzzle, childMoves, childCount, iteration.bound, depth, childEstimates);
+            }
+            if (solver.dualLookups) {
+                estimateDualChildren(childCount, iteration.bound, depth);
+            }
+            for (int i = 0; i < childCount; i++) {
+                childEstimates[i] = (byte) (depth + childEstimates[i]);
+            }
+            return childCount;
+        }
+
+        // The largest unweighted estimate within both the bound and the maximum solution length,
+        // so the heuristic can still return as soon as an estimate exceeds it
+        int maxEstimate = Math.min(100 * (iteration.bound - depth) / options.weight, options.maxSolutionLength - depth);
+        solver.getMaxNumberOfMoves(puzzle, nodeValues[pathLength], nodeIndices[pathLength], childMoves, childCount, (byte) maxEstimate,
+                                   (byte) 0, childEstimates, childValues[pathLength], childIndices[pathLength]);
+        if (solver.largeDatabases != null) {
+            solver.probeLargeDatabases(puzzle, childMoves, childCount, (byte) maxEstimate, (byte) 0, childEstimates);
+        }
+
+        for (int i = 0; i < childCount; i++) {
+            byte estimatedMoves = childEstimates[i];
+            if (depth + estimatedMoves > options.maxSolutionLength) {
+                childEstimates[i] = Byte.MAX_VALUE;
+            }
+            else {
+                childEstimates[i] = (byte) Math.min(Byte.MAX_VALUE - 1, depth + (estimatedMoves * options.weight + 99) / 100);
+            }
+        }
+        return childCount;
+    }
+
+    /**
+     * Raise the (unweighted) estimates of the children of the current node with dual lookups, then propagate the estimates
+     * between the node and its children with bidirectional pathmax (see {@link PuzzleSolver#setDualLookups}).
+     * Children which are already cut off, or are at the bound depth (where only solved states are within the bound, and
+     * checking them is cheaper than a lookup), aren't looked up.
+     * @param childCount - The number of children.
+     * @param bound - The bound of the iteration.
+     * @param depth - The depth of the children.
+     */
+    private void estimateDualChildren(int childCount, byte bound, byte depth) {
+        if (depth < bound) {
+            for (int i = 0; i < childCount; i++) {
+                if (depth + childEstimates[i] <= bound) {
+                    makeMove(childMoves[i], pathLength);
+                    byte dualEstimate = getDualNumberOfMoves(pathLength + 1, bound, depth);
+                    undoMove(childMoves[i], pathLength);
+
+                    if (dualEstimate > childEstimates[i]) {
+                        childEstimates[i] = dualEstimate;
+                    }
+                }
+            }
+        }
+
+        // A node is at most one move further from being solved than any of its children, and the other way around.
+        // If the node's estimate is raised past the bound, so are all of its children's estimates, which cuts them all off
+        int nodeEstimate = nodeEstimates[pathLength];
+        for (int i = 0; i < childCount; i++) {
+            nodeEstimate = Math.max(nodeEstimate, childEstimates[i] - 1);
+        }
+        nodeEstimates[pathLength] = (byte) nodeEstimate;
+        for (int i = 0; i < childCount; i++) {
+            if (childEstimates[i] < nodeEstimate - 1) {
+                childEstimates[i] = (byte) (nodeEstimate - 1);
+            }
+        }
+    }
+}
@@ -2,24 +2,108 @@ package solvers;
 
 import models.Kilominx;
 import models.ITwistyPuzzle;
+import models.IMoveController.IMove;
+import patterndatabases.IndexKernel;
+import patterndatabases.LongPatternDatabase;
+import patterndatabases.PatternDatabase;
+import patterndatabases.StorageMode;
 import patterndatabases.kilominx.FaceKubiesPatternDatabase;
+import patterndatabases.kilominx.LargeFaceKubiesPatternDatabase;
+import patterndatabases.kilominx.SmallKubiesPatternDatabase;
 import patterndatabases.kilominx.SparseKubiesPatternDatabase;
 
+import java.util.Arrays;
+
 /**
  * An optimal solver for a Kilominx.
  */
 public class KilominxSolver extends PuzzleSolver {
     
+    SmallKubiesPatternDatabase[] smallPDBs;
     FaceKubiesPatternDatabase[] facePDBs;
     SparseKubiesPatternDatabase[] sparsePDBs;
+    // All of the databases in the order they are checked (small PDBs first, as they stay in the cache, then face PDBs)
+    PatternDatabase[] allPDBs;
+    // The offset of the face and sparse PDBs in allPDBs
+    int faceOffset, sparseOffset;
+
+    // A bit mask for each kubie of the databases (in the order of allPDBs) which look at the kubie,
+    // and the positions whose kubies are moved by each move
+    int[] kubieDatabaseMasks;
+    byte[][] movePositions;
+
+    // The kernels which calculate the indices of all small, face and sparse PDBs at once, or null if they aren't
+    // vectorised (a scalar kernel is slower than letting each database calculate its own index)
+    IndexKernel smallKernel, faceKernel, sparseKernel;
+
+    // How the databases are kept in memory when they are read from their files (including the large databases)
+    private final StorageMode storageMode;
+
+    // The kubie table of each thread, which is built once per kilominx state and shared by all databases
+    private final ThreadLocal<KubieTable> kubieTables = ThreadLocal.withInitial(KubieTable::new);
+
+    /**
+     * The scratch buffers used by a thread to calculate database indices and values.
+     */
+    private static class KubieTable {
+        // The position and orientation of each kubie (see Kilominx.getKubiePositions)
+        private final byte[] positions = new byte[20];
+        private final byte[] orientations = new byte[20];
+        // The position and orientation of each kubie of the inverse kilominx state (see getDualMaxNumberOfMoves)
+        private final byte[] dualPositions = new byte[20];
+        private final byte[] dualOrientations = new byte[20];
+        // A bit mask for each position of the databases which look at the kubie in the position,
+        // and a bit mask for each child of the databases which are changed by its move
+        private final int[] databasesAtPosition = new int[20];
+        private int[] affectedDatabases = new int[0];
+        // The positions and orientations as ints (which the index kernels gather from), and the indices calculated by the kernels
+        private final int[] intPositions = new int[20];
+        private final int[] intOrientations = new int[20];
+        private int[] kernelIndices = new int[0];
+    }
 
     /**
      * Constructor for a KilominxSolver object. Initialises the pattern databases for the kilominx.
      * @param kilominx - The kilominx to solve.
-     * @throws IllegalStateException if any of the pattern databases fail to load.
+     * @throws IllegalStateException if any of the pattern databases fail to load or populate.
      */
     public KilominxSolver(Kilominx kilominx) throws IllegalStateException {
+        this(kilominx, false);
+    }
+
+    /**
+     * Constructor for a KilominxSolver object. Initialises the pattern databases for the kilominx.
+     * @param kilominx - The kilominx to solve.
+     * @param coordinateSearch - Whether the search runs on database coordinates and packed states rather than on kilominx objects
+     *  (see {@link PuzzleSolver#useCoordinateSearch}).
+     * @throws IllegalStateException if any of the pattern databases fail to load or populate, or a coordinate search is
+     *  requested and the move tables fail to load.
+     */
+    public KilominxSolver(Kilominx kilominx, boolean coordinateSearch) throws IllegalStateException {
+        this(kilominx, coordinateSearch, StorageMode.DEFAULT);
+    }
+
+    /**
+     * Constructor for a KilominxSolver object. Initialises the pattern databases for the kilominx.
+     * @param kilominx - The kilominx to solve.
+     * @param coordinateSearch - Whether the search runs on database coordinates and packed states rather than on kilominx objects
+     *  (see {@link PuzzleSolver#useCoordinateSearch}).
+     * @param storageMode - How the pattern databases are kept in memory when they are read from their files (see {@link StorageMode}).
+     * @throws IllegalStateException if any of the pattern databases fail to load or populate, or a coordinate search is
+     *  requested and the move tables fail to load.
+     */
+    public KilominxSolver(Kilominx kilominx, boolean coordinateSearch, StorageMode storageMode) throws IllegalStateException {
         super(kilominx);
+        this.storageMode = storageMode;
+
+        // The small PDBs take less time to populate than to read from a file
+        smallPDBs = new SmallKubiesPatternDatabase[12];
+        for (int i = 0; i < 12; i++) {
+            smallPDBs[i] = new SmallKubiesPatternDatabase(i + 1);
+            if (!smallPDBs[i].populateFromMoveTable(new Kilominx())) {
+                throw new IllegalStateException("Failed to populate small pattern databases.");
+            }
+        }
 
         System.out.println("Loading pattern databases...");
         boolean readSuccess = false;
@@ -27,26 +111,90 @@ public class KilominxSolver extends PuzzleSolver {
         facePDBs = new FaceKubiesPatternDatabase[12];
         for (int i = 0; i < 12; i++) {
             facePDBs[i] = new FaceKubiesPatternDatabase(i + 1);
-            readSuccess = facePDBs[i].readDatabaseFromFile("kilominx/face_kubies_" + (i + 1) + ".pdb");
+            readSuccess = facePDBs[i].readDatabaseFromFile("kilominx/face_kubies_" + (i + 1) + ".pdb", storageMode);
         }
 
         sparsePDBs = new SparseKubiesPatternDatabase[5];
         for (int i = 0; i < 5; i++) {
             sparsePDBs[i] = new SparseKubiesPatternDatabase(i + 1);
-            readSuccess = sparsePDBs[i].readDatabaseFromFile("kilominx/sparse_kubies_" + (i + 1) + ".pdb");
+            readSuccess = sparsePDBs[i].readDatabaseFromFile("kilominx/sparse_kubies_" + (i + 1) + ".pdb", storageMode);
         }
 
+        faceOffset = smallPDBs.length;
+        sparseOffset = faceOffset + facePDBs.length;
+        allPDBs = new PatternDatabase[sparseOffset + sparsePDBs.length];
+        System.arraycopy(smallPDBs, 0, allPDBs, 0, smallPDBs.length);
+        System.arraycopy(facePDBs, 0, allPDBs, faceOffset, facePDBs.length);
+        System.arraycopy(sparsePDBs, 0, allPDBs, sparseOffset, sparsePDBs.length);
+        initialiseAffectedDatabaseTables();
+        initialiseIndexKernels();
+
         if (readSuccess) {
             System.out.println("Pattern databases loaded successfully.");
         }
         else {
             throw new IllegalStateException("Failed to load pattern databases.");   
         }
+
+        loadMoveTables(allPDBs);
+        if (coordinateSearch) {
+            useCoordinateSearch(createPackedMoveTable());
+        }
+    }
+
+    /**
+     * Also look up the large face databases of some faces (see {@link LargeFaceKubiesPatternDatabase}), which look at the
+     * 5 kubies of a face and a 6th kubie next to it, after the other databases (see {@link PuzzleSolver#setLargeDatabases}).
+     * Each takes roughly 6.6GB, so they are read into direct buffers (which need a large enough {@code -XX:MaxDirectMemorySize}),
+     * or mapped into memory if the storage mode of the solver maps database files.
+     * @param setNos - The set numbers of the large face databases to look up (1-12).
+     * @throws IllegalArgumentException if a set number is not between 1 and 12.
+     * @throws IllegalStateException if any of the databases fail to load, or the search runs on coordinates.
+     */
+    public void useLargeFaceDatabases(int... setNos) throws IllegalArgumentException, IllegalStateException {
+        System.out.println("Loading large pattern databases...");
+        LargeFaceKubiesPatternDatabase[] largePDBs = new LargeFaceKubiesPatternDatabase[setNos.length];
+        for (int i = 0; i < setNos.length; i++) {
+            largePDBs[i] = new LargeFaceKubiesPatternDatabase(setNos[i]);
+            if (!largePDBs[i].readDatabaseFromFile("kilominx/large_face_kubies_" + setNos[i] + ".pdb", storageMode)) {
+                throw new IllegalStateException("Failed to load large pattern databases.");
+            }
+        }
+        setLargeDatabases(largePDBs);
+        System.out.println("Large pattern databases loaded successfully.");
+    }
+
+    /**
+     * Create the table used to make moves on packed kilominx states (see {@link Kilominx#packState}), where the first
+     * 10 kubie slots (6 bits each) are packed in the first long and the other 10 in the second, with the first slot in the highest bits.
+     * @return The packed move table of the kilominx.
+     */
+    private static PackedMoveTable createPackedMoveTable() {
+        int[] slotWords = new int[20], slotShifts = new int[20], radices = new int[20];
+        for (int i = 0; i < 20; i++) {
+            slotWords[i] = i / 10;
+            slotShifts[i] = (9 - i % 10) * 6;
+            radices[i] = 3;
+        }
+
+        // Making a move on a solved kilominx shows which position the kubie in each position came from, and its new orientation
+        IMove[] moves = new Kilominx().getMoveController().getMoves();
+        byte[][] sources = new byte[moves.length][];
+        byte[][] twists = new byte[moves.length][];
+        for (IMove move : moves) {
+            Kilominx kilominx = new Kilominx();
+            kilominx.getMoveController().makeMove(move);
+            sources[move.ordinal()] = kilominx.getKubieIndices();
+            twists[move.ordinal()] = kilominx.getKubieOrientations();
+        }
+
+        return new PackedMoveTable(6, slotWords, slotShifts, radices, sources, twists);
     }
 
 
     /**
      * Get the maximum number of moves required to solve a subset of cubies across all databases.
+     * The small PDBs are left out, as each looks at a subset of the kubies of a face PDB, so its estimate is never larger.
      * @param puzzle - The kilominx to get the maximum number of moves for.
      * @return The maximum number of moves required to solve one of the subsets of cubies.
      * @throws IllegalArgumentException if the puzzle is not a Kilominx.
@@ -55,18 +203,19 @@ public class KilominxSolver extends PuzzleSolver {
         if (!(puzzle instanceof Kilominx)) {
             throw new IllegalArgumentException("The puzzle must be a Kilominx.");
         }
-        Kilominx kilominx = (Kilominx) puzzle;
+        KubieTable kubieTable = getKubieTable((Kilominx) puzzle);
+        byte[] kubiePositions = kubieTable.positions, kubieOrientations = kubieTable.orientations;
         
         byte maxMoves = 0;
 
         for (FaceKubiesPatternDatabase facePDB : facePDBs) {
-            byte estimatedMoves = facePDB.getNumberOfMoves(kilominx);
+            byte estimatedMoves = facePDB.getNumberOfMoves(facePDB.getDatabaseIndex(kubiePositions, kubieOrientations));
             if (estimatedMoves > maxMoves) {
                 maxMoves = estimatedMoves;
             }
         }
         for (SparseKubiesPatternDatabase sparsePDB : sparsePDBs) {
-            byte estimatedMoves = sparsePDB.getNumberOfMoves(kilominx);
+            byte estimatedMoves = sparsePDB.getNumberOfMoves(sparsePDB.getDatabaseIndex(kubiePositions, kubieOrientations));
             if (estimatedMoves > maxMoves) {
                 maxMoves = estimatedMoves;
             }
@@ -78,7 +227,8 @@ public class KilominxSolver extends PuzzleSolver {
     /**
      * Get the maximum number of moves required to solve a subset of cubies across all databases.
      * This method is faster than {@link #getMaxNumberOfMoves(Kilominx kilominx)} because 
-     * it returns as soon as a database estimate exceeds the bound hint.
+     * it returns as soon as a database estimate exceeds the bound hint. The small PDBs are checked first, as their lookups
+     * don't miss the cache, so states near the bound are often cut off without looking up the large face PDBs.
      * @param puzzle - The kilominx to get the maximum number of moves for.
      * @param boundHint - The maximum number of moves allowed to solve the kilominx state.
      * @param depthHint - The depth of the current node in the search tree.
@@ -89,16 +239,70 @@ public class KilominxSolver extends PuzzleSolver {
         if (!(puzzle instanceof Kilominx)) {
             throw new IllegalArgumentException("The puzzle must be a Kilominx.");
         }
-        Kilominx kilominx = (Kilominx) puzzle;
+        KubieTable kubieTable = getKubieTable((Kilominx) puzzle);
+        return getMaxNumberOfMoves(kubieTable.positions, kubieTable.orientations, boundHint, depthHint);
+    }
+
+    /**
+     * Get the maximum number of moves required to solve the inverse of a kilominx state across all databases (see
+     * {@link PuzzleSolver#getDualMaxNumberOfMoves}). The kubie table of the inverse is built from the kubie table of the
+     * kilominx state: if kubie k is in position p, the inverse has kubie p in position k, with the opposite orientation.
+     * UFL stays fixed at position 0, so the inverse can be looked up in the same databases.
+     * @param puzzle - The kilominx whose inverse should be estimated.
+     * @param boundHint - The maximum number of moves allowed to solve the kilominx state.
+     * @param depthHint - The depth of the current node in the search tree.
+     * @return The maximum number of moves required to solve one of the subsets of cubies of the inverse state.
+     * @throws IllegalArgumentException if the puzzle is not a Kilominx.
+     */
+    protected byte getDualMaxNumberOfMoves(ITwistyPuzzle puzzle, byte boundHint, byte depthHint) throws IllegalArgumentException {
+        if (!(puzzle instanceof Kilominx)) {
+            throw new IllegalArgumentException("The puzzle must be a Kilominx.");
+        }
+        KubieTable kubieTable = getKubieTable((Kilominx) puzzle);
+
+        for (int kubie = 0; kubie < 20; kubie++) {
+            int position = kubieTable.positions[kubie];
+            kubieTable.dualPositions[position] = (byte) kubie;
+            kubieTable.dualOrientations[position] = (byte) ((3 - kubieTable.orientations[kubie]) % 3);
+        }
+        return getMaxNumberOfMoves(kubieTable.dualPositions, kubieTable.dualOrientations, boundHint, depthHint);
+    }
 
+    /**
+     * Get the maximum number of moves required to solve a subset of cubies across all databases from a kubie table,
+     * returning as soon as a database estimate exceeds the bound hint (see {@link #getMaxNumberOfMoves(ITwistyPuzzle, byte, byte)}).
+     * @param kubiePositions - The position of each kubie (indexed by kubie index).
+     * @param kubieOrientations - The orientation of each kubie (indexed by kubie index).
+     * @param boundHint - The maximum number of moves allowed to solve the kilominx state.
+     * @param depthHint - The depth of the current node in the search tree.
+     * @return The maximum number of moves required to solve one of the subsets of cubies.
+     */
+    private byte getMaxNumberOfMoves(byte[] kubiePositions, byte[] kubieOrientations, byte boundHint, byte depthHint) {
         byte estimatedMoves, max = 0;
 
+        SmallKubiesPatternDatabase smallPDB;
+        for (int i = 0; i < smallPDBs.length; i++) {
+            smallPDB = smallPDBs[i];
+
+            // Check estimated number of moves from a small PDB
+            estimatedMoves = smallPDB.getNumberOfMoves(smallPDB.getDatabaseIndex(kubiePositions, kubieOrientations));
+
+            // If estimate exceeds the bound, return
+            if (estimatedMoves + depthHint > boundHint) {
+                return estimatedMoves;
+            }
+            // If estimate is greater than the current max, update max
+            if (estimatedMoves > max) {
+                max = estimatedMoves;
+            }
+        }
+
         FaceKubiesPatternDatabase facePDB;
         for (int i = 0; i < facePDBs.length; i++) {
             facePDB = facePDBs[i];
 
             // Check estimated number of moves from a face PDB
-            estimatedMoves = facePDB.getNumberOfMoves(kilominx);
+            estimatedMoves = facePDB.getNumberOfMoves(facePDB.getDatabaseIndex(kubiePositions, kubieOrientations));
 
             // If estimate exceeds the bound, return
             if (estimatedMoves + depthHint > boundHint) {
@@ -115,7 +319,7 @@ public class KilominxSolver extends PuzzleSolver {
             sparsePDB = sparsePDBs[i];
 
             // Check estimated number of moves from a sparse PDB
-            estimatedMoves = sparsePDB.getNumberOfMoves(kilominx);
+            estimatedMoves = sparsePDB.getNumberOfMoves(sparsePDB.getDatabaseIndex(kubiePositions, kubieOrientations));
 
             // If estimate exceeds the bound, return
             if (estimatedMoves + depthHint > boundHint) {
@@ -130,4 +334,275 @@ public class KilominxSolver extends PuzzleSolver {
         // No estimate exceeded the bound, return the maximum estimate
         return max;
     }
+
+    /**
+     * Get the maximum number of moves required to solve each child of a kilominx state across all databases.
+     * All 29 databases are looked up for the children together (see {@link PuzzleSolver#probeDatabases}), so the cache misses
+     * in the large face databases overlap, with the same early exit on the bound hint as {@link #getMaxNumberOfMoves(ITwistyPuzzle, byte, byte)}.
+     * @param puzzle - The kilominx whose children should be estimated.
+     * @param childMoves - The moves which reach each child from the kilominx state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the kilominx state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     * @throws IllegalArgumentException if the puzzle is not a Kilominx.
+     */
+    protected void getMaxNumberOfMoves(ITwistyPuzzle puzzle, IMove[] childMoves, int childCount, byte boundHint, byte depthHint, byte[] estimates)
+            throws IllegalArgumentException {
+        if (!(puzzle instanceof Kilominx)) {
+            throw new IllegalArgumentException("The puzzle must be a Kilominx.");
+        }
+        probeDatabases(allPDBs, puzzle, childMoves, childCount, boundHint, depthHint, estimates);
+    }
+
+    /**
+     * Get the number of database values tracked for each node of the search, which is one for each of the 29 databases.
+     * @return The number of databases.
+     */
+    protected int getNumberOfDatabaseValues() {
+        return allPDBs.length;
+    }
+
+    /**
+     * Get the value and index of each of the 29 databases for a kilominx state.
+     * @param puzzle - The kilominx to get the database values for.
+     * @param values - The array to store the value of each database in (in the order of {@link #allPDBs}).
+     * @param indices - The array to store the index of each database in (in the order of {@link #allPDBs}).
+     * @throws IllegalArgumentException if the puzzle is not a Kilominx.
+     */
+    protected void getDatabaseValues(ITwistyPuzzle puzzle, byte[] values, int[] indices) throws IllegalArgumentException {
+        if (!(puzzle instanceof Kilominx)) {
+            throw new IllegalArgumentException("The puzzle must be a Kilominx.");
+        }
+        KubieTable kubieTable = getKubieTable((Kilominx) puzzle);
+
+        if (faceKernel != null) {
+            calculateKernelIndices(kubieTable, indices);
+            for (int i = 0; i < allPDBs.length; i++) {
+                values[i] = allPDBs[i].getNumberOfMoves(indices[i]);
+            }
+            return;
+        }
+
+        for (int i = 0; i < smallPDBs.length; i++) {
+            indices[i] = smallPDBs[i].getDatabaseIndex(kubieTable.positions, kubieTable.orientations);
+            values[i] = smallPDBs[i].getNumberOfMoves(indices[i]);
+        }
+        for (int i = 0; i < facePDBs.length; i++) {
+            indices[faceOffset + i] = facePDBs[i].getDatabaseIndex(kubieTable.positions, kubieTable.orientations);
+            values[faceOffset + i] = facePDBs[i].getNumberOfMoves(indices[faceOffset + i]);
+        }
+        for (int i = 0; i < sparsePDBs.length; i++) {
+            indices[sparseOffset + i] = sparsePDBs[i].getDatabaseIndex(kubieTable.positions, kubieTable.orientations);
+            values[sparseOffset + i] = sparsePDBs[i].getNumberOfMoves(indices[sparseOffset + i]);
+        }
+    }
+
+    /**
+     * Get the maximum number of moves required to solve each child of a kilominx state across all databases, where each child
+     * only looks up the databases which look at one of the kubies moved by its move. A face turn only moves 5 of the 20 kubies,
+     * so the other databases can't change, and the child inherits their values from the kilominx state.
+     * With move tables, the indices of the children are moved from the indices of the kilominx state, and the databases
+     * whose indices don't change are the ones which aren't affected.
+     * @param puzzle - The kilominx whose children should be estimated.
+     * @param values - The database values of the kilominx state.
+     * @param indices - The database indices of the kilominx state.
+     * @param childMoves - The moves which reach each child from the kilominx state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the kilominx state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     * @param childValues - The arrays to store the database values of each child in.
+     * @param childIndices - The arrays to store the database indices of each child in.
+     * @throws IllegalArgumentException if the puzzle is not a Kilominx.
+     */
+    protected void getMaxNumberOfMoves(ITwistyPuzzle puzzle, byte[] values, int[] indices, IMove[] childMoves, int childCount, byte boundHint,
+                                       byte depthHint, byte[] estimates, byte[][] childValues, int[][] childIndices) throws IllegalArgumentException {
+        if (!(puzzle instanceof Kilominx)) {
+            throw new IllegalArgumentException("The puzzle must be a Kilominx.");
+        }
+        if (useMoveTables) {
+            probeDatabases(allPDBs, puzzle, values, indices, null, childMoves, childCount, boundHint, depthHint, estimates, childValues, childIndices);
+            return;
+        }
+
+        KubieTable kubieTable = getKubieTable((Kilominx) puzzle);
+        if (kubieTable.affectedDatabases.length < childCount) {
+            kubieTable.affectedDatabases = new int[childCount];
+        }
+
+        // The databases affected by a move are the ones which look at a kubie in one of the positions the move changes
+        for (int kubie = 0; kubie < 20; kubie++) {
+            kubieTable.databasesAtPosition[kubieTable.positions[kubie]] = kubieDatabaseMasks[kubie];
+        }
+        for (int i = 0; i < childCount; i++) {
+            int mask = 0;
+            for (byte position : movePositions[childMoves[i].ordinal()]) {
+                mask |= kubieTable.databasesAtPosition[position];
+            }
+            kubieTable.affectedDatabases[i] = mask;
+        }
+
+        probeDatabases(allPDBs, puzzle, values, null, kubieTable.affectedDatabases, childMoves, childCount, boundHint, depthHint,
+                       estimates, childValues, null);
+    }
+
+    /**
+     * Calculate the index of a kilominx state in the 29 databases from a single kubie position table.
+     * @param databases - The databases of the batch (which must be {@link #allPDBs}).
+     * @param puzzle - The kilominx state to calculate the indices for.
+     * @param indices - The array to store the indices in, indexed by database then child.
+     * @param child - The index of the child the kilominx state belongs to.
+     * @param mask - A bit mask of the databases to calculate the indices for.
+     */
+    protected void getDatabaseIndices(PatternDatabase[] databases, ITwistyPuzzle puzzle, int[][] indices, int child, int mask) {
+        KubieTable kubieTable = getKubieTable((Kilominx) puzzle);
+
+        if (faceKernel != null) {
+            // The kernels calculate every database in the time it takes to calculate a few of them one at a time
+            if (kubieTable.kernelIndices.length < allPDBs.length) {
+                kubieTable.kernelIndices = new int[allPDBs.length];
+            }
+            calculateKernelIndices(kubieTable, kubieTable.kernelIndices);
+            for (int i = 0; i < allPDBs.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    indices[i][child] = kubieTable.kernelIndices[i];
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < smallPDBs.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                indices[i][child] = smallPDBs[i].getDatabaseIndex(kubieTable.positions, kubieTable.orientations);
+            }
+        }
+        for (int i = 0; i < facePDBs.length; i++) {
+            if ((mask & (1 << (faceOffset + i))) != 0) {
+                indices[faceOffset + i][child] = facePDBs[i].getDatabaseIndex(kubieTable.positions, kubieTable.orientations);
+            }
+        }
+        for (int i = 0; i < sparsePDBs.length; i++) {
+            if ((mask & (1 << (sparseOffset + i))) != 0) {
+                indices[sparseOffset + i][child] = sparsePDBs[i].getDatabaseIndex(kubieTable.positions, kubieTable.orientations);
+            }
+        }
+    }
+
+    /**
+     * Calculate the index of a kilominx state in each large database, where the large face databases share a single kubie
+     * position table (and any other large database calculates its own index).
+     * @param databases - The large databases.
+     * @param puzzle - The kilominx state to calculate the indices for.
+     * @param indices - The array to store the indices in, indexed by database then child.
+     * @param child - The index of the child the kilominx state belongs to.
+     */
+    protected void getLargeDatabaseIndices(LongPatternDatabase[] databases, ITwistyPuzzle puzzle, long[][] indices, int child) {
+        KubieTable kubieTable = getKubieTable((Kilominx) puzzle);
+        for (int d = 0; d < databases.length; d++) {
+            if (databases[d] instanceof LargeFaceKubiesPatternDatabase) {
+                LargeFaceKubiesPatternDatabase largePDB = (LargeFaceKubiesPatternDatabase) databases[d];
+                indices[d][child] = largePDB.getDatabaseIndex(kubieTable.positions, kubieTable.orientations);
+            }
+            else {
+                indices[d][child] = databases[d].getIndex(puzzle);
+            }
+        }
+    }
+
+    /**
+     * Calculate the index of a kilominx state in the 29 databases with the index kernels.
+     * @param kubieTable - The kubie table of the kilominx state.
+     * @param indices - The array to store the index of each database in (in the order of {@link #allPDBs}).
+     */
+    private void calculateKernelIndices(KubieTable kubieTable, int[] indices) {
+        for (int i = 0; i < 20; i++) {
+            kubieTable.intPositions[i] = kubieTable.positions[i];
+            kubieTable.intOrientations[i] = kubieTable.orientations[i];
+        }
+        smallKernel.calculateIndices(kubieTable.intPositions, kubieTable.intOrientations, indices, 0);
+        faceKernel.calculateIndices(kubieTable.intPositions, kubieTable.intOrientations, indices, faceOffset);
+        sparseKernel.calculateIndices(kubieTable.intPositions, kubieTable.intOrientations, indices, sparseOffset);
+    }
+
+    /**
+     * Build the kubie table of the current thread for a kilominx state (see {@link Kilominx#getKubiePositions}).
+     * The kubies are scanned once, rather than once by each database.
+     * @param kilominx - The kilominx to build the table for.
+     * @return The kubie table, which is reused by later calls on the same thread.
+     */
+    private KubieTable getKubieTable(Kilominx kilominx) {
+        KubieTable kubieTable = kubieTables.get();
+        kilominx.getKubiePositions(kubieTable.positions, kubieTable.orientations);
+        return kubieTable;
+    }
+
+    /**
+     * Build the tables used to find the databases affected by a move: the databases which look at each kubie
+     * (from the kubie sets of the databases), and the positions whose kubies are moved by each move (from a solved kilominx).
+     */
+    private void initialiseAffectedDatabaseTables() {
+        kubieDatabaseMasks = new int[20];
+        for (int i = 0; i < smallPDBs.length; i++) {
+            for (byte kubie : smallPDBs[i].getKubieSet()) {
+                kubieDatabaseMasks[kubie] |= 1 << i;
+            }
+        }
+        for (int i = 0; i < facePDBs.length; i++) {
+            for (byte kubie : facePDBs[i].getKubieSet()) {
+                kubieDatabaseMasks[kubie] |= 1 << (faceOffset + i);
+            }
+        }
+        for (int i = 0; i < sparsePDBs.length; i++) {
+            for (byte kubie : sparsePDBs[i].getKubieSet()) {
+                kubieDatabaseMasks[kubie] |= 1 << (sparseOffset + i);
+            }
+        }
+
+        Kilominx solved = new Kilominx();
+        IMove[] moves = solved.getMoveController().getMoves();
+        movePositions = new byte[moves.length][];
+
+        for (IMove move : moves) {
+            solved.getMoveController().makeMove(move);
+            byte[] indices = solved.getKubieIndices(), orientations = solved.getKubieOrientations();
+            solved.getMoveController().undoMove(move);
+
+            byte[] positions = new byte[20];
+            int count = 0;
+            for (byte position = 0; position < 20; position++) {
+                if (indices[position] != position || orientations[position] != 0) {
+                    positions[count++] = position;
+                }
+            }
+            movePositions[move.ordinal()] = Arrays.copyOf(positions, count);
+        }
+    }
+
+    /**
+     * Create the vectorised index kernels of the small, face and sparse databases, if the vector module is available
+     * (see {@link IndexKernel}). All kinds of database look at kubies in 19 positions (UFL is fixed at position 0).
+     */
+    private void initialiseIndexKernels() {
+        byte[][] smallSets = new byte[smallPDBs.length][];
+        byte[][] faceSets = new byte[facePDBs.length][], sparseSets = new byte[sparsePDBs.length][];
+        for (int i = 0; i < smallPDBs.length; i++) {
+            smallSets[i] = smallPDBs[i].getKubieSet();
+        }
+        for (int i = 0; i < facePDBs.length; i++) {
+            faceSets[i] = facePDBs[i].getKubieSet();
+        }
+        for (int i = 0; i < sparsePDBs.length; i++) {
+            sparseSets[i] = sparsePDBs[i].getKubieSet();
+        }
+
+        IndexKernel smallKernel = IndexKernel.create(smallSets, 19, 3, 1);
+        IndexKernel faceKernel = IndexKernel.create(faceSets, 19, 3, 1);
+        IndexKernel sparseKernel = IndexKernel.create(sparseSets, 19, 3, 1);
+        if (smallKernel.isVectorised() && faceKernel.isVectorised() && sparseKernel.isVectorised()) {
+            this.smallKernel = smallKernel;
+            this.faceKernel = faceKernel;
+            this.sparseKernel = sparseKernel;
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package solvers;
+
+/**
+ * A table of the effect of each move on a packed puzzle state (see {@link models.ITwistyPuzzle#packState}), so moves can be
+ * made on packed states without a puzzle object.
+ * <p>
+ * A packed state is made up of slots of a fixed number of bits, one for each position of the puzzle, which hold the index
+ * of the cubie in the position multiplied by its number of orientations, plus its orientation. A move takes the cubie in
+ * each position from another position (of the same kind), and adds a twist to its orientation, so only the slots of the
+ * positions a move changes need to be rewritten.
+ */
+final class PackedMoveTable {
+
+    private final long slotMask;
+    // The number of bits each slot is shifted by within its long, and the index of the long
+    private final int[] slotShifts;
+    private final int[] slotWords;
+
+    // For each move, the slots it changes: the source and destination slot of each, and the table which twists the
+    // slot value, along with a mask of the bits of each long which the move doesn't change
+    private final int[][] sourceSlots;
+    private final int[][] destinationSlots;
+    private final long[][][] twistTables;
+    private final long[][] keptBits;
+
+    /**
+     * Constructor for a PackedMoveTable.
+     * @param slotBits - The number of bits of each slot.
+     * @param slotWords - The index of the long each slot is packed in.
+     * @param slotShifts - The number of bits each slot is shifted by within its long.
+     * @param radices - The number of orientations of the cubie in each slot.
+     * @param sources - The slot each move takes the cubie in each slot from (indexed by move, then slot).
+     * @param twists - The orientation each move adds to the cubie in each slot (indexed by move, then new slot).
+     */
+    PackedMoveTable(int slotBits, int[] slotWords, int[] slotShifts, int[] radices, byte[][] sources, byte[][] twists) {
+        this.slotMask = (1L << slotBits) - 1;
+        this.slotWords = slotWords;
+        this.slotShifts = slotShifts;
+
+        int moveCount = sources.length;
+        sourceSlots = new int[moveCount][];
+        destinationSlots = new int[moveCount][];
+        twistTables = new long[moveCount][][];
+        keptBits = new long[moveCount][2];
+
+        for (int m = 0; m < moveCount; m++) {
+            // Find the slots the move changes
+            int count = 0;
+            for (int slot = 0; slot < slotWords.length; slot++) {
+                if (sources[m][slot] != slot || twists[m][slot] != 0) {
+                    count++;
+                }
+            }
+
+            sourceSlots[m] = new int[count];
+            destinationSlots[m] = new int[count];
+            twistTables[m] = new long[count][];
+            keptBits[m][0] = -1L;
+            keptBits[m][1] = -1L;
+
+            int i = 0;
+            for (int slot = 0; slot < slotWords.length; slot++) {
+                if (sources[m][slot] == slot && twists[m][slot] == 0) {
+                    continue;
+                }
+                sourceSlots[m][i] = sources[m][slot];
+                destinationSlots[m][i] = slot;
+                keptBits[m][slotWords[slot]] &= ~(slotMask << slotShifts[slot]);
+
+                // Twisting a slot value keeps the cubie index, and adds to the orientation
+                int radix = radices[slot];
+                twistTables[m][i] = new long[1 << slotBits];
+                for (int value = 0; value < (1 << slotBits); value++) {
+                    twistTables[m][i][value] = (value / radix) * radix + (value % radix + twists[m][slot]) % radix;
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Make a move on a packed state.
+     * @param states - The array holding the packed state (two longs), and the packed state after the move.
+     * @param from - The offset of the packed state in the array.
+     * @param to - The offset to store the packed state after the move at (which must not overlap the packed state).
+     * @param moveIndex - The index of the move (see {@link models.IMoveController.IMove#ordinal}).
+     */
+    void makeMove(long[] states, int from, int to, int moveIndex) {
+        long[] kept = keptBits[moveIndex];
+        states[to] = states[from] & kept[0];
+        states[to + 1] = states[from + 1] & kept[1];
+
+        int[] sources = sourceSlots[moveIndex];
+        int[] destinations = destinationSlots[moveIndex];
+        long[][] tables = twistTables[moveIndex];
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i], destination = destinations[i];
+            int value = (int) ((states[from + slotWords[source]] >>> slotShifts[source]) & slotMask);
+            states[to + slotWords[destination]] |= tables[i][value] << slotShifts[destination];
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package solvers;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The order in which a batch of pattern databases is looked up (see {@link PuzzleSolver#probeDatabases}), which is learned
+ * during the search. A child's lookups stop as soon as one database exceeds the bound, so the databases which cut off the most
+ * children for the least time should be looked up first: small databases which fit in the cache are much cheaper to look up
+ * than large ones, and some databases give larger estimates than others.
+ * <p>
+ * For each database, the search counts the children it is checked for, the children it cuts off, and the lookups it makes
+ * (children can inherit a database value from their parent without a lookup), and times a sample of its lookups. Each thread
+ * counts into its own buffers, and adds them to the shared totals every {@link #UPDATE_INTERVAL} batches, when the databases
+ * are reordered by the number of children they cut off per nanosecond of lookups.
+ * <p>
+ * Children within the bound are always checked against every database, so their estimates don't depend on the order. Children
+ * which are cut off may get a different estimate above the bound, which can only make the next bound smaller, never larger.
+ */
+public class ProbeOrder {
+
+    // The number of batches a thread looks up between updates of the order, and between timed batches
+    static final int UPDATE_INTERVAL = 1024;
+    static final int TIMING_INTERVAL = 16;
+
+    private final int databaseCount;
+    private volatile int[] order;
+
+    private final LongAdder[] checks, cutoffs, lookups, timedLookups, timedNanos;
+    private final LongAdder updates = new LongAdder();
+
+    /**
+     * Constructor for a ProbeOrder, which starts with the databases in their given order.
+     * @param databaseCount - The number of databases in the batch.
+     */
+    ProbeOrder(int databaseCount) {
+        this.databaseCount = databaseCount;
+        order = new int[databaseCount];
+        for (int d = 0; d < databaseCount; d++) {
+            order[d] = d;
+        }
+
+        checks = newAdders(databaseCount);
+        cutoffs = newAdders(databaseCount);
+        lookups = newAdders(databaseCount);
+        timedLookups = newAdders(databaseCount);
+        timedNanos = newAdders(databaseCount);
+    }
+
+    /**
+     * Create an array of counters.
+     * @param count - The number of counters.
+     * @return The array of counters, all starting at 0.
+     */
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Get the number of databases in the batch.
+     * @return The number of databases.
+     */
+    int getDatabaseCount() {
+        return databaseCount;
+    }
+
+    /**
+     * Get the current order of the databases. The array must not be modified.
+     * @return The index of each database in the batch, in the order they should be looked up.
+     */
+    int[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the number of times the counts of a thread have been added to the totals (and the databases have been reordered).
+     * @return The number of updates.
+     */
+    long getUpdates() {
+        return updates.sum();
+    }
+
+    /**
+     * Add the counts of a thread to the shared totals, reset them, and reorder the databases.
+     * @param threadChecks - The number of children each database was checked for.
+     * @param threadCutoffs - The number of children each database cut off.
+     * @param threadLookups - The number of lookups made in each database.
+     * @param threadTimedLookups - The number of lookups made in each database during timed batches.
+     * @param threadTimedNanos - The time taken by the lookups in each database during timed batches.
+     */
+    void update(long[] threadChecks, long[] threadCutoffs, long[] threadLookups, long[] threadTimedLookups, long[] threadTimedNanos) {
+        for (int d = 0; d < databaseCount; d++) {
+            checks[d].add(threadChecks[d]);
+            cutoffs[d].add(threadCutoffs[d]);
+            lookups[d].add(threadLookups[d]);
+            timedLookups[d].add(threadTimedLookups[d]);
+            timedNanos[d].add(threadTimedNanos[d]);
+        }
+        Arrays.fill(threadChecks, 0);
+        Arrays.fill(threadCutoffs, 0);
+        Arrays.fill(threadLookups, 0);
+        Arrays.fill(threadTimedLookups, 0);
+        Arrays.fill(threadTimedNanos, 0);
+        updates.increment();
+
+        reorder();
+    }
+
+    /**
+     * Sort the databases by the number of children they cut off per nanosecond, in descending order.
+     * Databases which haven't been timed yet are given the average time per lookup, and ties keep their current order.
+     */
+    private synchronized void reorder() {
+        double[] scores = new double[databaseCount];
+        double averageNanos = getNanosPerLookup(-1);
+
+        for (int d = 0; d < databaseCount; d++) {
+            double nanosPerLookup = (timedLookups[d].sum() > 0) ? getNanosPerLookup(d) : averageNanos;
+            // Checks which inherit the parent's value are almost free, but not quite
+            double cost = lookups[d].sum() * nanosPerLookup + checks[d].sum();
+            scores[d] = cutoffs[d].sum() / Math.max(cost, 1);
+        }
+
+        Integer[] newOrder = new Integer[databaseCount];
+        int[] currentOrder = order;
+        for (int i = 0; i < databaseCount; i++) {
+            newOrder[i] = currentOrder[i];
+        }
+        // The sort is stable, so databases with equal scores stay in their current order
+        Arrays.sort(newOrder, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        int[] sortedOrder = new int[databaseCount];
+        for (int i = 0; i < databaseCount; i++) {
+            sortedOrder[i] = newOrder[i];
+        }
+        order = sortedOrder;
+    }
+
+    /**
+     * Get the average time taken by a lookup in the timed batches.
+     * @param database - The index of the database, or -1 for the average over all databases.
+     * @return The average time per lookup in nanoseconds (or 0 if no lookups have been timed).
+     */
+    private double getNanosPerLookup(int database) {
+        long nanos = 0, count = 0;
+        for (int d = 0; d < databaseCount; d++) {
+            if (database == -1 || database == d) {
+                nanos += timedNanos[d].sum();
+                count += timedLookups[d].sum();
+            }
+        }
+        return (count == 0) ? 0 : (double) nanos / count;
+    }
+
+    /**
+     * Get a summary of the learned order, and the cutoff rate and lookup time of each database.
+     * @return A String containing the order of the databases and their statistics.
+     */
+    public synchronized String getStatistics() {
+        StringBuilder builder = new StringBuilder("probe order: " + Arrays.toString(order) + " after " + updates.sum() + " updates");
+        for (int d : order) {
+            long checkCount = checks[d].sum();
+            builder.append(String.format("%n  database %d: %d%% of %d children cut off, %.1f ns per lookup",
+                                         d, (checkCount == 0) ? 0 : cutoffs[d].sum() * 100 / checkCount, checkCount, getNanosPerLookup(d)));
+        }
+        return builder.toString();
+    }
+}
@@ -1,22 +1,62 @@
 package solvers;
 
 import models.ITwistyPuzzle;
+import models.IMoveController;
 import models.IMoveController.IMove;
+import patterndatabases.LongPatternDatabase;
+import patterndatabases.PatternDatabase;
 
+import java.io.File;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayDeque;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * This abstract class contains methods used to solve a twisty puzzle using an IDA* search method, guaranteeing an optimal solution.
+ * The search can either be run on a single thread, or split into subtrees which are searched in parallel (see {@link #setParallelism}).
  */
 public abstract class PuzzleSolver {
 
+    // The depth at which each bound iteration is split into subtrees for a parallel search
+    static final byte PARALLEL_SPLIT_DEPTH = 2;
+
+    // The heuristic weights (as percentages) of the successive searches of an anytime search, ending with an unweighted search
+    static final int[] ANYTIME_WEIGHTS = {300, 200, 150, 125, 100};
+
     ITwistyPuzzle puzzle;
+    int parallelism = 1;
+    TranspositionTable transpositionTable = null;
+    File checkpointFile = null;
+    Duration checkpointInterval = null;
+    // Whether the database indices of a node's children are calculated from the node's indices with move tables,
+    // and the databases whose move tables are loaded
+    boolean useMoveTables = false;
+    PatternDatabase[] moveTableDatabases = null;
+    // Whether any database only keeps its entries modulo 3, so it can only be looked up relative to the parent state
+    boolean moduloDatabases = false;
+    // The table used to make moves on packed puzzle states, if the search runs on coordinates (see useCoordinateSearch)
+    PackedMoveTable packedMoveTable = null;
+    // The databases too large to be indexed by an int, which are looked up from the puzzle state of each child (see setLargeDatabases)
+    LongPatternDatabase[] largeDatabases = null;
+
+    // The scratch buffers of each thread for batched database lookups (see probeDatabases and probeLargeDatabases)
+    private final ThreadLocal<ProbeBatch> probeBatches = new ThreadLocal<ProbeBatch>();
+    private final ThreadLocal<LargeProbeBatch> largeProbeBatches = new ThreadLocal<LargeProbeBatch>();
+    // Whether the order of batched database lookups is learned during the search, and the learned order
+    boolean adaptiveProbeOrder = false;
+    private volatile ProbeOrder probeOrder = null;
+    // Whether children are also estimated by looking up the databases with their inverse states (see setDualLookups)
+    boolean dualLookups = false;
 
     /**
      * Constructor for a PuzzleSolver object.
@@ -34,6 +74,122 @@ public abstract class PuzzleSolver {
         this.puzzle = puzzle;
     }
 
+    /**
+     * Set the number of threads used to search for a solution.
+     * With more than one thread, each bound iteration is split into subtrees which are searched on a work-stealing ForkJoinPool.
+     * All threads share the (read-only) pattern databases of this solver.
+     * @param parallelism - The number of threads to use (1 for a single-threaded search).
+     * @throws IllegalArgumentException if the number of threads is less than 1.
+     */
+    public void setParallelism(int parallelism) throws IllegalArgumentException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the file which checkpoints of the search are written to, so that a search can be resumed after the program is stopped
+     * (see {@link #resume}). Checkpoints are written by a background thread at a fixed interval, at the start of each bound
+     * iteration, and when a search is stopped by its deadline or cancellation token. The file is deleted when a solution is found.
+     * Checkpoints are only written by {@link #solve()}, {@link #solve(Instant, CancellationToken)} and {@link #resume}.
+     * @param checkpointFile - The file to write checkpoints to (or {@code null} to disable checkpoints).
+     * @param checkpointInterval - The time between checkpoints.
+     * @throws IllegalArgumentException if the checkpoint interval is not positive.
+     */
+    public void setCheckpointFile(File checkpointFile, Duration checkpointInterval) throws IllegalArgumentException {
+        if (checkpointFile != null && (checkpointInterval == null || checkpointInterval.isNegative() || checkpointInterval.isZero())) {
+            throw new IllegalArgumentException("The checkpoint interval must be positive.");
+        }
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Set the amount of memory used by the transposition table of the search.
+     * The transposition table cuts off puzzle states which are reached again through a different sequence of moves
+     * within the same bound iteration, and is shared by all threads of a parallel search.
+     * @param memoryBudget - The maximum number of bytes the transposition table may use (0 to disable the transposition table).
+     * @throws IllegalArgumentException if the memory budget is negative, or too small to hold a single entry.
+     */
+    public void setTranspositionTable(long memoryBudget) throws IllegalArgumentException {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("The transposition table memory budget must not be negative.");
+        }
+        transpositionTable = (memoryBudget == 0) ? null : new TranspositionTable(memoryBudget);
+    }
+
+    /**
+     * Get the transposition table of the search.
+     * @return The transposition table, or {@code null} if the search does not use one.
+     */
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * Set whether the order in which the databases are looked up is learned during the search (see {@link ProbeOrder}).
+     * The databases which cut off the most children for the least lookup time are moved to the front. Otherwise the databases
+     * are always looked up in a fixed order. Enabling it again starts learning from the fixed order.
+     * @param adaptive - Whether the order of the databases is learned.
+     */
+    public void setAdaptiveProbeOrder(boolean adaptive) {
+        adaptiveProbeOrder = adaptive;
+        probeOrder = null;
+    }
+
+    /**
+     * Get the learned order of the database lookups.
+     * @return The learned order and its statistics, or {@code null} if the order isn't learned or no databases have been looked up.
+     */
+    public ProbeOrder getProbeOrder() {
+        return probeOrder;
+    }
+
+    /**
+     * Set whether the search also estimates children with dual lookups: a puzzle state and its inverse (see
+     * {@link #getDualMaxNumberOfMoves}) take the same number of moves to solve, so looking up the databases with the inverse
+     * state gives a second admissible estimate from the same databases, and the larger of the two estimates is used.
+     * Dual lookups are only made for children which the regular estimate doesn't cut off, and which aren't at the bound depth.
+     * <p>
+     * Dual estimates aren't consistent (a child's estimate can be more than one move larger than its parent's), so the search
+     * also propagates estimates with bidirectional pathmax (BPMX): a node takes at least the largest estimate of its children
+     * minus one, and each child takes at least the estimate of its parent minus one. This is what lets a large dual estimate
+     * of one child cut off all of its siblings. Only solvers which override {@link #getDualMaxNumberOfMoves} make dual lookups,
+     * and they are only made in unweighted searches without a maximum solution length.
+     * <p>
+     * The inverse state isn't a child of the parent state, so databases which only keep their entries modulo 3 would have to
+     * decode every dual lookup by walking to the solved state (see {@link PatternDatabase#isModulo}); dual lookups can't be
+     * enabled for a solver with such databases.
+     * @param dualLookups - Whether children are also estimated with dual lookups.
+     * @throws IllegalStateException if dual lookups are enabled and a database of the solver only keeps its entries modulo 3.
+     */
+    public void setDualLookups(boolean dualLookups) throws IllegalStateException {
+        if (dualLookups && moduloDatabases) {
+            throw new IllegalStateException("Dual lookups can't be made in databases which only keep their entries modulo 3.");
+        }
+        this.dualLookups = dualLookups;
+    }
+
+    /**
+     * Get the learned order of a batch of databases, creating it if it doesn't exist yet.
+     * @param databases - The databases of the batch.
+     * @return The learned order of the databases.
+     */
+    private ProbeOrder getProbeOrder(PatternDatabase[] databases) {
+        ProbeOrder order = probeOrder;
+        if (order == null || order.getDatabaseCount() != databases.length) {
+            synchronized (this) {
+                order = probeOrder;
+                if (order == null || order.getDatabaseCount() != databases.length) {
+                    order = new ProbeOrder(databases.length);
+                    probeOrder = order;
+                }
+            }
+        }
+        return order;
+    }
+
     /**
      * Get the maximum number of moves required to solve a puzzle state across all databases.
      * @param puzzle - The puzzle to get the maximum number of moves for.
@@ -44,8 +200,9 @@ public abstract class PuzzleSolver {
 
     /**
      * Get the maximum number of moves required to solve a puzzle state across all databases.
-     * This method is faster than {@link #getMaxNumberOfMoves(ITwistyPuzzle puzzle)} because 
+     * This method is faster than {@link #getMaxNumberOfMoves(ITwistyPuzzle puzzle)} because
      * it returns as soon as a database estimate exceeds the bound hint.
+     * This method must be safe to call from multiple threads at once.
      * @param puzzle - The puzzle to get the maximum number of moves for.
      * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
      * @param depthHint - The depth of the current node in the search tree.
@@ -54,161 +211,898 @@ public abstract class PuzzleSolver {
      */
     protected abstract byte getMaxNumberOfMoves(ITwistyPuzzle puzzle, byte boundHint, byte depthHint) throws IllegalArgumentException;
 
+    /**
+     * Get the maximum number of moves required to solve each child of a puzzle state across all databases, with the same
+     * early exit as {@link #getMaxNumberOfMoves(ITwistyPuzzle, byte, byte)} (so each estimate is the same as it would return for the child).
+     * By default the children are estimated one at a time; solvers can override this to look up the databases for all
+     * children together (see {@link #probeDatabases}). The puzzle is returned to its original state afterwards.
+     * This method must be safe to call from multiple threads at once.
+     * @param puzzle - The puzzle state whose children should be estimated.
+     * @param childMoves - The moves which reach each child from the puzzle state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     * @throws IllegalArgumentException if the puzzle does not match the puzzle type of the solver.
+     */
+    protected void getMaxNumberOfMoves(ITwistyPuzzle puzzle, IMove[] childMoves, int childCount, byte boundHint, byte depthHint, byte[] estimates)
+            throws IllegalArgumentException {
+        IMoveController moveController = puzzle.getMoveController();
+        for (int i = 0; i < childCount; i++) {
+            moveController.makeMove(childMoves[i]);
+            estimates[i] = getMaxNumberOfMoves(puzzle, boundHint, depthHint);
+            moveController.undoMove(childMoves[i]);
+        }
+    }
+
+    /**
+     * Get the maximum number of moves required to solve the inverse of a puzzle state across all databases, with the same early
+     * exit as {@link #getMaxNumberOfMoves(ITwistyPuzzle, byte, byte)}. If a sequence of moves solves a puzzle state, the inverse
+     * moves in reverse order solve its inverse, so this is also an estimate of the number of moves to solve the puzzle state
+     * (see {@link #setDualLookups}). By default the solver doesn't make dual lookups, and the estimate is 0.
+     * This method must be safe to call from multiple threads at once.
+     * @param puzzle - The puzzle state whose inverse should be estimated (which must not be modified).
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the current node in the search tree.
+     * @return The maximum number of moves required to solve one of the subsets of cubies of the inverse state.
+     * @throws IllegalArgumentException if the puzzle does not match the puzzle type of the solver.
+     */
+    protected byte getDualMaxNumberOfMoves(ITwistyPuzzle puzzle, byte boundHint, byte depthHint) throws IllegalArgumentException {
+        return 0;
+    }
+
+    /**
+     * Load the move tables of the databases of the solver (see {@link PatternDatabase#loadMoveTable}). If every table is loaded,
+     * the search calculates the database indices of each node's children from the node's indices, rather than from the puzzle.
+     * Databases which only keep their entries modulo 3 are decoded from the values of each node's parent, which are only
+     * tracked with move tables, so every table must be loaded if any database keeps its entries modulo 3.
+     * @param databases - The databases of the solver.
+     * @throws IllegalStateException if a database keeps its entries modulo 3, and not every move table could be loaded.
+     */
+    protected void loadMoveTables(PatternDatabase[] databases) throws IllegalStateException {
+        System.out.println("Loading move tables...");
+        boolean loaded = true;
+        boolean modulo = false;
+        for (PatternDatabase database : databases) {
+            loaded &= database.loadMoveTable();
+            modulo |= database.isModulo();
+        }
+        if (modulo && !loaded) {
+            throw new IllegalStateException("Databases which only keep their entries modulo 3 need the move tables of all databases.");
+        }
+        useMoveTables = loaded;
+        moveTableDatabases = loaded ? databases : null;
+        moduloDatabases = modulo;
+    }
 
     /**
-     * A node in the iterative-deepening A* search tree.
-     * Contains the puzzle state, move used to get to the node, and the depth of the node.
+     * Make the search run on coordinates rather than on puzzle objects: the state of each node is just the index of each
+     * database (moved with the move tables) and the packed puzzle state (moved with a packed move table, and only used for
+     * the goal test and the transposition table). No puzzle objects are moved during the search (see {@link CoordinateWorker}).
+     * The move tables must have been loaded, and the solver must track the values of the same databases (see {@link #getNumberOfDatabaseValues}).
+     * @param packedMoveTable - The table used to make moves on packed states of the puzzle.
+     * @throws IllegalStateException if the move tables of the databases haven't been loaded.
      */
-    private static class IDAStarNode {
-        ITwistyPuzzle puzzle;
-        IMove move;
-        byte depth;
+    protected void useCoordinateSearch(PackedMoveTable packedMoveTable) throws IllegalStateException {
+        if (!useMoveTables || getNumberOfDatabaseValues() != moveTableDatabases.length) {
+            throw new IllegalStateException("A coordinate search requires the move tables of all databases.");
+        }
+        if (largeDatabases != null) {
+            throw new IllegalStateException("A coordinate search can't look up large databases, as they need the puzzle state of each child.");
+        }
+        this.packedMoveTable = packedMoveTable;
+    }
+
+    /**
+     * Set the databases which are too large to be indexed by an int (see {@link LongPatternDatabase}), and are looked up
+     * after the other databases of the solver (see {@link #probeLargeDatabases}). They have no move tables, so their indices
+     * are calculated from the puzzle state of each child, and they can't be used by a coordinate search. They raise the
+     * estimates of the children of every node, but not the estimate of the root, so the first bound may be lower than it could be.
+     * @param databases - The large databases, which must have been read (none to stop looking up large databases).
+     * @throws IllegalStateException if the search runs on coordinates (see {@link #useCoordinateSearch}).
+     */
+    protected void setLargeDatabases(LongPatternDatabase[] databases) throws IllegalStateException {
+        if (packedMoveTable != null) {
+            throw new IllegalStateException("A coordinate search can't look up large databases, as they need the puzzle state of each child.");
+        }
+        largeDatabases = (databases.length > 0) ? databases : null;
+    }
+
+    /**
+     * Create a worker which searches from a puzzle state, which searches coordinates if the solver uses a coordinate search.
+     * @param puzzle - The initial puzzle state to search from. The worker takes ownership of this puzzle.
+     * @param findAllSolutions - Whether the worker searches for all optimal solutions.
+     * @return The new worker.
+     */
+    IDAStarWorker createWorker(ITwistyPuzzle puzzle, boolean findAllSolutions) {
+        if (packedMoveTable != null) {
+            return new CoordinateWorker(this, puzzle, findAllSolutions, packedMoveTable);
+        }
+        return new IDAStarWorker(this, puzzle, findAllSolutions);
+    }
+
+    /**
+     * Get the number of database values the search tracks for each node, so that the estimates of a node's children only
+     * look up the databases which can be changed by their move, and inherit the other values from the node
+     * (see {@link #getMaxNumberOfMoves(ITwistyPuzzle, byte[], int[], IMove[], int, byte, byte, byte[], byte[][], int[][])}).
+     * The index of each database is tracked along with its value, so that solvers with move tables can calculate the indices
+     * of a node's children from the node's indices.
+     * @return The number of values tracked for each node, or 0 if the solver doesn't track database values.
+     */
+    protected int getNumberOfDatabaseValues() {
+        return 0;
+    }
+
+    /**
+     * Get the value and index of every tracked database for a puzzle state (see {@link #getNumberOfDatabaseValues}).
+     * This is only needed at the root of each subtree the search starts from, as the values of all other nodes are
+     * calculated along with their estimates. By default the solver doesn't track any values.
+     * This method must be safe to call from multiple threads at once.
+     * @param puzzle - The puzzle state to get the database values for.
+     * @param values - The array to store the value of each database in.
+     * @param indices - The array to store the index of each database in.
+     * @throws IllegalArgumentException if the puzzle does not match the puzzle type of the solver.
+     */
+    protected void getDatabaseValues(ITwistyPuzzle puzzle, byte[] values, int[] indices) throws IllegalArgumentException {
+    }
+
+    /**
+     * Get the maximum number of moves required to solve each child of a puzzle state across all databases, given the tracked
+     * database values and indices of the puzzle state (see {@link #getNumberOfDatabaseValues}), and store the database values
+     * and indices of each child so they can be passed on to its own children. The values of a child are only complete if its
+     * estimate is within the bound hint, as the databases after the first estimate which exceeds the bound are not looked up.
+     * By default the values are ignored, and the children are estimated with {@link #getMaxNumberOfMoves(ITwistyPuzzle, IMove[], int, byte, byte, byte[])}.
+     * This method must be safe to call from multiple threads at once.
+     * @param puzzle - The puzzle state whose children should be estimated.
+     * @param values - The database values of the puzzle state.
+     * @param indices - The database indices of the puzzle state.
+     * @param childMoves - The moves which reach each child from the puzzle state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     * @param childValues - The arrays to store the database values of each child in.
+     * @param childIndices - The arrays to store the database indices of each child in.
+     * @throws IllegalArgumentException if the puzzle does not match the puzzle type of the solver.
+     */
+    protected void getMaxNumberOfMoves(ITwistyPuzzle puzzle, byte[] values, int[] indices, IMove[] childMoves, int childCount, byte boundHint,
+                                       byte depthHint, byte[] estimates, byte[][] childValues, int[][] childIndices) throws IllegalArgumentException {
+        getMaxNumberOfMoves(puzzle, childMoves, childCount, boundHint, depthHint, estimates);
+    }
+
+    /**
+     * Estimate the children of a puzzle state by looking up a batch of databases (see {@link #getMaxNumberOfMoves(ITwistyPuzzle, IMove[], int, byte, byte, byte[])}).
+     * The database indices of every child are calculated first, and then each database is looked up for all of the remaining
+     * children at once, so the cache misses of the lookups overlap instead of waiting on each other. As in the single puzzle
+     * version, a child's estimate is final as soon as one database exceeds the bound, and it isn't looked up in the later databases.
+     * @param databases - The databases to look up, in the order they are checked.
+     * @param puzzle - The puzzle state whose children should be estimated.
+     * @param childMoves - The moves which reach each child from the puzzle state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     */
+    protected void probeDatabases(PatternDatabase[] databases, ITwistyPuzzle puzzle, IMove[] childMoves, int childCount,
+                                  byte boundHint, byte depthHint, byte[] estimates) {
+        probeDatabases(databases, puzzle, null, null, null, childMoves, childCount, boundHint, depthHint, estimates, null, null);
+    }
+
+    /**
+     * Estimate the children of a puzzle state by looking up a batch of databases, where each child only looks up the databases
+     * which can be changed by its move, and inherits the values of the other databases from the puzzle state
+     * (see {@link #getMaxNumberOfMoves(ITwistyPuzzle, byte[], int[], IMove[], int, byte, byte, byte[], byte[][], int[][])}).
+     * The databases are still checked in order, so each estimate is the same as if every database had been looked up.
+     * With an adaptive probe order (see {@link #setAdaptiveProbeOrder}), the databases are checked in the learned order instead.
+     * <p>
+     * If the database indices of the puzzle state are given, the indices of each child are calculated from them with the
+     * move tables of the databases, without making any moves on the puzzle. A database must then be looked up by a child
+     * exactly when its index changes, so no bit masks are needed.
+     * @param databases - The databases to look up, in the order they are checked unless the order is learned (at most 32).
+     * @param puzzle - The puzzle state whose children should be estimated.
+     * @param values - The database values of the puzzle state (or {@code null} if every database is looked up).
+     * @param indices - The database indices of the puzzle state (or {@code null} if the indices are calculated from the puzzle).
+     * @param affectedDatabases - A bit mask for each child of the databases which must be looked up (or {@code null} if every
+     *  database is looked up, or the indices of the puzzle state are given).
+     * @param childMoves - The moves which reach each child from the puzzle state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The array to store the maximum number of moves of each child in.
+     * @param childValues - The arrays to store the database values of each child in (or {@code null} if they aren't needed).
+     * @param childIndices - The arrays to store the database indices of each child in (or {@code null} if the indices of
+     *  the puzzle state aren't given).
+     */
+    protected void probeDatabases(PatternDatabase[] databases, ITwistyPuzzle puzzle, byte[] values, int[] indices, int[] affectedDatabases,
+                                  IMove[] childMoves, int childCount, byte boundHint, byte depthHint, byte[] estimates,
+                                  byte[][] childValues, int[][] childIndices) {
+        ProbeBatch batch = probeBatches.get();
+        if (batch == null || batch.indices.length < databases.length || batch.remaining.length < childCount) {
+            batch = new ProbeBatch(databases.length, Math.max(childCount, puzzle.getMoveController().getMoves().length));
+            probeBatches.set(batch);
+        }
+        ProbeOrder probeOrder = adaptiveProbeOrder ? getProbeOrder(databases) : null;
+        int[] order = (probeOrder != null) ? probeOrder.getOrder() : null;
+        boolean timed = (probeOrder != null) && batch.batchCount % ProbeOrder.TIMING_INTERVAL == 0;
+
+        // Calculate the indices of every child in the databases it has to look up first
+        IMoveController moveController = puzzle.getMoveController();
+        for (int i = 0; i < childCount; i++) {
+            int mask = (affectedDatabases == null) ? -1 : affectedDatabases[i];
+            if (indices != null) {
+                // Move the indices of the puzzle state with the move tables, and only look up the ones which change
+                int moveIndex = childMoves[i].ordinal();
+                mask = 0;
+                for (int d = 0; d < databases.length; d++) {
+                    int childIndex = databases[d].getChildIndex(indices[d], moveIndex);
+                    batch.indices[d][i] = childIndex;
+                    childIndices[i][d] = childIndex;
+                    if (childIndex != indices[d]) {
+                        mask |= 1 << d;
+                    }
+                }
+            }
+            else if (mask != 0) {
+                moveController.makeMove(childMoves[i]);
+                getDatabaseIndices(databases, puzzle, batch.indices, i, mask);
+                moveController.undoMove(childMoves[i]);
+            }
+
+            batch.masks[i] = mask;
+            estimates[i] = 0;
+            batch.remaining[i] = i;
+        }
+
+        // Look up each database for all children which haven't exceeded the bound yet
+        int remainingCount = childCount;
+        for (int o = 0; o < databases.length && remainingCount > 0; o++) {
+            int d = (order != null) ? order[o] : o;
+            int[] databaseIndices = batch.indices[d];
+            int probeCount = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                int child = batch.remaining[i];
+                if ((batch.masks[child] & (1 << d)) != 0) {
+                    batch.probeIndices[probeCount++] = databaseIndices[child];
+                }
+            }
+            long startTime = timed ? System.nanoTime() : 0;
+            // Given the values of the puzzle state, databases which only keep their entries modulo 3 are decoded from them
+            if (values != null) {
+                databases[d].getNumberOfMoves(batch.probeIndices, probeCount, values[d], batch.results);
+            }
+            else {
+                databases[d].getNumberOfMoves(batch.probeIndices, probeCount, batch.results);
+            }
+            if (timed) {
+                batch.timedNanos[d] += System.nanoTime() - startTime;
+                batch.timedLookups[d] += probeCount;
+            }
+            if (probeOrder != null) {
+                batch.checks[d] += remainingCount;
+                batch.lookups[d] += probeCount;
+            }
+
+            int keptCount = 0;
+            probeCount = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                int child = batch.remaining[i];
+                byte estimatedMoves = ((batch.masks[child] & (1 << d)) != 0) ? batch.results[probeCount++] : values[d];
+                if (childValues != null) {
+                    childValues[child][d] = estimatedMoves;
+                }
+
+                // If the estimate exceeds the bound, it is the child's final estimate
+                if (estimatedMoves + depthHint > boundHint) {
+                    estimates[child] = estimatedMoves;
+                    continue;
+                }
+                if (estimatedMoves > estimates[child]) {
+                    estimates[child] = estimatedMoves;
+                }
+                batch.remaining[keptCount++] = child;
+            }
+            if (probeOrder != null) {
+                batch.cutoffs[d] += remainingCount - keptCount;
+            }
+            remainingCount = keptCount;
+        }
+
+        // Periodically add the counts of the thread to the learned order, which reorders the databases
+        if (probeOrder != null && ++batch.batchCount % ProbeOrder.UPDATE_INTERVAL == 0) {
+            probeOrder.update(batch.checks, batch.cutoffs, batch.lookups, batch.timedLookups, batch.timedNanos);
+        }
+    }
+
+    /**
+     * Calculate the index of a puzzle state in each database of a batch (see {@link #probeDatabases}).
+     * By default each database calculates its own index; solvers can override this to share work between the databases.
+     * This method must be safe to call from multiple threads at once.
+     * @param databases - The databases of the batch.
+     * @param puzzle - The puzzle state to calculate the indices for.
+     * @param indices - The array to store the indices in, indexed by database then child.
+     * @param child - The index of the child the puzzle state belongs to.
+     * @param mask - A bit mask of the databases to calculate the indices for.
+     */
+    protected void getDatabaseIndices(PatternDatabase[] databases, ITwistyPuzzle puzzle, int[][] indices, int child, int mask) {
+        for (int d = 0; d < databases.length; d++) {
+            if ((mask & (1 << d)) != 0) {
+                indices[d][child] = databases[d].getIndex(puzzle);
+            }
+        }
+    }
+
+    /**
+     * Raise the estimates of the children of a puzzle state with the large databases of the solver (see {@link #setLargeDatabases}),
+     * after they have been estimated with the other databases. Only the children whose estimates are still within the bound
+     * are looked up: the indices of each of them are calculated from its puzzle state first, then each large database is
+     * looked up for all of them at once, so the page and cache misses of the lookups overlap (see {@link #probeDatabases}).
+     * As there, a child isn't looked up in the later databases once its estimate exceeds the bound.
+     * @param puzzle - The puzzle state whose children should be estimated.
+     * @param childMoves - The moves which reach each child from the puzzle state.
+     * @param childCount - The number of children.
+     * @param boundHint - The maximum number of moves allowed to solve the puzzle state.
+     * @param depthHint - The depth of the children in the search tree.
+     * @param estimates - The estimates of the children, which are raised by the large databases.
+     */
+    protected void probeLargeDatabases(ITwistyPuzzle puzzle, IMove[] childMoves, int childCount, byte boundHint, byte depthHint, byte[] estimates) {
+        LongPatternDatabase[] databases = largeDatabases;
+        LargeProbeBatch batch = largeProbeBatches.get();
+        if (batch == null || batch.indices.length < databases.length || batch.remaining.length < childCount) {
+            batch = new LargeProbeBatch(databases.length, Math.max(childCount, puzzle.getMoveController().getMoves().length));
+            largeProbeBatches.set(batch);
+        }
+
+        // Calculate the indices of every child which is still within the bound
+        IMoveController moveController = puzzle.getMoveController();
+        int remainingCount = 0;
+        for (int i = 0; i < childCount; i++) {
+            if (estimates[i] + depthHint <= boundHint) {
+                moveController.makeMove(childMoves[i]);
+                getLargeDatabaseIndices(databases, puzzle, batch.indices, remainingCount);
+                moveController.undoMove(childMoves[i]);
+                batch.remaining[remainingCount++] = i;
+            }
+        }
+
+        // Look up each database for all children which haven't exceeded the bound yet
+        for (int d = 0; d < databases.length && remainingCount > 0; d++) {
+            databases[d].getNumberOfMoves(batch.indices[d], remainingCount, batch.results);
+
+            int keptCount = 0;
+            for (int i = 0; i < remainingCount; i++) {
+                int child = batch.remaining[i];
+                byte estimatedMoves = batch.results[i];
+                if (estimatedMoves > estimates[child]) {
+                    estimates[child] = estimatedMoves;
+                }
+
+                // If the estimate exceeds the bound, it is the child's final estimate
+                if (estimatedMoves + depthHint > boundHint) {
+                    continue;
+                }
+                // The indices of the child in the later databases move down with it
+                for (int later = d + 1; later < databases.length; later++) {
+                    batch.indices[later][keptCount] = batch.indices[later][i];
+                }
+                batch.remaining[keptCount++] = child;
+            }
+            remainingCount = keptCount;
+        }
+    }
+
+    /**
+     * Calculate the index of a puzzle state in each large database (see {@link #probeLargeDatabases}).
+     * By default each database calculates its own index; solvers can override this to share work between the databases.
+     * This method must be safe to call from multiple threads at once.
+     * @param databases - The large databases.
+     * @param puzzle - The puzzle state to calculate the indices for.
+     * @param indices - The array to store the indices in, indexed by database then child.
+     * @param child - The index of the child the puzzle state belongs to.
+     */
+    protected void getLargeDatabaseIndices(LongPatternDatabase[] databases, ITwistyPuzzle puzzle, long[][] indices, int child) {
+        for (int d = 0; d < databases.length; d++) {
+            indices[d][child] = databases[d].getIndex(puzzle);
+        }
+    }
+
+    /**
+     * The scratch buffers used by a thread to look up the large databases (see {@link #probeLargeDatabases}).
+     */
+    private static class LargeProbeBatch {
+        // The index of each remaining child in each database, the children which haven't exceeded the bound yet,
+        // and the results of the current lookup
+        private final long[][] indices;
+        private final int[] remaining;
+        private final byte[] results;
 
         /**
-         * Constructor for an IDAStarNode.
-         * @param puzzle - The puzzle state of the node.
-         * @param move - The move used to get to the node.
-         * @param depth - The depth of the node.
+         * Constructor for a LargeProbeBatch.
+         * @param databaseCount - The number of databases looked up.
+         * @param maxChildren - The maximum number of children in a batch.
          */
-        private IDAStarNode(ITwistyPuzzle puzzle, IMove move, byte depth) {
-            this.puzzle = puzzle;
-            this.move = move;
-            this.depth = depth;
+        private LargeProbeBatch(int databaseCount, int maxChildren) {
+            indices = new long[databaseCount][maxChildren];
+            remaining = new int[maxChildren];
+            results = new byte[maxChildren];
         }
     }
 
     /**
-     * A move with an estimated number of moves required to solve the puzzle state after the move.
-     * Used to prioritize moves in the IDA* search.
+     * The scratch buffers used by a thread to look up a batch of databases (see {@link #probeDatabases}).
      */
-    private static class PrioritizedMove {
-        ITwistyPuzzle puzzle;
-        IMove move;
-        byte estimatedMoves;
+    private static class ProbeBatch {
+        // The index of each child in each database, the databases each child looks up, the children which haven't
+        // exceeded the bound yet, and the indices and results of the current lookup
+        private final int[][] indices;
+        private final int[] masks;
+        private final int[] remaining;
+        private final int[] probeIndices;
+        private final byte[] results;
+        // The counts of the thread for the learned order since its last update (indexed by database), and the number of batches
+        private final long[] checks, cutoffs, lookups, timedLookups, timedNanos;
+        private long batchCount = 0;
 
         /**
-         * Constructor for a PrioritizedMove.
-         * @param puzzle - The puzzle state after the move.
-         * @param move - The move used to get to the puzzle state.
-         * @param estimatedMoves - The estimated number of moves to solve the puzzle state.
+         * Constructor for a ProbeBatch.
+         * @param databaseCount - The number of databases looked up.
+         * @param maxChildren - The maximum number of children in a batch.
          */
-        private PrioritizedMove(ITwistyPuzzle puzzle, IMove move, byte estimatedMoves) {
-            this.puzzle = puzzle;
-            this.move = move;
-            this.estimatedMoves = estimatedMoves;
-        } 
+        private ProbeBatch(int databaseCount, int maxChildren) {
+            indices = new int[databaseCount][maxChildren];
+            masks = new int[maxChildren];
+            remaining = new int[maxChildren];
+            probeIndices = new int[maxChildren];
+            results = new byte[maxChildren];
+            checks = new long[databaseCount];
+            cutoffs = new long[databaseCount];
+            lookups = new long[databaseCount];
+            timedLookups = new long[databaseCount];
+            timedNanos = new long[databaseCount];
+        }
+    }
+
+
+    /**
+     * A task which searches a range of subtrees of a bound iteration.
+     * Ranges are split in half until a single subtree remains, so idle threads can steal the other half of a range.
+     * Tasks are never serialised (RecursiveAction is only Serializable through ForkJoinTask).
+     */
+    @SuppressWarnings("serial")
+    private static class SubtreeSearchTask extends RecursiveAction {
+        private final List<IMove[]> subtrees;
+        private final int from, to;
+        private final BoundIteration iteration;
+        private final ThreadLocal<IDAStarWorker> workers;
+
+        /**
+         * Constructor for a SubtreeSearchTask.
+         * @param subtrees - The move prefixes of all subtree roots in the bound iteration.
+         * @param from - The index of the first subtree to search (inclusive).
+         * @param to - The index of the last subtree to search (exclusive).
+         * @param iteration - The bound iteration the subtrees belong to.
+         * @param workers - The search worker of each thread in the pool.
+         */
+        private SubtreeSearchTask(List<IMove[]> subtrees, int from, int to, BoundIteration iteration, ThreadLocal<IDAStarWorker> workers) {
+            this.subtrees = subtrees;
+            this.from = from;
+            this.to = to;
+            this.iteration = iteration;
+            this.workers = workers;
+        }
+
+        @Override
+        protected void compute() {
+            // Stop as soon as any thread has found a solution, or the iteration has been stopped
+            if (iteration.isFinished()) {
+                return;
+            }
+
+            if (to - from == 1) {
+                // The worker is only used by leaf tasks, which never wait on other tasks,
+                // so a thread cannot start another search with its worker part-way through this one
+                workers.get().searchSubtree(subtrees.get(from), iteration);
+
+                // A subtree is only complete if the search wasn't stopped part-way through it
+                if (!iteration.isFinished()) {
+                    iteration.markSubtreeCompleted(from);
+                }
+            }
+            else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SubtreeSearchTask(subtrees, from, middle, iteration, workers),
+                          new SubtreeSearchTask(subtrees, middle, to, iteration, workers));
+            }
+        }
     }
 
     /**
      * Perform an iterative-deepening A* (IDA*) search to find an optimal solution to the puzzle state.
+     * If the parallelism of the solver is greater than 1, each bound iteration is searched in parallel.
      * @return An array of moves which can be performed to solve the puzzle.
      * @throws IllegalStateException If the pattern databases are not initialised correctly.
      */
     public IMove[] solve() throws IllegalStateException {
-        // Use a deque as a stack for nodes
-        ArrayDeque<IDAStarNode> nodeStack = new ArrayDeque<IDAStarNode>();
-        IDAStarNode currentNode;
+        if (puzzle.isSolved()) {
+            return new IMove[0];
+        }
+
+        SearchOptions options = new SearchOptions();
+        options.writeCheckpoints = true;
+        return search(options).getSolution();
+    }
+
+    /**
+     * Perform an iterative-deepening A* (IDA*) search to find an optimal solution to the puzzle state,
+     * which stops early if a deadline passes or the search is cancelled.
+     * The workers check the deadline and cancellation token every few thousand nodes, so the search stops shortly after either.
+     * If the search is stopped, the result contains the proven lower bound on the number of moves of an optimal solution.
+     * @param deadline - The time after which the search stops (or {@code null} for no deadline).
+     * @param cancellationToken - The token which stops the search when cancelled (or {@code null} if the search can't be cancelled).
+     * @return The result of the search, containing the optimal solution unless the search was stopped.
+     * @throws IllegalStateException If the pattern databases are not initialised correctly.
+     */
+    public SolveResult solve(Instant deadline, CancellationToken cancellationToken) throws IllegalStateException {
+        if (puzzle.isSolved()) {
+            return new SolveResult(SolveResult.Status.SOLVED, new IMove[0], (byte) 0, 0, Duration.ZERO);
+        }
+
+        SearchOptions options = new SearchOptions();
+        options.deadline = (deadline == null) ? Long.MAX_VALUE : deadline.toEpochMilli();
+        options.cancellationToken = cancellationToken;
+        options.writeCheckpoints = true;
+        return search(options);
+    }
+
+    /**
+     * Resume an IDA* search from a checkpoint file written by an earlier search of the same puzzle state (see {@link #setCheckpointFile}).
+     * The search continues from the bound iteration of the checkpoint, only searching the subtrees which were not completed.
+     * If a checkpoint file is set, checkpoints of the resumed search are written to it.
+     * @param checkpointFile - The checkpoint file to resume from.
+     * @param deadline - The time after which the search stops (or {@code null} for no deadline).
+     * @param cancellationToken - The token which stops the search when cancelled (or {@code null} if the search can't be cancelled).
+     * @return The result of the search, containing the optimal solution unless the search was stopped.
+     * @throws IllegalArgumentException if the checkpoint file can't be read, or is for a different puzzle state.
+     * @throws IllegalStateException If the pattern databases are not initialised correctly.
+     */
+    public SolveResult resume(File checkpointFile, Instant deadline, CancellationToken cancellationToken)
+            throws IllegalArgumentException, IllegalStateException {
+        Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.readFromFile(checkpointFile, puzzle.getMoveController().getMoves());
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException("Error reading checkpoint file: " + e.getMessage(), e);
+        }
 
-        boolean isSolved = puzzle.isSolved();
-        IMove[] moves = new IMove[100]; // Assume a maximum of 100 moves to optimally solve the puzzle
-        
-        byte bound = 0;
-        byte nextBound = getMaxNumberOfMoves(puzzle);
+        long[] packedState = new long[2];
+        puzzle.packState(packedState);
+        if (packedState[0] != checkpoint.packedState[0] || packedState[1] != checkpoint.packedState[1]) {
+            throw new IllegalArgumentException("The checkpoint file is for a different puzzle state.");
+        }
+
+        SearchOptions options = new SearchOptions();
+        options.deadline = (deadline == null) ? Long.MAX_VALUE : deadline.toEpochMilli();
+        options.cancellationToken = cancellationToken;
+        options.writeCheckpoints = true;
+        options.resumeFrom = checkpoint;
+        return search(options);
+    }
+
+    /**
+     * Perform a series of IDA* searches which quickly find a solution to the puzzle state, and then keep finding shorter
+     * solutions until an optimal solution is found, the deadline passes, or the search is cancelled.
+     * The first searches weight the heuristic estimates (see {@link #ANYTIME_WEIGHTS}), which finds solutions much faster but
+     * may not find an optimal solution. Each search only looks for solutions shorter than the best solution so far, and the
+     * last search is unweighted, so it either finds an optimal solution or proves the best solution so far is optimal.
+     * @param deadline - The time after which the search stops (or {@code null} for no deadline).
+     * @param cancellationToken - The token which stops the search when cancelled (or {@code null} if the search can't be cancelled).
+     * @param improvedSolutionConsumer - The consumer to pass each new best solution to as soon as it is found (or {@code null}).
+     * @return The result of the search, containing the best solution found.
+     * @throws IllegalStateException If the pattern databases are not initialised correctly.
+     */
+    public SolveResult solveAnytime(Instant deadline, CancellationToken cancellationToken, Consumer<IMove[]> improvedSolutionConsumer)
+            throws IllegalStateException {
+        if (puzzle.isSolved()) {
+            return new SolveResult(SolveResult.Status.SOLVED, new IMove[0], (byte) 0, 0, Duration.ZERO);
+        }
 
         long startTime = System.currentTimeMillis();
-        Duration dur;
+        IMove[] bestSolution = null;
+        byte lowerBound = getMaxNumberOfMoves(puzzle);
+        long nodesGenerated = 0;
 
-        System.out.println("IDA*: Beginning search at depth " + nextBound);
+        for (int weight : ANYTIME_WEIGHTS) {
+            SearchOptions options = new SearchOptions();
+            options.weight = weight;
+            options.maxSolutionLength = (bestSolution == null) ? Byte.MAX_VALUE : (byte) (bestSolution.length - 1);
+            options.deadline = (deadline == null) ? Long.MAX_VALUE : deadline.toEpochMilli();
+            options.cancellationToken = cancellationToken;
 
-        // Keep searching until the cube is solved
-        while (!isSolved) {
+            SolveResult result = search(options);
+            nodesGenerated += result.getNodesGenerated();
+            lowerBound = (byte) Math.max(lowerBound, result.getLowerBound());
 
-            // If depth level is complete
-            if (nodeStack.isEmpty()) {
-                if (bound != 0) {
-                    dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
-                    System.out.println("IDA*: Finished bound " + bound + " after " + 
-                    String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()) + " (" +
-                    LocalTime.now().format(DateTimeFormatter.ofPattern("h:mm a")) + ")");
+            if (result.getSolution() != null) {
+                bestSolution = result.getSolution();
+                if (improvedSolutionConsumer != null) {
+                    improvedSolutionConsumer.accept(bestSolution);
                 }
+            }
+
+            // Stop if the search was stopped, or the best solution has been proven to be optimal
+            if (result.getStatus() != SolveResult.Status.SOLVED || (bestSolution != null && bestSolution.length <= lowerBound)) {
+                return new SolveResult(result.getStatus(), bestSolution, lowerBound, nodesGenerated,
+                                       Duration.ofMillis(System.currentTimeMillis() - startTime));
+            }
+        }
+
+        // The last search is unweighted, so it always proves the best solution is optimal
+        throw new IllegalStateException("The anytime search finished without an optimal solution.");
+    }
 
-                // Push the root node (initial scrambled puzzle state) onto the stack
-                nodeStack.addFirst(new IDAStarNode(puzzle, null, (byte) 0));
+    /**
+     * Perform an iterative-deepening A* (IDA*) search to find every optimal solution to the puzzle state.
+     * The bound iteration containing the optimal solutions is searched to completion, and each solution is passed to the
+     * consumer as soon as it is found. Solutions are passed to the consumer one at a time (even in a parallel search),
+     * but not in any particular order.
+     * Only distinct move sequences are found, and no solution contains a sequence of moves which could be replaced by a
+     * shorter equivalent sequence (e.g. [R, R] is never used instead of [R2]).
+     * @param solutionConsumer - The consumer to pass each optimal solution to.
+     * @return The number of optimal solutions.
+     * @throws IllegalStateException If the pattern databases are not initialised correctly.
+     */
+    public long solveAll(Consumer<IMove[]> solutionConsumer) throws IllegalStateException {
+        if (puzzle.isSolved()) {
+            solutionConsumer.accept(new IMove[0]);
+            return 1;
+        }
+
+        SearchOptions options = new SearchOptions();
+        options.findAllSolutions = true;
+        options.solutionConsumer = solutionConsumer;
+        return search(options).getSolutionCount();
+    }
+
+    /**
+     * Perform an iterative-deepening A* (IDA*) search to count the optimal solutions to the puzzle state
+     * (see {@link #solveAll}). The solutions are counted without being copied.
+     * @return The number of optimal solutions.
+     * @throws IllegalStateException If the pattern databases are not initialised correctly.
+     */
+    public long countSolutions() throws IllegalStateException {
+        if (puzzle.isSolved()) {
+            return 1;
+        }
+
+        SearchOptions options = new SearchOptions();
+        options.findAllSolutions = true;
+        return search(options).getSolutionCount();
+    }
+
+    /**
+     * Perform the bound iterations of an IDA* search until an iteration finds a solution, or the search is stopped.
+     * If the parallelism of the solver is greater than 1, each bound iteration is searched in parallel.
+     * @param options - The options of the search.
+     * @return The result of the search.
+     * @throws IllegalStateException If the pattern databases are not initialised correctly.
+     */
+    private SolveResult search(SearchOptions options) throws IllegalStateException {
+        ForkJoinPool pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
 
+        // Entries stored by earlier searches (or earlier anytime passes) must not cut off states this search has not explored
+        if (transpositionTable != null) {
+            transpositionTable.startSearch();
+        }
+
+        // Each thread searches with its own worker (and its own copy of the puzzle)
+        IDAStarWorker mainWorker = createWorker(puzzle.copy(), options.findAllSolutions);
+        ThreadLocal<IDAStarWorker> workers = ThreadLocal.withInitial(() -> createWorker(puzzle.copy(), options.findAllSolutions));
+
+        // Checkpoints are written by a background thread, so the search threads never wait for them
+        File checkpointFile = options.writeCheckpoints ? this.checkpointFile : null;
+        long[] packedState = new long[2];
+        puzzle.packState(packedState);
+        AtomicReference<BoundIteration> currentIteration = new AtomicReference<BoundIteration>();
+        ScheduledExecutorService checkpointWriter = null;
+
+        if (checkpointFile != null) {
+            checkpointWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = checkpointInterval.toMillis();
+            checkpointWriter.scheduleAtFixedRate(() -> writeCheckpoint(currentIteration, packedState, checkpointFile),
+                                                 intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            byte rootEstimate = getMaxNumberOfMoves(puzzle);
+            byte nextBound = (byte) Math.min(Byte.MAX_VALUE - 1, (rootEstimate * options.weight + 99) / 100);
+            long nodesGenerated = 0;
+            Checkpoint resumeFrom = options.resumeFrom;
+
+            long startTime = System.currentTimeMillis();
+
+            if (resumeFrom != null) {
+                nextBound = resumeFrom.bound;
+                nodesGenerated = resumeFrom.nodesGenerated;
+                System.out.println("IDA*: Resuming search at depth " + nextBound + " with " + resumeFrom.subtrees.size() + " subtrees remaining");
+            }
+
+            System.out.println("IDA*: Beginning search at depth " + nextBound +
+                               (pool != null ? " using " + parallelism + " threads" : "") +
+                               (transpositionTable != null ? " with a transposition table of " + transpositionTable.getSize() + " entries" : "") +
+                               (options.weight != 100 ? " (heuristic weight " + options.weight + "%)" : "") +
+                               (options.maxSolutionLength != Byte.MAX_VALUE ? " (max solution length " + options.maxSolutionLength + ")" : ""));
+
+            // Keep searching until the puzzle is solved
+            while (true) {
                 // If nextBound is 0, database not initialised correctly
                 if (nextBound == 0) {
                     throw new IllegalStateException("nextBound set to 0. Bad database.");
                 }
                 // If nextBound was not updated from max value, all branches were pruned
                 if (nextBound == Byte.MAX_VALUE) {
+                    // With a maximum solution length, this proves there is no solution within the maximum length
+                    if (options.maxSolutionLength != Byte.MAX_VALUE) {
+                        return new SolveResult(SolveResult.Status.SOLVED, null, (byte) (options.maxSolutionLength + 1), nodesGenerated,
+                                               Duration.ofMillis(System.currentTimeMillis() - startTime));
+                    }
                     throw new IllegalStateException("nextBound set to max value. Bad database.");
                 }
 
                 // Update the bound to the next bound
-                bound = nextBound;
-                nextBound = Byte.MAX_VALUE;
-            }
+                BoundIteration iteration = new BoundIteration(nextBound, options);
+                iteration.previousNodesGenerated = nodesGenerated;
+                long iterationStartTime = System.currentTimeMillis();
 
-            // Pop node off of top of stack
-            currentNode = nodeStack.removeFirst();
+                if (pool != null || checkpointFile != null || resumeFrom != null) {
+                    // Split the iteration into subtrees (or continue with the remaining subtrees of the checkpoint)
+                    List<IMove[]> subtrees;
+                    if (resumeFrom != null) {
+                        subtrees = resumeFrom.subtrees;
+                        iteration.updateNextBound(resumeFrom.nextBound);
+                        resumeFrom = null;
+                    }
+                    else {
+                        subtrees = new ArrayList<IMove[]>();
+                        mainWorker.moveTo(new IMove[0]);
+                        mainWorker.collectSubtrees((byte) Math.min(PARALLEL_SPLIT_DEPTH, iteration.bound - 1), iteration, subtrees);
+                    }
+                    iteration.setSubtrees(subtrees);
 
-            // Update the moves array
-            moves[currentNode.depth] = null;
-            if (currentNode.depth != 0) {
-                moves[currentNode.depth - 1] = currentNode.move;
-            }
+                    if (checkpointFile != null) {
+                        currentIteration.set(iteration);
+                        writeCheckpoint(currentIteration, packedState, checkpointFile);
+                    }
 
-            // If the current node is at the bound depth, check if the puzzle is solved
-            if (currentNode.depth == bound) {
-                if (currentNode.puzzle.isSolved()) {
-                    isSolved = true;
-                }
-            }
-            else {
-                // Create a comparator to sort the children nodes by estimated moves in ascending order
-                Comparator<PrioritizedMove> prioritizedMoveComparator = (PrioritizedMove a, PrioritizedMove b) -> {
-                    return Byte.compare(a.estimatedMoves, b.estimatedMoves);
-                };
-
-                // Create a priority queue using the comparator to store the children nodes
-                PriorityQueue<PrioritizedMove> children = new PriorityQueue<PrioritizedMove>(prioritizedMoveComparator);
-
-                // Iterate over all possible moves from the current node
-                for (IMove move : puzzle.getMoveController().getMoves()) {
-                    // If at the root node or the move shouldn't be skipped
-                    if (currentNode.depth == 0 || !puzzle.getMoveController().skipMove(move, currentNode.move)) {
-                        
-                        // Create a copy of the current puzzle state and make the move on the copy
-                        ITwistyPuzzle puzzleCopy = currentNode.puzzle.copy();
-                        puzzleCopy.getMoveController().makeMove(move);
-
-                        // Calculate an estimate for the number of moves required to solve the child node
-                        byte estimatedChildMoves = (byte)(currentNode.depth + (byte) 1 + getMaxNumberOfMoves(puzzleCopy, bound, (byte)(currentNode.depth + 1)));
-
-                        if (estimatedChildMoves <= bound) {
-                            // If child node is estimated to take less moves than the current bound, push to queue
-                            children.add(new PrioritizedMove(puzzleCopy, move, estimatedChildMoves));
+                    if (pool != null && !subtrees.isEmpty()) {
+                        // Search the subtrees on the pool
+                        pool.invoke(new SubtreeSearchTask(subtrees, 0, subtrees.size(), iteration, workers));
+                    }
+                    else {
+                        // Search the subtrees one at a time
+                        for (int i = 0; i < subtrees.size() && !iteration.isFinished(); i++) {
+                            mainWorker.searchSubtree(subtrees.get(i), iteration);
+                            if (!iteration.isFinished()) {
+                                iteration.markSubtreeCompleted(i);
+                            }
                         }
-                        else if (estimatedChildMoves < nextBound) {
-                            // nextBound is the minimum of all child node moves greater than the current bound
-                            nextBound = estimatedChildMoves;
+                    }
+                }
+                else {
+                    // Search the whole iteration as a single subtree
+                    mainWorker.searchSubtree(new IMove[0], iteration);
+                }
+
+                nextBound = (byte) iteration.nextBound.get();
+                nodesGenerated += iteration.nodesGenerated.sum();
+                boolean solved = options.findAllSolutions ? iteration.solutionCount.sum() > 0 : iteration.solution.get() != null;
+
+                if (iteration.stopStatus != null && !solved) {
+                    printProgress("Stopped (" + iteration.stopStatus + ") during bound " + iteration.bound, startTime, iteration, iterationStartTime);
+                }
+                else if (!solved) {
+                    printProgress("Finished bound " + iteration.bound, startTime, iteration, iterationStartTime);
+                }
+                else if (options.findAllSolutions) {
+                    printProgress("Found " + iteration.solutionCount.sum() + " solutions at depth " + iteration.bound, startTime, iteration, iterationStartTime);
+                }
+                else {
+                    printProgress("Solution found at depth " + iteration.bound, startTime, iteration, iterationStartTime);
+                }
+                if (transpositionTable != null) {
+                    System.out.println("IDA*: " + transpositionTable.getStatistics());
+                }
+                if (probeOrder != null && probeOrder.getUpdates() > 0) {
+                    System.out.println("IDA*: " + probeOrder.getStatistics());
+                }
+
+                // Unweighted bounds are lower bounds on the number of moves, as all shorter solutions have been ruled out
+                byte lowerBound = (options.weight == 100) ? iteration.bound : rootEstimate;
+                Duration elapsed = Duration.ofMillis(System.currentTimeMillis() - startTime);
+
+                // The background thread keeps writing checkpoints of the next iterations, unless the search is over
+                if (checkpointFile != null && (solved || iteration.stopStatus != null)) {
+                    checkpointWriter.shutdownNow();
+                    if (solved) {
+                        // Stop the background thread from writing any more checkpoints, then delete the file
+                        synchronized (currentIteration) {
+                            currentIteration.set(null);
+                            checkpointFile.delete();
                         }
                     }
+                    else {
+                        // Save the progress of the stopped iteration, so the search can be resumed
+                        writeCheckpoint(currentIteration, packedState, checkpointFile);
+                    }
                 }
 
-                while (!children.isEmpty()) {
-                    // Push the nodes in sorted order onto the stack
-                    PrioritizedMove child = children.poll();
-                    nodeStack.addFirst(new IDAStarNode(child.puzzle, child.move, (byte)(currentNode.depth + 1)));
+                if (solved) {
+                    SolveResult result = new SolveResult(SolveResult.Status.SOLVED, iteration.solution.get(), lowerBound, nodesGenerated, elapsed);
+                    result.solutionCount = iteration.solutionCount.sum();
+                    return result;
+                }
+                if (iteration.stopStatus != null) {
+                    return new SolveResult(iteration.stopStatus, null, lowerBound, nodesGenerated, elapsed);
                 }
+            }
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            if (checkpointWriter != null) {
+                checkpointWriter.shutdownNow();
+            }
+        }
+    }
 
+    /**
+     * Write a checkpoint of the current bound iteration of a search to a file. Errors are printed rather than thrown,
+     * so that a failed checkpoint doesn't stop the search.
+     * Checkpoints of a search are written one at a time, by locking the reference to its current iteration.
+     * @param currentIteration - The current bound iteration of the search (which is {@code null} if no checkpoint should be written).
+     * @param packedState - The packed initial puzzle state of the search.
+     * @param checkpointFile - The file to write the checkpoint to.
+     */
+    private static void writeCheckpoint(AtomicReference<BoundIteration> currentIteration, long[] packedState, File checkpointFile) {
+        synchronized (currentIteration) {
+            BoundIteration iteration = currentIteration.get();
+            if (iteration == null) {
+                return;
+            }
+
+            try {
+                Checkpoint checkpoint = iteration.createCheckpoint(packedState);
+                checkpoint.writeToFile(checkpointFile);
+                System.out.println("IDA*: Checkpoint written at depth " + checkpoint.bound + " with " + checkpoint.subtrees.size() + " subtrees remaining");
+            }
+            catch (Exception e) {
+                System.err.println("Error writing checkpoint to file:");
+                e.printStackTrace();
             }
         }
+    }
+
+    /**
+     * Print a progress message for the IDA* search, along with the elapsed time, the current time,
+     * and the number of nodes generated in the iteration (and the rate they were generated at).
+     * @param message - The progress message.
+     * @param startTime - The time the search was started at (in milliseconds).
+     * @param iteration - The bound iteration which was searched.
+     * @param iterationStartTime - The time the bound iteration was started at (in milliseconds).
+     */
+    private static void printProgress(String message, long startTime, BoundIteration iteration, long iterationStartTime) {
+        long now = System.currentTimeMillis();
+        Duration dur = Duration.ofMillis(now - startTime);
+        long nodes = iteration.nodesGenerated.sum();
+        long nodesPerSecond = nodes * 1000 / Math.max(1, now - iterationStartTime);
 
-        dur = Duration.ofMillis(System.currentTimeMillis() - startTime);
-        System.out.println("IDA*: Solution found at depth " + bound + " after " + 
-                            String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()) + " (" +
-                            LocalTime.now().format(DateTimeFormatter.ofPattern("h:mm a")) + ")");
-        return Arrays.copyOf(moves, bound);
+        System.out.println("IDA*: " + message + " after " +
+                           String.format("%02d:%02d:%02d", dur.toHours(), dur.toMinutesPart(), dur.toSecondsPart()) + " (" +
+                           LocalTime.now().format(DateTimeFormatter.ofPattern("h:mm a")) + ") - " +
+                           nodes + " nodes generated, " + nodesPerSecond + " nodes/s");
     }
 }
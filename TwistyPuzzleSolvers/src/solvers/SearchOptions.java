@@ -0,0 +1,43 @@
+package solvers;
+
+import models.IMoveController.IMove;
+
+import java.util.function.Consumer;
+
+/**
+ * The options of a single IDA* search, which are shared by all of its bound iterations.
+ */
+class SearchOptions {
+    // Whether all solutions are found rather than stopping at the first solution,
+    // and the consumer all solutions are passed to (null if solutions are only counted)
+    boolean findAllSolutions = false;
+    Consumer<IMove[]> solutionConsumer = null;
+
+    // The weight of the heuristic estimate as a percentage. A weight above 100% finds solutions faster, but they may not be optimal
+    int weight = 100;
+    // The maximum number of moves in a solution. Nodes which can't be solved within this number of moves are pruned
+    byte maxSolutionLength = Byte.MAX_VALUE;
+
+    // The time (in milliseconds since the epoch) after which the search stops, and the token which stops the search when cancelled
+    long deadline = Long.MAX_VALUE;
+    CancellationToken cancellationToken = null;
+
+    // Whether checkpoints of the search are written to the checkpoint file of the solver,
+    // and the checkpoint the search is resumed from (null to start a new search)
+    boolean writeCheckpoints = false;
+    Checkpoint resumeFrom = null;
+
+    /**
+     * Check if the search should stop, because its deadline has passed or it has been cancelled.
+     * @return The status the search stops with, or {@code null} if the search should continue.
+     */
+    SolveResult.Status getStopStatus() {
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            return SolveResult.Status.CANCELLED;
+        }
+        if (deadline != Long.MAX_VALUE && System.currentTimeMillis() >= deadline) {
+            return SolveResult.Status.TIMED_OUT;
+        }
+        return null;
+    }
+}
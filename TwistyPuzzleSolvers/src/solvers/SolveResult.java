@@ -0,0 +1,115 @@
+package solvers;
+
+import models.IMoveController.IMove;
+
+import java.time.Duration;
+
+/**
+ * The result of a search for a solution to a twisty puzzle, which may have been stopped before an optimal solution was found.
+ */
+public class SolveResult {
+
+    /**
+     * How a search finished.
+     */
+    public static enum Status {
+        // The search finished (the solution is optimal unless the heuristic estimates were weighted)
+        SOLVED,
+        // The search reached its deadline
+        TIMED_OUT,
+        // The search was stopped by its cancellation token
+        CANCELLED
+    }
+
+    private final Status status;
+    private final IMove[] solution;
+    private final byte lowerBound;
+    private final long nodesGenerated;
+    private final Duration elapsed;
+    // The number of solutions found when finding all optimal solutions
+    long solutionCount = 0;
+
+    /**
+     * Constructor for a SolveResult.
+     * @param status - How the search finished.
+     * @param solution - The best solution found, or {@code null} if no solution was found.
+     * @param lowerBound - The proven lower bound on the number of moves of an optimal solution.
+     * @param nodesGenerated - The number of nodes generated by the search.
+     * @param elapsed - The time the search took.
+     */
+    SolveResult(Status status, IMove[] solution, byte lowerBound, long nodesGenerated, Duration elapsed) {
+        this.status = status;
+        this.solution = solution;
+        this.lowerBound = lowerBound;
+        this.nodesGenerated = nodesGenerated;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Get how the search finished.
+     * @return The status of the search.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the best solution found by the search. Unless the solution is optimal (see {@link #isOptimal}),
+     * a shorter solution may exist, but it has at least {@link #getLowerBound} moves.
+     * @return An array of moves which can be performed to solve the puzzle, or {@code null} if no solution was found.
+     */
+    public IMove[] getSolution() {
+        return solution;
+    }
+
+    /**
+     * Check if the solution is proven to be optimal.
+     * @return {@code true} if the solution is optimal, {@code false} if there is no solution or it may not be optimal.
+     */
+    public boolean isOptimal() {
+        return solution != null && solution.length == lowerBound;
+    }
+
+    /**
+     * Get the proven lower bound on the number of moves of an optimal solution.
+     * This is the bound of the last bound iteration searched, as every earlier iteration was completed without finding a solution.
+     * @return The lower bound on the number of moves.
+     */
+    public byte getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Get the number of optimal solutions found, when the search finds all optimal solutions (see {@link PuzzleSolver#solveAll}).
+     * @return The number of optimal solutions found.
+     */
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+    /**
+     * Get the number of nodes generated (i.e. puzzle states estimated) by the search.
+     * @return The number of nodes generated.
+     */
+    public long getNodesGenerated() {
+        return nodesGenerated;
+    }
+
+    /**
+     * Get the time the search took.
+     * @return The elapsed time of the search.
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Return a summary of the result.
+     * @return A String containing the status, solution length, lower bound, nodes generated and elapsed time of the search.
+     */
+    public String toString() {
+        return status + ": " + (solution == null ? "no solution" : solution.length + " move solution" + (isOptimal() ? " (optimal)" : "")) +
+               ", lower bound " + lowerBound + ", " + nodesGenerated + " nodes generated in " +
+               String.format("%02d:%02d:%02d.%03d", elapsed.toHours(), elapsed.toMinutesPart(), elapsed.toSecondsPart(), elapsed.toMillisPart());
+    }
+}
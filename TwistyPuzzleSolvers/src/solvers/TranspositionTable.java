@@ -0,0 +1,196 @@
+package solvers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, lock-free transposition table for an IDA* search.
+ * The table stores the smallest depth (g) each puzzle state has been reached at during the current bound iteration,
+ * so that the search can cut off a state when it is reached again through a different sequence of moves.
+ * Entries are tagged with the search generation as well as the bound, so entries left by an earlier search (or an earlier
+ * pass of an anytime search) never match, even when that search used the same bound (see {@link #startSearch()}).
+ * <p>
+ * Each entry is stored as three longs: the two longs of the packed puzzle state, each XORed with the entry data, followed by the entry data.
+ * Threads read and write entries without locking; an entry which is torn by two threads writing at once fails the key check when
+ * it is read, and is treated as a miss. This means the table can be shared between all workers of a parallel search.
+ */
+public class TranspositionTable {
+
+    // Each entry takes up three longs (24 bytes)
+    static final int LONGS_PER_ENTRY = 3;
+    static final int BYTES_PER_ENTRY = LONGS_PER_ENTRY * Long.BYTES;
+
+    // The generation is stored in the 23 bits above the bound, and is never 0 so that an empty entry never matches
+    private static final int MAX_GENERATION = (1 << 23) - 1;
+
+    private final AtomicLongArray entries;
+    private final int indexMask;
+    private volatile int generation = 1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder replacements = new LongAdder();
+
+    /**
+     * Constructor for a TranspositionTable.
+     * The number of entries is the largest power of two which fits within the memory budget.
+     * @param memoryBudget - The maximum number of bytes the table may use.
+     * @throws IllegalArgumentException if the memory budget is too small to hold a single entry.
+     */
+    public TranspositionTable(long memoryBudget) throws IllegalArgumentException {
+        long maxEntries = Math.min(memoryBudget / BYTES_PER_ENTRY, Integer.MAX_VALUE / LONGS_PER_ENTRY);
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The memory budget must be at least " + BYTES_PER_ENTRY + " bytes.");
+        }
+
+        int size = Integer.highestOneBit((int) maxEntries);
+        entries = new AtomicLongArray(size * LONGS_PER_ENTRY);
+        indexMask = size - 1;
+    }
+
+    /**
+     * Start a new search generation, so that every entry stored by earlier searches is treated as empty.
+     * This must be called before each search (and each pass of an anytime search) which uses the table, while no other
+     * search is using it. When the generation counter wraps around, the table is cleared instead.
+     */
+    public void startSearch() {
+        if (generation == MAX_GENERATION) {
+            for (int i = 0; i < entries.length(); i++) {
+                entries.setOpaque(i, 0);
+            }
+            generation = 1;
+        }
+        else {
+            generation++;
+        }
+    }
+
+    /**
+     * Pack the generation and bound of an entry into the key which marks it as current.
+     * @param generation - The search generation the entry was stored in.
+     * @param bound - The bound of the iteration the entry was stored in.
+     * @return The packed iteration key, which is the upper 32 bits of the entry data.
+     */
+    private static long packIteration(int generation, byte bound) {
+        return ((long) generation << 8) | (bound & 0xFF);
+    }
+
+    /**
+     * Pack the data of an entry into a long. The generation is never 0, so the data is never 0, and an empty entry never
+     * matches a key.
+     * @param iteration - The packed generation and bound of the iteration the entry was stored in (see {@link #packIteration}).
+     * @param depth - The depth the state was reached at.
+     * @param context - The search context the state was reached with (which determines the moves which are skipped from it).
+     * @return The packed entry data.
+     */
+    private static long packData(long iteration, byte depth, int context) {
+        return (iteration << 32) | ((long) (depth & 0xFF) << 24) | (context & 0xFFFFFF);
+    }
+
+    /**
+     * Mix the two longs of a packed puzzle state into the index of its entry.
+     * @param first - The first long of the packed state.
+     * @param second - The second long of the packed state.
+     * @return The index of the entry for the packed state.
+     */
+    private int indexOf(long first, long second) {
+        long hash = first * 0x9E3779B97F4A7C15L + second;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash & indexMask;
+    }
+
+    /**
+     * Probe the table for a puzzle state reached during a bound iteration, and record the state if it should be searched.
+     * A state is cut off if it was already reached at a smaller depth in the same iteration of the same search, or at the same depth with the
+     * same context (as the subtree below it is then identical to the one already searched), if enabled.
+     * @param packedState - The packed puzzle state (see {@link models.ITwistyPuzzle#packState}).
+     * @param bound - The bound of the current iteration.
+     * @param depth - The depth the state was reached at.
+     * @param context - The search context the state was reached with (e.g. the index of the last move made).
+     * @param cutSameDepth - Whether a state reached again at the same depth with the same context may be cut off
+     *  ({@code false} when every path to a state must be searched, e.g. to find all optimal solutions).
+     * @return {@code true} if the state should be cut off, {@code false} if it should be searched.
+     */
+    public boolean probe(long[] packedState, byte bound, byte depth, int context, boolean cutSameDepth) {
+        long first = packedState[0], second = packedState[1];
+        int slot = indexOf(first, second) * LONGS_PER_ENTRY;
+
+        long iteration = packIteration(generation, bound);
+        long storedData = entries.getOpaque(slot + 2);
+        boolean sameState = (entries.getOpaque(slot) ^ storedData) == first && (entries.getOpaque(slot + 1) ^ storedData) == second;
+        boolean current = (storedData >>> 32) == iteration;
+        byte storedDepth = (byte) (storedData >>> 24);
+
+        if (sameState && current) {
+            if (storedDepth < depth || (cutSameDepth && storedDepth == depth && (storedData & 0xFFFFFF) == (context & 0xFFFFFF))) {
+                hits.increment();
+                return true;
+            }
+            if (storedDepth == depth) {
+                // Reached with a different context at the same depth, so keep the existing entry
+                misses.increment();
+                return false;
+            }
+        }
+        else if (current) {
+            // Another state from this iteration occupies the entry; only replace it with a state closer to the root
+            if (storedDepth < depth) {
+                misses.increment();
+                return false;
+            }
+            replacements.increment();
+        }
+
+        misses.increment();
+        long data = packData(iteration, depth, context);
+        entries.setOpaque(slot, first ^ data);
+        entries.setOpaque(slot + 1, second ^ data);
+        entries.setOpaque(slot + 2, data);
+        return false;
+    }
+
+    /**
+     * Get the number of entries in the table.
+     * @return The number of entries in the table.
+     */
+    public int getSize() {
+        return indexMask + 1;
+    }
+
+    /**
+     * Get the number of probes which cut off a state.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of probes which did not cut off a state.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of probes which replaced the entry of a different state stored during the same iteration.
+     * @return The number of replacements.
+     */
+    public long getReplacements() {
+        return replacements.sum();
+    }
+
+    /**
+     * Get a summary of the table statistics.
+     * @return A String containing the hit, miss and replacement counts of the table.
+     */
+    public String getStatistics() {
+        long hitCount = getHits(), missCount = getMisses();
+        long probes = Math.max(1, hitCount + missCount);
+        return "transposition table: " + hitCount + " hits (" + (hitCount * 100 / probes) + "%), " +
+               missCount + " misses, " + getReplacements() + " replacements";
+    }
+}
@@ -0,0 +1,75 @@
+package patterndatabases;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernel which calculates one database in each vector lane (see {@link IndexKernel}).
+ * The position and orientation of the i-th cubie of every database are gathered into a vector from the cubie tables,
+ * and the Lehmer digits are calculated with lane-wise comparisons. The gathered positions are kept in a buffer of the
+ * current thread, as reloading them is much cheaper than gathering them again. It is only loaded if the vector module is available.
+ * <p>
+ * This class is kept out of the main source tree, so the rest of the project compiles without the vector module. It is compiled
+ * separately, against the compiled main classes and with {@code --add-modules jdk.incubator.vector} (see {@code run.sh}).
+ */
+final class VectorIndexKernel extends IndexKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // The cubie the i-th digit of each lane is gathered from (indexed by digit, then lane), padded to a whole number of vectors
+    private final int[][] laneKubies;
+    // The positions gathered for each digit of the current vector (indexed by digit, then lane) of each thread
+    private final ThreadLocal<int[]> gatheredPositions;
+
+    /**
+     * Constructor for a VectorIndexKernel (see {@link IndexKernel#IndexKernel}).
+     * Called reflectively by {@link IndexKernel#create}.
+     */
+    VectorIndexKernel(byte[][] kubieSets, int n, int radix, int firstPosition) {
+        super(kubieSets, n, radix, firstPosition);
+
+        int paddedCount = (databaseCount + SPECIES.length() - 1) / SPECIES.length() * SPECIES.length();
+        laneKubies = new int[k][paddedCount];
+        for (int i = 0; i < k; i++) {
+            for (int lane = 0; lane < paddedCount; lane++) {
+                // Padding lanes gather from the first database, and are never stored
+                laneKubies[i][lane] = kubieSets[Math.min(lane, databaseCount - 1)][i];
+            }
+        }
+        gatheredPositions = ThreadLocal.withInitial(() -> new int[k * SPECIES.length()]);
+    }
+
+    public boolean isVectorised() {
+        return true;
+    }
+
+    public void calculateIndices(int[] kubiePositions, int[] kubieOrientations, int[] indices, int offset) {
+        int[] gathered = gatheredPositions.get();
+
+        for (int lane = 0; lane < databaseCount; lane += SPECIES.length()) {
+            IntVector rank = IntVector.zero(SPECIES);
+            IntVector orientationRank = IntVector.zero(SPECIES);
+
+            for (int i = 0; i < k; i++) {
+                IntVector element = IntVector.fromArray(SPECIES, kubiePositions, 0, laneKubies[i], lane);
+
+                // The digit is the element, minus the number of smaller elements before it
+                IntVector digit = element.sub(firstPosition);
+                for (int h = 0; h < i; h++) {
+                    IntVector previous = IntVector.fromArray(SPECIES, gathered, h * SPECIES.length());
+                    digit = digit.sub(1, previous.compare(VectorOperators.LT, element));
+                }
+                element.intoArray(gathered, i * SPECIES.length());
+                rank = rank.add(digit.mul(rankWeights[i]));
+
+                IntVector orientation = IntVector.fromArray(SPECIES, kubieOrientations, 0, laneKubies[i], lane);
+                orientationRank = orientationRank.add(orientation.mul(orientationWeights[i]));
+            }
+
+            VectorMask<Integer> stored = SPECIES.indexInRange(lane, databaseCount);
+            rank.mul(orientationCount).add(orientationRank).intoArray(indices, offset + lane, stored);
+        }
+    }
+}